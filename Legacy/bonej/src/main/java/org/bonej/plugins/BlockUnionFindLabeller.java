@@ -0,0 +1,289 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.plugins;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.bonej.util.Multithreader;
+
+import ij.IJ;
+
+/**
+ * Block-parallel connected component labelling.
+ * <p>
+ * The stack is divided into cubic blocks which are labelled independently and
+ * concurrently by {@link UnionFindLabeller}. Each block's labels are given a
+ * disjoint range in a shared union-find forest, and the labels that touch
+ * across block faces are merged with lock-free compare-and-set unions, so no
+ * thread waits for another. A final parallel pass over the blocks writes the
+ * resolved labels, without any serial label replacement over the stack.
+ * </p>
+ * <p>
+ * Labels are numbered as by {@link UnionFindLabeller}: consecutively from 1 in
+ * raster order of each particle's first voxel. Foreground is 26-connected and
+ * background is 6-connected.
+ * </p>
+ */
+final class BlockUnionFindLabeller {
+
+	/** Edge length of the cubic blocks labelled by each thread */
+	static final int BLOCK_SIZE = 64;
+
+	private BlockUnionFindLabeller() {}
+
+	/**
+	 * Label the connected particles of one phase in a work array
+	 *
+	 * @param workArray binary work array, indexed [z][y * w + x]
+	 * @param w width of the stack
+	 * @param h height of the stack
+	 * @param phase {@link ParticleCounter#FORE} or {@link ParticleCounter#BACK}
+	 * @return particle labels, indexed as workArray, with 0 for the other phase
+	 */
+	static int[][] label(final byte[][] workArray, final int w, final int h,
+		final int phase)
+	{
+		return label(workArray, w, h, phase, BLOCK_SIZE);
+	}
+
+	/**
+	 * Label the connected particles of one phase with a custom block size
+	 *
+	 * @param workArray binary work array, indexed [z][y * w + x]
+	 * @param w width of the stack
+	 * @param h height of the stack
+	 * @param phase {@link ParticleCounter#FORE} or {@link ParticleCounter#BACK}
+	 * @param blockSize edge length of the blocks
+	 * @return particle labels, indexed as workArray, with 0 for the other phase
+	 */
+	static int[][] label(final byte[][] workArray, final int w, final int h,
+		final int phase, final int blockSize)
+	{
+		final int d = workArray.length;
+		final int[][] particleLabels = new int[d][w * h];
+		final int nX = (w + blockSize - 1) / blockSize;
+		final int nY = (h + blockSize - 1) / blockSize;
+		final int nZ = (d + blockSize - 1) / blockSize;
+		final int nBlocks = nX * nY * nZ;
+		final int[][] boxes = new int[nBlocks][];
+		for (int b = 0; b < nBlocks; b++) {
+			final int bx = b % nX;
+			final int by = (b / nX) % nY;
+			final int bz = b / (nX * nY);
+			boxes[b] = new int[] { bx * blockSize, Math.min(w, (bx + 1) * blockSize),
+				by * blockSize, Math.min(h, (by + 1) * blockSize), bz * blockSize, Math
+					.min(d, (bz + 1) * blockSize) };
+		}
+
+		// label each block into its own label range
+		IJ.showStatus("Labelling blocks...");
+		final int[] blockCounts = new int[nBlocks];
+		final long[][] blockFirstVoxels = new long[nBlocks][];
+		final AtomicInteger ai = new AtomicInteger(0);
+		final Thread[] threads = Multithreader.newThreads();
+		for (int thread = 0; thread < threads.length; thread++) {
+			threads[thread] = new Thread(() -> {
+				final UnionFindLabeller labeller = new UnionFindLabeller(w, phase);
+				for (int b = ai.getAndIncrement(); b < nBlocks; b = ai
+					.getAndIncrement())
+				{
+					final int n = labeller.labelBox(workArray, particleLabels, w, h,
+						boxes[b], false);
+					final long[] firstVoxels = new long[n + 1];
+					for (int l = 1; l <= n; l++) {
+						firstVoxels[l] = labeller.firstVoxel(l);
+					}
+					blockCounts[b] = n;
+					blockFirstVoxels[b] = firstVoxels;
+					IJ.showProgress(b, nBlocks);
+				}
+			});
+		}
+		Multithreader.startAndJoin(threads);
+
+		// block b's local label l is global label bases[b] + l
+		final int[] bases = new int[nBlocks];
+		long total = 0;
+		for (int b = 0; b < nBlocks; b++) {
+			bases[b] = (int) total;
+			total += blockCounts[b];
+		}
+		if (total >= Integer.MAX_VALUE) throw new IllegalStateException(
+			"Too many provisional particle labels");
+		final int nLabels = (int) total + 1;
+		final AtomicIntegerArray parent = new AtomicIntegerArray(nLabels);
+		for (int l = 0; l < nLabels; l++) {
+			parent.set(l, l);
+		}
+
+		// merge labels that touch across block faces
+		IJ.showStatus("Merging block faces...");
+		final int[][] offsets = UnionFindLabeller.causalOffsets(phase);
+		final AtomicInteger am = new AtomicInteger(0);
+		final Thread[] mergers = Multithreader.newThreads();
+		for (int thread = 0; thread < mergers.length; thread++) {
+			mergers[thread] = new Thread(() -> {
+				for (int b = am.getAndIncrement(); b < nBlocks; b = am
+					.getAndIncrement())
+				{
+					mergeFaces(b, boxes, bases, particleLabels, parent, offsets, w, h, d,
+						blockSize, nX, nY);
+				}
+			});
+		}
+		Multithreader.startAndJoin(mergers);
+
+		// number sets in order of their first voxel in the stack
+		final long[] setFirstVoxel = new long[nLabels];
+		Arrays.fill(setFirstVoxel, Long.MAX_VALUE);
+		for (int b = 0; b < nBlocks; b++) {
+			final long[] firstVoxels = blockFirstVoxels[b];
+			for (int l = 1; l < firstVoxels.length; l++) {
+				final int root = find(parent, bases[b] + l);
+				setFirstVoxel[root] = Math.min(setFirstVoxel[root], firstVoxels[l]);
+			}
+		}
+		int nRoots = 0;
+		for (int l = 1; l < nLabels; l++) {
+			if (parent.get(l) == l) nRoots++;
+		}
+		final long[] rootOrder = new long[nRoots];
+		int r = 0;
+		for (int l = 1; l < nLabels; l++) {
+			if (parent.get(l) == l) rootOrder[r++] = setFirstVoxel[l];
+		}
+		Arrays.sort(rootOrder);
+		final int[] lut = new int[nLabels];
+		for (int l = 1; l < nLabels; l++) {
+			final int root = find(parent, l);
+			lut[l] = Arrays.binarySearch(rootOrder, setFirstVoxel[root]) + 1;
+		}
+
+		// write final labels
+		IJ.showStatus("Applying block labels...");
+		final AtomicInteger aa = new AtomicInteger(0);
+		final Thread[] appliers = Multithreader.newThreads();
+		for (int thread = 0; thread < appliers.length; thread++) {
+			appliers[thread] = new Thread(() -> {
+				for (int b = aa.getAndIncrement(); b < nBlocks; b = aa
+					.getAndIncrement())
+				{
+					final int[] box = boxes[b];
+					final int base = bases[b];
+					for (int z = box[4]; z < box[5]; z++) {
+						final int[] labels = particleLabels[z];
+						for (int y = box[2]; y < box[3]; y++) {
+							final int rowIndex = y * w;
+							for (int x = box[0]; x < box[1]; x++) {
+								final int label = labels[rowIndex + x];
+								if (label != 0) labels[rowIndex + x] = lut[base + label];
+							}
+						}
+					}
+				}
+			});
+		}
+		Multithreader.startAndJoin(appliers);
+		return particleLabels;
+	}
+
+	/**
+	 * Union the labels on the shell of one block with their causal neighbours
+	 * in other blocks. Every pair of touching voxels in different blocks is
+	 * visited once, from the later voxel.
+	 */
+	private static void mergeFaces(final int b, final int[][] boxes,
+		final int[] bases, final int[][] particleLabels,
+		final AtomicIntegerArray parent, final int[][] offsets, final int w,
+		final int h, final int d, final int blockSize, final int nX, final int nY)
+	{
+		final int[] box = boxes[b];
+		final int x0 = box[0];
+		final int x1 = box[1];
+		final int y0 = box[2];
+		final int y1 = box[3];
+		final int z0 = box[4];
+		final int z1 = box[5];
+		for (int z = z0; z < z1; z++) {
+			final int[] labels = particleLabels[z];
+			final boolean zFace = z == z0;
+			for (int y = y0; y < y1; y++) {
+				final boolean yFace = zFace || y == y0 || y == y1 - 1;
+				final int step = yFace ? 1 : Math.max(1, x1 - x0 - 1);
+				for (int x = x0; x < x1; x += step) {
+					final int label = labels[y * w + x];
+					if (label == 0) continue;
+					for (final int[] offset : offsets) {
+						final int nx = x + offset[0];
+						final int ny = y + offset[1];
+						final int nz = z + offset[2];
+						if (nx < 0 || nx >= w || ny < 0 || ny >= h || nz < 0 || nz >= d)
+							continue;
+						if (nx >= x0 && nx < x1 && ny >= y0 && ny < y1 && nz >= z0) continue;
+						final int neighbour = particleLabels[nz][ny * w + nx];
+						if (neighbour == 0) continue;
+						final int nb = nx / blockSize + (ny / blockSize + nz / blockSize *
+							nY) * nX;
+						union(parent, bases[b] + label, bases[nb] + neighbour);
+					}
+				}
+			}
+		}
+	}
+
+	private static int find(final AtomicIntegerArray parent, int label) {
+		while (true) {
+			final int p = parent.get(label);
+			if (p == label) return label;
+			final int grandParent = parent.get(p);
+			// path halving, harmless if another thread got there first
+			if (grandParent != p) parent.compareAndSet(label, p, grandParent);
+			label = grandParent;
+		}
+	}
+
+	/**
+	 * Lock-free union that always links the larger root under the smaller, so
+	 * concurrent links can never form a cycle
+	 */
+	private static void union(final AtomicIntegerArray parent, final int a,
+		final int b)
+	{
+		int rootA = a;
+		int rootB = b;
+		while (true) {
+			rootA = find(parent, rootA);
+			rootB = find(parent, rootB);
+			if (rootA == rootB) return;
+			if (rootA < rootB) {
+				final int tmp = rootA;
+				rootA = rootB;
+				rootB = tmp;
+			}
+			if (parent.compareAndSet(rootA, rootA, rootB)) return;
+		}
+	}
+}
@@ -22,10 +22,7 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 */
 package org.bonej.plugins;
 
-import java.util.concurrent.atomic.AtomicInteger;
-
 import org.bonej.util.ImageCheck;
-import org.bonej.util.Multithreader;
 import org.bonej.util.ResultInserter;
 
 import ij.IJ;
@@ -112,9 +109,12 @@ public class Connectivity implements PlugIn {
 			return;
 		}
 
-		final double sumEuler = getSumEuler(imp);
+		// sum the Euler characteristic and read the stack faces in one pass
+		setDimensions(imp);
+		final EdgeCorrection edges = new EdgeCorrection(width, height, depth);
+		final double sumEuler = getSumEuler(imp, edges);
 
-		final double deltaChi = getDeltaChi(imp, sumEuler);
+		final double deltaChi = sumEuler - edges.getCorrection();
 
 		final double connectivity = getConnectivity(deltaChi);
 
@@ -188,40 +188,23 @@ public class Connectivity implements PlugIn {
 	 * @return Euler characteristic of the foreground particles
 	 */
 	public double getSumEuler(final ImagePlus imp) {
+		return getSumEuler(imp, null);
+	}
+
+	private double getSumEuler(final ImagePlus imp, final EdgeCorrection edges) {
 		setDimensions(imp);
 		final ImageStack stack = imp.getImageStack();
 
 		final int eulerLUT[] = new int[256];
 		fillEulerLUT(eulerLUT);
+		final int[] octantLUT = getOctantLUT(eulerLUT);
 
-		final int[] sumEulerInt = new int[depth + 1];
-
-		final AtomicInteger ai = new AtomicInteger(0);
-		final Thread[] threads = Multithreader.newThreads();
-		for (int thread = 0; thread < threads.length; thread++) {
-			threads[thread] = new Thread(new Runnable() {
-				@Override
-				public void run() {
-					long deltaEuler = 0;
-					for (int z = ai.getAndIncrement(); z <= depth; z = ai.getAndIncrement()) {
-						for (int y = 0; y <= height; y++) {
-							for (int x = 0; x <= width; x++) {
-								final byte[] octant = getOctant(stack, x, y, z);
-								if (octant[0] > 0) { // this octant is not empty
-									deltaEuler = getDeltaEuler(octant, eulerLUT);
-									sumEulerInt[z] += deltaEuler;
-								}
-							}
-						}
-					}
-				}
-			});
-		}
-		Multithreader.startAndJoin(threads);
-		double sumEuler = 0;
-		for (int i = 0; i < sumEulerInt.length; i++) {
-			sumEuler += sumEulerInt[i];
+		final byte[][] slices = new byte[depth][];
+		for (int z = 0; z < depth; z++) {
+			slices[z] = (byte[]) stack.getPixels(z + 1);
 		}
+		double sumEuler = OctantEuler.sum(slices, width, height, octantLUT,
+			edges);
 
 		sumEuler /= 8;
 		return sumEuler;
@@ -234,65 +217,29 @@ public class Connectivity implements PlugIn {
 		return;
 	}
 
-	/*
-	 * -----------------------------------------------------------------------
-	 */
 	/**
-	 * Get octant of a vertex at (0,0,0) of a voxel (upper top left) in a 3D
-	 * image (0 border conditions)
+	 * Get the delta euler value of every octant configuration, for
+	 * {@link OctantEuler}
 	 *
-	 * @param stack
-	 *            3D image (ImageStack)
-	 * @param x
-	 *            x- coordinate
-	 * @param y
-	 *            y- coordinate
-	 * @param z
-	 *            z- coordinate (in image stacks the indexes start at 1)
-	 * @return corresponding 8-pixel octant (0 if out of image)
-	 */
-	private byte[] getOctant(final ImageStack stack, final int x, final int y, final int z) {
-		final byte[] octant = new byte[9]; // index 0 is counter to determine
-											// octant
-		// emptiness, index 8 is at (x,y,z)
-
-		octant[1] = getPixel(stack, x - 1, y - 1, z - 1);
-		octant[2] = getPixel(stack, x - 1, y, z - 1);
-		octant[3] = getPixel(stack, x, y - 1, z - 1);
-		octant[4] = getPixel(stack, x, y, z - 1);
-		octant[5] = getPixel(stack, x - 1, y - 1, z);
-		octant[6] = getPixel(stack, x - 1, y, z);
-		octant[7] = getPixel(stack, x, y - 1, z);
-		octant[8] = getPixel(stack, x, y, z);
-
-		for (int n = 1; n < 9; n++)
-			octant[0] -= octant[n]; // foreground is -1, so octant[0] contains
-		// nVoxels in octant
-		return octant;
-	} /* end getNeighborhood */
-
-	/*
-	 * -----------------------------------------------------------------------
-	 */
-	/**
-	 * Get pixel in 3D image stack (0 border conditions)
-	 *
-	 * @param stack
-	 *            3D image
-	 * @param x
-	 *            x- coordinate
-	 * @param y
-	 *            y- coordinate
-	 * @param z
-	 *            z- coordinate (in image stacks the indexes start at 1)
-	 * @return corresponding pixel (0 if out of image)
+	 * @param LUT
+	 *            Euler LUT
+	 * @return delta euler values indexed by the 8 bits of the octant, where bit
+	 *         n - 1 is set if octant voxel n is foreground. Empty octants are 0.
 	 */
-	private byte getPixel(final ImageStack stack, final int x, final int y, final int z) {
-		if (x >= 0 && x < this.width && y >= 0 && y < this.height && z >= 0 && z < this.depth)
-			return ((byte[]) stack.getPixels(z + 1))[y * this.width + x];
-
-		return 0;
-	} /* end getPixel */
+	private int[] getOctantLUT(final int[] LUT) {
+		final int[] octantLUT = new int[256];
+		for (int index = 1; index < 256; index++) {
+			final byte[] octant = new byte[9];
+			for (int n = 1; n < 9; n++) {
+				if ((index & 1 << (n - 1)) != 0) {
+					octant[n] = -1;
+					octant[0]++;
+				}
+			}
+			octantLUT[index] = getDeltaEuler(octant, LUT);
+		}
+		return octantLUT;
+	}
 
 	/**
 	 * Get delta euler value for an octant (~= vertex) from look up table
@@ -397,344 +344,6 @@ public class Connectivity implements PlugIn {
 		return deltaEuler;
 	}/* end getDeltaEuler */
 
-	/*------------------------------------------------------------------------*/
-	/**
-	 * Check all vertices of stack and count if foreground (-1) this is &#967;
-	 * <sub>0</sub> from Odgaard and Gundersen (1993) and <i>f</i> in my working
-	 *
-	 * @param stack
-	 * @return number of voxel vertices intersecting with stack vertices
-	 */
-	private long getStackVertices(final ImageStack stack) {
-		long nStackVertices = 0;
-		final int xInc = Math.max(1, width - 1);
-		final int yInc = Math.max(1, height - 1);
-		final int zInc = Math.max(1, depth - 1);
-
-		for (int z = 0; z < depth; z += zInc) {
-			for (int y = 0; y < height; y += yInc) {
-				for (int x = 0; x < width; x += xInc) {
-					if (getPixel(stack, x, y, z) == -1)
-						nStackVertices++;
-				}
-			}
-		}
-
-		return nStackVertices;
-	}/* end getStackVertices */
-
-	/**
-	 * Count the number of foreground voxels on edges of stack, this is part of
-	 * &#967;<sub>1</sub> (<i>e</i> in my working)
-	 *
-	 * @param stack
-	 * @return number of voxel edges intersecting with stack edges
-	 */
-	private long getStackEdges(final ImageStack stack) {
-		long nStackEdges = 0;
-		final int xInc = Math.max(1, width - 1);
-		final int yInc = Math.max(1, height - 1);
-		final int zInc = Math.max(1, depth - 1);
-
-		// vertex voxels contribute 3 edges
-		// this could be taken out into a variable to avoid recalculating it
-		// nStackEdges += getStackVertices(stack) * 3; = f * 3;
-
-		// left to right stack edges
-		for (int z = 0; z < depth; z += zInc) {
-			for (int y = 0; y < height; y += yInc) {
-				for (int x = 1; x < width - 1; x++) {
-					if (getPixel(stack, x, y, z) == -1)
-						nStackEdges++;
-				}
-			}
-		}
-
-		// back to front stack edges
-		for (int z = 0; z < depth; z += zInc) {
-			for (int x = 0; x < width; x += xInc) {
-				for (int y = 1; y < height - 1; y++) {
-					if (getPixel(stack, x, y, z) == -1)
-						nStackEdges++;
-				}
-			}
-		}
-
-		// top to bottom stack edges
-		for (int y = 0; y < height; y += yInc) {
-			for (int x = 0; x < width; x += xInc) {
-				for (int z = 1; z < depth - 1; z++) {
-					if (getPixel(stack, x, y, z) == -1)
-						nStackEdges++;
-				}
-			}
-		}
-		return nStackEdges;
-	}/* end getStackEdges */
-
-	/*---------------------------------------------------------------------*/
-	/**
-	 * Count the number of foreground voxel faces intersecting with stack faces
-	 * This is part of &#967;<sub>2</sub> and is <i>c</i> in my working
-	 *
-	 * @param stack
-	 * @return number of voxel faces intersecting with stack faces
-	 */
-	private long getStackFaces(final ImageStack stack) {
-		final int xInc = Math.max(1, width - 1);
-		final int yInc = Math.max(1, height - 1);
-		final int zInc = Math.max(1, depth - 1);
-		long nStackFaces = 0;
-
-		// vertex voxels contribute 3 faces
-		// this could be taken out into a variable to avoid recalculating it
-		// nStackFaces += getStackVertices(stack) * 3;
-
-		// edge voxels contribute 2 faces
-		// this could be taken out into a variable to avoid recalculating it
-		// nStackFaces += getStackEdges(stack) * 2;
-
-		// top and bottom faces
-		for (int z = 0; z < depth; z += zInc) {
-			for (int y = 1; y < height - 1; y++) {
-				for (int x = 1; x < width - 1; x++) {
-					if (getPixel(stack, x, y, z) == -1)
-						nStackFaces++;
-				}
-			}
-		}
-
-		// back and front faces
-		for (int y = 0; y < height; y += yInc) {
-			for (int z = 1; z < depth - 1; z++) {
-				for (int x = 1; x < width - 1; x++) {
-					if (getPixel(stack, x, y, z) == -1)
-						nStackFaces++;
-				}
-			}
-		}
-
-		// left and right faces
-		for (int x = 0; x < width; x += xInc) {
-			for (int y = 1; y < height - 1; y++) {
-				for (int z = 1; z < depth - 1; z++) {
-					if (getPixel(stack, x, y, z) == -1)
-						nStackFaces++;
-				}
-			}
-		}
-		return nStackFaces;
-	}/* end getStackFaces */
-
-	/**
-	 * Count the number of voxel vertices intersecting stack faces. This
-	 * contributes to &#967;<sub>2</sub> (<i>a</i> in my working)
-	 *
-	 * @param stack
-	 * @return Number of voxel vertices intersecting stack faces
-	 */
-	private long getFaceVertices(final ImageStack stack) {
-		final int xInc = Math.max(1, width - 1);
-		final int yInc = Math.max(1, height - 1);
-		final int zInc = Math.max(1, depth - 1);
-		long nFaceVertices = 0;
-
-		// top and bottom faces (all 4 edges)
-		for (int z = 0; z < depth; z += zInc) {
-			for (int y = 0; y <= height; y++) {
-				for (int x = 0; x <= width; x++) {
-					// if the voxel or any of its neighbours are foreground, the
-					// vertex is counted
-					if (getPixel(stack, x, y, z) == -1)
-						nFaceVertices++;
-					else if (getPixel(stack, x, y - 1, z) == -1)
-						nFaceVertices++;
-					else if (getPixel(stack, x - 1, y - 1, z) == -1)
-						nFaceVertices++;
-					else if (getPixel(stack, x - 1, y, z) == -1)
-						nFaceVertices++;
-				}
-			}
-		}
-
-		// left and right faces (2 vertical edges)
-		for (int x = 0; x < width; x += xInc) {
-			for (int y = 0; y <= height; y++) {
-				for (int z = 1; z < depth; z++) {
-					// if the voxel or any of its neighbours are foreground, the
-					// vertex is counted
-					if (getPixel(stack, x, y, z) == -1)
-						nFaceVertices++;
-					else if (getPixel(stack, x, y - 1, z) == -1)
-						nFaceVertices++;
-					else if (getPixel(stack, x, y - 1, z - 1) == -1)
-						nFaceVertices++;
-					else if (getPixel(stack, x, y, z - 1) == -1)
-						nFaceVertices++;
-				}
-			}
-		}
-
-		// back and front faces (0 vertical edges)
-		for (int y = 0; y < height; y += yInc) {
-			for (int x = 1; x < width; x++) {
-				for (int z = 1; z < depth; z++) {
-					// if the voxel or any of its neighbours are foreground, the
-					// vertex is counted
-					if (getPixel(stack, x, y, z) == -1)
-						nFaceVertices++;
-					else if (getPixel(stack, x, y, z - 1) == -1)
-						nFaceVertices++;
-					else if (getPixel(stack, x - 1, y, z - 1) == -1)
-						nFaceVertices++;
-					else if (getPixel(stack, x - 1, y, z) == -1)
-						nFaceVertices++;
-				}
-			}
-		}
-		return nFaceVertices;
-	}/* end getFaceVertices */
-
-	/**
-	 * Count the number of intersections between voxel edges and stack faces.
-	 * This is part of &#967;<sub>2</sub>, in my working it's called <i>b</i>
-	 *
-	 * @param stack
-	 * @return number of intersections between voxel edges and stack faces
-	 */
-	private long getFaceEdges(final ImageStack stack) {
-		final int xInc = Math.max(1, width - 1);
-		final int yInc = Math.max(1, height - 1);
-		final int zInc = Math.max(1, depth - 1);
-		long nFaceEdges = 0;
-
-		// top and bottom faces (all 4 edges)
-		// check 2 edges per voxel
-		for (int z = 0; z < depth; z += zInc) {
-			for (int y = 0; y <= height; y++) {
-				for (int x = 0; x <= width; x++) {
-					// if the voxel or any of its neighbours are foreground, the
-					// vertex is counted
-					if (getPixel(stack, x, y, z) == -1) {
-						nFaceEdges += 2;
-					} else {
-						if (getPixel(stack, x, y - 1, z) == -1) {
-							nFaceEdges++;
-						}
-						if (getPixel(stack, x - 1, y, z) == -1) {
-							nFaceEdges++;
-						}
-					}
-				}
-			}
-		}
-
-		// back and front faces, horizontal edges
-		for (int y = 0; y < height; y += yInc) {
-			for (int z = 1; z < depth; z++) {
-				for (int x = 0; x < width; x++) {
-					if (getPixel(stack, x, y, z) == -1)
-						nFaceEdges++;
-					else if (getPixel(stack, x, y, z - 1) == -1)
-						nFaceEdges++;
-				}
-			}
-		}
-
-		// back and front faces, vertical edges
-		for (int y = 0; y < height; y += yInc) {
-			for (int z = 0; z < depth; z++) {
-				for (int x = 0; x <= width; x++) {
-					if (getPixel(stack, x, y, z) == -1)
-						nFaceEdges++;
-					else if (getPixel(stack, x - 1, y, z) == -1)
-						nFaceEdges++;
-				}
-			}
-		}
-
-		// left and right stack faces, horizontal edges
-		for (int x = 0; x < width; x += xInc) {
-			for (int z = 1; z < depth; z++) {
-				for (int y = 0; y < height; y++) {
-					if (getPixel(stack, x, y, z) == -1)
-						nFaceEdges++;
-					else if (getPixel(stack, x, y, z - 1) == -1)
-						nFaceEdges++;
-				}
-			}
-		}
-
-		// left and right stack faces, vertical voxel edges
-		for (int x = 0; x < width; x += xInc) {
-			for (int z = 0; z < depth; z++) {
-				for (int y = 1; y < height; y++) {
-					if (getPixel(stack, x, y, z) == -1)
-						nFaceEdges++;
-					else if (getPixel(stack, x, y - 1, z) == -1)
-						nFaceEdges++;
-				}
-			}
-		}
-		return nFaceEdges;
-	}/* end getFaceEdges */
-
-	/*-------------------------------------------------------------------------*/
-	/**
-	 * Count number of voxel vertices intersecting stack edges. It contributes
-	 * to &#967;<sub>1</sub>, and I call it <i>d</i> in my working
-	 *
-	 * @param stack
-	 * @return number of voxel vertices intersecting stack edges
-	 */
-	private long getEdgeVertices(final ImageStack stack) {
-		final int xInc = Math.max(1, width - 1);
-		final int yInc = Math.max(1, height - 1);
-		final int zInc = Math.max(1, depth - 1);
-		long nEdgeVertices = 0;
-
-		// vertex voxels contribute 1 edge vertex each
-		// this could be taken out into a variable to avoid recalculating it
-		// nEdgeVertices += getStackVertices(stack);
-
-		// left->right edges
-		for (int z = 0; z < depth; z += zInc) {
-			for (int y = 0; y < height; y += yInc) {
-				for (int x = 1; x < width; x++) {
-					if (getPixel(stack, x, y, z) == -1)
-						nEdgeVertices++;
-					else if (getPixel(stack, x - 1, y, z) == -1)
-						nEdgeVertices++;
-				}
-			}
-		}
-
-		// back->front edges
-		for (int z = 0; z < depth; z += zInc) {
-			for (int x = 0; x < width; x += xInc) {
-				for (int y = 1; y < height; y++) {
-					if (getPixel(stack, x, y, z) == -1)
-						nEdgeVertices++;
-					else if (getPixel(stack, x, y - 1, z) == -1)
-						nEdgeVertices++;
-				}
-			}
-		}
-
-		// top->bottom edges
-		for (int x = 0; x < width; x += xInc) {
-			for (int y = 0; y < height; y += yInc) {
-				for (int z = 1; z < depth; z++) {
-					if (getPixel(stack, x, y, z) == -1)
-						nEdgeVertices++;
-					else if (getPixel(stack, x, y, z - 1) == -1)
-						nEdgeVertices++;
-				}
-			}
-		}
-		return nEdgeVertices;
-	}/* end getEdgeVertices */
-
 	/*----------------------------------------------------------------------*/
 	/**
 	 * <p>
@@ -758,24 +367,11 @@ public class Connectivity implements PlugIn {
 	 * @return edgeCorrection for subtraction from the stack's Euler number
 	 */
 	private double correctForEdges(final ImageStack stack) {
-
-		final long f = getStackVertices(stack);
-		final long e = getStackEdges(stack) + 3 * f;
-		final long c = getStackFaces(stack) + 2 * e - 3 * f; // there are
-																// already 6 *
-		// f in 2 * e, so remove
-		// 3 * f
-		final long d = getEdgeVertices(stack) + f;
-		final long a = getFaceVertices(stack);
-		final long b = getFaceEdges(stack);
-
-		final double chiZero = f;
-		final double chiOne = (double) d - (double) e;
-		final double chiTwo = (double) a - (double) b + c;
-
-		final double edgeCorrection = chiTwo / 2 + chiOne / 4 + chiZero / 8;
-
-		return edgeCorrection;
+		final EdgeCorrection edges = new EdgeCorrection(width, height, depth);
+		for (int z = 0; z < depth; z++) {
+			edges.addSlice(z, (byte[]) stack.getPixels(z + 1));
+		}
+		return edges.getCorrection();
 	}/* end correctForEdges */
 
 	/*
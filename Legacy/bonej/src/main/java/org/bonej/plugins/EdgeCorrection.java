@@ -0,0 +1,299 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package org.bonej.plugins;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bonej.util.Multithreader;
+
+/**
+ * Edge correction (&#916;&#967;) of a binary stack's Euler characteristic,
+ * from one read of the stack's faces.
+ * <p>
+ * The boundary pixels of each slice are copied into zero padded images of the
+ * six stack faces as the slices are added, e.g. while {@link OctantEuler}
+ * walks through the stack. The vertex, edge and face counts of
+ * {@link Connectivity} are then found from the face images in parallel, one
+ * face per thread, instead of rescanning the stack for each count.
+ * </p>
+ * <p>
+ * Faces that coincide, e.g. both x faces of a stack that is one pixel wide,
+ * are counted once, as in {@link Connectivity}.
+ * </p>
+ */
+final class EdgeCorrection {
+
+	/** Stack vertices, &#967;<sub>0</sub> or <i>f</i> */
+	private static final int F = 0;
+	/** Voxels on stack edges, excluding stack vertices */
+	private static final int E = 1;
+	/** Voxels on stack faces, excluding stack edges */
+	private static final int C = 2;
+	/** Voxel vertices on stack edges, excluding stack vertices */
+	private static final int D = 3;
+	/** Voxel vertices on stack faces, <i>a</i> */
+	private static final int A = 4;
+	/** Voxel edges on stack faces, <i>b</i> */
+	private static final int B = 5;
+
+	private final int width;
+	private final int height;
+	private final int depth;
+	/** Distinct x, y and z coordinates of the stack faces */
+	private final int[] xs;
+	private final int[] ys;
+	private final int[] zs;
+	/** Face images, indexed [face][(v + 1) * (nU + 2) + u + 1] */
+	private final byte[][] xFaces;
+	private final byte[][] yFaces;
+	private final byte[][] zFaces;
+
+	/**
+	 * Create an empty correction for a stack
+	 *
+	 * @param width width of the stack
+	 * @param height height of the stack
+	 * @param depth number of slices in the stack
+	 */
+	EdgeCorrection(final int width, final int height, final int depth) {
+		this.width = width;
+		this.height = height;
+		this.depth = depth;
+		xs = faceCoordinates(width);
+		ys = faceCoordinates(height);
+		zs = faceCoordinates(depth);
+		xFaces = new byte[xs.length][(height + 2) * (depth + 2)];
+		yFaces = new byte[ys.length][(width + 2) * (depth + 2)];
+		zFaces = new byte[zs.length][(width + 2) * (height + 2)];
+	}
+
+	/**
+	 * Copy the boundary pixels of a slice into the face images.
+	 * <p>
+	 * Different slices may be added concurrently.
+	 * </p>
+	 *
+	 * @param z index of the slice, starting from 0
+	 * @param slice pixels of the slice, where foreground is -1 (255)
+	 */
+	void addSlice(final int z, final byte[] slice) {
+		for (int i = 0; i < ys.length; i++) {
+			final byte[] face = yFaces[i];
+			final int row = ys[i] * width;
+			final int offset = (z + 1) * (width + 2) + 1;
+			for (int x = 0; x < width; x++) {
+				face[offset + x] = foreground(slice[row + x]);
+			}
+		}
+		for (int i = 0; i < xs.length; i++) {
+			final byte[] face = xFaces[i];
+			final int x = xs[i];
+			final int offset = (z + 1) * (height + 2) + 1;
+			for (int y = 0; y < height; y++) {
+				face[offset + y] = foreground(slice[y * width + x]);
+			}
+		}
+		for (int i = 0; i < zs.length; i++) {
+			if (zs[i] != z) {
+				continue;
+			}
+			final byte[] face = zFaces[i];
+			for (int y = 0; y < height; y++) {
+				final int offset = (y + 1) * (width + 2) + 1;
+				for (int x = 0; x < width; x++) {
+					face[offset + x] = foreground(slice[y * width + x]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Calculate the correction from the faces of the added slices
+	 *
+	 * @return edge correction for subtraction from the stack's Euler number
+	 * @see Connectivity#getDeltaChi
+	 */
+	double getCorrection() {
+		final int nFaces = xs.length + ys.length + zs.length;
+		final long[][] faceCounts = new long[nFaces][6];
+		final AtomicInteger ai = new AtomicInteger(0);
+		final Thread[] threads = Multithreader.newThreads();
+		for (int thread = 0; thread < threads.length; thread++) {
+			threads[thread] = new Thread(() -> {
+				for (int i = ai.getAndIncrement(); i < nFaces; i = ai
+					.getAndIncrement())
+				{
+					if (i < zs.length) {
+						countZFace(zFaces[i], faceCounts[i]);
+					}
+					else if (i < zs.length + ys.length) {
+						countYFace(yFaces[i - zs.length], faceCounts[i]);
+					}
+					else {
+						countXFace(xFaces[i - zs.length - ys.length], faceCounts[i]);
+					}
+				}
+			});
+		}
+		Multithreader.startAndJoin(threads);
+		final long[] counts = new long[6];
+		for (final long[] faceCount : faceCounts) {
+			for (int c = 0; c < counts.length; c++) {
+				counts[c] += faceCount[c];
+			}
+		}
+
+		final long f = counts[F];
+		final long e = counts[E] + 3 * f;
+		// there are already 6 * f in 2 * e, so remove 3 * f
+		final long c = counts[C] + 2 * e - 3 * f;
+		final long d = counts[D] + f;
+		final long a = counts[A];
+		final long b = counts[B];
+
+		final double chiZero = f;
+		final double chiOne = (double) d - (double) e;
+		final double chiTwo = (double) a - (double) b + c;
+
+		return chiTwo / 2 + chiOne / 4 + chiZero / 8;
+	}
+
+	/** Count a top or bottom face, with u = x and v = y */
+	private void countZFace(final byte[] face, final long[] counts) {
+		final int nU = width;
+		final int nV = height;
+		for (final int v : ys) {
+			for (final int u : xs) {
+				counts[F] += pixels(face, nU, u, u, v, v);
+			}
+			counts[E] += pixels(face, nU, 1, nU - 2, v, v);
+			counts[D] += uEdges(face, nU, 1, nU - 1, v, v);
+		}
+		for (final int u : xs) {
+			counts[E] += pixels(face, nU, u, u, 1, nV - 2);
+			counts[D] += vEdges(face, nU, u, u, 1, nV - 1);
+		}
+		counts[C] += pixels(face, nU, 1, nU - 2, 1, nV - 2);
+		counts[A] += vertices(face, nU, 0, nU, 0, nV);
+		counts[B] += vEdges(face, nU, 0, nU, 0, nV) + uEdges(face, nU, 0, nU, 0,
+			nV);
+	}
+
+	/** Count a back or front face, with u = x and v = z */
+	private void countYFace(final byte[] face, final long[] counts) {
+		final int nU = width;
+		final int nV = depth;
+		counts[C] += pixels(face, nU, 1, nU - 2, 1, nV - 2);
+		counts[A] += vertices(face, nU, 1, nU - 1, 1, nV - 1);
+		counts[B] += vEdges(face, nU, 0, nU - 1, 1, nV - 1) + uEdges(face, nU, 0,
+			nU, 0, nV - 1);
+	}
+
+	/**
+	 * Count a left or right face, with u = y and v = z. The stack edges along z
+	 * are counted here.
+	 */
+	private void countXFace(final byte[] face, final long[] counts) {
+		final int nU = height;
+		final int nV = depth;
+		for (final int u : ys) {
+			counts[E] += pixels(face, nU, u, u, 1, nV - 2);
+			counts[D] += vEdges(face, nU, u, u, 1, nV - 1);
+		}
+		counts[C] += pixels(face, nU, 1, nU - 2, 1, nV - 2);
+		counts[A] += vertices(face, nU, 0, nU, 1, nV - 1);
+		counts[B] += vEdges(face, nU, 0, nU - 1, 1, nV - 1) + uEdges(face, nU, 1,
+			nU - 1, 0, nV - 1);
+	}
+
+	/** Foreground pixels in the inclusive range */
+	private static long pixels(final byte[] face, final int nU, final int u0,
+		final int u1, final int v0, final int v1)
+	{
+		long count = 0;
+		for (int v = v0; v <= v1; v++) {
+			final int row = (v + 1) * (nU + 2) + 1;
+			for (int u = u0; u <= u1; u++) {
+				count += face[row + u];
+			}
+		}
+		return count;
+	}
+
+	/** Positions where the pixel or its neighbour at u - 1 is foreground */
+	private static long uEdges(final byte[] face, final int nU, final int u0,
+		final int u1, final int v0, final int v1)
+	{
+		long count = 0;
+		for (int v = v0; v <= v1; v++) {
+			final int row = (v + 1) * (nU + 2) + 1;
+			for (int u = u0; u <= u1; u++) {
+				count += face[row + u] | face[row + u - 1];
+			}
+		}
+		return count;
+	}
+
+	/** Positions where the pixel or its neighbour at v - 1 is foreground */
+	private static long vEdges(final byte[] face, final int nU, final int u0,
+		final int u1, final int v0, final int v1)
+	{
+		long count = 0;
+		for (int v = v0; v <= v1; v++) {
+			final int row = (v + 1) * (nU + 2) + 1;
+			final int previousRow = row - (nU + 2);
+			for (int u = u0; u <= u1; u++) {
+				count += face[row + u] | face[previousRow + u];
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Vertices shared by a pixel and its neighbours at u - 1 and v - 1, where
+	 * any of the four pixels is foreground
+	 */
+	private static long vertices(final byte[] face, final int nU, final int u0,
+		final int u1, final int v0, final int v1)
+	{
+		long count = 0;
+		for (int v = v0; v <= v1; v++) {
+			final int row = (v + 1) * (nU + 2) + 1;
+			final int previousRow = row - (nU + 2);
+			for (int u = u0; u <= u1; u++) {
+				count += face[row + u] | face[row + u - 1] | face[previousRow + u] |
+					face[previousRow + u - 1];
+			}
+		}
+		return count;
+	}
+
+	/** The first and last index of a dimension, or just 0 if they're equal */
+	private static int[] faceCoordinates(final int size) {
+		return size > 1 ? new int[] { 0, size - 1 } : new int[] { 0 };
+	}
+
+	private static byte foreground(final byte pixel) {
+		return (byte) (pixel == -1 ? 1 : 0);
+	}
+}
@@ -241,32 +241,6 @@ public class EllipsoidFactor implements PlugIn {
 		IJ.showStatus("Ellipsoid Factor completed");
 	}
 
-	/**
-	 * Search the list of ellipsoids and return the index of the largest ellipsoid
-	 * which contains the point x, y, z
-	 *
-	 * @param ellipsoids sorted in order of descending size and with id set to the
-	 *          sort position of the whole set. This means that subsets may be
-	 *          searched in sorted order and the ID which is returned is the index
-	 *          of the ellipsoid in the full array of ellipsoids rather than its
-	 *          index in the subset. The advantage is much faster searching.
-	 * @param x
-	 * @param y
-	 * @param z
-	 * @return the index of the largest ellipsoid which contains this point, -1 if
-	 *         none of the ellipsoids contain the point
-	 */
-	private static int biggestEllipsoid(final Ellipsoid[] ellipsoids,
-		final double x, final double y, final double z)
-	{
-		for (final Ellipsoid ellipsoid : ellipsoids) {
-			if (ellipsoid.contains(x, y, z)) {
-				return ellipsoid.id;
-			}
-		}
-		return -1;
-	}
-
 	private Ellipsoid bump(final Ellipsoid ellipsoid,
 		final Collection<double[]> contactPoints, final double px, final double py,
 		final double pz)
@@ -1019,6 +993,14 @@ public class EllipsoidFactor implements PlugIn {
 		// make sure array contains null in the non-calculated elements
 		Arrays.fill(ellipsoids, null);
 
+		// gather the slices once and share them read-only between all the threads,
+		// so that memory use doesn't grow with the number of seed points
+		final ImageStack stack = imp.getImageStack();
+		final byte[][] pixels = new byte[stack.getSize()][];
+		for (int z = 0; z < pixels.length; z++) {
+			pixels[z] = (byte[]) stack.getPixels(z + 1);
+		}
+
 		final AtomicInteger ai = new AtomicInteger(0);
 		final AtomicInteger counter = new AtomicInteger(0);
 		final Thread[] threads = Multithreader.newThreads();
@@ -1027,7 +1009,7 @@ public class EllipsoidFactor implements PlugIn {
 				for (int i = ai.getAndAdd(skipRatio); i < nPoints; i = ai.getAndAdd(
 					skipRatio))
 				{
-					ellipsoids[i] = optimiseEllipsoid(imp, skeletonPoints[i]);
+					ellipsoids[i] = optimiseEllipsoid(imp, pixels, skeletonPoints[i]);
 					IJ.showProgress(counter.getAndAdd(skipRatio), nPoints);
 					IJ.showStatus("Optimising ellipsoids...");
 				}
@@ -1064,6 +1046,10 @@ public class EllipsoidFactor implements PlugIn {
 
 		final int[][] biggest = new int[d + 1][w * h];
 
+		// ellipsoids are sorted by decreasing volume, so the first one that
+		// contains a point is the biggest
+		final EllipsoidTree tree = new EllipsoidTree(ellipsoids);
+
 		final AtomicInteger ai = new AtomicInteger(1);
 		final Thread[] threads = Multithreader.newThreads();
 		for (int thread = 0; thread < threads.length; thread++) {
@@ -1075,53 +1061,15 @@ public class EllipsoidFactor implements PlugIn {
 					final int[] bigSlice = biggest[z];
 					Arrays.fill(bigSlice, -ellipsoids.length);
 					final double zvD = z * vD;
-
-					// find the subset of ellipsoids whose bounding box
-					// intersects with z
-					final List<Ellipsoid> nearEllipsoids = new ArrayList<>();
-					final int n = ellipsoids.length;
-					for (int i = 0; i < n; i++) {
-						final Ellipsoid e = ellipsoids[i];
-						final double[] zMinMax = e.getZMinAndMax();
-						if (zvD >= zMinMax[0] && zvD <= zMinMax[1]) {
-							final Ellipsoid f = e.copy();
-							f.id = i;
-							nearEllipsoids.add(f);
-						}
-					}
-					final int o = nearEllipsoids.size();
-					final Ellipsoid[] ellipsoidSubSet = new Ellipsoid[o];
-					for (int i = 0; i < o; i++) {
-						ellipsoidSubSet[i] = nearEllipsoids.get(i);
-					}
-
 					for (int y = 0; y < h; y++) {
 						final double yvH = y * vH;
-						// find the subset of ellipsoids whose bounding box
-						// intersects with y
-						final List<Ellipsoid> yEllipsoids = new ArrayList<>();
-						for (final Ellipsoid e : ellipsoidSubSet) {
-							final double[] yMinMax = e.getYMinAndMax();
-							if (yvH >= yMinMax[0] && yvH <= yMinMax[1]) {
-								yEllipsoids.add(e);
-							}
-						}
-
-						final int r = yEllipsoids.size();
-						final Ellipsoid[] ellipsoidSubSubSet = new Ellipsoid[r];
-						for (int i = 0; i < r; i++) {
-							ellipsoidSubSubSet[i] = yEllipsoids.get(i);
-						}
-
 						final int offset = y * w;
 						for (int x = 0; x < w; x++) {
 							if (slicePixels[offset + x] == -1) {
-								bigSlice[offset + x] = biggestEllipsoid(ellipsoidSubSubSet, x *
-									vW, yvH, zvD);
+								bigSlice[offset + x] = tree.first(x * vW, yvH, zvD);
 							}
 						}
 					}
-
 				}
 			});
 		}
@@ -1244,12 +1192,13 @@ public class EllipsoidFactor implements PlugIn {
 	 * structure
 	 *
 	 * @param imp
+	 * @param pixels the slices of imp, which must not be modified
 	 * @return ellipsoid fitting the point cloud of boundaries lying at the end of
 	 *         vectors surrounding the seed point. If ellipsoid fitting fails,
 	 *         returns null
 	 */
 	private Ellipsoid optimiseEllipsoid(final ImagePlus imp,
-		final int[] skeletonPoint)
+		final byte[][] pixels, final int[] skeletonPoint)
 	{
 
 		final long start = System.currentTimeMillis();
@@ -1259,16 +1208,9 @@ public class EllipsoidFactor implements PlugIn {
 		final double pH = cal.pixelHeight;
 		final double pD = cal.pixelDepth;
 
-		final ImageStack stack = imp.getImageStack();
-		final int w = stack.getWidth();
-		final int h = stack.getHeight();
-		final int d = stack.getSize();
-
-		// cache slices into an array
-		final byte[][] pixels = new byte[d][w * h];
-		for (int i = 0; i < d; i++) {
-			pixels[i] = (byte[]) stack.getProcessor(i + 1).getPixels();
-		}
+		final int w = imp.getWidth();
+		final int h = imp.getHeight();
+		final int d = pixels.length;
 
 		// centre point of vector field
 		final double px = skeletonPoint[0] * pW;
@@ -0,0 +1,211 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.plugins;
+
+import java.util.Arrays;
+
+import org.bonej.geometry.Ellipsoid;
+
+/**
+ * Bounding volume hierarchy over the axis-aligned bounding boxes of a list of
+ * ellipsoids, which finds the lowest-indexed ellipsoid that contains a point.
+ * <p>
+ * When the ellipsoids are sorted by decreasing volume, that is the biggest
+ * ellipsoid containing the point. Each node records the lowest index in its
+ * subtree, so that a query can skip any subtree that can't improve on the
+ * best ellipsoid found so far, and visits the more promising child first. A
+ * query thus costs roughly the depth of the tree plus the few ellipsoids whose
+ * boxes overlap the point, instead of a scan of all the ellipsoids.
+ * </p>
+ * <p>
+ * The tree is immutable once built, and can be queried from many threads.
+ * </p>
+ */
+final class EllipsoidTree {
+
+	/** Maximum number of ellipsoids in a leaf node */
+	private static final int LEAF_SIZE = 4;
+
+	private final Ellipsoid[] ellipsoids;
+	/** Ellipsoid indices, ordered so that each node covers a contiguous run */
+	private final int[] items;
+	/** xMin, xMax, yMin, yMax, zMin, zMax of each node */
+	private final double[] bounds;
+	private final int[] minIndex;
+	/** Index of the left child, or -1 for leaves; the right child follows it */
+	private final int[] left;
+	private final int[] right;
+	private final int[] start;
+	private final int[] count;
+	private int nNodes;
+
+	/**
+	 * Builds a tree over the ellipsoids.
+	 *
+	 * @param ellipsoids ellipsoids, in order of priority. They must not be
+	 *          changed while the tree is in use.
+	 */
+	EllipsoidTree(final Ellipsoid[] ellipsoids) {
+		this.ellipsoids = ellipsoids;
+		final int n = ellipsoids.length;
+		items = new int[n];
+		final double[][] boxes = new double[n][];
+		final double[][] centres = new double[n][3];
+		for (int i = 0; i < n; i++) {
+			items[i] = i;
+			boxes[i] = ellipsoids[i].getAxisAlignedBoundingBox();
+			for (int d = 0; d < 3; d++) {
+				centres[i][d] = (boxes[i][2 * d] + boxes[i][2 * d + 1]) / 2;
+			}
+		}
+		final int maxNodes = Math.max(1, 2 * n);
+		bounds = new double[6 * maxNodes];
+		minIndex = new int[maxNodes];
+		left = new int[maxNodes];
+		right = new int[maxNodes];
+		start = new int[maxNodes];
+		count = new int[maxNodes];
+		if (n > 0) build(boxes, centres, 0, n);
+	}
+
+	/**
+	 * Finds the lowest-indexed ellipsoid that contains a point.
+	 *
+	 * @param x x-coordinate of the point.
+	 * @param y y-coordinate of the point.
+	 * @param z z-coordinate of the point.
+	 * @return index of the ellipsoid, or -1 if no ellipsoid contains the point.
+	 */
+	int first(final double x, final double y, final double z) {
+		if (nNodes == 0) return -1;
+		final int best = search(0, x, y, z, Integer.MAX_VALUE);
+		return best == Integer.MAX_VALUE ? -1 : best;
+	}
+
+	private int search(final int node, final double x, final double y,
+		final double z, int best)
+	{
+		if (minIndex[node] >= best) return best;
+		final int b = 6 * node;
+		if (x < bounds[b] || x > bounds[b + 1] || y < bounds[b + 2] || y > bounds[b +
+			3] || z < bounds[b + 4] || z > bounds[b + 5]) return best;
+		if (left[node] < 0) {
+			// leaf items are sorted, so the first hit is the best in the leaf
+			final int end = start[node] + count[node];
+			for (int i = start[node]; i < end; i++) {
+				final int e = items[i];
+				if (e >= best) break;
+				if (ellipsoids[e].contains(x, y, z)) return e;
+			}
+			return best;
+		}
+		int first = left[node];
+		int second = right[node];
+		if (minIndex[second] < minIndex[first]) {
+			first = right[node];
+			second = left[node];
+		}
+		best = search(first, x, y, z, best);
+		return search(second, x, y, z, best);
+	}
+
+	private int build(final double[][] boxes, final double[][] centres,
+		final int from, final int to)
+	{
+		final int node = nNodes++;
+		final int b = 6 * node;
+		for (int d = 0; d < 3; d++) {
+			bounds[b + 2 * d] = Double.POSITIVE_INFINITY;
+			bounds[b + 2 * d + 1] = Double.NEGATIVE_INFINITY;
+		}
+		final double[] centreMin = { Double.POSITIVE_INFINITY,
+			Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY };
+		final double[] centreMax = { Double.NEGATIVE_INFINITY,
+			Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+		int min = Integer.MAX_VALUE;
+		for (int i = from; i < to; i++) {
+			final int e = items[i];
+			min = Math.min(min, e);
+			for (int d = 0; d < 3; d++) {
+				bounds[b + 2 * d] = Math.min(bounds[b + 2 * d], boxes[e][2 * d]);
+				bounds[b + 2 * d + 1] = Math.max(bounds[b + 2 * d + 1], boxes[e][2 * d +
+					1]);
+				centreMin[d] = Math.min(centreMin[d], centres[e][d]);
+				centreMax[d] = Math.max(centreMax[d], centres[e][d]);
+			}
+		}
+		minIndex[node] = min;
+		if (to - from <= LEAF_SIZE) {
+			left[node] = -1;
+			right[node] = -1;
+			start[node] = from;
+			count[node] = to - from;
+			Arrays.sort(items, from, to);
+			return node;
+		}
+		// split at the median centre along the widest axis of the centres
+		int axis = 0;
+		for (int d = 1; d < 3; d++) {
+			if (centreMax[d] - centreMin[d] > centreMax[axis] - centreMin[axis]) {
+				axis = d;
+			}
+		}
+		final int middle = (from + to) >>> 1;
+		select(centres, axis, from, to - 1, middle);
+		left[node] = build(boxes, centres, from, middle);
+		right[node] = build(boxes, centres, middle, to);
+		return node;
+	}
+
+	/**
+	 * Partially sorts items[from..to] (inclusive) by centre coordinate, so that
+	 * the k-th item is in its sorted place, with no greater items before it and
+	 * no smaller items after it.
+	 */
+	private void select(final double[][] centres, final int axis, int from,
+		int to, final int k)
+	{
+		while (to > from) {
+			final double pivot = centres[items[(from + to) >>> 1]][axis];
+			int i = from;
+			int j = to;
+			while (i <= j) {
+				while (centres[items[i]][axis] < pivot)
+					i++;
+				while (centres[items[j]][axis] > pivot)
+					j--;
+				if (i <= j) {
+					final int swap = items[i];
+					items[i] = items[j];
+					items[j] = swap;
+					i++;
+					j--;
+				}
+			}
+			if (k <= j) to = j;
+			else if (k >= i) from = i;
+			else return;
+		}
+	}
+}
@@ -0,0 +1,276 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.plugins;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+import org.bonej.util.Multithreader;
+
+import ij.IJ;
+import ij.ImagePlus;
+import ij.ImageStack;
+import ij.measure.Calibration;
+import ij.process.ImageProcessor;
+
+/**
+ * Single-pass accumulator of the volume, mass, centroid and inertia tensor of
+ * the thresholded voxels of a stack.
+ * <p>
+ * Each thread sweeps a fixed, contiguous range of slices into its own partial
+ * accumulator and the partials are reduced in slice order at the end. The
+ * partials keep plain mass-weighted sums of x, x² etc. which are normalised by
+ * the total mass only when the centroid and moments are read, so that no step
+ * divides by a running mass. The sums are taken about the centre of the ROI
+ * rather than the origin of the image, so that they don't lose precision when
+ * the object is far from the origin.
+ * </p>
+ * <p>
+ * The pass also records the first and last thresholded voxel of each row, so
+ * that the size of the stack that fits the aligned image can be found without
+ * reading the pixels again.
+ * </p>
+ */
+final class MassMoments {
+
+	private final double vW;
+	private final double vH;
+	private final double vD;
+	private final int rY;
+	private final int rows;
+	private final int startSlice;
+	/** Centre of the ROI in real units, about which the sums are taken */
+	private final double refX;
+	private final double refY;
+	private final double refZ;
+	/** First and last thresholded x of each row, or -1 if the row is empty */
+	private final int[] rowXMin;
+	private final int[] rowXMax;
+	private long count;
+	private double mass;
+	private double sX;
+	private double sY;
+	private double sZ;
+	private double sXX;
+	private double sYY;
+	private double sZZ;
+	private double sXY;
+	private double sXZ;
+	private double sYZ;
+
+	private MassMoments(final Calibration cal, final Rectangle r,
+		final int startSlice, final int endSlice, final int[] rowXMin,
+		final int[] rowXMax)
+	{
+		vW = cal.pixelWidth;
+		vH = cal.pixelHeight;
+		vD = cal.pixelDepth;
+		rY = r.y;
+		rows = r.height;
+		this.startSlice = startSlice;
+		refX = (r.x + 0.5 * r.width) * vW;
+		refY = (r.y + 0.5 * r.height) * vH;
+		refZ = 0.5 * (startSlice + endSlice) * vD;
+		this.rowXMin = rowXMin;
+		this.rowXMax = rowXMax;
+	}
+
+	/**
+	 * Collect the moments of the voxels inside the ROI and the threshold range
+	 * in one pass
+	 *
+	 * @param imp an image.
+	 * @param startSlice first slice to use (1-based).
+	 * @param endSlice last slice to use (1-based).
+	 * @param min minimum threshold value.
+	 * @param max maximum threshold value.
+	 * @param m slope of the density equation (0 if constant density).
+	 * @param c constant of the density equation.
+	 * @return accumulated moments.
+	 */
+	static MassMoments accumulate(final ImagePlus imp, final int startSlice,
+		final int endSlice, final double min, final double max, final double m,
+		final double c)
+	{
+		final ImageStack stack = imp.getImageStack();
+		final Calibration cal = imp.getCalibration();
+		final Rectangle r = imp.getProcessor().getRoi();
+		final int d = Math.max(0, endSlice - startSlice + 1);
+		final int[] rowXMin = new int[d * r.height];
+		final int[] rowXMax = new int[d * r.height];
+		Arrays.fill(rowXMin, -1);
+		Arrays.fill(rowXMax, -1);
+		final double factor = Moments.getDensityFactor(imp);
+		final Thread[] threads = Multithreader.newThreads();
+		final int nPartials = threads.length;
+		final MassMoments[] partials = new MassMoments[nPartials];
+		for (int thread = 0; thread < nPartials; thread++) {
+			final int t = thread;
+			threads[thread] = new Thread(() -> {
+				final MassMoments partial = new MassMoments(cal, r, startSlice,
+					endSlice, rowXMin, rowXMax);
+				final int zStart = startSlice + (int) ((long) d * t / nPartials);
+				final int zEnd = startSlice + (int) ((long) d * (t + 1) / nPartials);
+				for (int z = zStart; z < zEnd; z++) {
+					partial.addSlice(stack.getProcessor(z), r, z, min, max, m, c,
+						factor);
+					if (t == 0) {
+						IJ.showStatus("Calculating centroid and inertia tensor...");
+						IJ.showProgress(z - zStart, zEnd - zStart);
+					}
+				}
+				partials[t] = partial;
+			});
+		}
+		Multithreader.startAndJoin(threads);
+		final MassMoments moments = partials[0];
+		for (int t = 1; t < nPartials; t++) {
+			moments.merge(partials[t]);
+		}
+		return moments;
+	}
+
+	private void addSlice(final ImageProcessor ip, final Rectangle r,
+		final int z, final double min, final double max, final double m,
+		final double c, final double factor)
+	{
+		final int w = ip.getWidth();
+		final double voxVol = vW * vH * vD;
+		final double zR = z * vD;
+		for (int y = r.y; y < r.y + r.height; y++) {
+			final int row = (z - startSlice) * rows + y - rY;
+			final double yR = y * vH;
+			final int offset = y * w;
+			for (int x = r.x; x < r.x + r.width; x++) {
+				final double pixel = ip.get(offset + x);
+				if (pixel < min || pixel > max) continue;
+				if (rowXMin[row] < 0) rowXMin[row] = x;
+				rowXMax[row] = x;
+				count++;
+				final double voxMass = Moments.voxelDensity(pixel, m, c, factor) *
+					voxVol;
+				add(x * vW, yR, zR, voxMass);
+			}
+		}
+	}
+
+	private void add(final double x, final double y, final double z,
+		final double voxMass)
+	{
+		final double dX = x - refX;
+		final double dY = y - refY;
+		final double dZ = z - refZ;
+		final double mX = dX * voxMass;
+		final double mY = dY * voxMass;
+		final double mZ = dZ * voxMass;
+		mass += voxMass;
+		sX += mX;
+		sY += mY;
+		sZ += mZ;
+		sXX += dX * mX;
+		sYY += dY * mY;
+		sZZ += dZ * mZ;
+		sXY += dX * mY;
+		sXZ += dX * mZ;
+		sYZ += dY * mZ;
+	}
+
+	private void merge(final MassMoments other) {
+		count += other.count;
+		mass += other.mass;
+		sX += other.sX;
+		sY += other.sY;
+		sZ += other.sZ;
+		sXX += other.sXX;
+		sYY += other.sYY;
+		sZZ += other.sZZ;
+		sXY += other.sXY;
+		sXZ += other.sXZ;
+		sYZ += other.sYZ;
+	}
+
+	/**
+	 * Get the density-weighted centroid
+	 *
+	 * @return {x, y, z} centroid in real units, or {-1, -1, -1} if there's no
+	 *         mass.
+	 */
+	double[] getCentroid() {
+		if (mass == 0) return new double[] { -1, -1, -1 };
+		return new double[] { refX + sX / mass, refY + sY / mass, refZ + sZ /
+			mass };
+	}
+
+	/**
+	 * Get the volume, mass and moments of inertia about the centroid, treating
+	 * each voxel as a cuboid of uniform density
+	 *
+	 * @return {volume, mass, Icxx, Icyy, Iczz, Icxy, Icxz, Icyz}, where the
+	 *         products of inertia are not negated.
+	 */
+	double[] getMoments() {
+		final double voxVhVd = (vH * vH + vD * vD) / 12;
+		final double voxVwVd = (vW * vW + vD * vD) / 12;
+		final double voxVhVw = (vH * vH + vW * vW) / 12;
+		// moving the sums from the centre of the ROI to the centroid
+		final double cX = mass == 0 ? 0 : sX / mass;
+		final double cY = mass == 0 ? 0 : sY / mass;
+		final double cZ = mass == 0 ? 0 : sZ / mass;
+		final double cXX = sXX - sX * cX;
+		final double cYY = sYY - sY * cY;
+		final double cZZ = sZZ - sZ * cZ;
+		return new double[] { count * vW * vH * vD, mass, cYY + cZZ + mass *
+			voxVhVd, cXX + cZZ + mass * voxVwVd, cYY + cXX + mass * voxVhVw, sXY -
+				sX * cY, sXZ - sX * cZ, sYZ - sY * cZ };
+	}
+
+	/**
+	 * Find the greatest distances of the thresholded voxels from a point along
+	 * the columns of a rotation matrix.
+	 * <p>
+	 * Because the distance is linear along a row, only the first and last
+	 * thresholded voxel of each row need to be checked.
+	 * </p>
+	 *
+	 * @param v a 3x3 rotation matrix.
+	 * @param centre {x, y, z} of the point in real units.
+	 * @return {x, y, z} greatest absolute distances in real units.
+	 */
+	double[] getMaxProjections(final double[][] v, final double[] centre) {
+		final double[] maxima = new double[3];
+		for (int row = 0; row < rowXMin.length; row++) {
+			if (rowXMin[row] < 0) continue;
+			final double zC = (startSlice + row / rows) * vD - centre[2];
+			final double yC = (rY + row % rows) * vH - centre[1];
+			for (final int x : new int[] { rowXMin[row], rowXMax[row] }) {
+				final double xC = x * vW - centre[0];
+				for (int i = 0; i < 3; i++) {
+					final double t = xC * v[0][i] + yC * v[1][i] + zC * v[2][i];
+					maxima[i] = Math.max(maxima[i], Math.abs(t));
+				}
+			}
+		}
+		return maxima;
+	}
+}
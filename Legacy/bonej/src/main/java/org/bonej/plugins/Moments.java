@@ -31,6 +31,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import org.bonej.plugins.StackResampler.Interpolation;
 import org.bonej.util.DialogModifier;
 import org.bonej.util.ImageCheck;
 import org.bonej.util.MatrixUtils;
@@ -64,6 +65,8 @@ import ij3d.Image3DUniverse;
  */
 public class Moments implements PlugIn, DialogListener {
 
+	private static final String[] INTERPOLATIONS = { "Nearest neighbour",
+		"Trilinear" };
 	private boolean fieldUpdated;
 	private Calibration cal;
 
@@ -132,6 +135,7 @@ public class Moments implements PlugIn, DialogListener {
 				"Spatial dimensions uncalibrated.\nAssuming 1 mm pixel spacing.");
 		}
 		gd.addCheckbox("Align result", true);
+		gd.addChoice("Interpolation", INTERPOLATIONS, INTERPOLATIONS[0]);
 		gd.addCheckbox("Show axes (2D)", false);
 		gd.addCheckbox("Show axes (3D)", true);
 		gd.addDialogListener(this);
@@ -158,22 +162,21 @@ public class Moments implements PlugIn, DialogListener {
 		}
 
 		final boolean doAlign = gd.getNextBoolean();
+		final Interpolation interpolation = Interpolation.values()[gd
+			.getNextChoiceIndex()];
 		final boolean doAxes = gd.getNextBoolean();
 		final boolean doAxes3D = gd.getNextBoolean();
 
-		final double[] centroid = getCentroid3D(imp, startSlice, endSlice, min, max,
-			m, c);
+		final MassMoments massMoments = MassMoments.accumulate(imp, startSlice,
+			endSlice, min, max, m, c);
+		final double[] centroid = massMoments.getCentroid();
 		if (centroid[0] < 0) {
 			IJ.error("Empty Stack", "No voxels are available for calculation.\n" +
 				"Check your ROI and threshold.");
 			return;
 		}
-		final Object[] momentResults = calculateMoments(imp, startSlice, endSlice,
-			centroid, min, max, m, c);
-
-		final EigenvalueDecomposition E =
-			(EigenvalueDecomposition) momentResults[0];
-		final double[] moments = (double[]) momentResults[1];
+		final double[] moments = massMoments.getMoments();
+		final EigenvalueDecomposition E = getPrincipalAxes(moments);
 
 		final String units = imp.getCalibration().getUnits();
 		final ResultInserter ri = ResultInserter.getInstance();
@@ -193,11 +196,11 @@ public class Moments implements PlugIn, DialogListener {
 		ri.setResultInRow(imp, "I3 (kg.m²)", E.getD().get(0, 0));
 		ri.updateTable();
 
-		if (doAlign) alignToPrincipalAxes(imp, E.getV(), centroid, startSlice,
-			endSlice, min, max, doAxes).show();
+		if (doAlign) alignToPrincipalAxes(imp, E.getV(), massMoments, startSlice,
+			endSlice, interpolation, doAxes).show();
 
-		if (doAxes3D) show3DAxes(imp, E.getV(), centroid, startSlice, endSlice, min,
-			max);
+		if (doAxes3D) show3DAxes(imp, E.getV(), massMoments, startSlice,
+			endSlice);
 		UsageReporter.reportEvent(this).send();
 	}
 
@@ -215,10 +218,10 @@ public class Moments implements PlugIn, DialogListener {
 	public static ImagePlus alignImage(final ImagePlus imp, final Matrix E,
 		final int endSlice)
 	{
-		final double[] centroid = getCentroid3D(imp, 1, endSlice, 128.0, 255.0, 0.0,
-			1.0);
-		return alignToPrincipalAxes(imp, E, centroid, 1, endSlice, 128.0, 255.0,
-			false);
+		final MassMoments massMoments = MassMoments.accumulate(imp, 1, endSlice,
+			128.0, 255.0, 0.0, 1.0);
+		return alignToPrincipalAxes(imp, E, massMoments, 1, endSlice,
+			Interpolation.NEAREST, false);
 	}
 
 	/**
@@ -226,26 +229,26 @@ public class Moments implements PlugIn, DialogListener {
 	 *
 	 * @param imp Input image
 	 * @param E Rotation matrix
-	 * @param centroid 3-element array containing centroid coordinates, {x,y,z}
+	 * @param massMoments moments of the thresholded voxels
 	 * @param startSlice first slice to copy
 	 * @param endSlice final slice to copy
+	 * @param interpolation how the aligned voxel values are found
 	 * @param doAxes if true, draw axes on the aligned copy
 	 * @return ImagePlus copy of the input image
 	 */
 	private static ImagePlus alignToPrincipalAxes(final ImagePlus imp,
-		final Matrix E, final double[] centroid, final int startSlice,
-		final int endSlice, final double min, final double max,
+		final Matrix E, final MassMoments massMoments, final int startSlice,
+		final int endSlice, final Interpolation interpolation,
 		final boolean doAxes)
 	{
+		final double[] centroid = massMoments.getCentroid();
 		final ImageStack sourceStack = imp.getImageStack();
 		final Calibration cal = imp.getCalibration();
 		final double vW = cal.pixelWidth;
 		final double vH = cal.pixelHeight;
 		final double vD = cal.pixelDepth;
 		final double vS = Math.min(vW, Math.min(vH, vD));
-		final int d = sourceStack.getSize();
-		final int[] sides = getRotatedSize(E, imp, centroid, startSlice, endSlice,
-			min, max);
+		final int[] sides = getRotatedSize(E, cal, massMoments);
 
 		// Rotation matrix to rotate data 90 deg around x axis
 		final double[][] rotX = new double[3][3];
@@ -336,40 +339,15 @@ public class Moments implements PlugIn, DialogListener {
 		final double yTc = hT * vS / 2;
 		final double zTc = dT * vS / 2;
 
-		// for each voxel in the target stack,
-		// find the corresponding source voxel
-
-		// Cache the sourceStack's processors
-		final ImageProcessor[] sliceProcessors = new ImageProcessor[d + 1];
-		for (int z = 1; z <= d; z++) {
-			sliceProcessors[z] = sourceStack.getProcessor(z);
-		}
-		// Initialise an empty stack and tartgetStack's processor array
+		// Initialise an empty stack and fill it, finding the source voxel of
+		// each target voxel
 		final ImageStack targetStack = new ImageStack(wT, hT, dT);
-		final ImageProcessor[] targetProcessors = new ImageProcessor[dT + 1];
 		for (int z = 1; z <= dT; z++) {
 			targetStack.setPixels(getEmptyPixels(wT, hT, imp.getBitDepth()), z);
-			targetProcessors[z] = targetStack.getProcessor(z);
-		}
-
-		// Multithread start
-		final int nThreads = Runtime.getRuntime().availableProcessors();
-		final AlignThread[] alignThread = new AlignThread[nThreads];
-		for (int thread = 0; thread < nThreads; thread++) {
-			alignThread[thread] = new AlignThread(thread, nThreads, imp,
-				sliceProcessors, targetProcessors, eigenVecInv, centroid, wT, hT, dT,
-				startSlice, endSlice);
-			alignThread[thread].start();
-		}
-		try {
-			for (int thread = 0; thread < nThreads; thread++) {
-				alignThread[thread].join();
-			}
 		}
-		catch (final InterruptedException ie) {
-			IJ.error("A thread was interrupted.");
-		}
-		// end multithreading
+		StackResampler.resample(sourceStack, imp.getProcessor().getRoi(),
+			startSlice, endSlice, cal, eigenVecInv, centroid, targetStack, vS,
+			interpolation);
 		if (doAxes) {
 			// draw axes on stack
 			final int xCent = (int) Math.floor(xTc / vS);
@@ -407,62 +385,22 @@ public class Moments implements PlugIn, DialogListener {
 		return impTarget;
 	}
 
-	private static Object[] calculateMoments(final ImagePlus imp,
-		final int startSlice, final int endSlice, final double[] centroid,
-		final double min, final double max, final double m, final double c)
+	/**
+	 * Find the principal axes of inertia
+	 *
+	 * @param moments {volume, mass, Icxx, Icyy, Iczz, Icxy, Icxz, Icyz}
+	 * @return Eigenvalue decomposition of the inertia tensor
+	 * @see MassMoments#getMoments()
+	 */
+	private static EigenvalueDecomposition getPrincipalAxes(
+		final double[] moments)
 	{
-		// START OF 3D MOMENT CALCULATIONS
-		final Calibration cal = imp.getCalibration();
-		final double vW = cal.pixelWidth;
-		final double vH = cal.pixelHeight;
-		final double vD = cal.pixelDepth;
-		final ImageStack stack = imp.getImageStack();
-		final Rectangle r = imp.getProcessor().getRoi();
-		final int rW = r.x + r.width;
-		final int rH = r.y + r.height;
-		final int rX = r.x;
-		final int rY = r.y;
-		final double cX = centroid[0];
-		final double cY = centroid[1];
-		final double cZ = centroid[2];
-		final double factor = getDensityFactor(imp);
-		final double voxVol = vW * vH * vD;
-		final double voxVhVd = (vH * vH + vD * vD) / 12;
-		final double voxVwVd = (vW * vW + vD * vD) / 12;
-		final double voxVhVw = (vH * vH + vW * vW) / 12;
-		double sumVoxVol = 0;
-		double sumVoxMass = 0;
-		double Icxx = 0;
-		double Icyy = 0;
-		double Iczz = 0;
-		double Icxy = 0;
-		double Icxz = 0;
-		double Icyz = 0;
-		for (int z = startSlice; z <= endSlice; z++) {
-			IJ.showStatus("Calculating inertia tensor...");
-			IJ.showProgress(z - startSlice, endSlice - startSlice);
-			final ImageProcessor ip = stack.getProcessor(z);
-			for (int y = rY; y < rH; y++) {
-				for (int x = rX; x < rW; x++) {
-					final double testPixel = ip.get(x, y);
-					if (testPixel < min || testPixel > max) {
-						continue;
-					}
-					sumVoxVol += voxVol;
-					final double voxMass = voxelDensity(testPixel, m, c, factor) * voxVol;
-					sumVoxMass += voxMass;
-					final double xvWcX = x * vW - cX;
-					final double yvHcY = y * vH - cY;
-					final double zvDcZ = z * vD - cZ;
-					Icxx += (yvHcY * yvHcY + zvDcZ * zvDcZ + voxVhVd) * voxMass;
-					Icyy += (xvWcX * xvWcX + zvDcZ * zvDcZ + voxVwVd) * voxMass;
-					Iczz += (yvHcY * yvHcY + xvWcX * xvWcX + voxVhVw) * voxMass;
-					Icxy += xvWcX * yvHcY * voxMass;
-					Icxz += xvWcX * zvDcZ * voxMass;
-					Icyz += yvHcY * zvDcZ * voxMass;
-				}
-			}
-		}
+		final double Icxx = moments[2];
+		final double Icyy = moments[3];
+		final double Iczz = moments[4];
+		final double Icxy = moments[5];
+		final double Icxz = moments[6];
+		final double Icyz = moments[7];
 		// create the inertia tensor matrix
 		final double[][] inertiaTensor = new double[3][3];
 		inertiaTensor[0][0] = Icxx;
@@ -481,77 +419,9 @@ public class Moments implements PlugIn, DialogListener {
 			inertiaTensorMatrix);
 		MatrixUtils.printToIJLog(E.getD(), "Eigenvalues");
 		MatrixUtils.printToIJLog(E.getV(), "Eigenvectors");
-
-		final double[] moments = { sumVoxVol, sumVoxMass, Icxx, Icyy, Iczz, Icxy,
-			Icxz, Icyz };
-
-		return new Object[] { E, moments };
+		return E;
 	}
 
-	/**
-	 * Calculate a density-weighted centroid in an image using z-clip planes,
-	 * threshold clipping and density = m * pixel value + c density equation
-	 *
-	 * @param imp ImagePlus
-	 * @param startSlice first slice to use
-	 * @param endSlice last slice to use
-	 * @param min minimum threshold value
-	 * @param max maximum threshold value
-	 * @param m slope of density equation (set to 0 if constant density)
-	 * @param c constant in density equation
-	 * @return double[] containing (x,y,z) centroid in scaled units
-	 */
-	private static double[] getCentroid3D(final ImagePlus imp,
-		final int startSlice, final int endSlice, final double min,
-		final double max, final double m, final double c)
-	{
-		final ImageStack stack = imp.getImageStack();
-		final Rectangle r = imp.getProcessor().getRoi();
-		final int rW = r.x + r.width;
-		final int rH = r.y + r.height;
-		final int rX = r.x;
-		final int rY = r.y;
-		final Calibration cal = imp.getCalibration();
-		final double vW = cal.pixelWidth;
-		final double vH = cal.pixelHeight;
-		final double vD = cal.pixelDepth;
-		final double voxVol = vW * vH * vD;
-		final double factor = getDensityFactor(imp);
-		double sumx = 0;
-		double sumy = 0;
-		double sumz = 0;
-		double sumMass = 0;
-		for (int z = startSlice; z <= endSlice; z++) {
-			IJ.showStatus("Calculating centroid...");
-			IJ.showProgress(z - startSlice, endSlice - startSlice);
-			final ImageProcessor ip = stack.getProcessor(z);
-			for (int y = rY; y < rH; y++) {
-				for (int x = rX; x < rW; x++) {
-					final double testPixel = ip.get(x, y);
-					if (testPixel >= min && testPixel <= max) {
-						final double voxelMass = voxelDensity(testPixel, m, c, factor) *
-							voxVol;
-						sumMass += voxelMass;
-						sumx += x * voxelMass;
-						sumy += y * voxelMass;
-						sumz += z * voxelMass;
-					}
-				}
-			}
-		}
-		// centroid in pixels
-		double centX = sumx / sumMass;
-		double centY = sumy / sumMass;
-		double centZ = sumz / sumMass;
-		if (sumMass == 0) {
-			centX = -1;
-			centY = -1;
-			centZ = -1;
-		}
-		// centroid in real units
-		return new double[] { centX * vW, centY * vH, centZ * vD };
-	}/* end findCentroid3D */
-
 	/**
 	 * Get a scale factor because density is in g / cm³ but our units are mm,
 	 * microns or pixels so density is wrong leading to wrong mass and moments.
@@ -559,7 +429,7 @@ public class Moments implements PlugIn, DialogListener {
 	 * @param imp an image.
 	 * @return divisor to convert calibration values to g / cm<sup>3</sup>.
 	 */
-	private static double getDensityFactor(final ImagePlus imp) {
+	static double getDensityFactor(final ImagePlus imp) {
 		final String unit = imp.getCalibration().getUnit();
 		if (unit.contains("mm") || unit.contains("pixel")) {
 			return 1000;
@@ -574,91 +444,24 @@ public class Moments implements PlugIn, DialogListener {
 	 * Find side lengths in pixels of the smallest stack to fit the aligned image
 	 *
 	 * @param E Rotation matrix
-	 * @param imp Source image
-	 * @param centroid 3D centroid in 3-element array {x,y,z}
-	 * @param startSlice first slice of source image
-	 * @param endSlice last slice of source image
-	 * @param min minimum threshold
-	 * @param max maximum threshold
+	 * @param cal Calibration of the source image
+	 * @param massMoments moments of the thresholded voxels
 	 * @return Width, height and depth of a stack that will 'just fit' the aligned
 	 *         image
 	 */
-	private static int[] getRotatedSize(final Matrix E, final ImagePlus imp,
-		final double[] centroid, final int startSlice, final int endSlice,
-		final double min, final double max)
+	static int[] getRotatedSize(final Matrix E, final Calibration cal,
+		final MassMoments massMoments)
 	{
-		final ImageStack stack = imp.getImageStack();
-		final Calibration cal = imp.getCalibration();
-		final double xC = centroid[0];
-		final double yC = centroid[1];
-		final double zC = centroid[2];
-		final Rectangle r = imp.getProcessor().getRoi();
-		final int rW = r.x + r.width;
-		final int rH = r.y + r.height;
-		final int rX = r.x;
-		final int rY = r.y;
-
-		final double vW = cal.pixelWidth;
-		final double vH = cal.pixelHeight;
-		final double vD = cal.pixelDepth;
-
-		final double[][] v = E.getArrayCopy();
-		final double v00 = v[0][0];
-		final double v10 = v[1][0];
-		final double v20 = v[2][0];
-		final double v01 = v[0][1];
-		final double v11 = v[1][1];
-		final double v21 = v[2][1];
-		final double v02 = v[0][2];
-		final double v12 = v[1][2];
-		final double v22 = v[2][2];
-
-		double xTmax = 0;
-		double yTmax = 0;
-		double zTmax = 0;
-
-		for (int z = startSlice; z <= endSlice; z++) {
-			IJ.showStatus("Getting aligned stack dimensions...");
-			final ImageProcessor ip = stack.getProcessor(z);
-			final double zCz = z * vD - zC;
-			final double zCzv20 = zCz * v20;
-			final double zCzv21 = zCz * v21;
-			final double zCzv22 = zCz * v22;
-			for (int y = rY; y < rH; y++) {
-				final double yCy = y * vH - yC;
-				final double yCyv10 = yCy * v10;
-				final double yCyv11 = yCy * v11;
-				final double yCyv12 = yCy * v12;
-				for (int x = rX; x < rW; x++) {
-					final double pixel = ip.get(x, y);
-					if (pixel < min || pixel > max) continue;
-
-					// distance from centroid in
-					// original coordinate system
-					// xCx, yCx, zCx
-					final double xCx = x * vW - xC;
-					// now transform each coordinate
-					// transformed coordinate is dot product of original
-					// coordinates
-					// and eigenvectors
-					final double xT = xCx * v00 + yCyv10 + zCzv20;
-					final double yT = xCx * v01 + yCyv11 + zCzv21;
-					final double zT = xCx * v02 + yCyv12 + zCzv22;
-					// keep the biggest value to find the greatest distance
-					// in x, y and z
-					xTmax = Math.max(xTmax, Math.abs(xT));
-					yTmax = Math.max(yTmax, Math.abs(yT));
-					zTmax = Math.max(zTmax, Math.abs(zT));
-				}
-			}
-		}
+		final double[] maxima = massMoments.getMaxProjections(E.getArray(),
+			massMoments.getCentroid());
 
 		// use the smallest input voxel dimension as the voxel size
-		final double vS = Math.min(vW, Math.min(vH, vD));
+		final double vS = Math.min(cal.pixelWidth, Math.min(cal.pixelHeight,
+			cal.pixelDepth));
 
-		final int tW = (int) Math.floor(2 * xTmax / vS) + 5;
-		final int tH = (int) Math.floor(2 * yTmax / vS) + 5;
-		final int tD = (int) Math.floor(2 * zTmax / vS) + 5;
+		final int tW = (int) Math.floor(2 * maxima[0] / vS) + 5;
+		final int tH = (int) Math.floor(2 * maxima[1] / vS) + 5;
+		final int tD = (int) Math.floor(2 * maxima[2] / vS) + 5;
 
 		return new int[] { tW, tH, tD };
 	}
@@ -719,17 +522,16 @@ public class Moments implements PlugIn, DialogListener {
 	 *
 	 * @param imp Original image
 	 * @param E eigenvectors of the principal axes
-	 * @param centroid in real units
+	 * @param massMoments moments of the thresholded voxels
 	 * @param startSlice first slice
 	 * @param endSlice last slice
-	 * @param min lower threshold
-	 * @param max upper threshold
 	 */
 	private static void show3DAxes(final ImagePlus imp, final Matrix E,
-		final double[] centroid, final int startSlice, final int endSlice,
-		final double min, final double max)
+		final MassMoments massMoments, final int startSlice, final int endSlice)
 	{
 		final Calibration cal = imp.getCalibration();
+		final double[] centroid = massMoments.getCentroid();
+		final int[] sideLengths = getRotatedSize(E, cal, massMoments);
 		// copy the data from inside the ROI and convert it to 8-bit
 		final Duplicator d = new Duplicator();
 		final ImagePlus roiImp = d.run(imp, startSlice, endSlice);
@@ -771,8 +573,6 @@ public class Moments implements PlugIn, DialogListener {
 		}
 
 		// show the axes
-		final int[] sideLengths = getRotatedSize(E, roiImp, centroid, 1, endSlice -
-			startSlice + 1, min, max);
 		final double vS = Math.min(cal.pixelWidth, Math.min(cal.pixelHeight,
 			cal.pixelDepth));
 		final double l1 = sideLengths[0] * vS;
@@ -847,117 +647,12 @@ public class Moments implements PlugIn, DialogListener {
 	 * @return voxelDensity
 	 * @see #getDensityFactor(ImagePlus)
 	 */
-	private static double voxelDensity(final double pixelValue, final double m,
+	static double voxelDensity(final double pixelValue, final double m,
 		final double c, final double factor)
 	{
 		return Math.max(0.0, (m * pixelValue + c) / factor);
 	}
 
-	/**
-	 * Multithreading class to look up aligned voxel values, processing each slice
-	 * in its own thread
-	 */
-	private static final class AlignThread extends Thread {
-
-		private final int thread;
-		private final int nThreads;
-		private final int wT;
-		private final int hT;
-		private final int dT;
-		private final int startSlice;
-		private final int endSlice;
-		private final ImagePlus impT;
-		private final ImageProcessor[] sliceProcessors;
-		private final ImageProcessor[] targetProcessors;
-		private final double[][] eigenVecInv;
-		private final double[] centroid;
-
-		private AlignThread(final int thread, final int nThreads,
-			final ImagePlus imp, final ImageProcessor[] sliceProcessors,
-			final ImageProcessor[] targetProcessors, final double[][] eigenVecInv,
-			final double[] centroid, final int wT, final int hT, final int dT,
-			final int startSlice, final int endSlice)
-		{
-			impT = imp;
-			this.thread = thread;
-			this.nThreads = nThreads;
-			this.sliceProcessors = sliceProcessors;
-			this.targetProcessors = targetProcessors;
-			this.eigenVecInv = eigenVecInv;
-			this.centroid = centroid;
-			this.wT = wT;
-			this.hT = hT;
-			this.dT = dT;
-			this.startSlice = startSlice;
-			this.endSlice = endSlice;
-		}
-
-		@Override
-		public void run() {
-			final Rectangle r = impT.getProcessor().getRoi();
-			final int rW = r.x + r.width;
-			final int rH = r.y + r.height;
-			final int rX = r.x;
-			final int rY = r.y;
-			final Calibration cal = impT.getCalibration();
-			final double vW = cal.pixelWidth;
-			final double vH = cal.pixelHeight;
-			final double vD = cal.pixelDepth;
-			final double vS = Math.min(vW, Math.min(vH, vD));
-			final double xC = centroid[0];
-			final double yC = centroid[1];
-			final double zC = centroid[2];
-			final double xTc = wT * vS / 2;
-			final double yTc = hT * vS / 2;
-			final double zTc = dT * vS / 2;
-			final double dXc = xC - xTc;
-			final double dYc = yC - yTc;
-			final double dZc = zC - zTc;
-			final double eVI00 = eigenVecInv[0][0];
-			final double eVI10 = eigenVecInv[1][0];
-			final double eVI20 = eigenVecInv[2][0];
-			final double eVI01 = eigenVecInv[0][1];
-			final double eVI11 = eigenVecInv[1][1];
-			final double eVI21 = eigenVecInv[2][1];
-			final double eVI02 = eigenVecInv[0][2];
-			final double eVI12 = eigenVecInv[1][2];
-			final double eVI22 = eigenVecInv[2][2];
-			for (int z = thread + 1; z <= dT; z += nThreads) {
-				IJ.showStatus("Aligning image stack...");
-				IJ.showProgress(z, dT);
-				final ImageProcessor targetIP = targetProcessors[z];
-				final double zD = z * vS - zTc;
-				final double zDeVI00 = zD * eVI20;
-				final double zDeVI01 = zD * eVI21;
-				final double zDeVI02 = zD * eVI22;
-				for (int y = 0; y < hT; y++) {
-					final double yD = y * vS - yTc;
-					final double yDeVI10 = yD * eVI10;
-					final double yDeVI11 = yD * eVI11;
-					final double yDeVI12 = yD * eVI12;
-					for (int x = 0; x < wT; x++) {
-						final double xD = x * vS - xTc;
-						final double xAlign = xD * eVI00 + yDeVI10 + zDeVI00 + xTc;
-						final double yAlign = xD * eVI01 + yDeVI11 + zDeVI01 + yTc;
-						final double zAlign = xD * eVI02 + yDeVI12 + zDeVI02 + zTc;
-						// possibility to do some voxel interpolation instead
-						// of just rounding in next 3 lines
-						final int xA = (int) Math.floor((xAlign + dXc) / vW);
-						final int yA = (int) Math.floor((yAlign + dYc) / vH);
-						final int zA = (int) Math.floor((zAlign + dZc) / vD);
-
-						if (xA < rX || xA >= rW || yA < rY || yA >= rH || zA < startSlice ||
-							zA > endSlice)
-						{
-							continue;
-						}
-						targetIP.set(x, y, sliceProcessors[zA].get(xA, yA));
-					}
-				}
-			}
-		}
-	}
-
 	/**
 	 * Return an empty pixel array of the type appropriate for the bit depth
 	 * required. Returns an Object, which can be used when adding an empty slice
@@ -0,0 +1,184 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package org.bonej.plugins;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bonej.util.Multithreader;
+
+/**
+ * Sliding-window sum of the Euler contributions of a binary stack's voxel
+ * vertices.
+ * <p>
+ * Each vertex of the lattice is the shared corner of an octant of eight
+ * voxels. The octants are visited by walking pairs of adjacent slices row by
+ * row, and keeping an 8-bit index of the octant that is rolled along x: moving
+ * one vertex shifts the previous column of four voxels down and reads one new
+ * column. The index is looked up in a table of the Euler contribution of each
+ * of the 256 octant configurations, so no octant arrays are allocated and the
+ * pixels are read straight from the slice arrays.
+ * </p>
+ * <p>
+ * The planes of vertices between slices are summed in parallel, one plane at
+ * a time per thread, and the plane sums are reduced after the threads have
+ * joined.
+ * </p>
+ */
+final class OctantEuler {
+
+	private OctantEuler() {}
+
+	/**
+	 * Sum the Euler contributions of all the vertices of a stack
+	 *
+	 * @param slices pixels of the stack, indexed [z][y * width + x]. Foreground
+	 *          is -1 (255), all other values are background, and the space
+	 *          outside the stack is background.
+	 * @param width width of the stack
+	 * @param height height of the stack
+	 * @param octantLUT Euler contribution of each octant configuration. Bits 0
+	 *          to 7 of the index are set for foreground at (x - 1, y - 1, z - 1),
+	 *          (x - 1, y, z - 1), (x, y - 1, z - 1), (x, y, z - 1), (x - 1, y -
+	 *          1, z), (x - 1, y, z), (x, y - 1, z) and (x, y, z) respectively.
+	 * @return sum of the contributions of the (width + 1) * (height + 1) *
+	 *         (depth + 1) vertices
+	 */
+	static long sum(final byte[][] slices, final int width, final int height,
+		final int[] octantLUT)
+	{
+		return sum(slices, width, height, octantLUT, null);
+	}
+
+	/**
+	 * Sum the Euler contributions of all the vertices of a stack, and add its
+	 * slices to an edge correction in the same pass
+	 *
+	 * @param slices pixels of the stack, indexed [z][y * width + x]
+	 * @param width width of the stack
+	 * @param height height of the stack
+	 * @param octantLUT Euler contribution of each octant configuration
+	 * @param edges correction to add the slices to, or null
+	 * @return sum of the contributions of the vertices
+	 * @see #sum(byte[][], int, int, int[])
+	 */
+	static long sum(final byte[][] slices, final int width, final int height,
+		final int[] octantLUT, final EdgeCorrection edges)
+	{
+		final long[] planeSums = planeSums(slices, width, height, octantLUT,
+			edges);
+		long sum = 0;
+		for (final long planeSum : planeSums) {
+			sum += planeSum;
+		}
+		return sum;
+	}
+
+	/**
+	 * Sum the Euler contributions of the vertices in each plane of the stack
+	 *
+	 * @param slices pixels of the stack, indexed [z][y * width + x]
+	 * @param width width of the stack
+	 * @param height height of the stack
+	 * @param octantLUT Euler contribution of each octant configuration
+	 * @return sums of the depth + 1 vertex planes, where plane z lies between
+	 *         slices z - 1 and z
+	 */
+	static long[] planeSums(final byte[][] slices, final int width,
+		final int height, final int[] octantLUT)
+	{
+		return planeSums(slices, width, height, octantLUT, null);
+	}
+
+	private static long[] planeSums(final byte[][] slices, final int width,
+		final int height, final int[] octantLUT, final EdgeCorrection edges)
+	{
+		final int depth = slices.length;
+		final long[] planeSums = new long[depth + 1];
+		final byte[] zeroRow = new byte[width];
+		final AtomicInteger ai = new AtomicInteger(0);
+		final Thread[] threads = Multithreader.newThreads();
+		for (int thread = 0; thread < threads.length; thread++) {
+			threads[thread] = new Thread(() -> {
+				for (int z = ai.getAndIncrement(); z <= depth; z = ai
+					.getAndIncrement())
+				{
+					final byte[] below = z > 0 ? slices[z - 1] : null;
+					final byte[] above = z < depth ? slices[z] : null;
+					planeSums[z] = sumPlane(below, above, width, height, octantLUT,
+						zeroRow);
+					if (edges != null && above != null) {
+						edges.addSlice(z, above);
+					}
+				}
+			});
+		}
+		Multithreader.startAndJoin(threads);
+		return planeSums;
+	}
+
+	/**
+	 * Sum the contributions of the vertices between two slices
+	 *
+	 * @param below the slice at z - 1, or null if it's outside the stack
+	 * @param above the slice at z, or null if it's outside the stack
+	 */
+	private static long sumPlane(final byte[] below, final byte[] above,
+		final int width, final int height, final int[] octantLUT,
+		final byte[] zeroRow)
+	{
+		long sum = 0;
+		for (int y = 0; y <= height; y++) {
+			// rows at y - 1 and y of both slices, or zeros outside the stack
+			final boolean front = y > 0;
+			final boolean back = y < height;
+			final byte[] p0 = front && below != null ? below : zeroRow;
+			final byte[] p1 = back && below != null ? below : zeroRow;
+			final byte[] p2 = front && above != null ? above : zeroRow;
+			final byte[] p3 = back && above != null ? above : zeroRow;
+			final int o0 = p0 == zeroRow ? 0 : (y - 1) * width;
+			final int o1 = p1 == zeroRow ? 0 : y * width;
+			final int o2 = p2 == zeroRow ? 0 : (y - 1) * width;
+			final int o3 = p3 == zeroRow ? 0 : y * width;
+			int octant = 0;
+			for (int x = 0; x < width; x++) {
+				final int column = foreground(p0[o0 + x]) | foreground(p1[o1 + x]) << 1 |
+					foreground(p2[o2 + x]) << 4 | foreground(p3[o3 + x]) << 5;
+				// the old column at x becomes the column at x - 1
+				octant = (octant >>> 2 & 0x33) | column << 2;
+				sum += octantLUT[octant];
+			}
+			// the last vertex of the row has only the column at x - 1
+			octant = octant >>> 2 & 0x33;
+			sum += octantLUT[octant];
+		}
+		return sum;
+	}
+
+	/**
+	 * @return 1 if the pixel is foreground (-1), otherwise 0. Doesn't branch,
+	 *         because foreground is hard to predict.
+	 */
+	private static int foreground(final byte pixel) {
+		return ((~pixel & 0xFF) - 1) >>> 31;
+	}
+}
@@ -33,22 +33,23 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import org.bonej.geometry.Calipers;
 import org.bonej.geometry.FitEllipsoid;
 import org.bonej.menuWrappers.LocalThickness;
 import org.bonej.util.DialogModifier;
 import org.bonej.util.ImageCheck;
+import org.bonej.util.Multithreader;
 import org.scijava.vecmath.Color3f;
 import org.scijava.vecmath.Point3f;
 
 import Jama.EigenvalueDecomposition;
 import Jama.Matrix;
 import customnode.CustomPointMesh;
-import customnode.CustomTriangleMesh;
 import ij.IJ;
 import ij.ImagePlus;
 import ij.ImageStack;
@@ -59,7 +60,6 @@ import ij.measure.ResultsTable;
 import ij.plugin.PlugIn;
 import ij.process.ImageProcessor;
 import ij3d.Image3DUniverse;
-import marchingcubes.MCTriangulator;
 
 /**
  * <p>
@@ -126,6 +126,10 @@ public class ParticleCounter implements PlugIn, DialogListener {
 		final Choice choice = (Choice) choices.get(1);
 		final TextField num = (TextField) numbers.get(5);
 		num.setEnabled(choice.getSelectedItem().contentEquals("Multithreaded"));
+		// link Feret choice to number of Feret directions
+		final Checkbox feretBox = (Checkbox) checkboxes.get(2);
+		final TextField directions = (TextField) numbers.get(6);
+		directions.setEnabled(feretBox.getState());
 		// link moments and ellipsoid choice to unit vector choice
 		final Checkbox momBox = (Checkbox) checkboxes.get(4);
 		final Checkbox elBox = (Checkbox) checkboxes.get(8);
@@ -211,9 +215,11 @@ public class ParticleCounter implements PlugIn, DialogListener {
 		gd.addChoice("Surface colours", items, items[0]);
 		gd.addNumericField("Split value", 0, 3, 7, units + "³");
 		gd.addNumericField("Volume_resampling", 2, 0);
-		final String[] items2 = { "Multithreaded", "Linear", "Mapped" };
+		final String[] items2 = { "Multithreaded", "Linear", "Mapped",
+			"Union-find", "Parallel union-find" };
 		gd.addChoice("Labelling algorithm", items2, items2[2]);
 		gd.addNumericField("Slices per chunk", 2, 0);
+		gd.addNumericField("Feret directions", 0, 0, 7, "(0 = exact)");
 		gd.addDialogListener(this);
 		gd.showDialog();
 		if (gd.wasCanceled()) {
@@ -249,8 +255,12 @@ public class ParticleCounter implements PlugIn, DialogListener {
 		final String choice = gd.getNextChoice();
 		if (choice.equals(items2[0])) labelMethod = JOINING.MULTI;
 		else if (choice.equals(items2[1])) labelMethod = JOINING.LINEAR;
+		else if (choice.equals(items2[3])) labelMethod = JOINING.UNION_FIND;
+		else if (choice.equals(items2[4])) labelMethod =
+			JOINING.PARALLEL_UNION_FIND;
 		else labelMethod = JOINING.MAPPED;
 		final int slicesPerChunk = (int) Math.floor(gd.getNextNumber());
+		final int feretDirections = (int) Math.floor(gd.getNextNumber());
 
 		// get the particles and do the analysis
 		final long start = System.nanoTime();
@@ -260,37 +270,42 @@ public class ParticleCounter implements PlugIn, DialogListener {
 		final long time = (System.nanoTime() - start) / 1000000;
 		IJ.log("Particle labelling finished in " + time + " ms");
 		final int[][] particleLabels = (int[][]) result[1];
-		final long[] particleSizes = getParticleSizes(particleLabels);
-		final int nParticles = particleSizes.length;
+		final int nParticles = ((long[]) result[2]).length;
+		ImagePlus thickImp = null;
+		if (doThickness) {
+			final LocalThickness th = new LocalThickness();
+			thickImp = th.getLocalThickness(imp, false, doMask);
+		}
+		// collect sizes, limits, moments and thickness in a single pass
+		final ParticleStatistics statistics = ParticleStatistics.accumulate(
+			particleLabels, imp.getWidth(), nParticles, thickImp == null ? null
+				: thickImp.getImageStack());
+		final long[] particleSizes = statistics.getSizes();
 		final double[] volumes = getVolumes(imp, particleSizes);
-		final double[][] centroids = getCentroids(imp, particleLabels,
-			particleSizes);
-		final int[][] limits = getParticleLimits(imp, particleLabels, nParticles);
+		final double[][] centroids = getCentroids(imp, statistics);
+		final int[][] limits = getParticleLimits(statistics);
 
 		// set up resources for analysis
-		ArrayList<List<Point3f>> surfacePoints = new ArrayList<>();
+		List<List<Point3f>> surfacePoints = new ArrayList<>();
+		double[] surfaceAreas = new double[nParticles];
+		double[][] ferets = new double[nParticles][Calipers.RESULT_LENGTH];
+		double[] surfaceVolumes = new double[nParticles];
 		if (doSurfaceArea || doSurfaceVolume || doSurfaceImage || doEllipsoids ||
 			doFeret)
 		{
-			surfacePoints = getSurfacePoints(imp, particleLabels, limits, resampling,
-				nParticles);
+			// mesh each particle once and measure it while the mesh is at hand
+			final ParticleMeshes meshes = ParticleMeshes.mesh(imp, particleLabels,
+				limits, resampling, nParticles, doFeret ? feretDirections : -1);
+			surfacePoints = meshes.getSurfacePoints();
+			surfaceAreas = meshes.getSurfaceAreas();
+			surfaceVolumes = meshes.getSurfaceVolumes();
+			if (doFeret) {
+				ferets = meshes.getFerets();
+			}
 		}
 		EigenvalueDecomposition[] eigens = new EigenvalueDecomposition[nParticles];
 		if (doMoments || doAxesImage) {
-			eigens = getEigens(imp, particleLabels, centroids);
-		}
-		// calculate dimensions
-		double[] surfaceAreas = new double[nParticles];
-		if (doSurfaceArea) {
-			surfaceAreas = getSurfaceAreas(surfacePoints);
-		}
-		double[] ferets = new double[nParticles];
-		if (doFeret) {
-			ferets = getFerets(surfacePoints);
-		}
-		double[] surfaceVolumes = new double[nParticles];
-		if (doSurfaceVolume) {
-			surfaceVolumes = getSurfaceVolume(surfacePoints);
+			eigens = getEigens(imp, statistics);
 		}
 		double[][] eulerCharacters = new double[nParticles][3];
 		if (doEulerCharacters) {
@@ -299,9 +314,7 @@ public class ParticleCounter implements PlugIn, DialogListener {
 		}
 		double[][] thick = new double[nParticles][2];
 		if (doThickness) {
-			final LocalThickness th = new LocalThickness();
-			final ImagePlus thickImp = th.getLocalThickness(imp, false, doMask);
-			thick = getMeanStdDev(thickImp, particleLabels, particleSizes);
+			thick = getMeanStdDev(statistics);
 			if (doThickImage) {
 				double max = 0;
 				for (int i = 1; i < nParticles; i++) {
@@ -334,7 +347,15 @@ public class ParticleCounter implements PlugIn, DialogListener {
 					rt.addValue("SA (" + units + "²)", surfaceAreas[i]);
 				}
 				if (doFeret) {
-					rt.addValue("Feret (" + units + ")", ferets[i]);
+					final double[] feret = ferets[i];
+					rt.addValue("Feret (" + units + ")", feret[0]);
+					rt.addValue("FeretAX (" + units + ")", feret[1]);
+					rt.addValue("FeretAY (" + units + ")", feret[2]);
+					rt.addValue("FeretAZ (" + units + ")", feret[3]);
+					rt.addValue("FeretBX (" + units + ")", feret[4]);
+					rt.addValue("FeretBY (" + units + ")", feret[5]);
+					rt.addValue("FeretBZ (" + units + ")", feret[6]);
+					rt.addValue("Min. width (" + units + ")", feret[7]);
 				}
 				if (doSurfaceVolume) {
 					rt.addValue("Encl. Vol. (" + units + "³)", surfaceVolumes[i]);
@@ -425,7 +446,7 @@ public class ParticleCounter implements PlugIn, DialogListener {
 			}
 			if (doAxesImage) {
 				final double[][] lengths = (double[][]) getMaxDistances(imp,
-					particleLabels, centroids, eigens)[1];
+					particleLabels, statistics, centroids, eigens)[1];
 				displayPrincipalAxes(univ, eigens, centroids, lengths);
 			}
 			if (doEllipsoidImage) {
@@ -580,32 +601,6 @@ public class ParticleCounter implements PlugIn, DialogListener {
 		return count;
 	}
 
-	/**
-	 * Calculate the cross product of 3 Point3f's, which describe two vectors
-	 * joined at the tails. Can be used to find the plane / surface normal of a
-	 * triangle. Half of its magnitude is the area of the triangle.
-	 *
-	 * @param point0 both vectors' tails
-	 * @param point1 vector 1's head
-	 * @param point2 vector 2's head
-	 * @return cross product vector
-	 */
-	private static Point3f crossProduct(final Point3f point0,
-		final Point3f point1, final Point3f point2)
-	{
-		final double x1 = point1.x - point0.x;
-		final double y1 = point1.y - point0.y;
-		final double z1 = point1.z - point0.z;
-		final double x2 = point2.x - point0.x;
-		final double y2 = point2.y - point0.y;
-		final double z2 = point2.z - point0.z;
-		final Point3f crossVector = new Point3f();
-		crossVector.x = (float) (y1 * z2 - z1 * y2);
-		crossVector.y = (float) (z1 * x2 - x1 * z2);
-		crossVector.z = (float) (x1 * y2 - y1 * x2);
-		return crossVector;
-	}
-
 	private static void display3DOriginal(final ImagePlus imp,
 		final int resampling, final Image3DUniverse univ)
 	{
@@ -1260,95 +1255,40 @@ public class ParticleCounter implements PlugIn, DialogListener {
 	 * Get the centroids of all the particles in real units
 	 *
 	 * @param imp an image.
-	 * @param particleLabels particles in the image.
-	 * @param particleSizes sizes of the particles
+	 * @param statistics accumulated statistics of the particles in the image.
 	 * @return double[][] containing all the particles' centroids
 	 */
 	private static double[][] getCentroids(final ImagePlus imp,
-		final int[][] particleLabels, final long[] particleSizes)
+		final ParticleStatistics statistics)
 	{
-		final int nParticles = particleSizes.length;
-		final int w = imp.getWidth();
-		final int h = imp.getHeight();
-		final int d = imp.getImageStackSize();
-		final double[][] sums = new double[nParticles][3];
-		for (int z = 0; z < d; z++) {
-			for (int y = 0; y < h; y++) {
-				final int index = y * w;
-				for (int x = 0; x < w; x++) {
-					final int particle = particleLabels[z][index + x];
-					sums[particle][0] += x;
-					sums[particle][1] += y;
-					sums[particle][2] += z;
-				}
-			}
-		}
-		final Calibration cal = imp.getCalibration();
-		final double[][] centroids = new double[nParticles][3];
-		for (int p = 0; p < nParticles; p++) {
-			centroids[p][0] = cal.pixelWidth * sums[p][0] / particleSizes[p];
-			centroids[p][1] = cal.pixelHeight * sums[p][1] / particleSizes[p];
-			centroids[p][2] = cal.pixelDepth * sums[p][2] / particleSizes[p];
-		}
-		return centroids;
+		return statistics.getCentroids(imp.getCalibration());
 	}
 
 	private static EigenvalueDecomposition[] getEigens(final ImagePlus imp,
-		final int[][] particleLabels, final double[][] centroids)
+		final ParticleStatistics statistics)
 	{
-		final Calibration cal = imp.getCalibration();
-		final double vW = cal.pixelWidth;
-		final double vH = cal.pixelHeight;
-		final double vD = cal.pixelDepth;
-		final double voxVhVd = (vH * vH + vD * vD) / 12;
-		final double voxVwVd = (vW * vW + vD * vD) / 12;
-		final double voxVhVw = (vH * vH + vW * vW) / 12;
-		final int w = imp.getWidth();
-		final int h = imp.getHeight();
-		final int d = imp.getImageStackSize();
-		final int nParticles = centroids.length;
+		final double[][] momentTensors = statistics.getMomentTensors(imp
+			.getCalibration());
+		final int nParticles = momentTensors.length;
 		final EigenvalueDecomposition[] eigens =
 			new EigenvalueDecomposition[nParticles];
-		final double[][] momentTensors = new double[nParticles][6];
-		for (int z = 0; z < d; z++) {
+		for (int p = 1; p < nParticles; p++) {
 			IJ.showStatus("Calculating particle moments...");
-			IJ.showProgress(z, d);
-			final double zVd = z * vD;
-			for (int y = 0; y < h; y++) {
-				final double yVh = y * vH;
-				final int index = y * w;
-				for (int x = 0; x < w; x++) {
-					final int p = particleLabels[z][index + x];
-					if (p > 0) {
-						final double xVw = x * vW;
-						final double dx = xVw - centroids[p][0];
-						final double dy = yVh - centroids[p][1];
-						final double dz = zVd - centroids[p][2];
-						momentTensors[p][0] += dy * dy + dz * dz + voxVhVd; // Ixx
-						momentTensors[p][1] += dx * dx + dz * dz + voxVwVd; // Iyy
-						momentTensors[p][2] += dy * dy + dx * dx + voxVhVw; // Izz
-						momentTensors[p][3] += dx * dy; // Ixy
-						momentTensors[p][4] += dx * dz; // Ixz
-						momentTensors[p][5] += dy * dz; // Iyz
-					}
-				}
-			}
-			for (int p = 1; p < nParticles; p++) {
-				final double[][] inertiaTensor = new double[3][3];
-				inertiaTensor[0][0] = momentTensors[p][0];
-				inertiaTensor[1][1] = momentTensors[p][1];
-				inertiaTensor[2][2] = momentTensors[p][2];
-				inertiaTensor[0][1] = -momentTensors[p][3];
-				inertiaTensor[0][2] = -momentTensors[p][4];
-				inertiaTensor[1][0] = -momentTensors[p][3];
-				inertiaTensor[1][2] = -momentTensors[p][5];
-				inertiaTensor[2][0] = -momentTensors[p][4];
-				inertiaTensor[2][1] = -momentTensors[p][5];
-				final Matrix inertiaTensorMatrix = new Matrix(inertiaTensor);
-				final EigenvalueDecomposition E = new EigenvalueDecomposition(
-					inertiaTensorMatrix);
-				eigens[p] = E;
-			}
+			IJ.showProgress(p, nParticles);
+			final double[][] inertiaTensor = new double[3][3];
+			inertiaTensor[0][0] = momentTensors[p][0];
+			inertiaTensor[1][1] = momentTensors[p][1];
+			inertiaTensor[2][2] = momentTensors[p][2];
+			inertiaTensor[0][1] = -momentTensors[p][3];
+			inertiaTensor[0][2] = -momentTensors[p][4];
+			inertiaTensor[1][0] = -momentTensors[p][3];
+			inertiaTensor[1][2] = -momentTensors[p][5];
+			inertiaTensor[2][0] = -momentTensors[p][4];
+			inertiaTensor[2][1] = -momentTensors[p][5];
+			final Matrix inertiaTensorMatrix = new Matrix(inertiaTensor);
+			final EigenvalueDecomposition E = new EigenvalueDecomposition(
+				inertiaTensorMatrix);
+			eigens[p] = E;
 		}
 		return eigens;
 	}
@@ -1413,62 +1353,23 @@ public class ParticleCounter implements PlugIn, DialogListener {
 		return eulerCharacters;
 	}
 
-	/**
-	 * Get the Feret diameter of a surface. Uses an inefficient brute-force
-	 * algorithm.
-	 *
-	 * @param particleSurfaces points of all the particles.
-	 * @return Feret diameters of the surfaces.
-	 */
-	private static double[] getFerets(
-		final List<List<Point3f>> particleSurfaces)
-	{
-		final int nParticles = particleSurfaces.size();
-		final double[] ferets = new double[nParticles];
-		final ListIterator<List<Point3f>> it = particleSurfaces.listIterator();
-		int i = 0;
-		Point3f a;
-		Point3f b;
-		List<Point3f> surface;
-		ListIterator<Point3f> ita;
-		ListIterator<Point3f> itb;
-		while (it.hasNext()) {
-			IJ.showStatus("Finding Feret diameter...");
-			IJ.showProgress(it.nextIndex(), nParticles);
-			surface = it.next();
-			if (surface == null) {
-				ferets[i] = Double.NaN;
-				i++;
-				continue;
-			}
-			ita = surface.listIterator();
-			while (ita.hasNext()) {
-				a = ita.next();
-				itb = surface.listIterator(ita.nextIndex());
-				while (itb.hasNext()) {
-					b = itb.next();
-					ferets[i] = Math.max(ferets[i], a.distance(b));
-				}
-			}
-			i++;
-		}
-		return ferets;
-	}
-
 	/**
 	 * Get the maximum distances from the centroid in x, y, and z axes, and
-	 * transformed x, y and z axes
+	 * transformed x, y and z axes. The untransformed distances come from the
+	 * particles' bounding boxes; the transformed distances depend on the
+	 * eigenvectors, so they need another (parallel) sweep of the labels.
 	 *
 	 * @param imp an image.
 	 * @param particleLabels labelled particles in the image.
+	 * @param statistics accumulated statistics of the particles.
 	 * @param centroids centroids of the particles.
 	 * @param E transformation eigenvectors and values of the particles.
 	 * @return array containing two nPoints * 3 arrays with max and max
 	 *         transformed distances respectively
 	 */
 	private static Object[] getMaxDistances(final ImagePlus imp,
-		final int[][] particleLabels, final double[][] centroids,
-		final EigenvalueDecomposition[] E)
+		final int[][] particleLabels, final ParticleStatistics statistics,
+		final double[][] centroids, final EigenvalueDecomposition[] E)
 	{
 		final Calibration cal = imp.getCalibration();
 		final double vW = cal.pixelWidth;
@@ -1478,29 +1379,51 @@ public class ParticleCounter implements PlugIn, DialogListener {
 		final int h = imp.getHeight();
 		final int d = imp.getImageStackSize();
 		final int nParticles = centroids.length;
-		final double[][] maxD = new double[nParticles][3];
-		final double[][] maxDt = new double[nParticles][3];
-		for (int z = 0; z < d; z++) {
-			for (int y = 0; y < h; y++) {
-				final int index = y * w;
-				for (int x = 0; x < w; x++) {
-					final int p = particleLabels[z][index + x];
-					if (p > 0) {
-						final double dX = x * vW - centroids[p][0];
-						final double dY = y * vH - centroids[p][1];
-						final double dZ = z * vD - centroids[p][2];
-						maxD[p][0] = Math.max(maxD[p][0], Math.abs(dX));
-						maxD[p][1] = Math.max(maxD[p][1], Math.abs(dY));
-						maxD[p][2] = Math.max(maxD[p][2], Math.abs(dZ));
-						final double[][] eV = E[p].getV().getArray();
-						final double dXt = dX * eV[0][0] + dY * eV[0][1] + dZ * eV[0][2];
-						final double dYt = dX * eV[1][0] + dY * eV[1][1] + dZ * eV[1][2];
-						final double dZt = dX * eV[2][0] + dY * eV[2][1] + dZ * eV[2][2];
-						maxDt[p][0] = Math.max(maxDt[p][0], Math.abs(dXt));
-						maxDt[p][1] = Math.max(maxDt[p][1], Math.abs(dYt));
-						maxDt[p][2] = Math.max(maxDt[p][2], Math.abs(dZt));
+		final double[][] maxD = statistics.getMaxDistances(cal, centroids);
+		final double[][][] eigenVectors = new double[nParticles][][];
+		for (int p = 1; p < nParticles; p++) {
+			eigenVectors[p] = E[p].getV().getArray();
+		}
+		final AtomicInteger ai = new AtomicInteger(0);
+		final Thread[] threads = Multithreader.newThreads();
+		final double[][][] partialMaxDt = new double[threads.length][][];
+		for (int thread = 0; thread < threads.length; thread++) {
+			final double[][] maxDt = new double[nParticles][3];
+			partialMaxDt[thread] = maxDt;
+			threads[thread] = new Thread(() -> {
+				for (int z = ai.getAndIncrement(); z < d; z = ai.getAndIncrement()) {
+					final int[] labels = particleLabels[z];
+					for (int y = 0; y < h; y++) {
+						final int index = y * w;
+						for (int x = 0; x < w; x++) {
+							final int p = labels[index + x];
+							if (p > 0) {
+								final double dX = x * vW - centroids[p][0];
+								final double dY = y * vH - centroids[p][1];
+								final double dZ = z * vD - centroids[p][2];
+								final double[][] eV = eigenVectors[p];
+								final double dXt = dX * eV[0][0] + dY * eV[0][1] + dZ *
+									eV[0][2];
+								final double dYt = dX * eV[1][0] + dY * eV[1][1] + dZ *
+									eV[1][2];
+								final double dZt = dX * eV[2][0] + dY * eV[2][1] + dZ *
+									eV[2][2];
+								maxDt[p][0] = Math.max(maxDt[p][0], Math.abs(dXt));
+								maxDt[p][1] = Math.max(maxDt[p][1], Math.abs(dYt));
+								maxDt[p][2] = Math.max(maxDt[p][2], Math.abs(dZt));
+							}
+						}
 					}
 				}
+			});
+		}
+		Multithreader.startAndJoin(threads);
+		final double[][] maxDt = new double[nParticles][3];
+		for (final double[][] partial : partialMaxDt) {
+			for (int p = 0; p < nParticles; p++) {
+				for (int i = 0; i < 3; i++) {
+					maxDt[p][i] = Math.max(maxDt[p][i], partial[p][i]);
+				}
 			}
 		}
 		for (int p = 0; p < nParticles; p++) {
@@ -1518,53 +1441,14 @@ public class ParticleCounter implements PlugIn, DialogListener {
 	 * Get the mean and standard deviation of pixel values &gt;0 for each particle
 	 * in a particle label work array
 	 *
-	 * @param imp Input image containing pixel values
-	 * @param particleLabels workArray containing particle labels
-	 * @param particleSizes array of particle sizes as pixel counts
+	 * @param statistics particle statistics accumulated over the pixel values
 	 * @return array containing mean, std dev and max pixel values for each
 	 *         particle
 	 */
-	private static double[][] getMeanStdDev(final ImagePlus imp,
-		final int[][] particleLabels, final long[] particleSizes)
+	private static double[][] getMeanStdDev(
+		final ParticleStatistics statistics)
 	{
-		final int nParticles = particleSizes.length;
-		final int d = imp.getImageStackSize();
-		final int wh = imp.getWidth() * imp.getHeight();
-		final ImageStack stack = imp.getImageStack();
-		final double[] sums = new double[nParticles];
-		for (int z = 0; z < d; z++) {
-			final float[] pixels = (float[]) stack.getPixels(z + 1);
-			final int[] labelPixels = particleLabels[z];
-			for (int i = 0; i < wh; i++) {
-				final double value = pixels[i];
-				if (value > 0) {
-					sums[labelPixels[i]] += value;
-				}
-			}
-		}
-		final double[][] meanStdDev = new double[nParticles][3];
-		for (int p = 1; p < nParticles; p++) {
-			meanStdDev[p][0] = sums[p] / particleSizes[p];
-		}
-
-		final double[] sumSquares = new double[nParticles];
-		for (int z = 0; z < d; z++) {
-			final float[] pixels = (float[]) stack.getPixels(z + 1);
-			final int[] labelPixels = particleLabels[z];
-			for (int i = 0; i < wh; i++) {
-				final double value = pixels[i];
-				if (value > 0) {
-					final int p = labelPixels[i];
-					final double residual = value - meanStdDev[p][0];
-					sumSquares[p] += residual * residual;
-					meanStdDev[p][2] = Math.max(meanStdDev[p][2], value);
-				}
-			}
-		}
-		for (int p = 1; p < nParticles; p++) {
-			meanStdDev[p][1] = Math.sqrt(sumSquares[p] / particleSizes[p]);
-		}
-		return meanStdDev;
+		return statistics.getMeanStdDev();
 	}
 
 	private int getNCavities(final ImagePlus imp) {
@@ -1589,41 +1473,13 @@ public class ParticleCounter implements PlugIn, DialogListener {
 	/**
 	 * Get the minimum and maximum x, y and z coordinates of each particle
 	 *
-	 * @param imp ImagePlus (used for stack size)
-	 * @param particleLabels work array containing labelled particles
-	 * @param nParticles number of particles in the stack
+	 * @param statistics accumulated statistics of the particles
 	 * @return int[][] containing x, y and z minima and maxima.
 	 */
-	private static int[][] getParticleLimits(final ImagePlus imp,
-		final int[][] particleLabels, final int nParticles)
+	private static int[][] getParticleLimits(
+		final ParticleStatistics statistics)
 	{
-		final int w = imp.getWidth();
-		final int h = imp.getHeight();
-		final int d = imp.getImageStackSize();
-		final int[][] limits = new int[nParticles][6];
-		for (int i = 0; i < nParticles; i++) {
-			limits[i][0] = Integer.MAX_VALUE; // x min
-			limits[i][1] = 0; // x max
-			limits[i][2] = Integer.MAX_VALUE; // y min
-			limits[i][3] = 0; // y max
-			limits[i][4] = Integer.MAX_VALUE; // z min
-			limits[i][5] = 0; // z max
-		}
-		for (int z = 0; z < d; z++) {
-			for (int y = 0; y < h; y++) {
-				final int index = y * w;
-				for (int x = 0; x < w; x++) {
-					final int i = particleLabels[z][index + x];
-					limits[i][0] = Math.min(limits[i][0], x);
-					limits[i][1] = Math.max(limits[i][1], x);
-					limits[i][2] = Math.min(limits[i][2], y);
-					limits[i][3] = Math.max(limits[i][3], y);
-					limits[i][4] = Math.min(limits[i][4], z);
-					limits[i][5] = Math.max(limits[i][5], z);
-				}
-			}
-		}
-		return limits;
+		return statistics.getLimits();
 	}
 
 	private ArrayList<ArrayList<short[]>> getParticleLists(
@@ -1713,6 +1569,18 @@ public class ParticleCounter implements PlugIn, DialogListener {
 		if (slicesPerChunk < 1) {
 			throw new IllegalArgumentException();
 		}
+		if (labelMethod == JOINING.UNION_FIND ||
+			labelMethod == JOINING.PARALLEL_UNION_FIND)
+		{
+			IJ.showStatus("Finding " + sPhase + " structures");
+			final int w = imp.getWidth();
+			final int h = imp.getHeight();
+			final int[][] particleLabels = labelMethod == JOINING.UNION_FIND
+				? UnionFindLabeller.label(workArray, w, h, phase)
+				: BlockUnionFindLabeller.label(workArray, w, h, phase);
+			return filterParticleLabels(imp, workArray, particleLabels, minVol,
+				maxVol, phase, doExclude);
+		}
 		// Set up the chunks
 		final int[][] particleLabels = firstIDAttribution(imp, workArray, phase);
 		if (labelMethod == JOINING.MULTI) {
@@ -1750,12 +1618,33 @@ public class ParticleCounter implements PlugIn, DialogListener {
 			final int nParticles = getParticleSizes(particleLabels).length;
 			joinMappedStructures(imp, particleLabels, nParticles, phase);
 		}
+		return filterParticleLabels(imp, workArray, particleLabels, minVol, maxVol,
+			phase, doExclude);
+	}
+
+	/**
+	 * Remove unwanted particles from joined particle labels and minimise the
+	 * remaining labels
+	 *
+	 * @param imp input binary image
+	 * @param workArray work array
+	 * @param particleLabels joined particle labels
+	 * @param minVol minimum volume particle to include
+	 * @param maxVol maximum volume particle to include
+	 * @param phase FORE or BACK for foreground or background respectively
+	 * @param doExclude exclude particles touching the edges.
+	 * @return Object[] array containing a binary workArray, particle labels and
+	 *         particle sizes
+	 */
+	private Object[] filterParticleLabels(final ImagePlus imp,
+		final byte[][] workArray, final int[][] particleLabels, final double minVol,
+		final double maxVol, final int phase, final boolean doExclude)
+	{
 		filterParticles(imp, workArray, particleLabels, minVol, maxVol, phase);
 		if (doExclude) excludeOnEdges(imp, particleLabels, workArray);
 		minimiseLabels(particleLabels);
 		final long[] particleSizes = getParticleSizes(particleLabels);
 		return new Object[] { workArray, particleLabels, particleSizes };
-
 	}
 
 	/**
@@ -1835,87 +1724,6 @@ public class ParticleCounter implements PlugIn, DialogListener {
 		return scanRanges;
 	}
 
-	/**
-	 * Calculate surface area of the isosurface
-	 *
-	 * @param points in 3D triangle mesh
-	 * @return surface area
-	 */
-	private static double getSurfaceArea(final List<Point3f> points) {
-		if (points == null) {
-			return 0;
-		}
-		double sumArea = 0;
-		final int nPoints = points.size();
-		final Point3f origin = new Point3f(0.0f, 0.0f, 0.0f);
-		for (int n = 0; n < nPoints; n += 3) {
-			IJ.showStatus("Calculating surface area...");
-			final Point3f cp = crossProduct(points.get(n), points.get(n + 1), points
-				.get(n + 2));
-			final double deltaArea = 0.5 * cp.distance(origin);
-			sumArea += deltaArea;
-		}
-		return sumArea;
-	}
-
-	private static double[] getSurfaceAreas(
-		final Collection<List<Point3f>> surfacePoints)
-	{
-		return surfacePoints.stream().mapToDouble(ParticleCounter::getSurfaceArea)
-			.toArray();
-	}
-
-	private static ArrayList<List<Point3f>> getSurfacePoints(final ImagePlus imp,
-		final int[][] particleLabels, final int[][] limits, final int resampling,
-		final int nParticles)
-	{
-		final Calibration cal = imp.getCalibration();
-		final ArrayList<List<Point3f>> surfacePoints = new ArrayList<>();
-		final boolean[] channels = { true, false, false };
-		for (int p = 0; p < nParticles; p++) {
-			IJ.showStatus("Getting surface meshes...");
-			IJ.showProgress(p, nParticles);
-			if (p > 0) {
-				final ImagePlus binaryImp = getBinaryParticle(p, imp, particleLabels,
-					limits, resampling);
-				// noinspection TypeMayBeWeakened
-				final MCTriangulator mct = new MCTriangulator();
-				@SuppressWarnings("unchecked")
-				final List<Point3f> points = mct.getTriangles(binaryImp, 128, channels,
-					resampling);
-
-				final double xOffset = (limits[p][0] - 1) * cal.pixelWidth;
-				final double yOffset = (limits[p][2] - 1) * cal.pixelHeight;
-				final double zOffset = (limits[p][4] - 1) * cal.pixelDepth;
-				for (final Point3f point : points) {
-					point.x += xOffset;
-					point.y += yOffset;
-					point.z += zOffset;
-				}
-				surfacePoints.add(points);
-				if (points.isEmpty()) {
-					IJ.log("Particle " + p + " resulted in 0 surface points");
-				}
-			}
-			else {
-				surfacePoints.add(null);
-			}
-		}
-		return surfacePoints;
-	}
-
-	private static double[] getSurfaceVolume(
-		final Collection<List<Point3f>> surfacePoints)
-	{
-		return surfacePoints.stream().mapToDouble(p -> {
-			if (p == null) {
-				return 0;
-			}
-			final CustomTriangleMesh mesh = new CustomTriangleMesh(p);
-			return Math.abs(mesh.getVolume());
-		}).toArray();
-	}
-
 	private static double[] getVolumes(final ImagePlus imp,
 		final long[] particleSizes)
 	{
@@ -2371,7 +2179,17 @@ public class ParticleCounter implements PlugIn, DialogListener {
 
 	/** Particle joining method */
 	public enum JOINING {
-			MULTI, LINEAR, MAPPED
+			MULTI, LINEAR, MAPPED,
+			/**
+			 * Single-pass labelling with a primitive union-find, see
+			 * {@link UnionFindLabeller}
+			 */
+			UNION_FIND,
+			/**
+			 * Blocks labelled in parallel and merged with a lock-free union-find,
+			 * see {@link BlockUnionFindLabeller}
+			 */
+			PARALLEL_UNION_FIND
 	}
 
 	private final class ConnectStructuresThread extends Thread {
@@ -2516,7 +2334,7 @@ public class ParticleCounter implements PlugIn, DialogListener {
 	/**
 	 * Set the value of this instance's labelMethod field
 	 *
-	 * @param label one of ParticleCounter.MULTI or .LINEAR
+	 * @param label one of the {@link JOINING} methods
 	 */
 	void setLabelMethod(final JOINING label) {
 		labelMethod = label;
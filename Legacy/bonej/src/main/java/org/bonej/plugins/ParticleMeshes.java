@@ -0,0 +1,281 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.plugins;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bonej.geometry.Calipers;
+import org.bonej.geometry.ConvexHull3D;
+import org.scijava.vecmath.Point3f;
+
+import ij.IJ;
+import ij.ImagePlus;
+import ij.ImageStack;
+import ij.Prefs;
+import ij.measure.Calibration;
+import marchingcubes.MCTriangulator;
+
+/**
+ * Parallel surface meshing of labelled particles.
+ * <p>
+ * Each particle is cropped straight from the label array into a padded binary
+ * volume that just fits it, meshed with the marching cubes algorithm, and then
+ * measured while its mesh is still at hand. Particles are processed as
+ * independent tasks on a fixed-size thread pool, so only as many cropped
+ * volumes exist at once as there are threads. Results are stored by particle
+ * label, which keeps them in the same order and with the same values whatever
+ * the number of threads.
+ * </p>
+ */
+final class ParticleMeshes {
+
+	private static final boolean[] CHANNELS = { true, false, false };
+
+	private final List<List<Point3f>> surfacePoints;
+	private final double[] surfaceAreas;
+	private final double[] surfaceVolumes;
+	private final double[][] ferets;
+
+	private ParticleMeshes(final int nParticles) {
+		surfacePoints = new ArrayList<>(nParticles);
+		surfaceAreas = new double[nParticles];
+		surfaceVolumes = new double[nParticles];
+		ferets = new double[nParticles][];
+	}
+
+	/**
+	 * Meshes and measures all the particles in a label array.
+	 *
+	 * @param imp the image the labels came from, used for its dimensions and
+	 *          calibration.
+	 * @param particleLabels particle labels, one array per slice.
+	 * @param limits bounding box of each particle, [p][xMin, xMax, yMin, yMax,
+	 *          zMin, zMax] in voxels.
+	 * @param resampling marching cubes resampling factor, also used as padding.
+	 * @param nParticles number of particle labels, including background.
+	 * @param feretDirections Feret measurement mode: &lt; 0 skips the Feret
+	 *          measures, 0 measures them exactly, and &gt; 0 estimates them from
+	 *          this many directions.
+	 * @return the meshes and their measures.
+	 * @see Calipers
+	 */
+	static ParticleMeshes mesh(final ImagePlus imp, final int[][] particleLabels,
+		final int[][] limits, final int resampling, final int nParticles,
+		final int feretDirections)
+	{
+		final ParticleMeshes meshes = new ParticleMeshes(nParticles);
+		final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1,
+			Prefs.getThreads()));
+		final AtomicInteger done = new AtomicInteger();
+		try {
+			final List<Future<List<Point3f>>> futures = new ArrayList<>(nParticles);
+			for (int p = 1; p < nParticles; p++) {
+				final int particle = p;
+				final Callable<List<Point3f>> task = () -> {
+					final List<Point3f> points = getSurfacePoints(imp, particleLabels,
+						limits, resampling, particle);
+					meshes.measure(particle, points, feretDirections);
+					IJ.showStatus("Getting surface meshes...");
+					IJ.showProgress(done.incrementAndGet(), nParticles);
+					return points;
+				};
+				futures.add(executor.submit(task));
+			}
+			if (nParticles > 0) {
+				meshes.surfacePoints.add(null);
+				if (feretDirections >= 0) meshes.ferets[0] = nanFeret();
+			}
+			for (int p = 1; p < nParticles; p++) {
+				final List<Point3f> points = futures.get(p - 1).get();
+				if (points.isEmpty()) {
+					IJ.log("Particle " + p + " resulted in 0 surface points");
+				}
+				meshes.surfacePoints.add(points);
+			}
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+		catch (final ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		return meshes;
+	}
+
+	/**
+	 * Gets the surface meshes as lists of triangle vertices in real units.
+	 *
+	 * @return a mesh for each particle label, null for the background.
+	 */
+	List<List<Point3f>> getSurfacePoints() {
+		return surfacePoints;
+	}
+
+	/**
+	 * Gets the areas of the surface meshes.
+	 *
+	 * @return area of each particle's mesh, 0 for the background.
+	 */
+	double[] getSurfaceAreas() {
+		return surfaceAreas;
+	}
+
+	/**
+	 * Gets the volumes enclosed by the surface meshes.
+	 *
+	 * @return enclosed volume of each particle's mesh, 0 for the background.
+	 */
+	double[] getSurfaceVolumes() {
+		return surfaceVolumes;
+	}
+
+	/**
+	 * Gets the Feret measures of the surface meshes.
+	 *
+	 * @return the {@link Calipers} result of each particle's mesh, or null for
+	 *         each particle if they were not measured. Results are NaN for the
+	 *         background.
+	 */
+	double[][] getFerets() {
+		return ferets;
+	}
+
+	private void measure(final int p, final List<Point3f> points,
+		final int feretDirections)
+	{
+		final int nPoints = points.size();
+		double area = 0;
+		double volume = 0;
+		for (int n = 0; n < nPoints; n += 3) {
+			final Point3f a = points.get(n);
+			final Point3f b = points.get(n + 1);
+			final Point3f c = points.get(n + 2);
+			area += 0.5 * crossProductLength(a, b, c);
+			// signed volume of the tetrahedron between the triangle and the origin
+			volume += (a.x * ((double) b.y * c.z - (double) b.z * c.y) + a.y *
+				((double) b.z * c.x - (double) b.x * c.z) + a.z * ((double) b.x * c.y -
+					(double) b.y * c.x)) / 6;
+		}
+		surfaceAreas[p] = area;
+		surfaceVolumes[p] = Math.abs(volume);
+		if (feretDirections < 0) return;
+		final double[][] coordinates = new double[nPoints][];
+		for (int n = 0; n < nPoints; n++) {
+			final Point3f point = points.get(n);
+			coordinates[n] = new double[] { point.x, point.y, point.z };
+		}
+		final ConvexHull3D hull = new ConvexHull3D(coordinates);
+		ferets[p] = feretDirections > 0 ? Calipers.approximate(hull,
+			feretDirections) : Calipers.measure(hull);
+	}
+
+	/**
+	 * Length of the cross product of the triangle's edges, rounded the same way
+	 * as {@link Point3f} arithmetic, so that areas match the former
+	 * Point3f-based calculation.
+	 */
+	private static double crossProductLength(final Point3f p0, final Point3f p1,
+		final Point3f p2)
+	{
+		final double x1 = p1.x - p0.x;
+		final double y1 = p1.y - p0.y;
+		final double z1 = p1.z - p0.z;
+		final double x2 = p2.x - p0.x;
+		final double y2 = p2.y - p0.y;
+		final double z2 = p2.z - p0.z;
+		final double x = (float) (y1 * z2 - z1 * y2);
+		final double y = (float) (z1 * x2 - x1 * z2);
+		final double z = (float) (x1 * y2 - y1 * x2);
+		return Math.sqrt(x * x + y * y + z * z);
+	}
+
+	private static List<Point3f> getSurfacePoints(final ImagePlus imp,
+		final int[][] particleLabels, final int[][] limits, final int padding,
+		final int p)
+	{
+		final int w = imp.getWidth();
+		final int h = imp.getHeight();
+		final int d = particleLabels.length;
+		if (limits[p][0] > limits[p][1]) return new ArrayList<>();
+		final int xMin = Math.max(0, limits[p][0] - padding);
+		final int xMax = Math.min(w - 1, limits[p][1] + padding);
+		final int yMin = Math.max(0, limits[p][2] - padding);
+		final int yMax = Math.min(h - 1, limits[p][3] + padding);
+		final int zMin = Math.max(0, limits[p][4] - padding);
+		final int zMax = Math.min(d - 1, limits[p][5] + padding);
+		final int cropWidth = xMax - xMin + 1;
+		final int cropHeight = yMax - yMin + 1;
+		// MCTriangulator only accepts an ImagePlus, so wrap the cropped slices
+		// in a bare stack that doesn't touch the source image
+		final ImageStack stack = new ImageStack(cropWidth, cropHeight);
+		for (int z = zMin; z <= zMax; z++) {
+			final int[] labels = particleLabels[z];
+			final byte[] slice = new byte[cropWidth * cropHeight];
+			int i = 0;
+			for (int y = yMin; y <= yMax; y++) {
+				final int offset = y * w;
+				for (int x = xMin + offset; x <= xMax + offset; x++) {
+					if (labels[x] == p) slice[i] = (byte) 0xFF;
+					i++;
+				}
+			}
+			stack.addSlice(null, slice);
+		}
+		final ImagePlus binaryImp = new ImagePlus("Particle_" + p, stack);
+		final Calibration cal = imp.getCalibration();
+		binaryImp.setCalibration(cal);
+		// noinspection TypeMayBeWeakened
+		final MCTriangulator mct = new MCTriangulator();
+		@SuppressWarnings("unchecked")
+		final List<Point3f> points = mct.getTriangles(binaryImp, 128, CHANNELS,
+			padding);
+		final double xOffset = (limits[p][0] - 1) * cal.pixelWidth;
+		final double yOffset = (limits[p][2] - 1) * cal.pixelHeight;
+		final double zOffset = (limits[p][4] - 1) * cal.pixelDepth;
+		for (final Point3f point : points) {
+			point.x += xOffset;
+			point.y += yOffset;
+			point.z += zOffset;
+		}
+		return points;
+	}
+
+	private static double[] nanFeret() {
+		final double[] feret = new double[Calipers.RESULT_LENGTH];
+		Arrays.fill(feret, Double.NaN);
+		return feret;
+	}
+}
@@ -0,0 +1,360 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.plugins;
+
+import java.util.Arrays;
+
+import org.bonej.util.Multithreader;
+
+import ij.IJ;
+import ij.ImageStack;
+import ij.measure.Calibration;
+
+/**
+ * Single-pass accumulator of per-particle statistics.
+ * <p>
+ * One parallel sweep of the particle labels collects, for every label, the
+ * voxel count, bounding box, first and second coordinate moments and,
+ * optionally, the mean, squared deviations and maximum of the positive values
+ * of a float image (e.g. a thickness map). Each thread sweeps a fixed,
+ * contiguous range of slices into its own partial accumulator and the partials
+ * are reduced in slice order at the end.
+ * </p>
+ * <p>
+ * Coordinate moments are summed in voxel units as {@code long}, so they are
+ * exact and independent of the number of threads. Centroids, moment tensors
+ * and maximum distances are derived from them with the same formulas as the
+ * former multi-pass methods of {@link ParticleCounter}. The mean and squared
+ * deviations of the values are updated with Welford's method, and merged with
+ * the formula of Chan et al., so that they don't lose precision when the mean
+ * is large compared to the spread.
+ * </p>
+ */
+final class ParticleStatistics {
+
+	/** Approximate memory needed per particle by one partial accumulator */
+	private static final long BYTES_PER_PARTICLE = 136;
+
+	private final int nParticles;
+	private final long[] count;
+	private final long[] sumX;
+	private final long[] sumY;
+	private final long[] sumZ;
+	private final long[] sumXX;
+	private final long[] sumYY;
+	private final long[] sumZZ;
+	private final long[] sumXY;
+	private final long[] sumXZ;
+	private final long[] sumYZ;
+	private final int[] xMin;
+	private final int[] xMax;
+	private final int[] yMin;
+	private final int[] yMax;
+	private final int[] zMin;
+	private final int[] zMax;
+	private final long[] valueCount;
+	private final double[] valueMean;
+	/** Sum of the squared differences of the positive values from their mean */
+	private final double[] valueSquares;
+	private final double[] valueMax;
+
+	private ParticleStatistics(final int nParticles) {
+		this.nParticles = nParticles;
+		count = new long[nParticles];
+		sumX = new long[nParticles];
+		sumY = new long[nParticles];
+		sumZ = new long[nParticles];
+		sumXX = new long[nParticles];
+		sumYY = new long[nParticles];
+		sumZZ = new long[nParticles];
+		sumXY = new long[nParticles];
+		sumXZ = new long[nParticles];
+		sumYZ = new long[nParticles];
+		xMin = new int[nParticles];
+		xMax = new int[nParticles];
+		yMin = new int[nParticles];
+		yMax = new int[nParticles];
+		zMin = new int[nParticles];
+		zMax = new int[nParticles];
+		Arrays.fill(xMin, Integer.MAX_VALUE);
+		Arrays.fill(yMin, Integer.MAX_VALUE);
+		Arrays.fill(zMin, Integer.MAX_VALUE);
+		valueCount = new long[nParticles];
+		valueMean = new double[nParticles];
+		valueSquares = new double[nParticles];
+		valueMax = new double[nParticles];
+	}
+
+	/**
+	 * Collect the statistics of all particles in one pass
+	 *
+	 * @param particleLabels particle labels, indexed [z][y * w + x]
+	 * @param w width of the stack
+	 * @param nParticles number of labels, including background label 0
+	 * @param values float stack whose positive values are summarised per
+	 *          particle, or null
+	 * @return accumulated statistics
+	 */
+	static ParticleStatistics accumulate(final int[][] particleLabels,
+		final int w, final int nParticles, final ImageStack values)
+	{
+		final int d = particleLabels.length;
+		final long free = IJ.maxMemory() - IJ.currentMemory();
+		final long perPartial = Math.max(1, nParticles * BYTES_PER_PARTICLE);
+		final int nPartials = (int) Math.max(1, Math.min(Math.min(Multithreader
+			.newThreads().length, d), free / (2 * perPartial)));
+		final ParticleStatistics[] partials = new ParticleStatistics[nPartials];
+		final Thread[] threads = new Thread[nPartials];
+		for (int thread = 0; thread < nPartials; thread++) {
+			final int t = thread;
+			threads[thread] = new Thread(() -> {
+				final ParticleStatistics partial = new ParticleStatistics(nParticles);
+				final int zStart = (int) ((long) d * t / nPartials);
+				final int zEnd = (int) ((long) d * (t + 1) / nPartials);
+				for (int z = zStart; z < zEnd; z++) {
+					final float[] pixels = values == null ? null : (float[]) values
+						.getPixels(z + 1);
+					partial.addSlice(particleLabels[z], pixels, w, z);
+					if (t == 0) {
+						IJ.showStatus("Calculating particle statistics...");
+						IJ.showProgress(z - zStart, zEnd - zStart);
+					}
+				}
+				partials[t] = partial;
+			});
+		}
+		Multithreader.startAndJoin(threads);
+		final ParticleStatistics statistics = partials[0];
+		for (int t = 1; t < nPartials; t++) {
+			statistics.merge(partials[t]);
+		}
+		return statistics;
+	}
+
+	private void addSlice(final int[] labels, final float[] pixels, final int w,
+		final int z)
+	{
+		final int h = labels.length / w;
+		final long zz = (long) z * z;
+		for (int y = 0; y < h; y++) {
+			final int rowIndex = y * w;
+			final long yy = (long) y * y;
+			for (int x = 0; x < w; x++) {
+				final int i = rowIndex + x;
+				final int p = labels[i];
+				count[p]++;
+				if (p == 0) continue;
+				sumX[p] += x;
+				sumY[p] += y;
+				sumZ[p] += z;
+				sumXX[p] += (long) x * x;
+				sumYY[p] += yy;
+				sumZZ[p] += zz;
+				sumXY[p] += (long) x * y;
+				sumXZ[p] += (long) x * z;
+				sumYZ[p] += (long) y * z;
+				if (x < xMin[p]) xMin[p] = x;
+				if (x > xMax[p]) xMax[p] = x;
+				if (y < yMin[p]) yMin[p] = y;
+				if (y > yMax[p]) yMax[p] = y;
+				if (z < zMin[p]) zMin[p] = z;
+				if (z > zMax[p]) zMax[p] = z;
+				if (pixels == null) continue;
+				final double value = pixels[i];
+				if (value > 0) {
+					valueCount[p]++;
+					final double delta = value - valueMean[p];
+					valueMean[p] += delta / valueCount[p];
+					valueSquares[p] += delta * (value - valueMean[p]);
+					if (value > valueMax[p]) valueMax[p] = value;
+				}
+			}
+		}
+	}
+
+	private void merge(final ParticleStatistics other) {
+		for (int p = 0; p < nParticles; p++) {
+			count[p] += other.count[p];
+			sumX[p] += other.sumX[p];
+			sumY[p] += other.sumY[p];
+			sumZ[p] += other.sumZ[p];
+			sumXX[p] += other.sumXX[p];
+			sumYY[p] += other.sumYY[p];
+			sumZZ[p] += other.sumZZ[p];
+			sumXY[p] += other.sumXY[p];
+			sumXZ[p] += other.sumXZ[p];
+			sumYZ[p] += other.sumYZ[p];
+			xMin[p] = Math.min(xMin[p], other.xMin[p]);
+			xMax[p] = Math.max(xMax[p], other.xMax[p]);
+			yMin[p] = Math.min(yMin[p], other.yMin[p]);
+			yMax[p] = Math.max(yMax[p], other.yMax[p]);
+			zMin[p] = Math.min(zMin[p], other.zMin[p]);
+			zMax[p] = Math.max(zMax[p], other.zMax[p]);
+			mergeValues(p, other);
+			valueMax[p] = Math.max(valueMax[p], other.valueMax[p]);
+		}
+	}
+
+	private void mergeValues(final int p, final ParticleStatistics other) {
+		final long otherCount = other.valueCount[p];
+		if (otherCount == 0) return;
+		final long total = valueCount[p] + otherCount;
+		final double delta = other.valueMean[p] - valueMean[p];
+		valueMean[p] += delta * otherCount / total;
+		valueSquares[p] += other.valueSquares[p] + delta * delta * valueCount[p] *
+			otherCount / total;
+		valueCount[p] = total;
+	}
+
+	/**
+	 * Get the particle sizes
+	 *
+	 * @return number of voxels of each label, including background label 0
+	 */
+	long[] getSizes() {
+		return count.clone();
+	}
+
+	/**
+	 * Get the centroids of the particles in real units
+	 *
+	 * @param cal calibration of the image
+	 * @return [p][3] array of centroid x, y and z
+	 */
+	double[][] getCentroids(final Calibration cal) {
+		final double[][] centroids = new double[nParticles][3];
+		for (int p = 1; p < nParticles; p++) {
+			centroids[p][0] = cal.pixelWidth * sumX[p] / count[p];
+			centroids[p][1] = cal.pixelHeight * sumY[p] / count[p];
+			centroids[p][2] = cal.pixelDepth * sumZ[p] / count[p];
+		}
+		return centroids;
+	}
+
+	/**
+	 * Get the minimum and maximum x, y and z coordinates of each particle
+	 *
+	 * @return [p][6] array of x min, x max, y min, y max, z min and z max
+	 */
+	int[][] getLimits() {
+		final int[][] limits = new int[nParticles][6];
+		for (int p = 0; p < nParticles; p++) {
+			limits[p][0] = xMin[p];
+			limits[p][1] = xMax[p];
+			limits[p][2] = yMin[p];
+			limits[p][3] = yMax[p];
+			limits[p][4] = zMin[p];
+			limits[p][5] = zMax[p];
+		}
+		return limits;
+	}
+
+	/**
+	 * Get the moments of inertia of each particle about its centroid, treating
+	 * each voxel as a cuboid of unit density
+	 *
+	 * @param cal calibration of the image
+	 * @return [p][6] array of Ixx, Iyy, Izz, Ixy, Ixz and Iyz, where the
+	 *         products are not negated
+	 */
+	double[][] getMomentTensors(final Calibration cal) {
+		final double vW = cal.pixelWidth;
+		final double vH = cal.pixelHeight;
+		final double vD = cal.pixelDepth;
+		final double voxVhVd = (vH * vH + vD * vD) / 12;
+		final double voxVwVd = (vW * vW + vD * vD) / 12;
+		final double voxVhVw = (vH * vH + vW * vW) / 12;
+		final double[][] tensors = new double[nParticles][6];
+		for (int p = 1; p < nParticles; p++) {
+			final double n = count[p];
+			if (n == 0) continue;
+			// central moments in voxel units
+			final double cXX = sumXX[p] - (double) sumX[p] * sumX[p] / n;
+			final double cYY = sumYY[p] - (double) sumY[p] * sumY[p] / n;
+			final double cZZ = sumZZ[p] - (double) sumZ[p] * sumZ[p] / n;
+			final double cXY = sumXY[p] - (double) sumX[p] * sumY[p] / n;
+			final double cXZ = sumXZ[p] - (double) sumX[p] * sumZ[p] / n;
+			final double cYZ = sumYZ[p] - (double) sumY[p] * sumZ[p] / n;
+			final double xx = vW * vW * cXX;
+			final double yy = vH * vH * cYY;
+			final double zz = vD * vD * cZZ;
+			tensors[p][0] = yy + zz + n * voxVhVd;
+			tensors[p][1] = xx + zz + n * voxVwVd;
+			tensors[p][2] = yy + xx + n * voxVhVw;
+			tensors[p][3] = vW * vH * cXY;
+			tensors[p][4] = vW * vD * cXZ;
+			tensors[p][5] = vH * vD * cYZ;
+		}
+		return tensors;
+	}
+
+	/**
+	 * Get the mean, standard deviation and maximum of the positive values of
+	 * each particle. Mean and standard deviation are normalised by the
+	 * particle's voxel count.
+	 *
+	 * @return [p][3] array of mean, standard deviation and maximum
+	 */
+	double[][] getMeanStdDev() {
+		final double[][] meanStdDev = new double[nParticles][3];
+		for (int p = 1; p < nParticles; p++) {
+			final double n = count[p];
+			final long k = valueCount[p];
+			final double mean = k * valueMean[p] / n;
+			// squared residuals of the positive values only, moved from their own
+			// mean to the mean over all the voxels of the particle
+			final double shift = valueMean[p] - mean;
+			final double squares = valueSquares[p] + k * shift * shift;
+			meanStdDev[p][0] = mean;
+			meanStdDev[p][1] = Math.sqrt(squares / n);
+			meanStdDev[p][2] = valueMax[p];
+		}
+		return meanStdDev;
+	}
+
+	/**
+	 * Get the maximum distances of each particle's voxels from its centroid
+	 * along the x, y and z axes
+	 *
+	 * @param cal calibration of the image
+	 * @param centroids centroids from {@link #getCentroids(Calibration)}
+	 * @return [p][3] array of maximum distances in x, y and z
+	 */
+	double[][] getMaxDistances(final Calibration cal,
+		final double[][] centroids)
+	{
+		final double[][] maxD = new double[nParticles][3];
+		for (int p = 1; p < nParticles; p++) {
+			if (count[p] == 0) continue;
+			maxD[p][0] = Math.max(Math.abs(xMin[p] * cal.pixelWidth -
+				centroids[p][0]), Math.abs(xMax[p] * cal.pixelWidth - centroids[p][0]));
+			maxD[p][1] = Math.max(Math.abs(yMin[p] * cal.pixelHeight -
+				centroids[p][1]), Math.abs(yMax[p] * cal.pixelHeight -
+					centroids[p][1]));
+			maxD[p][2] = Math.max(Math.abs(zMin[p] * cal.pixelDepth -
+				centroids[p][2]), Math.abs(zMax[p] * cal.pixelDepth - centroids[p][2]));
+		}
+		return maxD;
+	}
+}
@@ -26,6 +26,8 @@ package org.bonej.plugins;
 import static org.bonej.plugins.ParticleCounter.JOINING.LINEAR;
 import static org.bonej.plugins.ParticleCounter.JOINING.MAPPED;
 import static org.bonej.plugins.ParticleCounter.JOINING.MULTI;
+import static org.bonej.plugins.ParticleCounter.JOINING.PARALLEL_UNION_FIND;
+import static org.bonej.plugins.ParticleCounter.JOINING.UNION_FIND;
 
 import java.awt.AWTEvent;
 import java.awt.Choice;
@@ -96,7 +98,8 @@ public class Purify implements PlugIn, DialogListener {
 			return;
 		}
 		final GenericDialog gd = new GenericDialog("Setup");
-		final String[] items = { "Multithreaded", "Linear", "Mapped" };
+		final String[] items = { "Multithreaded", "Linear", "Mapped",
+			"Union-find", "Parallel union-find" };
 		gd.addChoice("Labelling algorithm", items, items[2]);
 		gd.addNumericField("Chunk Size", 4, 0, 4, "slices");
 		gd.addCheckbox("Performance Log", false);
@@ -108,6 +111,8 @@ public class Purify implements PlugIn, DialogListener {
 		final JOINING labelMethod;
 		if (choice.equals(items[0])) labelMethod = MULTI;
 		else if (choice.equals(items[1])) labelMethod = LINEAR;
+		else if (choice.equals(items[3])) labelMethod = UNION_FIND;
+		else if (choice.equals(items[4])) labelMethod = PARALLEL_UNION_FIND;
 		else labelMethod = MAPPED;
 		final int slicesPerChunk = (int) Math.floor(gd.getNextNumber());
 		final boolean showPerformance = gd.getNextBoolean();
@@ -0,0 +1,334 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.plugins;
+
+import java.awt.Rectangle;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bonej.util.Multithreader;
+
+import ij.IJ;
+import ij.ImageStack;
+import ij.measure.Calibration;
+
+/**
+ * Fills a stack with a rotated copy of a region of another stack.
+ * <p>
+ * Each target voxel is mapped back into the source with the inverse rotation,
+ * so every target voxel is written exactly once. Along a target row the
+ * source position changes by a constant step, which is used to skip the voxels
+ * that map outside the source region. The target is processed in cubic tiles, so that the source voxels read by
+ * neighbouring rows stay in cache, and the tiles are shared between threads.
+ * Values are written directly into the pixel arrays of the target, so no
+ * memory is needed beyond the target stack itself.
+ * </p>
+ * <p>
+ * Nearest neighbour lookup floors the mapped position, as Moments always has.
+ * It maps each voxel with the same arithmetic as Moments did, rather than by
+ * adding steps, so that positions on the edge of a source voxel floor the
+ * same way. Trilinear interpolation treats integer positions as voxel centres, like the
+ * centroid and moments of {@link MassMoments}, and clamps to the edges of the
+ * source region. Target voxels that map outside the region are left
+ * untouched.
+ * </p>
+ */
+final class StackResampler {
+
+	/** Ways of finding the value of a target voxel */
+	enum Interpolation {
+			NEAREST, TRILINEAR
+	}
+
+	/** Side of the cubic tiles of the target */
+	private static final int TILE = 32;
+
+	private final Object[] sourcePixels;
+	private final int sourceWidth;
+	private final int xMin;
+	private final int xMax;
+	private final int yMin;
+	private final int yMax;
+	private final int startSlice;
+	private final int endSlice;
+	private final Object[] targetPixels;
+	private final int wT;
+	private final int hT;
+	private final int dT;
+	private final double vS;
+	private final double[][] inverse;
+	/** Centre of the target in real units */
+	private final double[] centre;
+	/** Centroid of the source relative to the centre of the target */
+	private final double[] shift;
+	/** Source voxel size */
+	private final double[] size;
+	private final double[] step;
+	private final double[] yOrigin;
+	private final double[] zOrigin;
+	private final double[] offset;
+	private final Interpolation interpolation;
+
+	private StackResampler(final ImageStack source, final Rectangle roi,
+		final int startSlice, final int endSlice, final Calibration cal,
+		final double[][] inverse, final double[] centroid,
+		final ImageStack target, final double vS,
+		final Interpolation interpolation)
+	{
+		sourcePixels = new Object[endSlice - startSlice + 1];
+		for (int z = startSlice; z <= endSlice; z++) {
+			sourcePixels[z - startSlice] = source.getPixels(z);
+		}
+		sourceWidth = source.getWidth();
+		xMin = roi.x;
+		xMax = roi.x + roi.width;
+		yMin = roi.y;
+		yMax = roi.y + roi.height;
+		this.startSlice = startSlice;
+		this.endSlice = endSlice;
+		wT = target.getWidth();
+		hT = target.getHeight();
+		dT = target.getSize();
+		targetPixels = new Object[dT + 1];
+		for (int z = 1; z <= dT; z++) {
+			targetPixels[z] = target.getPixels(z);
+		}
+		// the target centre maps to the centroid of the source
+		this.vS = vS;
+		this.inverse = inverse;
+		size = new double[] { cal.pixelWidth, cal.pixelHeight, cal.pixelDepth };
+		centre = new double[] { wT * vS / 2, hT * vS / 2, dT * vS / 2 };
+		shift = new double[3];
+		final double xTc = centre[0];
+		final double yTc = centre[1];
+		final double zTc = centre[2];
+		step = new double[3];
+		yOrigin = new double[3];
+		zOrigin = new double[3];
+		offset = new double[3];
+		for (int i = 0; i < 3; i++) {
+			// source position in pixel units of target voxel (x, y, z) is
+			// offset + x * step + y * yOrigin + z * zOrigin
+			step[i] = inverse[0][i] * vS / size[i];
+			yOrigin[i] = inverse[1][i] * vS / size[i];
+			zOrigin[i] = inverse[2][i] * vS / size[i];
+			offset[i] = (centroid[i] - xTc * inverse[0][i] - yTc * inverse[1][i] -
+				zTc * inverse[2][i]) / size[i];
+			shift[i] = centroid[i] - centre[i];
+		}
+		this.interpolation = interpolation;
+	}
+
+	/**
+	 * Fill the target stack with the rotated source
+	 *
+	 * @param source source stack.
+	 * @param roi bounds of the source region to copy.
+	 * @param startSlice first slice of the source region (1-based).
+	 * @param endSlice last slice of the source region (1-based).
+	 * @param cal calibration of the source.
+	 * @param inverse 3x3 rotation from target to source.
+	 * @param centroid source position in real units that maps to the centre of
+	 *          the target.
+	 * @param target stack of the same bit depth as the source.
+	 * @param vS size of the cubic target voxels.
+	 * @param interpolation how target values are found. RGB images are always
+	 *          resampled with {@link Interpolation#NEAREST}.
+	 */
+	static void resample(final ImageStack source, final Rectangle roi,
+		final int startSlice, final int endSlice, final Calibration cal,
+		final double[][] inverse, final double[] centroid,
+		final ImageStack target, final double vS,
+		final Interpolation interpolation)
+	{
+		final Interpolation mode = source.getBitDepth() == 24
+			? Interpolation.NEAREST : interpolation;
+		final StackResampler resampler = new StackResampler(source, roi,
+			startSlice, endSlice, cal, inverse, centroid, target, vS, mode);
+		resampler.run();
+	}
+
+	private void run() {
+		final int tilesX = (wT + TILE - 1) / TILE;
+		final int tilesY = (hT + TILE - 1) / TILE;
+		final int tilesZ = (dT + TILE - 1) / TILE;
+		final int nTiles = tilesX * tilesY * tilesZ;
+		final AtomicInteger ai = new AtomicInteger(0);
+		final Thread[] threads = Multithreader.newThreads();
+		for (int thread = 0; thread < threads.length; thread++) {
+			threads[thread] = new Thread(() -> {
+				final double[] position = new double[3];
+				for (int i = ai.getAndIncrement(); i < nTiles; i = ai
+					.getAndIncrement())
+				{
+					final int x0 = (i % tilesX) * TILE;
+					final int y0 = (i / tilesX % tilesY) * TILE;
+					final int z0 = 1 + (i / tilesX / tilesY) * TILE;
+					final int x1 = Math.min(x0 + TILE, wT);
+					for (int z = z0; z < Math.min(z0 + TILE, dT + 1); z++) {
+						for (int y = y0; y < Math.min(y0 + TILE, hT); y++) {
+							for (int j = 0; j < 3; j++) {
+								position[j] = offset[j] + y * yOrigin[j] + z * zOrigin[j];
+							}
+							if (interpolation == Interpolation.NEAREST) {
+								nearestRow(targetPixels[z], y, z, x0, x1, position);
+							}
+							else trilinearRow(targetPixels[z], y * wT, x0, x1, position);
+						}
+					}
+					IJ.showStatus("Aligning image stack...");
+					IJ.showProgress(i, nTiles);
+				}
+			});
+		}
+		Multithreader.startAndJoin(threads);
+		IJ.showProgress(1.0);
+	}
+
+	private void nearestRow(final Object target, final int y, final int z,
+		final int x0, final int x1, final double[] position)
+	{
+		final int[] range = { x0, x1 };
+		clip(position, 0, xMin, xMax, range);
+		clip(position, 1, yMin, yMax, range);
+		clip(position, 2, startSlice, endSlice + 1, range);
+		final int row = y * wT;
+		final double yD = y * vS - centre[1];
+		final double zD = z * vS - centre[2];
+		final double yX = yD * inverse[1][0];
+		final double yY = yD * inverse[1][1];
+		final double yZ = yD * inverse[1][2];
+		final double zX = zD * inverse[2][0];
+		final double zY = zD * inverse[2][1];
+		final double zZ = zD * inverse[2][2];
+		for (int x = range[0]; x < range[1]; x++) {
+			// summed in the same order as the voxel by voxel mapping of Moments
+			final double xD = x * vS - centre[0];
+			final int xA = (int) Math.floor((xD * inverse[0][0] + yX + zX +
+				centre[0] + shift[0]) / size[0]);
+			final int yA = (int) Math.floor((xD * inverse[0][1] + yY + zY +
+				centre[1] + shift[1]) / size[1]);
+			final int zA = (int) Math.floor((xD * inverse[0][2] + yZ + zZ +
+				centre[2] + shift[2]) / size[2]);
+			if (xA < xMin || xA >= xMax || yA < yMin || yA >= yMax ||
+				zA < startSlice || zA > endSlice)
+			{
+				continue;
+			}
+			final Object source = sourcePixels[zA - startSlice];
+			final int i = yA * sourceWidth + xA;
+			if (target instanceof byte[]) {
+				((byte[]) target)[row + x] = ((byte[]) source)[i];
+			}
+			else if (target instanceof short[]) {
+				((short[]) target)[row + x] = ((short[]) source)[i];
+			}
+			else if (target instanceof float[]) {
+				((float[]) target)[row + x] = ((float[]) source)[i];
+			}
+			else ((int[]) target)[row + x] = ((int[]) source)[i];
+		}
+	}
+
+	private void trilinearRow(final Object target, final int row, final int x0,
+		final int x1, final double[] position)
+	{
+		final int[] range = { x0, x1 };
+		clip(position, 0, xMin, xMax, range);
+		clip(position, 1, yMin, yMax, range);
+		clip(position, 2, startSlice, endSlice + 1, range);
+		for (int x = range[0]; x < range[1]; x++) {
+			final double xS = position[0] + x * step[0];
+			final double yS = position[1] + x * step[1];
+			final double zS = position[2] + x * step[2];
+			if (xS < xMin || xS >= xMax || yS < yMin || yS >= yMax ||
+				zS < startSlice || zS >= endSlice + 1)
+			{
+				continue;
+			}
+			final int xA = (int) Math.floor(xS);
+			final int yA = (int) Math.floor(yS);
+			final int zA = (int) Math.floor(zS);
+			final double fX = xS - xA;
+			final double fY = yS - yA;
+			final double fZ = zS - zA;
+			// the voxels above the last row, column or slice are clamped to it
+			final int xa = xA;
+			final int xb = Math.min(xA + 1, xMax - 1);
+			final int ya = yA * sourceWidth;
+			final int yb = Math.min(yA + 1, yMax - 1) * sourceWidth;
+			final Object za = sourcePixels[zA - startSlice];
+			final Object zb = sourcePixels[Math.min(zA + 1, endSlice) - startSlice];
+			final double a = lerp(get(za, ya + xa), get(za, ya + xb), fX);
+			final double b = lerp(get(za, yb + xa), get(za, yb + xb), fX);
+			final double c = lerp(get(zb, ya + xa), get(zb, ya + xb), fX);
+			final double d = lerp(get(zb, yb + xa), get(zb, yb + xb), fX);
+			set(target, row + x, lerp(lerp(a, b, fY), lerp(c, d, fY), fZ));
+		}
+	}
+
+	/**
+	 * Narrow the range of target x to those whose source position along one
+	 * axis may fall in [min, max). The interval and the range are widened by
+	 * one voxel at each end to allow for rounding, so positions still need
+	 * checking.
+	 */
+	private void clip(final double[] position, final int axis, final int min,
+		final int max, final int[] range)
+	{
+		final double start = position[axis];
+		final double increment = step[axis];
+		if (increment == 0) {
+			if (start < min - 1 || start >= max + 1) range[1] = range[0];
+			return;
+		}
+		final double a = (min - 1 - start) / increment;
+		final double b = (max + 1 - start) / increment;
+		final double first = Math.floor(Math.min(a, b)) - 1;
+		final double last = Math.ceil(Math.max(a, b)) + 1;
+		range[0] = (int) Math.max(range[0], first);
+		range[1] = (int) Math.min(range[1], last);
+	}
+
+	private static double lerp(final double a, final double b, final double f) {
+		return a + (b - a) * f;
+	}
+
+	private static double get(final Object pixels, final int i) {
+		if (pixels instanceof byte[]) return ((byte[]) pixels)[i] & 0xff;
+		if (pixels instanceof short[]) return ((short[]) pixels)[i] & 0xffff;
+		return ((float[]) pixels)[i];
+	}
+
+	private static void set(final Object pixels, final int i,
+		final double value)
+	{
+		if (pixels instanceof byte[]) {
+			((byte[]) pixels)[i] = (byte) (int) (value + 0.5);
+		}
+		else if (pixels instanceof short[]) {
+			((short[]) pixels)[i] = (short) (int) (value + 0.5);
+		}
+		else ((float[]) pixels)[i] = (float) value;
+	}
+}
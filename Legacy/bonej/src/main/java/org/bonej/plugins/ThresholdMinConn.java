@@ -23,7 +23,11 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package org.bonej.plugins;
 
+import static org.bonej.plugins.ParticleCounter.JOINING.LINEAR;
+import static org.bonej.plugins.ParticleCounter.JOINING.MAPPED;
 import static org.bonej.plugins.ParticleCounter.JOINING.MULTI;
+import static org.bonej.plugins.ParticleCounter.JOINING.PARALLEL_UNION_FIND;
+import static org.bonej.plugins.ParticleCounter.JOINING.UNION_FIND;
 
 import java.awt.AWTEvent;
 import java.awt.Checkbox;
@@ -76,6 +80,9 @@ public class ThresholdMinConn implements PlugIn, DialogListener {
 	/** Number of cycles of dilation to apply */
 	private int nDilates;
 
+	/** Particle labelling algorithm used when purifying */
+	private JOINING labelMethod = MULTI;
+
 	@Override
 	public boolean dialogItemChanged(final GenericDialog gd, final AWTEvent e) {
 		if (DialogModifier.hasInvalidNumber(gd.getNumericFields())) return false;
@@ -250,7 +257,6 @@ public class ThresholdMinConn implements PlugIn, DialogListener {
 			if (!imp3.isInvertedLut()) IJ.run("Invert LUT");
 			final Erode_ e = new Erode_();
 			final Dilate_ d = new Dilate_();
-			final JOINING labelMethod = MULTI;
 			replaceImage(imp3, Purify.purify(imp3, 4, labelMethod));
 			for (int j = 0; j < nErodes; j++)
 				replaceImage(imp3, e.erode(imp3, 255, false));
@@ -329,6 +335,9 @@ public class ThresholdMinConn implements PlugIn, DialogListener {
 		gd.addNumericField("Subvolume Size", subVolume, 0);
 		gd.addNumericField("Erosion Cycles", nErodes, 0);
 		gd.addNumericField("Dilation Cycles", nDilates, 0);
+		final String[] items = { "Multithreaded", "Linear", "Mapped",
+			"Union-find", "Parallel union-find" };
+		gd.addChoice("Labelling algorithm", items, items[0]);
 		gd.addDialogListener(this);
 		gd.showDialog();
 
@@ -345,6 +354,12 @@ public class ThresholdMinConn implements PlugIn, DialogListener {
 		subVolume = (int) Math.floor(gd.getNextNumber());
 		nErodes = (int) Math.floor(gd.getNextNumber());
 		nDilates = (int) Math.floor(gd.getNextNumber());
+		final String choice = gd.getNextChoice();
+		if (choice.equals(items[1])) labelMethod = LINEAR;
+		else if (choice.equals(items[2])) labelMethod = MAPPED;
+		else if (choice.equals(items[3])) labelMethod = UNION_FIND;
+		else if (choice.equals(items[4])) labelMethod = PARALLEL_UNION_FIND;
+		else labelMethod = MULTI;
 		return true;
 
 	}
@@ -0,0 +1,269 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.plugins;
+
+import java.util.Arrays;
+
+import ij.IJ;
+
+/**
+ * Allocation-free connected component labelling with a primitive union-find.
+ * <p>
+ * The stack is scanned once in raster order. Each voxel of the requested phase
+ * receives the label of its first already-labelled neighbour, and any further
+ * labels in the causal (previously visited) half of its neighbourhood are
+ * merged into the same set. Sets are held in an {@code int[]} forest with path
+ * halving and union by rank, so no objects are created per voxel. A second
+ * pass replaces the provisional labels with their set's final label.
+ * </p>
+ * <p>
+ * Final labels are numbered consecutively from 1 in order of each particle's
+ * first voxel in the stack, which is the same numbering that
+ * {@link ParticleCounter.JOINING#MAPPED} produces after label minimisation.
+ * Foreground is 26-connected and background is 6-connected.
+ * </p>
+ */
+final class UnionFindLabeller {
+
+	/** Causal half of the 26-neighbourhood as {dx, dy, dz} */
+	static final int[][] CAUSAL_26 = { { -1, -1, -1 }, { 0, -1, -1 }, { 1, -1,
+		-1 }, { -1, 0, -1 }, { 0, 0, -1 }, { 1, 0, -1 }, { -1, 1, -1 }, { 0, 1,
+			-1 }, { 1, 1, -1 }, { -1, -1, 0 }, { 0, -1, 0 }, { 1, -1, 0 }, { -1, 0,
+				0 } };
+
+	/** Causal half of the 6-neighbourhood as {dx, dy, dz} */
+	static final int[][] CAUSAL_6 = { { 0, 0, -1 }, { 0, -1, 0 }, { -1, 0,
+		0 } };
+
+	private static final int INITIAL_CAPACITY = 1 << 12;
+
+	private final int[] dx;
+	private final int[] dy;
+	private final int[] dz;
+	private final int[] dIndex;
+	private final byte phase;
+	private int[] parent = new int[INITIAL_CAPACITY];
+	private byte[] rank = new byte[INITIAL_CAPACITY];
+	private long[] firstVoxel = new long[INITIAL_CAPACITY];
+	private int nLabels;
+
+	/**
+	 * Create a labeller that can be reused for several boxes of the same stack
+	 *
+	 * @param w width of the stack
+	 * @param phase {@link ParticleCounter#FORE} or {@link ParticleCounter#BACK}
+	 */
+	UnionFindLabeller(final int w, final int phase) {
+		final int[][] offsets = causalOffsets(phase);
+		final int nOffsets = offsets.length;
+		dx = new int[nOffsets];
+		dy = new int[nOffsets];
+		dz = new int[nOffsets];
+		dIndex = new int[nOffsets];
+		for (int n = 0; n < nOffsets; n++) {
+			dx[n] = offsets[n][0];
+			dy[n] = offsets[n][1];
+			dz[n] = offsets[n][2];
+			dIndex[n] = dy[n] * w + dx[n];
+		}
+		this.phase = (byte) phase;
+	}
+
+	/**
+	 * Label the connected particles of one phase in a work array
+	 *
+	 * @param workArray binary work array, indexed [z][y * w + x]
+	 * @param w width of the stack
+	 * @param h height of the stack
+	 * @param phase {@link ParticleCounter#FORE} or {@link ParticleCounter#BACK}
+	 * @return particle labels, indexed as workArray, with 0 for the other phase
+	 */
+	static int[][] label(final byte[][] workArray, final int w, final int h,
+		final int phase)
+	{
+		final int d = workArray.length;
+		final int[][] particleLabels = new int[d][w * h];
+		final int[] box = { 0, w, 0, h, 0, d };
+		new UnionFindLabeller(w, phase).labelBox(workArray, particleLabels, w, h,
+			box, true);
+		return particleLabels;
+	}
+
+	/**
+	 * Get the causal half of the neighbourhood used for a phase
+	 *
+	 * @param phase {@link ParticleCounter#FORE} or {@link ParticleCounter#BACK}
+	 * @return 26-connected offsets for foreground, 6-connected for background
+	 */
+	static int[][] causalOffsets(final int phase) {
+		return phase == ParticleCounter.FORE ? CAUSAL_26 : CAUSAL_6;
+	}
+
+	/**
+	 * Label the particles inside a box of the stack, ignoring any connections
+	 * that leave the box. Labels in the box are numbered from 1 in raster order
+	 * of each particle's first voxel.
+	 *
+	 * @param workArray binary work array, indexed [z][y * w + x]
+	 * @param particleLabels label array to write into, same size as workArray
+	 * @param w width of the stack
+	 * @param h height of the stack
+	 * @param box {xMin, xMax, yMin, yMax, zMin, zMax} with exclusive maxima
+	 * @param showProgress if true, report progress in the ImageJ status bar
+	 * @return number of particles found in the box
+	 */
+	int labelBox(final byte[][] workArray, final int[][] particleLabels,
+		final int w, final int h, final int[] box, final boolean showProgress)
+	{
+		final int x0 = box[0];
+		final int x1 = box[1];
+		final int y0 = box[2];
+		final int y1 = box[3];
+		final int z0 = box[4];
+		final int z1 = box[5];
+		final int nOffsets = dx.length;
+		nLabels = 1;
+		for (int z = z0; z < z1; z++) {
+			if (showProgress) {
+				IJ.showStatus("Labelling particles with union-find...");
+				IJ.showProgress(z - z0, z1 - z0);
+			}
+			final byte[] work = workArray[z];
+			final int[] labels = particleLabels[z];
+			for (int y = y0; y < y1; y++) {
+				final int rowIndex = y * w;
+				final boolean innerRow = z > z0 && y > y0 && y < y1 - 1;
+				for (int x = x0; x < x1; x++) {
+					final int index = rowIndex + x;
+					if (work[index] != phase) continue;
+					final boolean inner = innerRow && x > x0 && x < x1 - 1;
+					int label = 0;
+					for (int n = 0; n < nOffsets; n++) {
+						final int nz = z + dz[n];
+						if (!inner) {
+							final int nx = x + dx[n];
+							final int ny = y + dy[n];
+							if (nx < x0 || nx >= x1 || ny < y0 || ny >= y1 || nz < z0) continue;
+						}
+						final int neighbour = particleLabels[nz][index + dIndex[n]];
+						if (neighbour == 0) continue;
+						if (label == 0) label = neighbour;
+						else if (neighbour != label) union(label, neighbour);
+					}
+					if (label == 0) label = newLabel();
+					labels[index] = label;
+				}
+			}
+		}
+		final int[] lut = resolve();
+		final long wh = (long) w * h;
+		int nParticles = 0;
+		for (int z = z0; z < z1; z++) {
+			if (showProgress) {
+				IJ.showStatus("Applying union-find labels...");
+				IJ.showProgress(z - z0, z1 - z0);
+			}
+			final int[] labels = particleLabels[z];
+			for (int y = y0; y < y1; y++) {
+				final int rowIndex = y * w;
+				for (int x = x0; x < x1; x++) {
+					final int index = rowIndex + x;
+					final int label = lut[labels[index]];
+					labels[index] = label;
+					if (label > nParticles) {
+						// labels are numbered in order of first appearance
+						nParticles = label;
+						firstVoxel[label] = z * wh + index;
+					}
+				}
+			}
+		}
+		return nParticles;
+	}
+
+	/**
+	 * Get the stack index (z * w * h + y * w + x) of a particle's first voxel
+	 * from the last call to
+	 * {@link #labelBox(byte[][], int[][], int, int, int[], boolean)}
+	 *
+	 * @param label a particle label in the last box
+	 * @return index of the particle's first voxel in the stack
+	 */
+	long firstVoxel(final int label) {
+		return firstVoxel[label];
+	}
+
+	/**
+	 * Map every provisional label to a final, consecutive label, numbering sets
+	 * by their lowest provisional label
+	 *
+	 * @return look-up table from provisional to final labels
+	 */
+	private int[] resolve() {
+		final int[] lut = new int[nLabels];
+		final int[] rootLabel = new int[nLabels];
+		int next = 1;
+		for (int l = 1; l < nLabels; l++) {
+			final int root = find(l);
+			if (rootLabel[root] == 0) rootLabel[root] = next++;
+			lut[l] = rootLabel[root];
+		}
+		return lut;
+	}
+
+	private int newLabel() {
+		if (nLabels == parent.length) {
+			final int capacity = parent.length << 1;
+			if (capacity < 0) throw new IllegalStateException(
+				"Too many provisional particle labels");
+			parent = Arrays.copyOf(parent, capacity);
+			rank = Arrays.copyOf(rank, capacity);
+			firstVoxel = Arrays.copyOf(firstVoxel, capacity);
+		}
+		parent[nLabels] = nLabels;
+		rank[nLabels] = 0;
+		return nLabels++;
+	}
+
+	private int find(int label) {
+		while (parent[label] != label) {
+			// path halving
+			parent[label] = parent[parent[label]];
+			label = parent[label];
+		}
+		return label;
+	}
+
+	private void union(final int a, final int b) {
+		final int rootA = find(a);
+		final int rootB = find(b);
+		if (rootA == rootB) return;
+		if (rank[rootA] < rank[rootB]) parent[rootA] = rootB;
+		else if (rank[rootA] > rank[rootB]) parent[rootB] = rootA;
+		else {
+			parent[rootB] = rootA;
+			rank[rootA]++;
+		}
+	}
+}
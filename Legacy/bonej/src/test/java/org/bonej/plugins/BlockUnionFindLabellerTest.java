@@ -0,0 +1,79 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.plugins;
+
+import static org.bonej.plugins.ParticleCounter.BACK;
+import static org.bonej.plugins.ParticleCounter.FORE;
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BlockUnionFindLabellerTest {
+
+	@Test
+	public void testLabelMatchesSerialUnionFind() {
+		final Random random = new Random(0xB0E);
+		final int w = 37;
+		final int h = 29;
+		final int d = 19;
+		final byte[][] workArray = new byte[d][w * h];
+		for (final byte[] slice : workArray) {
+			for (int i = 0; i < slice.length; i++) {
+				slice[i] = (byte) (random.nextDouble() < 0.25 ? FORE : BACK);
+			}
+		}
+
+		for (final int phase : new int[] { FORE, BACK }) {
+			final int[][] expected = UnionFindLabeller.label(workArray, w, h, phase);
+			for (final int blockSize : new int[] { 1, 4, 7, 64 }) {
+				final int[][] labels = BlockUnionFindLabeller.label(workArray, w, h,
+					phase, blockSize);
+				for (int z = 0; z < d; z++) {
+					assertArrayEquals(expected[z], labels[z]);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testLabelJoinsAcrossBlockCorners() {
+		// a diagonal line crosses a block corner in every step
+		final int size = 8;
+		final byte[][] workArray = new byte[size][size * size];
+		for (int i = 0; i < size; i++) {
+			workArray[i][i * size + (size - 1 - i)] = FORE;
+		}
+
+		final int[][] labels = BlockUnionFindLabeller.label(workArray, size, size,
+			FORE, 1);
+
+		for (int i = 0; i < size; i++) {
+			final int[] expected = new int[size * size];
+			expected[i * size + (size - 1 - i)] = 1;
+			assertArrayEquals(expected, labels[i]);
+		}
+	}
+}
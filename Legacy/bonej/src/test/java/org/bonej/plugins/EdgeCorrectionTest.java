@@ -0,0 +1,78 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package org.bonej.plugins;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class EdgeCorrectionTest {
+
+	@Test
+	public void testParticleInsideStackNeedsNoCorrection() {
+		final int size = 5;
+		final byte[][] slices = new byte[size][size * size];
+		slices[2][2 * size + 2] = -1;
+
+		assertEquals(0.0, correction(slices, size, size), 0.0);
+	}
+
+	@Test
+	public void testSingleVoxelStack() {
+		final byte[][] slices = { { -1 } };
+
+		// f = 1, e = 3, c = 3, d = 1, a = 4, b = 6
+		assertEquals(0.125, correction(slices, 1, 1), 0.0);
+	}
+
+	@Test
+	public void testSamePassAsEulerSumMatchesAddedSlices() {
+		final Random random = new Random(0xDE17A);
+		final int w = 13;
+		final int h = 2;
+		final int d = 9;
+		final byte[][] slices = new byte[d][w * h];
+		for (final byte[] slice : slices) {
+			for (int i = 0; i < slice.length; i++) {
+				slice[i] = (byte) (random.nextDouble() < 0.4 ? 255 : 0);
+			}
+		}
+		final EdgeCorrection edges = new EdgeCorrection(w, h, d);
+
+		OctantEuler.sum(slices, w, h, new int[256], edges);
+
+		assertEquals(correction(slices, w, h), edges.getCorrection(), 0.0);
+	}
+
+	private static double correction(final byte[][] slices, final int w,
+		final int h)
+	{
+		final EdgeCorrection edges = new EdgeCorrection(w, h, slices.length);
+		for (int z = slices.length - 1; z >= 0; z--) {
+			edges.addSlice(z, slices[z]);
+		}
+		return edges.getCorrection();
+	}
+}
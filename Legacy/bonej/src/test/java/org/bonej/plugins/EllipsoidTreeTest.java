@@ -0,0 +1,86 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.plugins;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.bonej.geometry.Ellipsoid;
+import org.bonej.geometry.Vectors;
+import org.junit.Test;
+
+public class EllipsoidTreeTest {
+
+	@Test
+	public void testFirstMatchesLinearScan() {
+		final Random random = new Random(0xE11);
+		final Ellipsoid[] ellipsoids = new Ellipsoid[500];
+		for (int i = 0; i < ellipsoids.length; i++) {
+			final double[] u = Vectors.randomVector();
+			final double[] v = Vectors.randomVector();
+			final double[] n = { u[1] * v[2] - u[2] * v[1], u[2] * v[0] - u[0] *
+				v[2], u[0] * v[1] - u[1] * v[0] };
+			final double[] m = { n[1] * u[2] - n[2] * u[1], n[2] * u[0] - n[0] *
+				u[2], n[0] * u[1] - n[1] * u[0] };
+			final double[][] rotation = new double[3][3];
+			for (int r = 0; r < 3; r++) {
+				rotation[r][0] = u[r];
+				rotation[r][1] = m[r] / Math.sqrt(m[0] * m[0] + m[1] * m[1] + m[2] *
+					m[2]);
+				rotation[r][2] = n[r] / Math.sqrt(n[0] * n[0] + n[1] * n[1] + n[2] *
+					n[2]);
+			}
+			ellipsoids[i] = new Ellipsoid(1 + 5 * random.nextDouble(), 1 + 5 * random
+				.nextDouble(), 1 + 5 * random.nextDouble(), 50 * random.nextDouble(),
+				50 * random.nextDouble(), 50 * random.nextDouble(), rotation);
+		}
+		Arrays.sort(ellipsoids, (a, b) -> Double.compare(b.getVolume(), a
+			.getVolume()));
+
+		final EllipsoidTree tree = new EllipsoidTree(ellipsoids);
+
+		for (int q = 0; q < 20000; q++) {
+			final double x = 55 * random.nextDouble() - 2.5;
+			final double y = 55 * random.nextDouble() - 2.5;
+			final double z = 55 * random.nextDouble() - 2.5;
+			int expected = -1;
+			for (int i = 0; i < ellipsoids.length; i++) {
+				if (ellipsoids[i].contains(x, y, z)) {
+					expected = i;
+					break;
+				}
+			}
+			assertEquals(expected, tree.first(x, y, z));
+		}
+	}
+
+	@Test
+	public void testEmptyTree() {
+		final EllipsoidTree tree = new EllipsoidTree(new Ellipsoid[0]);
+
+		assertEquals(-1, tree.first(0, 0, 0));
+	}
+}
@@ -0,0 +1,238 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.plugins;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ij.IJ;
+import ij.ImagePlus;
+import ij.Prefs;
+import ij.measure.Calibration;
+import ij.process.ImageProcessor;
+
+public class MassMomentsTest {
+
+	private static final int W = 17;
+	private static final int H = 13;
+	private static final int D = 9;
+	private static final int START_SLICE = 2;
+	private static final int END_SLICE = 8;
+	private static final double MIN = 100;
+	private static final double MAX = 1000;
+	private static final double M = 0.002;
+	private static final double C = 0.5;
+	private static final ImagePlus imp = IJ.createImage("moments",
+		"16-bit black", W, H, D);
+	private static final int originalThreads = Prefs.getThreads();
+
+	@BeforeClass
+	public static void oneTimeSetup() {
+		final Random random = new Random(0xB0E);
+		for (int z = 1; z <= D; z++) {
+			final ImageProcessor ip = imp.getStack().getProcessor(z);
+			for (int i = 0; i < W * H; i++) {
+				ip.set(i, random.nextInt(1200));
+			}
+		}
+		final Calibration cal = new Calibration();
+		cal.pixelWidth = 0.5;
+		cal.pixelHeight = 0.75;
+		cal.pixelDepth = 1.25;
+		cal.setUnit("mm");
+		imp.setCalibration(cal);
+		imp.setRoi(2, 3, 12, 8);
+	}
+
+	@After
+	public void tearDown() {
+		Prefs.setThreads(originalThreads);
+	}
+
+	@Test
+	public void testMatchesTwoPassCalculation() {
+		assertMatchesTwoPass(M, C);
+	}
+
+	/**
+	 * With a negative slope the density is clamped to 0 above a pixel value, so
+	 * some of the voxels have no mass.
+	 */
+	@Test
+	public void testMatchesTwoPassCalculationNegativeSlope() {
+		assertMatchesTwoPass(-0.002, 1.5);
+	}
+
+	@Test
+	public void testNoMass() {
+		final MassMoments moments = MassMoments.accumulate(imp, START_SLICE,
+			END_SLICE, MIN, MAX, -0.002, 0.1);
+
+		final double[] result = moments.getMoments();
+		assertArrayEquals(new double[] { -1, -1, -1 }, moments.getCentroid(), 0);
+		assertTrue(result[0] > 0);
+		for (int i = 1; i < result.length; i++) {
+			assertEquals(0, result[i], 0);
+		}
+	}
+
+	@Test
+	public void testResultsDoNotDependOnThreads() {
+		Prefs.setThreads(1);
+		final MassMoments serial = MassMoments.accumulate(imp, START_SLICE,
+			END_SLICE, MIN, MAX, M, C);
+		Prefs.setThreads(4);
+		final MassMoments parallel = MassMoments.accumulate(imp, START_SLICE,
+			END_SLICE, MIN, MAX, M, C);
+
+		assertArrayEquals(serial.getCentroid(), parallel.getCentroid(), 1e-12);
+		final double[] expected = serial.getMoments();
+		final double[] actual = parallel.getMoments();
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], actual[i], 1e-12 * Math.abs(expected[i]));
+		}
+	}
+
+	@Test
+	public void testEmptyCentroid() {
+		final MassMoments moments = MassMoments.accumulate(imp, START_SLICE,
+			END_SLICE, 5000, 6000, M, C);
+
+		assertArrayEquals(new double[] { -1, -1, -1 }, moments.getCentroid(), 0);
+		assertEquals(0, moments.getMoments()[0], 0);
+	}
+
+	@Test
+	public void testGetMaxProjections() {
+		final double angle = 0.3;
+		final double cos = Math.cos(angle);
+		final double sin = Math.sin(angle);
+		final double[][] v = { { cos, -sin, 0 }, { sin, cos, 0 }, { 0, 0, 1 } };
+		final double[] centre = { 4.0, 5.0, 6.0 };
+		final Calibration cal = imp.getCalibration();
+		final double[] expected = new double[3];
+		for (int z = START_SLICE; z <= END_SLICE; z++) {
+			final ImageProcessor ip = imp.getStack().getProcessor(z);
+			for (int y = 3; y < 11; y++) {
+				for (int x = 2; x < 14; x++) {
+					final double pixel = ip.get(x, y);
+					if (pixel < MIN || pixel > MAX) continue;
+					final double[] p = { x * cal.pixelWidth - centre[0], y *
+						cal.pixelHeight - centre[1], z * cal.pixelDepth - centre[2] };
+					for (int i = 0; i < 3; i++) {
+						final double t = p[0] * v[0][i] + p[1] * v[1][i] + p[2] * v[2][i];
+						expected[i] = Math.max(expected[i], Math.abs(t));
+					}
+				}
+			}
+		}
+
+		final MassMoments moments = MassMoments.accumulate(imp, START_SLICE,
+			END_SLICE, MIN, MAX, M, C);
+
+		assertArrayEquals(expected, moments.getMaxProjections(v, centre), 1e-12);
+	}
+
+	// region -- Helper methods --
+
+	private static void assertMatchesTwoPass(final double m, final double c) {
+		final double[] expectedCentroid = new double[3];
+		final double[] expectedMoments = new double[8];
+		twoPass(m, c, expectedCentroid, expectedMoments);
+
+		final MassMoments moments = MassMoments.accumulate(imp, START_SLICE,
+			END_SLICE, MIN, MAX, m, c);
+
+		assertArrayEquals(expectedCentroid, moments.getCentroid(), 1e-12);
+		final double[] actual = moments.getMoments();
+		for (int i = 0; i < expectedMoments.length; i++) {
+			assertEquals(expectedMoments[i], actual[i], 1e-12 * Math.abs(
+				expectedMoments[i]));
+		}
+	}
+
+	/**
+	 * Sums about the origin for the centroid, then about the centroid for the
+	 * moments, as {@link Moments} used to do.
+	 */
+	private static void twoPass(final double m, final double c,
+		final double[] centroid, final double[] moments)
+	{
+		final Calibration cal = imp.getCalibration();
+		final double vW = cal.pixelWidth;
+		final double vH = cal.pixelHeight;
+		final double vD = cal.pixelDepth;
+		final double voxVol = vW * vH * vD;
+		double sumMass = 0;
+		for (int z = START_SLICE; z <= END_SLICE; z++) {
+			final ImageProcessor ip = imp.getStack().getProcessor(z);
+			for (int y = 3; y < 11; y++) {
+				for (int x = 2; x < 14; x++) {
+					final double pixel = ip.get(x, y);
+					if (pixel < MIN || pixel > MAX) continue;
+					final double mass = Moments.voxelDensity(pixel, m, c, 1000) *
+						voxVol;
+					sumMass += mass;
+					centroid[0] += x * vW * mass;
+					centroid[1] += y * vH * mass;
+					centroid[2] += z * vD * mass;
+				}
+			}
+		}
+		for (int i = 0; i < 3; i++) {
+			centroid[i] /= sumMass;
+		}
+		for (int z = START_SLICE; z <= END_SLICE; z++) {
+			final ImageProcessor ip = imp.getStack().getProcessor(z);
+			for (int y = 3; y < 11; y++) {
+				for (int x = 2; x < 14; x++) {
+					final double pixel = ip.get(x, y);
+					if (pixel < MIN || pixel > MAX) continue;
+					final double mass = Moments.voxelDensity(pixel, m, c, 1000) *
+						voxVol;
+					final double dX = x * vW - centroid[0];
+					final double dY = y * vH - centroid[1];
+					final double dZ = z * vD - centroid[2];
+					moments[0] += voxVol;
+					moments[1] += mass;
+					moments[2] += (dY * dY + dZ * dZ + (vH * vH + vD * vD) / 12) * mass;
+					moments[3] += (dX * dX + dZ * dZ + (vW * vW + vD * vD) / 12) * mass;
+					moments[4] += (dY * dY + dX * dX + (vH * vH + vW * vW) / 12) * mass;
+					moments[5] += dX * dY * mass;
+					moments[6] += dX * dZ * mass;
+					moments[7] += dY * dZ * mass;
+				}
+			}
+		}
+	}
+
+	// endregion
+}
@@ -24,10 +24,17 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package org.bonej.plugins;
 
 import static org.bonej.plugins.Moments.getEmptyPixels;
+import static org.bonej.plugins.Moments.getRotatedSize;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
+import Jama.Matrix;
+import ij.IJ;
+import ij.ImagePlus;
+import ij.process.ImageProcessor;
+
 /**
  * Tests for the {@link Moments} class.
  *
@@ -63,4 +70,26 @@ public class MomentsTest {
 	public void testGetEmptyPixelsBadBitDepth() {
 		getEmptyPixels(1, 1, 64);
 	}
+
+	@Test
+	public void testGetRotatedSize() {
+		// A 10 x 4 x 3 box in the middle slices, with its centroid at (9.5, 9.5,
+		// 5)
+		final ImagePlus imp = IJ.createImage("box", "8-bit black", 20, 20, 10);
+		for (int z = 4; z <= 6; z++) {
+			final ImageProcessor ip = imp.getStack().getProcessor(z);
+			ip.setRoi(5, 8, 10, 4);
+			ip.setValue(255);
+			ip.fill();
+		}
+		imp.getProcessor().resetRoi();
+		final MassMoments massMoments = MassMoments.accumulate(imp, 1, 10, 128,
+			255, 0, 1);
+
+		final int[] sides = getRotatedSize(Matrix.identity(3, 3), imp
+			.getCalibration(), massMoments);
+
+		// The box reaches 4.5, 1.5 and 1 pixels from the centroid on each side
+		assertArrayEquals(new int[] { 9 + 5, 3 + 5, 2 + 5 }, sides);
+	}
 }
@@ -0,0 +1,102 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package org.bonej.plugins;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class OctantEulerTest {
+
+	@Test
+	public void testSumCountsEachVoxelInEightOctants() {
+		final int w = 23;
+		final int h = 17;
+		final int d = 11;
+		final byte[][] slices = randomSlices(w, h, d, 0.3);
+		final int[] octantLUT = new int[256];
+		for (int i = 0; i < 256; i++) {
+			octantLUT[i] = Integer.bitCount(i);
+		}
+		long foreground = 0;
+		for (final byte[] slice : slices) {
+			for (final byte pixel : slice) {
+				if (pixel == -1) foreground++;
+			}
+		}
+
+		assertEquals(8 * foreground, OctantEuler.sum(slices, w, h, octantLUT));
+	}
+
+	@Test
+	public void testPlaneSumsMatchOctantsOfEachVertex() {
+		final int w = 19;
+		final int h = 13;
+		final int d = 7;
+		final byte[][] slices = randomSlices(w, h, d, 0.5);
+		// a distinct value for each octant configuration
+		final int[] octantLUT = new int[256];
+		for (int i = 1; i < 256; i++) {
+			octantLUT[i] = i * i;
+		}
+
+		final long[] planeSums = OctantEuler.planeSums(slices, w, h, octantLUT);
+
+		assertEquals(d + 1, planeSums.length);
+		for (int z = 0; z <= d; z++) {
+			long expected = 0;
+			for (int y = 0; y <= h; y++) {
+				for (int x = 0; x <= w; x++) {
+					int octant = 0;
+					for (int n = 0; n < 8; n++) {
+						final int vx = x - 1 + ((n >> 1) & 1);
+						final int vy = y - 1 + (n & 1);
+						final int vz = z - 1 + ((n >> 2) & 1);
+						if (vx >= 0 && vx < w && vy >= 0 && vy < h && vz >= 0 && vz < d &&
+							slices[vz][vy * w + vx] == -1)
+						{
+							octant |= 1 << n;
+						}
+					}
+					expected += octantLUT[octant];
+				}
+			}
+			assertEquals(expected, planeSums[z]);
+		}
+	}
+
+	private static byte[][] randomSlices(final int w, final int h, final int d,
+		final double p)
+	{
+		final Random random = new Random(0xE1E);
+		final byte[][] slices = new byte[d][w * h];
+		for (final byte[] slice : slices) {
+			for (int i = 0; i < slice.length; i++) {
+				slice[i] = (byte) (random.nextDouble() < p ? 255 : 0);
+			}
+		}
+		return slices;
+	}
+}
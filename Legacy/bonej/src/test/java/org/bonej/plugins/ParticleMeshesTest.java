@@ -0,0 +1,143 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.plugins;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.bonej.geometry.Calipers;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.scijava.vecmath.Point3f;
+
+import ij.IJ;
+import ij.ImagePlus;
+import ij.Prefs;
+import ij.measure.Calibration;
+
+public class ParticleMeshesTest {
+
+	private static final int W = 24;
+	private static final int H = 20;
+	private static final int D = 16;
+	private static final int N_PARTICLES = 4;
+	// xMin, xMax, yMin, yMax, zMin, zMax of each box shaped particle
+	private static final int[][] limits = { { 0, 0, 0, 0, 0, 0 }, { 2, 5, 3, 7,
+		2, 7 }, { 10, 20, 2, 4, 3, 5 }, { 12, 15, 10, 16, 8, 13 } };
+	private static final int[][] labels = new int[D][W * H];
+	private static final ImagePlus imp = IJ.createImage("particles",
+		"8-bit black", W, H, D);
+	private static final int originalThreads = Prefs.getThreads();
+
+	@BeforeClass
+	public static void oneTimeSetup() {
+		for (int p = 1; p < N_PARTICLES; p++) {
+			final int[] l = limits[p];
+			for (int z = l[4]; z <= l[5]; z++) {
+				for (int y = l[2]; y <= l[3]; y++) {
+					for (int x = l[0]; x <= l[1]; x++) {
+						labels[z][y * W + x] = p;
+					}
+				}
+			}
+		}
+		final Calibration cal = new Calibration();
+		cal.pixelWidth = 0.5;
+		cal.pixelHeight = 0.75;
+		cal.pixelDepth = 1.25;
+		imp.setCalibration(cal);
+	}
+
+	@After
+	public void tearDown() {
+		Prefs.setThreads(originalThreads);
+	}
+
+	@Test
+	public void testMeshesAreInParticleBounds() {
+		final ParticleMeshes meshes = ParticleMeshes.mesh(imp, labels, limits, 1,
+			N_PARTICLES, 0);
+		final List<List<Point3f>> surfaces = meshes.getSurfacePoints();
+		final Calibration cal = imp.getCalibration();
+
+		assertEquals(N_PARTICLES, surfaces.size());
+		assertNull(surfaces.get(0));
+		for (int p = 1; p < N_PARTICLES; p++) {
+			final int[] l = limits[p];
+			final List<Point3f> points = surfaces.get(p);
+			assertTrue(!points.isEmpty());
+			for (final Point3f point : points) {
+				assertTrue(point.x >= (l[0] - 1) * cal.pixelWidth);
+				assertTrue(point.x <= (l[1] + 2) * cal.pixelWidth);
+				assertTrue(point.y >= (l[2] - 1) * cal.pixelHeight);
+				assertTrue(point.y <= (l[3] + 2) * cal.pixelHeight);
+				assertTrue(point.z >= (l[4] - 1) * cal.pixelDepth);
+				assertTrue(point.z <= (l[5] + 2) * cal.pixelDepth);
+			}
+			final double boxVolume = (l[1] - l[0] + 1) * cal.pixelWidth * (l[3] -
+				l[2] + 1) * cal.pixelHeight * (l[5] - l[4] + 1) * cal.pixelDepth;
+			assertEquals(boxVolume, meshes.getSurfaceVolumes()[p], boxVolume * 0.5);
+			assertTrue(meshes.getSurfaceAreas()[p] > 0);
+			final double[] feret = meshes.getFerets()[p];
+			assertEquals(Calipers.RESULT_LENGTH, feret.length);
+			assertTrue(feret[0] > 0);
+			assertTrue(feret[7] > 0 && feret[7] <= feret[0]);
+		}
+		assertTrue(Double.isNaN(meshes.getFerets()[0][0]));
+	}
+
+	@Test
+	public void testResultsDoNotDependOnThreads() {
+		Prefs.setThreads(1);
+		final ParticleMeshes serial = ParticleMeshes.mesh(imp, labels, limits, 1,
+			N_PARTICLES, 0);
+		Prefs.setThreads(4);
+		final ParticleMeshes parallel = ParticleMeshes.mesh(imp, labels, limits,
+			1, N_PARTICLES, 0);
+
+		assertEquals(serial.getSurfacePoints(), parallel.getSurfacePoints());
+		assertArrayEquals(serial.getSurfaceAreas(), parallel.getSurfaceAreas(),
+			0.0);
+		assertArrayEquals(serial.getSurfaceVolumes(), parallel
+			.getSurfaceVolumes(), 0.0);
+		for (int p = 0; p < N_PARTICLES; p++) {
+			assertArrayEquals(serial.getFerets()[p], parallel.getFerets()[p], 0.0);
+		}
+	}
+
+	@Test
+	public void testFeretsAreSkippedWhenNotRequested() {
+		final ParticleMeshes meshes = ParticleMeshes.mesh(imp, labels, limits, 1,
+			N_PARTICLES, -1);
+
+		for (int p = 0; p < N_PARTICLES; p++) {
+			assertNull(meshes.getFerets()[p]);
+		}
+	}
+}
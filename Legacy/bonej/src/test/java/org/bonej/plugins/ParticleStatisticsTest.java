@@ -0,0 +1,202 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.plugins;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ij.ImageStack;
+import ij.measure.Calibration;
+
+public class ParticleStatisticsTest {
+
+	private static final int W = 13;
+	private static final int H = 11;
+	private static final int D = 7;
+	private static final int N_PARTICLES = 5;
+	private static final int[][] labels = new int[D][W * H];
+	private static final ImageStack values = new ImageStack(W, H);
+	private static final Calibration cal = new Calibration();
+
+	@BeforeClass
+	public static void oneTimeSetup() {
+		final Random random = new Random(0xB0E);
+		for (int z = 0; z < D; z++) {
+			final float[] pixels = new float[W * H];
+			for (int i = 0; i < W * H; i++) {
+				labels[z][i] = random.nextInt(N_PARTICLES);
+				pixels[i] = random.nextFloat() < 0.2f ? 0f : random.nextFloat() * 10;
+			}
+			values.addSlice("", pixels);
+		}
+		// make sure every label is used
+		for (int p = 0; p < N_PARTICLES; p++) {
+			labels[0][p] = p;
+		}
+		cal.pixelWidth = 0.5;
+		cal.pixelHeight = 0.75;
+		cal.pixelDepth = 1.25;
+	}
+
+	@Test
+	public void testGetCentroidsAndLimits() {
+		final ParticleStatistics statistics = ParticleStatistics.accumulate(labels,
+			W, N_PARTICLES, null);
+		final long[] sizes = statistics.getSizes();
+		final double[][] centroids = statistics.getCentroids(cal);
+		final int[][] limits = statistics.getLimits();
+
+		for (int p = 1; p < N_PARTICLES; p++) {
+			long n = 0;
+			final double[] sum = new double[3];
+			final int[] expectedLimits = { Integer.MAX_VALUE, 0, Integer.MAX_VALUE, 0,
+				Integer.MAX_VALUE, 0 };
+			for (int z = 0; z < D; z++) {
+				for (int y = 0; y < H; y++) {
+					for (int x = 0; x < W; x++) {
+						if (labels[z][y * W + x] != p) continue;
+						n++;
+						sum[0] += x;
+						sum[1] += y;
+						sum[2] += z;
+						expectedLimits[0] = Math.min(expectedLimits[0], x);
+						expectedLimits[1] = Math.max(expectedLimits[1], x);
+						expectedLimits[2] = Math.min(expectedLimits[2], y);
+						expectedLimits[3] = Math.max(expectedLimits[3], y);
+						expectedLimits[4] = Math.min(expectedLimits[4], z);
+						expectedLimits[5] = Math.max(expectedLimits[5], z);
+					}
+				}
+			}
+			assertEquals(n, sizes[p]);
+			assertEquals(cal.pixelWidth * sum[0] / n, centroids[p][0], 1e-12);
+			assertEquals(cal.pixelHeight * sum[1] / n, centroids[p][1], 1e-12);
+			assertEquals(cal.pixelDepth * sum[2] / n, centroids[p][2], 1e-12);
+			assertArrayEquals(expectedLimits, limits[p]);
+		}
+	}
+
+	@Test
+	public void testGetMomentTensors() {
+		final ParticleStatistics statistics = ParticleStatistics.accumulate(labels,
+			W, N_PARTICLES, null);
+		final double[][] centroids = statistics.getCentroids(cal);
+		final double[][] tensors = statistics.getMomentTensors(cal);
+		final double vW = cal.pixelWidth;
+		final double vH = cal.pixelHeight;
+		final double vD = cal.pixelDepth;
+
+		final double[][] expected = new double[N_PARTICLES][6];
+		for (int z = 0; z < D; z++) {
+			for (int y = 0; y < H; y++) {
+				for (int x = 0; x < W; x++) {
+					final int p = labels[z][y * W + x];
+					if (p == 0) continue;
+					final double dx = x * vW - centroids[p][0];
+					final double dy = y * vH - centroids[p][1];
+					final double dz = z * vD - centroids[p][2];
+					expected[p][0] += dy * dy + dz * dz + (vH * vH + vD * vD) / 12;
+					expected[p][1] += dx * dx + dz * dz + (vW * vW + vD * vD) / 12;
+					expected[p][2] += dy * dy + dx * dx + (vH * vH + vW * vW) / 12;
+					expected[p][3] += dx * dy;
+					expected[p][4] += dx * dz;
+					expected[p][5] += dy * dz;
+				}
+			}
+		}
+		for (int p = 1; p < N_PARTICLES; p++) {
+			assertArrayEquals(expected[p], tensors[p], 1e-9);
+		}
+	}
+
+	@Test
+	public void testGetMeanStdDev() {
+		assertMeanStdDev(values, 1e-9);
+	}
+
+	/**
+	 * The values have a large mean and a small spread, so that the sum of their
+	 * squares cancels with the square of their sum.
+	 */
+	@Test
+	public void testGetMeanStdDevLargeValues() {
+		final Random random = new Random(0xB0E);
+		final ImageStack largeValues = new ImageStack(W, H);
+		for (int z = 0; z < D; z++) {
+			final float[] pixels = new float[W * H];
+			for (int i = 0; i < W * H; i++) {
+				pixels[i] = 10_000_000 + random.nextInt(10);
+			}
+			largeValues.addSlice("", pixels);
+		}
+
+		assertMeanStdDev(largeValues, 1e-6);
+	}
+
+	// region -- Helper methods --
+
+	private static void assertMeanStdDev(final ImageStack values,
+		final double tolerance)
+	{
+		final ParticleStatistics statistics = ParticleStatistics.accumulate(labels,
+			W, N_PARTICLES, values);
+		final long[] sizes = statistics.getSizes();
+		final double[][] meanStdDev = statistics.getMeanStdDev();
+
+		for (int p = 1; p < N_PARTICLES; p++) {
+			double sum = 0;
+			double max = 0;
+			for (int z = 0; z < D; z++) {
+				final float[] pixels = (float[]) values.getPixels(z + 1);
+				for (int i = 0; i < W * H; i++) {
+					if (labels[z][i] == p && pixels[i] > 0) {
+						sum += pixels[i];
+						max = Math.max(max, pixels[i]);
+					}
+				}
+			}
+			final double mean = sum / sizes[p];
+			double squares = 0;
+			for (int z = 0; z < D; z++) {
+				final float[] pixels = (float[]) values.getPixels(z + 1);
+				for (int i = 0; i < W * H; i++) {
+					if (labels[z][i] == p && pixels[i] > 0) {
+						squares += (pixels[i] - mean) * (pixels[i] - mean);
+					}
+				}
+			}
+			final double sd = Math.sqrt(squares / sizes[p]);
+			assertEquals(mean, meanStdDev[p][0], 1e-12 * mean);
+			assertEquals(sd, meanStdDev[p][1], tolerance * sd);
+			assertEquals(max, meanStdDev[p][2], 0.0);
+		}
+	}
+
+	// endregion
+}
@@ -0,0 +1,256 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.plugins;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Rectangle;
+import java.util.Random;
+
+import org.bonej.plugins.StackResampler.Interpolation;
+import org.junit.After;
+import org.junit.Test;
+
+import ij.ImageStack;
+import ij.Prefs;
+import ij.measure.Calibration;
+
+public class StackResamplerTest {
+
+	private static final int W = 19;
+	private static final int H = 15;
+	private static final int D = 11;
+	private static final double[][] IDENTITY = { { 1, 0, 0 }, { 0, 1, 0 }, { 0,
+		0, 1 } };
+	private static final int originalThreads = Prefs.getThreads();
+
+	@After
+	public void tearDown() {
+		Prefs.setThreads(originalThreads);
+	}
+
+	@Test
+	public void testIdentityCopiesSource() {
+		final ImageStack source = randomShortStack();
+		final double[] centroid = { W / 2.0, H / 2.0, D / 2.0 };
+
+		for (final Interpolation interpolation : Interpolation.values()) {
+			final ImageStack target = ImageStack.create(W, H, D, 16);
+			StackResampler.resample(source, new Rectangle(W, H), 1, D,
+				new Calibration(), IDENTITY, centroid, target, 1.0, interpolation);
+
+			for (int z = 1; z <= D; z++) {
+				assertArrayEquals((short[]) source.getPixels(z), (short[]) target
+					.getPixels(z));
+			}
+		}
+	}
+
+	@Test
+	public void testNearestMatchesPerVoxelMapping() {
+		final Calibration cal = new Calibration();
+		cal.pixelWidth = 0.5;
+		cal.pixelHeight = 0.75;
+		cal.pixelDepth = 1.25;
+		final ImageStack source = randomShortStack();
+		final Rectangle roi = new Rectangle(2, 3, 14, 10);
+		final double[] centroid = { 4.5, 6.0, 7.5 };
+		// half and quarter turns put many target voxels exactly on the edges of
+		// source voxels
+		final double[][][] rotations = { rotation(0.3, 0.5), rotation(Math.PI,
+			0), rotation(0, Math.PI / 2) };
+		for (final double[][] inverse : rotations) {
+			final ImageStack target = ImageStack.create(31, 27, 35, 16);
+			final ImageStack expected = ImageStack.create(31, 27, 35, 16);
+
+			StackResampler.resample(source, roi, 2, D - 1, cal, inverse, centroid,
+				target, 0.5, Interpolation.NEAREST);
+
+			alignPerVoxel(source, roi, 2, D - 1, cal, inverse, centroid, expected,
+				0.5);
+			for (int z = 1; z <= target.getSize(); z++) {
+				assertArrayEquals((short[]) expected.getPixels(z), (short[]) target
+					.getPixels(z));
+			}
+		}
+	}
+
+	@Test
+	public void testTrilinearReproducesLinearFunction() {
+		final Calibration cal = new Calibration();
+		cal.pixelWidth = 0.5;
+		cal.pixelHeight = 0.75;
+		cal.pixelDepth = 1.25;
+		final ImageStack source = ImageStack.create(W, H, D, 32);
+		for (int z = 1; z <= D; z++) {
+			final float[] pixels = (float[]) source.getPixels(z);
+			for (int y = 0; y < H; y++) {
+				for (int x = 0; x < W; x++) {
+					pixels[y * W + x] = (float) linear(x, y, z);
+				}
+			}
+		}
+		final double[][] inverse = rotation(0.3, 0.5);
+		final double[] centroid = { 5.0, 5.5, 7.0 };
+		final double vS = 0.5;
+		final int wT = 24;
+		final int hT = 22;
+		final int dT = 30;
+		final ImageStack target = ImageStack.create(wT, hT, dT, 32);
+
+		StackResampler.resample(source, new Rectangle(W, H), 1, D, cal, inverse,
+			centroid, target, vS, Interpolation.TRILINEAR);
+
+		int inside = 0;
+		final double[] size = { cal.pixelWidth, cal.pixelHeight, cal.pixelDepth };
+		final double[] centre = { wT * vS / 2, hT * vS / 2, dT * vS / 2 };
+		for (int z = 1; z <= dT; z++) {
+			final float[] pixels = (float[]) target.getPixels(z);
+			for (int y = 0; y < hT; y++) {
+				for (int x = 0; x < wT; x++) {
+					final double[] t = { x * vS - centre[0], y * vS - centre[1], z *
+						vS - centre[2] };
+					final double[] s = new double[3];
+					for (int i = 0; i < 3; i++) {
+						s[i] = (t[0] * inverse[0][i] + t[1] * inverse[1][i] + t[2] *
+							inverse[2][i] + centroid[i]) / size[i];
+					}
+					final float value = pixels[y * wT + x];
+					if (s[0] < 0 || s[0] >= W || s[1] < 0 || s[1] >= H || s[2] < 1 ||
+						s[2] >= D + 1)
+					{
+						assertEquals(0.0f, value, 0.0f);
+					}
+					else if (s[0] <= W - 1 && s[1] <= H - 1 && s[2] <= D) {
+						assertEquals(linear(s[0], s[1], s[2]), value, 1e-3);
+						inside++;
+					}
+				}
+			}
+		}
+		assertTrue(inside > 1000);
+	}
+
+	@Test
+	public void testResultsDoNotDependOnThreads() {
+		final ImageStack source = randomShortStack();
+		final double[][] inverse = rotation(1.1, -0.4);
+		final double[] centroid = { 9.0, 7.0, 6.0 };
+		final Rectangle roi = new Rectangle(2, 3, 14, 10);
+		for (final Interpolation interpolation : Interpolation.values()) {
+			Prefs.setThreads(1);
+			final ImageStack serial = ImageStack.create(80, 70, 75, 16);
+			StackResampler.resample(source, roi, 2, D - 1, new Calibration(),
+				inverse, centroid, serial, 0.25, interpolation);
+			Prefs.setThreads(4);
+			final ImageStack parallel = ImageStack.create(80, 70, 75, 16);
+			StackResampler.resample(source, roi, 2, D - 1, new Calibration(),
+				inverse, centroid, parallel, 0.25, interpolation);
+
+			for (int z = 1; z <= serial.getSize(); z++) {
+				assertArrayEquals((short[]) serial.getPixels(z), (short[]) parallel
+					.getPixels(z));
+			}
+		}
+	}
+
+	// region -- Helper methods --
+
+	/**
+	 * Map each target voxel back to the source one at a time, as Moments did
+	 * before it used {@link StackResampler}
+	 */
+	private static void alignPerVoxel(final ImageStack source,
+		final Rectangle r, final int startSlice, final int endSlice,
+		final Calibration cal, final double[][] inverse, final double[] centroid,
+		final ImageStack target, final double vS)
+	{
+		final int wT = target.getWidth();
+		final int hT = target.getHeight();
+		final int dT = target.getSize();
+		final double xTc = wT * vS / 2;
+		final double yTc = hT * vS / 2;
+		final double zTc = dT * vS / 2;
+		final double dXc = centroid[0] - xTc;
+		final double dYc = centroid[1] - yTc;
+		final double dZc = centroid[2] - zTc;
+		for (int z = 1; z <= dT; z++) {
+			final double zD = z * vS - zTc;
+			for (int y = 0; y < hT; y++) {
+				final double yD = y * vS - yTc;
+				for (int x = 0; x < wT; x++) {
+					final double xD = x * vS - xTc;
+					final double xAlign = xD * inverse[0][0] + yD * inverse[1][0] + zD *
+						inverse[2][0] + xTc;
+					final double yAlign = xD * inverse[0][1] + yD * inverse[1][1] + zD *
+						inverse[2][1] + yTc;
+					final double zAlign = xD * inverse[0][2] + yD * inverse[1][2] + zD *
+						inverse[2][2] + zTc;
+					final int xA = (int) Math.floor((xAlign + dXc) / cal.pixelWidth);
+					final int yA = (int) Math.floor((yAlign + dYc) / cal.pixelHeight);
+					final int zA = (int) Math.floor((zAlign + dZc) / cal.pixelDepth);
+					if (xA < r.x || xA >= r.x + r.width || yA < r.y || yA >= r.y +
+						r.height || zA < startSlice || zA > endSlice)
+					{
+						continue;
+					}
+					target.getProcessor(z).set(x, y, source.getProcessor(zA).get(xA,
+						yA));
+				}
+			}
+		}
+	}
+
+	private static double linear(final double x, final double y,
+		final double z)
+	{
+		return 2 * x + 3 * y + 5 * z;
+	}
+
+	private static ImageStack randomShortStack() {
+		final Random random = new Random(0xB0E);
+		final ImageStack stack = ImageStack.create(W, H, D, 16);
+		for (int z = 1; z <= D; z++) {
+			final short[] pixels = (short[]) stack.getPixels(z);
+			for (int i = 0; i < pixels.length; i++) {
+				pixels[i] = (short) random.nextInt(65536);
+			}
+		}
+		return stack;
+	}
+
+	/** Rotation about z by a, then about x by b */
+	private static double[][] rotation(final double a, final double b) {
+		final double cA = Math.cos(a);
+		final double sA = Math.sin(a);
+		final double cB = Math.cos(b);
+		final double sB = Math.sin(b);
+		return new double[][] { { cA, -sA, 0 }, { sA * cB, cA * cB, -sB }, { sA *
+			sB, cA * sB, cB } };
+	}
+
+	// endregion
+}
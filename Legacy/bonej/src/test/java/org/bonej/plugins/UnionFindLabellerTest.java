@@ -0,0 +1,151 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.plugins;
+
+import static org.bonej.plugins.ParticleCounter.BACK;
+import static org.bonej.plugins.ParticleCounter.FORE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class UnionFindLabellerTest {
+
+	@Test
+	public void testLabelJoinsAntiDiagonalNeighbours() {
+		// a "V" whose arms only touch across an anti-diagonal
+		final byte[][] workArray = new byte[1][12];
+		workArray[0][0] = FORE;
+		workArray[0][2] = FORE;
+		workArray[0][5] = FORE;
+
+		final int[][] labels = UnionFindLabeller.label(workArray, 4, 3, FORE);
+
+		assertArrayEquals(new int[] { 1, 0, 1, 0, 0, 1, 0, 0, 0, 0, 0, 0 },
+			labels[0]);
+	}
+
+	@Test
+	public void testLabelBackgroundIsSixConnected() {
+		// two background voxels touching only at an edge
+		final byte[][] workArray = { { BACK, FORE, FORE, BACK } };
+		final int[][] labels = UnionFindLabeller.label(workArray, 2, 2, BACK);
+
+		assertArrayEquals(new int[] { 1, 0, 0, 2 }, labels[0]);
+	}
+
+	@Test
+	public void testLabelMatchesFloodFill() {
+		final Random random = new Random(0xB0E);
+		final int w = 23;
+		final int h = 17;
+		final int d = 11;
+		final byte[][] workArray = new byte[d][w * h];
+		for (final byte[] slice : workArray) {
+			for (int i = 0; i < slice.length; i++) {
+				slice[i] = (byte) (random.nextDouble() < 0.3 ? FORE : BACK);
+			}
+		}
+
+		for (final int phase : new int[] { FORE, BACK }) {
+			final int[][] expected = floodFill(workArray, w, h, phase);
+			final int[][] labels = UnionFindLabeller.label(workArray, w, h, phase);
+			for (int z = 0; z < d; z++) {
+				assertArrayEquals(expected[z], labels[z]);
+			}
+		}
+	}
+
+	@Test
+	public void testLabelSingleParticleFillsStack() {
+		final byte[][] workArray = new byte[3][9];
+		for (final byte[] slice : workArray) {
+			Arrays.fill(slice, (byte) FORE);
+		}
+
+		final int[][] labels = UnionFindLabeller.label(workArray, 3, 3, FORE);
+
+		for (final int[] slice : labels) {
+			for (final int label : slice) {
+				assertEquals(1, label);
+			}
+		}
+	}
+
+	/**
+	 * Reference labelling that numbers particles in order of their first voxel
+	 */
+	private static int[][] floodFill(final byte[][] workArray, final int w,
+		final int h, final int phase)
+	{
+		final int d = workArray.length;
+		final int[][] labels = new int[d][w * h];
+		final int[][] offsets = phase == FORE ? neighbours26() : new int[][] { {
+			-1, 0, 0 }, { 1, 0, 0 }, { 0, -1, 0 }, { 0, 1, 0 }, { 0, 0, -1 }, { 0, 0,
+				1 } };
+		int next = 1;
+		final Deque<int[]> queue = new ArrayDeque<>();
+		for (int z = 0; z < d; z++) {
+			for (int i = 0; i < w * h; i++) {
+				if (workArray[z][i] != phase || labels[z][i] != 0) continue;
+				labels[z][i] = next;
+				queue.add(new int[] { i % w, i / w, z });
+				while (!queue.isEmpty()) {
+					final int[] v = queue.poll();
+					for (final int[] o : offsets) {
+						final int x = v[0] + o[0];
+						final int y = v[1] + o[1];
+						final int zz = v[2] + o[2];
+						if (x < 0 || x >= w || y < 0 || y >= h || zz < 0 || zz >= d) continue;
+						final int j = y * w + x;
+						if (workArray[zz][j] != phase || labels[zz][j] != 0) continue;
+						labels[zz][j] = next;
+						queue.add(new int[] { x, y, zz });
+					}
+				}
+				next++;
+			}
+		}
+		return labels;
+	}
+
+	private static int[][] neighbours26() {
+		final int[][] offsets = new int[26][];
+		int n = 0;
+		for (int z = -1; z <= 1; z++) {
+			for (int y = -1; y <= 1; y++) {
+				for (int x = -1; x <= 1; x++) {
+					if (x == 0 && y == 0 && z == 0) continue;
+					offsets[n++] = new int[] { x, y, z };
+				}
+			}
+		}
+		return offsets;
+	}
+}
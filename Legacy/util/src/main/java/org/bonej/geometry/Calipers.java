@@ -0,0 +1,249 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.geometry;
+
+import java.util.Arrays;
+
+/**
+ * Caliper measurements of a convex hull: the Feret diameter (the largest
+ * distance between two points of the hull) and the minimum width (the
+ * smallest distance between two parallel planes that enclose the hull).
+ * <p>
+ * Results are returned as arrays of {@value #RESULT_LENGTH} elements: the
+ * Feret diameter, the (x, y, z) coordinates of its two end points, and the
+ * minimum width.
+ * </p>
+ */
+public final class Calipers {
+
+	/** Number of elements in the arrays returned by the methods. */
+	public static final int RESULT_LENGTH = 8;
+
+	private Calipers() {}
+
+	/**
+	 * Measures the exact Feret diameter and the minimum width of a hull.
+	 * <p>
+	 * The diameter is found by comparing pairs of hull vertices, which are
+	 * usually far fewer than the points the hull was made from, and pairs that
+	 * are too close to the hull's centroid to beat the best diameter so far are
+	 * skipped. The minimum
+	 * width is found over the hull's face normals, by walking the hull from
+	 * each face to its antipodal vertex. That is exact when the narrowest
+	 * direction is a face normal (as it is for prisms, boxes and most blobs),
+	 * and an upper bound otherwise.
+	 * </p>
+	 *
+	 * @param hull a convex hull.
+	 * @return Feret diameter, its end points and the minimum width. The width
+	 *         is 0 if the hull is degenerate. All elements are NaN if the hull
+	 *         has no vertices.
+	 */
+	public static double[] measure(final ConvexHull3D hull) {
+		final double[][] v = hull.getVertices();
+		final double[] result = feret(v);
+		if (result[0] != result[0]) return result;
+		result[7] = hull.isDegenerate() ? 0 : minWidth(v, hull.getFaces());
+		return result;
+	}
+
+	/**
+	 * Estimates the Feret diameter and the minimum width of a hull by projecting
+	 * it onto a set of regularly spaced directions.
+	 * <p>
+	 * Each direction also accounts for its antipode, so the directions are
+	 * spread over a hemisphere. The diameter estimate is the largest distance
+	 * between the two extreme vertices along any direction, which is never more
+	 * than the true diameter. The width estimate is the smallest extent along
+	 * any direction, which is never less than the true minimum width.
+	 * </p>
+	 *
+	 * @param hull a convex hull.
+	 * @param nDirections number of directions to check.
+	 * @return estimated Feret diameter, its end points and the minimum width.
+	 *         All elements are NaN if the hull has no vertices.
+	 * @throws IllegalArgumentException if nDirections &lt; 1.
+	 */
+	public static double[] approximate(final ConvexHull3D hull,
+		final int nDirections)
+	{
+		if (nDirections < 1) {
+			throw new IllegalArgumentException(
+				"Number of directions must be positive");
+		}
+		final double[][] v = hull.getVertices();
+		final double[] result = nanResult();
+		if (v.length == 0) return result;
+		// the first half of a regular sphere covers one hemisphere
+		final double[][] directions = Vectors.regularVectors(2 * nDirections);
+		result[0] = 0;
+		result[7] = Double.POSITIVE_INFINITY;
+		for (int d = 0; d < nDirections; d++) {
+			final double[] u = directions[d];
+			int min = 0;
+			int max = 0;
+			double minP = dot(u, v[0]);
+			double maxP = minP;
+			for (int i = 1; i < v.length; i++) {
+				final double p = dot(u, v[i]);
+				if (p < minP) {
+					minP = p;
+					min = i;
+				}
+				else if (p > maxP) {
+					maxP = p;
+					max = i;
+				}
+			}
+			result[7] = Math.min(result[7], maxP - minP);
+			final double distance = Trig.distance3D(v[min], v[max]);
+			if (distance > result[0]) {
+				setFeret(result, distance, v[min], v[max]);
+			}
+		}
+		return result;
+	}
+
+	private static double[] feret(final double[][] v) {
+		final double[] result = nanResult();
+		if (v.length == 0) return result;
+		// no pair can be further apart than the sum of their distances from any
+		// point, so sorting by distance from the centroid lets the search stop
+		// early
+		final double[] centroid = Centroid.getCentroid(v);
+		final double[] radii = new double[v.length];
+		final Integer[] order = new Integer[v.length];
+		for (int i = 0; i < v.length; i++) {
+			radii[i] = Trig.distance3D(v[i], centroid);
+			order[i] = i;
+		}
+		Arrays.sort(order, (i, j) -> Double.compare(radii[j], radii[i]));
+		int a = order[0];
+		int b = order[0];
+		double max = 0;
+		for (int i = 0; i < v.length; i++) {
+			final double[] p = v[order[i]];
+			final double r = radii[order[i]];
+			if (r + radii[order[0]] <= max) break;
+			for (int j = i + 1; j < v.length; j++) {
+				final double[] q = v[order[j]];
+				if (r + radii[order[j]] <= max) break;
+				final double d = Trig.distance3D(p, q);
+				if (d > max) {
+					max = d;
+					a = order[i];
+					b = order[j];
+				}
+			}
+		}
+		setFeret(result, max, v[a], v[b]);
+		return result;
+	}
+
+	private static double minWidth(final double[][] v, final int[][] faces) {
+		final int[][] neighbours = neighbours(v.length, faces);
+		double minWidth = Double.POSITIVE_INFINITY;
+		int vertex = 0;
+		for (final int[] face : faces) {
+			final double[] normal = normal(v[face[0]], v[face[1]], v[face[2]]);
+			if (normal == null) continue;
+			// a linear function has no local minima on a convex polytope, so a
+			// greedy walk finds the vertex that is furthest behind the face
+			double p = dot(normal, v[vertex]);
+			boolean moved = true;
+			while (moved) {
+				moved = false;
+				for (final int w : neighbours[vertex]) {
+					final double q = dot(normal, v[w]);
+					if (q < p) {
+						p = q;
+						vertex = w;
+						moved = true;
+					}
+				}
+			}
+			minWidth = Math.min(minWidth, dot(normal, v[face[0]]) - p);
+		}
+		return minWidth;
+	}
+
+	private static int[][] neighbours(final int nVertices, final int[][] faces) {
+		// every vertex has as many edges as faces
+		final int[] counts = new int[nVertices];
+		for (final int[] face : faces) {
+			for (final int i : face) {
+				counts[i]++;
+			}
+		}
+		final int[][] neighbours = new int[nVertices][];
+		for (int i = 0; i < nVertices; i++) {
+			neighbours[i] = new int[counts[i]];
+			counts[i] = 0;
+		}
+		// each undirected edge is shared by two faces; record it from the face
+		// that has it running forwards from the vertex
+		for (final int[] face : faces) {
+			for (int k = 0; k < 3; k++) {
+				final int from = face[k];
+				neighbours[from][counts[from]++] = face[(k + 1) % 3];
+			}
+		}
+		return neighbours;
+	}
+
+	private static double[] normal(final double[] a, final double[] b,
+		final double[] c)
+	{
+		final double ux = b[0] - a[0];
+		final double uy = b[1] - a[1];
+		final double uz = b[2] - a[2];
+		final double wx = c[0] - a[0];
+		final double wy = c[1] - a[1];
+		final double wz = c[2] - a[2];
+		final double x = uy * wz - uz * wy;
+		final double y = uz * wx - ux * wz;
+		final double z = ux * wy - uy * wx;
+		final double length = Trig.distance3D(x, y, z);
+		if (length == 0) return null;
+		return new double[] { x / length, y / length, z / length };
+	}
+
+	private static double dot(final double[] u, final double[] v) {
+		return u[0] * v[0] + u[1] * v[1] + u[2] * v[2];
+	}
+
+	private static double[] nanResult() {
+		final double[] result = new double[RESULT_LENGTH];
+		Arrays.fill(result, Double.NaN);
+		return result;
+	}
+
+	private static void setFeret(final double[] result, final double feret,
+		final double[] a, final double[] b)
+	{
+		result[0] = feret;
+		System.arraycopy(a, 0, result, 1, 3);
+		System.arraycopy(b, 0, result, 4, 3);
+	}
+}
@@ -0,0 +1,410 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.geometry;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Three-dimensional convex hull of a point cloud, found with the quickhull
+ * algorithm (Barber, Dobkin &amp; Huhdanpaa 1996).
+ * <p>
+ * Points that lie within a small tolerance of the hull surface are not
+ * treated as hull vertices, so repeated points (e.g. the shared vertices of a
+ * triangle mesh) and coplanar points cost nothing extra. If the points are
+ * all coplanar, collinear or coincident the hull is degenerate: it has no
+ * faces, and all the distinct input points are kept as its vertices.
+ * </p>
+ */
+public final class ConvexHull3D {
+
+	private final double[][] vertices;
+	private final int[][] faces;
+
+	/**
+	 * Finds the convex hull of the given points.
+	 *
+	 * @param points an n × 3 array of point coordinates.
+	 */
+	public ConvexHull3D(final double[][] points) {
+		final Builder builder = new Builder(points);
+		vertices = builder.vertices;
+		faces = builder.faces;
+	}
+
+	/**
+	 * Gets the hull's vertices.
+	 *
+	 * @return an h × 3 array of vertex coordinates. The array is not copied.
+	 */
+	public double[][] getVertices() {
+		return vertices;
+	}
+
+	/**
+	 * Gets the hull's triangular faces.
+	 *
+	 * @return an f × 3 array of indices into {@link #getVertices()}. Each face
+	 *         is wound counter-clockwise when viewed from outside the hull. The
+	 *         array is not copied, and is empty if the hull is degenerate.
+	 */
+	public int[][] getFaces() {
+		return faces;
+	}
+
+	/**
+	 * Checks if the hull is degenerate, i.e. if its points don't span 3D space.
+	 *
+	 * @return true if the hull has no faces.
+	 */
+	public boolean isDegenerate() {
+		return faces.length == 0;
+	}
+
+	private static final class Face {
+
+		private final int[] v;
+		private final double nx;
+		private final double ny;
+		private final double nz;
+		private final double offset;
+		private int[] outside = new int[4];
+		private int nOutside;
+		private boolean deleted;
+		private boolean visible;
+
+		private Face(final double[][] p, final int a, final int b, final int c) {
+			v = new int[] { a, b, c };
+			final double ux = p[b][0] - p[a][0];
+			final double uy = p[b][1] - p[a][1];
+			final double uz = p[b][2] - p[a][2];
+			final double wx = p[c][0] - p[a][0];
+			final double wy = p[c][1] - p[a][1];
+			final double wz = p[c][2] - p[a][2];
+			double x = uy * wz - uz * wy;
+			double y = uz * wx - ux * wz;
+			double z = ux * wy - uy * wx;
+			final double length = Math.sqrt(x * x + y * y + z * z);
+			if (length > 0) {
+				x /= length;
+				y /= length;
+				z /= length;
+			}
+			nx = x;
+			ny = y;
+			nz = z;
+			offset = nx * p[a][0] + ny * p[a][1] + nz * p[a][2];
+		}
+
+		private double distance(final double[] point) {
+			return nx * point[0] + ny * point[1] + nz * point[2] - offset;
+		}
+
+		private void addOutside(final int i) {
+			if (nOutside == outside.length) {
+				outside = Arrays.copyOf(outside, nOutside * 2);
+			}
+			outside[nOutside++] = i;
+		}
+	}
+
+	private static final class Builder {
+
+		private final double[][] points;
+		private final long n;
+		private final double epsilon;
+		private final Map<Long, Face> edges = new HashMap<>();
+		private final List<Face> allFaces = new ArrayList<>();
+		private double[][] vertices;
+		private int[][] faces;
+
+		private Builder(final double[][] points) {
+			this.points = points;
+			n = points.length;
+			double scale = 0;
+			for (int d = 0; d < 3; d++) {
+				double max = 0;
+				for (final double[] point : points) {
+					max = Math.max(max, Math.abs(point[d]));
+				}
+				scale += max;
+			}
+			epsilon = scale * 1e-10;
+			final int[] simplex = initialSimplex();
+			if (simplex == null) {
+				degenerate();
+				return;
+			}
+			build(simplex);
+			collect();
+		}
+
+		/**
+		 * Finds four points that make a tetrahedron of non-zero volume.
+		 *
+		 * @return indices of the points, or null if there are none.
+		 */
+		private int[] initialSimplex() {
+			if (n < 4) return null;
+			final int[] extremes = new int[6];
+			for (int i = 1; i < n; i++) {
+				for (int d = 0; d < 3; d++) {
+					if (points[i][d] < points[extremes[2 * d]][d]) extremes[2 * d] = i;
+					if (points[i][d] > points[extremes[2 * d + 1]][d]) extremes[2 * d +
+						1] = i;
+				}
+			}
+			int a = 0;
+			int b = 0;
+			double max = 0;
+			for (int i = 0; i < 6; i++) {
+				for (int j = i + 1; j < 6; j++) {
+					final double d = Trig.distance3D(points[extremes[i]],
+						points[extremes[j]]);
+					if (d > max) {
+						max = d;
+						a = extremes[i];
+						b = extremes[j];
+					}
+				}
+			}
+			if (max <= epsilon) return null;
+			// furthest point from line ab
+			final double[] pa = points[a];
+			final double[] ab = subtract(points[b], pa);
+			int c = -1;
+			max = epsilon;
+			for (int i = 0; i < n; i++) {
+				final double[] cross = cross(ab, subtract(points[i], pa));
+				final double d = Trig.distance3D(cross) / Trig.distance3D(ab);
+				if (d > max) {
+					max = d;
+					c = i;
+				}
+			}
+			if (c < 0) return null;
+			// furthest point from plane abc
+			final Face plane = new Face(points, a, b, c);
+			int e = -1;
+			max = epsilon;
+			for (int i = 0; i < n; i++) {
+				final double d = Math.abs(plane.distance(points[i]));
+				if (d > max) {
+					max = d;
+					e = i;
+				}
+			}
+			if (e < 0) return null;
+			return new int[] { a, b, c, e };
+		}
+
+		private void build(final int[] s) {
+			final double[] centre = new double[3];
+			for (final int i : s) {
+				for (int d = 0; d < 3; d++) {
+					centre[d] += points[i][d] / 4;
+				}
+			}
+			final int[][] tetrahedron = { { s[0], s[1], s[2] }, { s[0], s[1],
+				s[3] }, { s[0], s[2], s[3] }, { s[1], s[2], s[3] } };
+			final List<Face> newFaces = new ArrayList<>(4);
+			for (final int[] t : tetrahedron) {
+				Face face = new Face(points, t[0], t[1], t[2]);
+				if (face.distance(centre) > 0) {
+					face = new Face(points, t[0], t[2], t[1]);
+				}
+				addFace(face);
+				newFaces.add(face);
+			}
+			final int[] all = new int[(int) n];
+			for (int i = 0; i < n; i++) {
+				all[i] = i;
+			}
+			assignOutside(all, all.length, newFaces);
+			final ArrayDeque<Face> pending = new ArrayDeque<>(newFaces);
+			while (!pending.isEmpty()) {
+				final Face face = pending.pop();
+				if (face.deleted || face.nOutside == 0) continue;
+				int eye = face.outside[0];
+				double max = face.distance(points[eye]);
+				for (int i = 1; i < face.nOutside; i++) {
+					final double d = face.distance(points[face.outside[i]]);
+					if (d > max) {
+						max = d;
+						eye = face.outside[i];
+					}
+				}
+				final List<Face> visible = findVisible(face, points[eye]);
+				final List<int[]> horizon = new ArrayList<>();
+				for (final Face f : visible) {
+					for (int k = 0; k < 3; k++) {
+						final int u = f.v[k];
+						final int v = f.v[(k + 1) % 3];
+						final Face neighbour = edges.get(key(v, u));
+						if (neighbour == null || !neighbour.visible) {
+							horizon.add(new int[] { u, v });
+						}
+					}
+				}
+				int nOrphans = 0;
+				for (final Face f : visible) {
+					nOrphans += f.nOutside;
+				}
+				final int[] orphans = new int[nOrphans];
+				nOrphans = 0;
+				for (final Face f : visible) {
+					for (int i = 0; i < f.nOutside; i++) {
+						if (f.outside[i] != eye) orphans[nOrphans++] = f.outside[i];
+					}
+					removeFace(f);
+				}
+				newFaces.clear();
+				for (final int[] edge : horizon) {
+					final Face f = new Face(points, edge[0], edge[1], eye);
+					addFace(f);
+					newFaces.add(f);
+				}
+				assignOutside(orphans, nOrphans, newFaces);
+				for (final Face f : newFaces) {
+					pending.push(f);
+				}
+			}
+		}
+
+		/**
+		 * Finds the connected set of faces that can be seen from the eye point,
+		 * starting from a face that is known to be visible.
+		 */
+		private List<Face> findVisible(final Face start, final double[] eye) {
+			final List<Face> visible = new ArrayList<>();
+			final ArrayDeque<Face> queue = new ArrayDeque<>();
+			start.visible = true;
+			queue.add(start);
+			while (!queue.isEmpty()) {
+				final Face f = queue.poll();
+				visible.add(f);
+				for (int k = 0; k < 3; k++) {
+					final Face neighbour = edges.get(key(f.v[(k + 1) % 3], f.v[k]));
+					if (neighbour == null || neighbour.visible) continue;
+					if (neighbour.distance(eye) > epsilon) {
+						neighbour.visible = true;
+						queue.add(neighbour);
+					}
+				}
+			}
+			return visible;
+		}
+
+		private void assignOutside(final int[] candidates, final int count,
+			final List<Face> targets)
+		{
+			for (int i = 0; i < count; i++) {
+				final int c = candidates[i];
+				for (final Face f : targets) {
+					if (f.distance(points[c]) > epsilon) {
+						f.addOutside(c);
+						break;
+					}
+				}
+			}
+		}
+
+		private void addFace(final Face face) {
+			allFaces.add(face);
+			for (int k = 0; k < 3; k++) {
+				edges.put(key(face.v[k], face.v[(k + 1) % 3]), face);
+			}
+		}
+
+		private void removeFace(final Face face) {
+			face.deleted = true;
+			face.outside = null;
+			face.nOutside = 0;
+			for (int k = 0; k < 3; k++) {
+				final long key = key(face.v[k], face.v[(k + 1) % 3]);
+				if (edges.get(key) == face) edges.remove(key);
+			}
+		}
+
+		private long key(final int from, final int to) {
+			return from * n + to;
+		}
+
+		private void collect() {
+			final int[] index = new int[(int) n];
+			Arrays.fill(index, -1);
+			final List<double[]> hullVertices = new ArrayList<>();
+			final List<int[]> hullFaces = new ArrayList<>();
+			for (final Face face : allFaces) {
+				if (face.deleted) continue;
+				final int[] f = new int[3];
+				for (int k = 0; k < 3; k++) {
+					final int v = face.v[k];
+					if (index[v] < 0) {
+						index[v] = hullVertices.size();
+						hullVertices.add(points[v].clone());
+					}
+					f[k] = index[v];
+				}
+				hullFaces.add(f);
+			}
+			vertices = hullVertices.toArray(new double[0][]);
+			faces = hullFaces.toArray(new int[0][]);
+		}
+
+		private void degenerate() {
+			final List<double[]> distinct = new ArrayList<>();
+			final double[][] sorted = points.clone();
+			Arrays.sort(sorted, (p, q) -> {
+				for (int d = 0; d < 3; d++) {
+					final int c = Double.compare(p[d], q[d]);
+					if (c != 0) return c;
+				}
+				return 0;
+			});
+			for (final double[] point : sorted) {
+				if (distinct.isEmpty() || !Arrays.equals(distinct.get(distinct
+					.size() - 1), point))
+				{
+					distinct.add(point.clone());
+				}
+			}
+			vertices = distinct.toArray(new double[0][]);
+			faces = new int[0][];
+		}
+
+		private static double[] subtract(final double[] p, final double[] q) {
+			return new double[] { p[0] - q[0], p[1] - q[1], p[2] - q[2] };
+		}
+
+		private static double[] cross(final double[] u, final double[] v) {
+			return new double[] { u[1] * v[2] - u[2] * v[1], u[2] * v[0] - u[0] *
+				v[2], u[0] * v[1] - u[1] * v[0] };
+		}
+	}
+}
@@ -41,8 +41,6 @@ public class Ellipsoid {
 	 * same order as the eigenvectors.
 	 */
 	private final double[][] ed;
-	/** ID field for tracking this particular ellipsoid */
-	public int id;
 	/** Centroid of ellipsoid (cx, cy, cz) */
 	private double cx;
 	private double cy;
@@ -142,8 +140,8 @@ public class Ellipsoid {
 		final double vy = y - cy;
 		final double vz = z - cz;
 
-		final double[] radii = getSortedRadii();
-		final double maxRadius = radii[2];
+		final double minRadius = Math.min(ra, Math.min(rb, rc));
+		final double maxRadius = Math.max(ra, Math.max(rb, rc));
 
 		// if further than maximal sphere's bounding box, must be outside
 		if (Math.abs(vx) > maxRadius || Math.abs(vy) > maxRadius || Math.abs(
@@ -158,7 +156,7 @@ public class Ellipsoid {
 
 		// if length closer than minor semiaxis length
 		// must be inside
-		if (length <= radii[0]) return true;
+		if (length <= minRadius) return true;
 
 		final double[][] h = eh;
 
@@ -0,0 +1,101 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.geometry;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CalipersTest {
+
+	private static final double[][] BOX = { { 0, 0, 0 }, { 4, 0, 0 }, { 0, 2,
+		0 }, { 4, 2, 0 }, { 0, 0, 1 }, { 4, 0, 1 }, { 0, 2, 1 }, { 4, 2, 1 } };
+
+	@Test
+	public void testMeasureBox() {
+		final double[] result = Calipers.measure(new ConvexHull3D(BOX));
+
+		assertEquals(Math.sqrt(21), result[0], 1e-12);
+		final double[] a = { result[1], result[2], result[3] };
+		final double[] b = { result[4], result[5], result[6] };
+		assertEquals(result[0], Trig.distance3D(a, b), 1e-12);
+		assertEquals(1.0, result[7], 1e-12);
+	}
+
+	@Test
+	public void testMeasureMatchesBruteForce() {
+		final Random random = new Random(42);
+		final double[][] points = new double[500][];
+		for (int i = 0; i < points.length; i++) {
+			points[i] = new double[] { 3 * random.nextGaussian(), random
+				.nextGaussian(), 0.5 * random.nextGaussian() };
+		}
+		double expected = 0;
+		for (int i = 0; i < points.length; i++) {
+			for (int j = i + 1; j < points.length; j++) {
+				expected = Math.max(expected, Trig.distance3D(points[i], points[j]));
+			}
+		}
+
+		final ConvexHull3D hull = new ConvexHull3D(points);
+		final double[] result = Calipers.measure(hull);
+		final double[] estimate = Calipers.approximate(hull, 1000);
+
+		assertEquals(expected, result[0], 1e-12);
+		assertTrue(estimate[0] <= result[0] + 1e-12);
+		assertEquals(result[0], estimate[0], result[0] * 0.01);
+		assertTrue(estimate[7] >= result[7] - 1e-12);
+		assertEquals(result[7], estimate[7], result[7] * 0.05);
+	}
+
+	@Test
+	public void testDegenerateHull() {
+		final double[][] line = { { 0, 0, 0 }, { 1, 1, 1 }, { 2, 2, 2 } };
+
+		final double[] result = Calipers.measure(new ConvexHull3D(line));
+
+		assertEquals(Math.sqrt(12), result[0], 1e-12);
+		assertEquals(0.0, result[7], 0.0);
+	}
+
+	@Test
+	public void testEmptyHull() {
+		final double[] result = Calipers.measure(new ConvexHull3D(
+			new double[0][]));
+
+		final double[] expected = new double[Calipers.RESULT_LENGTH];
+		Arrays.fill(expected, Double.NaN);
+		assertArrayEquals(expected, result, 0.0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testApproximateThrowsIfNoDirections() {
+		Calipers.approximate(new ConvexHull3D(BOX), 0);
+	}
+}
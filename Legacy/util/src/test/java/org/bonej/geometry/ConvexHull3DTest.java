@@ -0,0 +1,100 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.geometry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ConvexHull3DTest {
+
+	@Test
+	public void testCubeWithInteriorAndRepeatedPoints() {
+		final Random random = new Random(0xc0ffee);
+		final double[][] points = new double[1000 + 16][];
+		for (int i = 0; i < 1000; i++) {
+			points[i] = new double[] { random.nextDouble(), random.nextDouble(),
+				random.nextDouble() };
+		}
+		for (int i = 0; i < 16; i++) {
+			// every corner twice
+			final int c = i % 8;
+			points[1000 + i] = new double[] { c & 1, (c >> 1) & 1, (c >> 2) & 1 };
+		}
+
+		final ConvexHull3D hull = new ConvexHull3D(points);
+
+		assertFalse(hull.isDegenerate());
+		assertEquals(8, hull.getVertices().length);
+		assertEquals(12, hull.getFaces().length);
+	}
+
+	@Test
+	public void testFacesPointOutwards() {
+		final Random random = new Random(0xbeef);
+		final double[][] points = new double[2000][];
+		for (int i = 0; i < points.length; i++) {
+			points[i] = Vectors.randomVector();
+			final double r = random.nextDouble();
+			for (int d = 0; d < 3; d++) {
+				points[i][d] *= r;
+			}
+		}
+
+		final ConvexHull3D hull = new ConvexHull3D(points);
+		final double[][] v = hull.getVertices();
+
+		// Euler's formula for a closed triangulated surface
+		assertEquals(2 * v.length - 4, hull.getFaces().length);
+		for (final int[] f : hull.getFaces()) {
+			final double[] a = v[f[0]];
+			final double[] u = { v[f[1]][0] - a[0], v[f[1]][1] - a[1], v[f[1]][2] -
+				a[2] };
+			final double[] w = { v[f[2]][0] - a[0], v[f[2]][1] - a[1], v[f[2]][2] -
+				a[2] };
+			final double[] n = { u[1] * w[2] - u[2] * w[1], u[2] * w[0] - u[0] *
+				w[2], u[0] * w[1] - u[1] * w[0] };
+			for (final double[] p : points) {
+				final double d = n[0] * (p[0] - a[0]) + n[1] * (p[1] - a[1]) + n[2] *
+					(p[2] - a[2]);
+				assertTrue(d <= 1e-9);
+			}
+		}
+	}
+
+	@Test
+	public void testCoplanarPointsAreDegenerate() {
+		final double[][] points = { { 0, 0, 0 }, { 1, 0, 0 }, { 0, 1, 0 }, { 1, 1,
+			0 }, { 1, 1, 0 } };
+
+		final ConvexHull3D hull = new ConvexHull3D(points);
+
+		assertTrue(hull.isDegenerate());
+		assertEquals(4, hull.getVertices().length);
+	}
+}
@@ -0,0 +1,469 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package org.bonej.ops.connectivity;
+
+import java.util.stream.IntStream;
+
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.BooleanType;
+
+import org.bonej.utilities.BitVolume;
+
+/**
+ * A summed-volume table for the Euler characteristic and edge correction of
+ * any axis-aligned box of a 3D binary image.
+ * <p>
+ * The foreground is treated as a union of closed unit cubes, and its Euler
+ * characteristic as the alternating sum of the vertices, edges, faces and
+ * cubes of that complex. Each voxel owns the eight cells whose lowest corner
+ * is its lowest corner. Their signed sum only depends on the 2 × 2 × 2
+ * neighbourhood around that corner, and it's summed into the table once, when
+ * the table is created.
+ * </p>
+ * <p>
+ * The cells inside a box come straight from the table with eight look-ups.
+ * Only the cells on the surface of the box need to be visited per query,
+ * because there the voxels outside the box must be ignored. This is also where
+ * the edge correction comes from. The results are the same as for an image
+ * cropped to the box: the 26-connected floating Euler characteristic, and the
+ * correction of Odgaard &amp; Gundersen (1993) that converts it to the box's
+ * contribution to the Euler characteristic of the whole it was cut from. For
+ * boxes less than two voxels thick, opposite faces of the box lie in the same
+ * layer of voxels. Here the correction counts both faces, whereas the plug-in
+ * in BoneJ1 counts the layer once.
+ * </p>
+ * <p>
+ * A query thus costs time in proportion to the surface of the box, instead of
+ * its volume. Answering queries in constant time would need a table like this
+ * one for each orientation of the faces and edges of a box.
+ * </p>
+ * <p>
+ * The table holds an int per voxel. The sums inside a box are exact as long as
+ * the box has fewer than 2<sup>29</sup> voxels.
+ * </p>
+ *
+ * @see CreateEulerSumTable
+ */
+public final class EulerSumTable {
+
+	/**
+	 * Signed sums of the cells owned by a voxel, indexed by the 2 × 2 × 2
+	 * neighbourhood of its lowest corner as in {@link BitVolume#getOctant}.
+	 */
+	private static final int[] CELL_LUT = cellLUT();
+	/** Number of voxels read from one word of a row */
+	private static final int RUN = 63;
+	/** Index of the sum of the surface cells owned by voxels in the box */
+	private static final int OWNED = 0;
+	/** Index of the sum of the surface cells, ignoring voxels outside the box */
+	private static final int CLIPPED = 1;
+	/** Index of the edge correction times eight */
+	private static final int CORRECTION = 2;
+	private final BitVolume volume;
+	private final long[] min;
+	private final int width;
+	private final int height;
+	private final int depth;
+	/**
+	 * Sums of the voxels before (x, y, z) on all axes, indexed [z][y * (width +
+	 * 1) + x].
+	 */
+	private final int[][] sums;
+
+	private EulerSumTable(final BitVolume volume, final long[] min) {
+		this.volume = volume;
+		this.min = min;
+		width = volume.width();
+		height = volume.height();
+		depth = volume.depth();
+		sums = new int[depth + 1][(width + 1) * (height + 1)];
+		IntStream.range(0, depth).parallel().forEach(this::sumSlice);
+		for (int z = 1; z <= depth; z++) {
+			final int[] plane = sums[z];
+			final int[] previous = sums[z - 1];
+			for (int i = 0; i < plane.length; i++) {
+				plane[i] += previous[i];
+			}
+		}
+	}
+
+	/**
+	 * Creates a table for a binary interval.
+	 *
+	 * @param interval a 3D interval.
+	 * @param <B> type of the elements in the interval.
+	 * @return a table of the interval.
+	 * @throws IllegalArgumentException if the interval is not 3D.
+	 */
+	public static <B extends BooleanType<B>> EulerSumTable of(
+		final RandomAccessibleInterval<B> interval)
+	{
+		if (interval.numDimensions() != 3) {
+			throw new IllegalArgumentException("Interval must be 3D");
+		}
+		final long[] min = new long[3];
+		interval.min(min);
+		return new EulerSumTable(BitVolume.of(interval), min);
+	}
+
+	/**
+	 * Gets the Euler characteristic of the foreground inside a box, as if it was
+	 * floating in empty space.
+	 *
+	 * @param box a box inside the interval of the table, in its coordinates.
+	 * @return the Euler characteristic &#967; of the box.
+	 * @throws IllegalArgumentException if the box is not inside the interval.
+	 */
+	public double eulerCharacteristic(final Interval box) {
+		final int[] bounds = bounds(box);
+		final long[] surface = surface(bounds);
+		return boxSum(bounds) - surface[OWNED] + surface[CLIPPED];
+	}
+
+	/**
+	 * Gets the correction to subtract from the Euler characteristic of a box, to
+	 * find the box's contribution to the Euler characteristic of the whole image
+	 * it's cut from.
+	 *
+	 * @param box a box inside the interval of the table, in its coordinates.
+	 * @return the edge correction of the box.
+	 * @throws IllegalArgumentException if the box is not inside the interval.
+	 */
+	public double edgeCorrection(final Interval box) {
+		final long[] surface = surface(bounds(box));
+		return surface[CORRECTION] / 8.0;
+	}
+
+	// region -- Helper methods --
+	/**
+	 * Sums the signed cells on the surface of a box.
+	 * <p>
+	 * Each face of the box is packed into rows of bits, and its cells are counted
+	 * on a doubled grid, where an even coordinate is on a vertex plane, and an
+	 * odd coordinate is in the middle of a voxel. The top and bottom faces hold
+	 * the edges and corners of the box, the front and back faces the rest of the
+	 * vertical edges, so that each cell is counted once.
+	 * </p>
+	 *
+	 * @param bounds the lowest voxel of the box, followed by the highest voxel +
+	 *          1.
+	 * @return signed sums of the cells on the surface of the box: cells owned by
+	 *         the voxels of the box as they're summed in the table, all the
+	 *         cells with only the voxels of the box, and the edge correction
+	 *         times eight.
+	 */
+	private long[] surface(final int[] bounds) {
+		final int w = 2 * (bounds[3] - bounds[0]);
+		final int h = 2 * (bounds[4] - bounds[1]);
+		final int d = 2 * (bounds[5] - bounds[2]);
+		final long[] sums = new long[3];
+		// the part of a cell shared with the neighbouring boxes is 1/2 on a face,
+		// 3/4 on an edge and 7/8 on a corner of the box
+		for (final int z : new int[] { bounds[2], bounds[5] - 1 }) {
+			final Face face = rowFace(bounds, true, z, z, true);
+			final long cells = face.signedSum(0, w, 0, h);
+			final long edges = face.signedSum(0, 0, 0, h) + face.signedSum(w, w, 0,
+				h) + face.signedSum(0, w, 0, 0) + face.signedSum(0, w, h, h);
+			final long corners = face.signedSum(0, 0, 0, 0) + face.signedSum(w, w, 0,
+				0) + face.signedSum(0, 0, h, h) + face.signedSum(w, w, h, h);
+			sums[CLIPPED] += cells;
+			sums[CORRECTION] += 4 * cells + 2 * edges - corners;
+		}
+		for (final int y : new int[] { bounds[1], bounds[4] - 1 }) {
+			final Face face = rowFace(bounds, false, y, y, true);
+			final long cells = face.signedSum(0, w, 1, d - 1);
+			final long edges = face.signedSum(0, 0, 1, d - 1) + face.signedSum(w, w, 1,
+				d - 1);
+			sums[CLIPPED] += cells;
+			sums[CORRECTION] += 4 * cells + 2 * edges;
+		}
+		for (final int x : new int[] { bounds[0], bounds[3] - 1 }) {
+			final long cells = columnFace(bounds, x, x, true).signedSum(1, h - 1, 1, d -
+				1);
+			sums[CLIPPED] += cells;
+			sums[CORRECTION] += 4 * cells;
+		}
+		// only the low faces have cells owned by the voxels of the box, and they
+		// depend on the voxels on both sides of the face
+		sums[OWNED] += rowFace(bounds, true, bounds[2] - 1, bounds[2], false)
+			.signedSum(0, w - 1, 0, h - 1);
+		sums[OWNED] += rowFace(bounds, false, bounds[1] - 1, bounds[1], false)
+			.signedSum(0, w - 1, 1, d - 1);
+		sums[OWNED] += columnFace(bounds, bounds[0] - 1, bounds[0], false)
+			.signedSum(1, h - 1, 1, d - 1);
+		return sums;
+	}
+
+	/**
+	 * Packs a face of a box that's parallel to the rows of the volume.
+	 *
+	 * @param bounds the bounds of the box.
+	 * @param zFace true for a top or bottom face, false for a front or back face.
+	 * @param layer0 the first layer of voxels combined into the face.
+	 * @param layer1 the last layer of voxels combined into the face.
+	 * @param clip if true, only the voxels of the box are set in the face,
+	 *          otherwise also the voxels in the margin around it.
+	 * @return the face, with u = x and v = y or z.
+	 */
+	private Face rowFace(final int[] bounds, final boolean zFace,
+		final int layer0, final int layer1, final boolean clip)
+	{
+		final int uSize = bounds[3] - bounds[0];
+		final int v0 = zFace ? bounds[1] : bounds[2];
+		final int vSize = zFace ? bounds[4] - bounds[1] : bounds[5] - bounds[2];
+		final Face face = new Face(uSize, vSize);
+		final int margin = clip ? 0 : 1;
+		for (int v = -margin; v < vSize + margin; v++) {
+			for (int layer = layer0; layer <= layer1; layer++) {
+				final int y = zFace ? v0 + v : layer;
+				final int z = zFace ? layer : v0 + v;
+				for (int k = 0; k < face.wordsPerRow; k++) {
+					// bit p of the face is the voxel at x = bounds[0] - 1 + p
+					final long bits = volume.getBits(bounds[0] - 1 + 64 * k, y, z);
+					face.orWord(k, v, bits & face.mask(k, 1 - margin, uSize + margin));
+				}
+			}
+		}
+		return face;
+	}
+
+	/**
+	 * Packs a left or right face of a box.
+	 *
+	 * @param bounds the bounds of the box.
+	 * @param layer0 the first layer of voxels combined into the face.
+	 * @param layer1 the last layer of voxels combined into the face.
+	 * @param clip if true, only the voxels of the box are set in the face,
+	 *          otherwise also the voxels in the margin around it.
+	 * @return the face, with u = y and v = z.
+	 */
+	private Face columnFace(final int[] bounds, final int layer0,
+		final int layer1, final boolean clip)
+	{
+		final int uSize = bounds[4] - bounds[1];
+		final int vSize = bounds[5] - bounds[2];
+		final Face face = new Face(uSize, vSize);
+		final int margin = clip ? 0 : 1;
+		final long layers = (1L << (layer1 - layer0 + 1)) - 1;
+		for (int v = -margin; v < vSize + margin; v++) {
+			for (int u = -margin; u < uSize + margin; u++) {
+				final long bits = volume.getBits(layer0, bounds[1] + u, bounds[2] + v);
+				if ((bits & layers) != 0) {
+					face.set(u, v);
+				}
+			}
+		}
+		return face;
+	}
+
+	/** Sums the table entries of the voxels in a box */
+	private long boxSum(final int[] bounds) {
+		final int stride = width + 1;
+		final int[] low = sums[bounds[2]];
+		final int[] high = sums[bounds[5]];
+		final int i00 = bounds[1] * stride + bounds[0];
+		final int i10 = bounds[1] * stride + bounds[3];
+		final int i01 = bounds[4] * stride + bounds[0];
+		final int i11 = bounds[4] * stride + bounds[3];
+		// the differences of int sums are exact even if the sums overflow
+		final int sum = (high[i11] - high[i10] - high[i01] + high[i00]) - (low[i11] -
+			low[i10] - low[i01] + low[i00]);
+		return sum;
+	}
+
+	/** Converts a box to voxel coordinates of the volume */
+	private int[] bounds(final Interval box) {
+		if (box.numDimensions() != 3) {
+			throw new IllegalArgumentException("Box must be 3D");
+		}
+		final int[] bounds = new int[6];
+		final int[] sizes = { width, height, depth };
+		for (int d = 0; d < 3; d++) {
+			final long low = box.min(d) - min[d];
+			final long high = box.max(d) - min[d] + 1;
+			if (low < 0 || high > sizes[d] || low >= high) {
+				throw new IllegalArgumentException("Box must be inside the interval");
+			}
+			bounds[d] = (int) low;
+			bounds[d + 3] = (int) high;
+		}
+		return bounds;
+	}
+
+	/** Adds the cells owned by the voxels of one slice into the table */
+	private void sumSlice(final int z) {
+		final int stride = width + 1;
+		final int[] plane = sums[z + 1];
+		for (int y = 0; y < height; y++) {
+			final int previousRow = y * stride;
+			final int row = previousRow + stride;
+			int rowSum = 0;
+			for (int x0 = 0; x0 < width; x0 += RUN) {
+				// bit t of a word is the voxel at x0 - 1 + t
+				final long below = volume.getBits(x0 - 1, y - 1, z - 1);
+				final long back = volume.getBits(x0 - 1, y, z - 1);
+				final long above = volume.getBits(x0 - 1, y - 1, z);
+				final long front = volume.getBits(x0 - 1, y, z);
+				final int n = Math.min(RUN, width - x0);
+				for (int t = 0; t < n; t++) {
+					final int octant = (int) ((below >>> t & 3) | (back >>> t & 3) << 2 |
+						(above >>> t & 3) << 4 | (front >>> t & 3) << 6);
+					rowSum += CELL_LUT[octant];
+					final int x = x0 + t + 1;
+					plane[row + x] = plane[previousRow + x] + rowSum;
+				}
+			}
+		}
+	}
+
+	/**
+	 * A face of a box packed into rows of bits, with a margin of one pixel around
+	 * it. Pixel (u, v) is bit u + 1 of row v + 1.
+	 */
+	private static final class Face {
+
+		private final int wordsPerRow;
+		private final long[] words;
+		private final long[] row;
+
+		private Face(final int uSize, final int vSize) {
+			wordsPerRow = (uSize + 2 + 63) >>> 6;
+			words = new long[wordsPerRow * (vSize + 2)];
+			row = new long[wordsPerRow];
+		}
+
+		private void set(final int u, final int v) {
+			final int p = u + 1;
+			words[(v + 1) * wordsPerRow + (p >>> 6)] |= 1L << p;
+		}
+
+		private void orWord(final int k, final int v, final long word) {
+			words[(v + 1) * wordsPerRow + k] |= word;
+		}
+
+		/** Mask of the bits from p0 to p1 that fall into word k */
+		private long mask(final int k, final int p0, final int p1) {
+			final int from = Math.max(p0 - 64 * k, 0);
+			final int to = Math.min(p1 - 64 * k, 63);
+			if (from > to) {
+				return 0;
+			}
+			return (-1L << from) & (-1L >>> (63 - to));
+		}
+
+		/**
+		 * Sums the signs of the cells present in a range of the doubled grid. A
+		 * cell is present if any of the pixels it touches is set, and its sign
+		 * is negative if it has length on one axis.
+		 */
+		private long signedSum(final int u0, final int u1, final int v0,
+			final int v1)
+		{
+			long sum = 0;
+			for (int v = v0; v <= v1; v++) {
+				final int j = v >> 1;
+				final int rowStart = (j + 1) * wordsPerRow;
+				System.arraycopy(words, rowStart, row, 0, wordsPerRow);
+				if ((v & 1) == 0) {
+					// a vertex row touches the pixel rows on both sides
+					final int previousStart = j * wordsPerRow;
+					for (int k = 0; k < wordsPerRow; k++) {
+						row[k] |= words[previousStart + k];
+					}
+				}
+				// vertices u = 2i touch pixels i - 1 and i, i.e. bits i and i + 1,
+				// and edges u = 2i + 1 pixel i, i.e. bit i + 1
+				final long vertices = count(row, (u0 + 1) >> 1, u1 >> 1, true);
+				final long edges = count(row, (u0 >> 1) + 1, ((u1 - 1) >> 1) + 1,
+					false);
+				final long cells = vertices - edges;
+				sum += (v & 1) == 0 ? cells : -cells;
+			}
+			return sum;
+		}
+
+		/**
+		 * Counts the set bits from p0 to p1, or if pairs is true, the positions
+		 * where bit p or p + 1 is set.
+		 */
+		private static long count(final long[] row, final int p0, final int p1,
+			final boolean pairs)
+		{
+			long count = 0;
+			for (int k = p0 >> 6; k <= p1 >> 6 && p0 <= p1; k++) {
+				long word = row[k];
+				if (pairs) {
+					word |= word >>> 1;
+					if (k + 1 < row.length) {
+						word |= row[k + 1] << 63;
+					}
+				}
+				long mask = -1L;
+				if (k == p0 >> 6) {
+					mask &= -1L << (p0 & 63);
+				}
+				if (k == p1 >> 6) {
+					mask &= -1L >>> (63 - (p1 & 63));
+				}
+				count += Long.bitCount(word & mask);
+			}
+			return count;
+		}
+	}
+
+	/**
+	 * Creates the look-up table of the signed cells owned by a voxel.
+	 * <p>
+	 * A cell with its lowest corner at the vertex is present, if any of the
+	 * voxels it touches is foreground. Along an axis where the cell has length,
+	 * it only touches the voxel at the vertex, otherwise it touches the voxels
+	 * on both sides.
+	 * </p>
+	 */
+	private static int[] cellLUT() {
+		final int[] lut = new int[256];
+		for (int octant = 0; octant < 256; octant++) {
+			int sum = 0;
+			for (int cell = 0; cell < 8; cell++) {
+				boolean present = false;
+				for (int voxel = 0; voxel < 8; voxel++) {
+					// a voxel before the vertex on an axis where the cell has length
+					// doesn't touch it
+					if ((cell & ~voxel) != 0) {
+						continue;
+					}
+					if ((octant & (1 << voxel)) != 0) {
+						present = true;
+					}
+				}
+				if (present) {
+					sum += (Integer.bitCount(cell) & 1) == 0 ? 1 : -1;
+				}
+			}
+			lut[octant] = sum;
+		}
+		return lut;
+	}
+	// endregion
+}
@@ -0,0 +1,284 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.ops.fraction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import net.imagej.ops.Op;
+import net.imagej.ops.special.function.AbstractUnaryFunctionOp;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.transform.integer.MixedTransform;
+import net.imglib2.type.BooleanType;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.IntervalView;
+import net.imglib2.view.MixedTransformView;
+import net.imglib2.view.Views;
+
+import org.scijava.plugin.Plugin;
+
+/**
+ * An op that counts the foreground elements of a binary interval, and all its
+ * elements.
+ * <p>
+ * If the interval is a {@link BitType} {@link ArrayImg} or {@link PlanarImg},
+ * or a 2D or 3D slice or crop of one that keeps its x-, y- and z-axes, the op
+ * counts the set bits of the words behind the image with
+ * {@link Long#bitCount(long)}, one plane per thread. This is how the
+ * subspaces of a hyperstack usually arrive. Any other interval is counted with
+ * a cursor, one element at a time.
+ * </p>
+ */
+@Plugin(type = Op.class)
+public class ElementFraction<B extends BooleanType<B>> extends
+	AbstractUnaryFunctionOp<RandomAccessibleInterval<B>, ElementFraction.Results>
+{
+
+	@Override
+	public Results calculate(final RandomAccessibleInterval<B> interval) {
+		final long total = Intervals.numElements(interval);
+		final long words = countWords(interval);
+		final long foreground = words >= 0 ? words : countElements(interval);
+		return new Results(foreground, total);
+	}
+
+	/** The element counts of an interval */
+	public static final class Results {
+
+		/** Number of foreground elements */
+		public final long foreground;
+		/** Number of all elements */
+		public final long total;
+
+		public Results(final long foreground, final long total) {
+			this.foreground = foreground;
+			this.total = total;
+		}
+
+		/**
+		 * @return ratio of foreground to all elements, or NaN if there are no
+		 *         elements.
+		 */
+		public double ratio() {
+			return (double) foreground / total;
+		}
+	}
+
+	// region -- Helper methods --
+
+	private static <B extends BooleanType<B>> long countElements(
+		final RandomAccessibleInterval<B> interval)
+	{
+		long count = 0;
+		for (final B element : Views.iterable(interval)) {
+			if (element.get()) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Counts the set bits from the given bit index onwards.
+	 *
+	 * @param words the words that store the bits.
+	 * @param from index of the first bit.
+	 * @param length number of bits to count.
+	 * @return number of bits that are set.
+	 */
+	static long countBits(final long[] words, final long from,
+		final long length)
+	{
+		if (length <= 0) {
+			return 0;
+		}
+		final long end = from + length;
+		final int first = (int) (from >>> 6);
+		final int last = (int) ((end - 1) >>> 6);
+		final long lowMask = -1L << from;
+		final long highMask = -1L >>> -end;
+		if (first == last) {
+			return Long.bitCount(words[first] & lowMask & highMask);
+		}
+		long count = Long.bitCount(words[first] & lowMask);
+		for (int k = first + 1; k < last; k++) {
+			count += Long.bitCount(words[k]);
+		}
+		return count + Long.bitCount(words[last] & highMask);
+	}
+
+	/**
+	 * Counts the set bits of one plane of the interval.
+	 *
+	 * @param words the words of the plane, or of the whole image.
+	 * @param planeStart bit index of the first element of the interval in the
+	 *          plane.
+	 * @param lineLength number of elements in a row of the image.
+	 * @param width size of the interval in x.
+	 * @param height size of the interval in y.
+	 * @return number of foreground elements.
+	 */
+	private static long countPlane(final long[] words, final long planeStart,
+		final long lineLength, final long width, final long height)
+	{
+		if (width == lineLength) {
+			// Rows follow each other without gaps
+			return countBits(words, planeStart, width * height);
+		}
+		long count = 0;
+		for (long y = 0; y < height; y++) {
+			count += countBits(words, planeStart + y * lineLength, width);
+		}
+		return count;
+	}
+
+	/**
+	 * Counts the foreground of the interval from the words of the image behind
+	 * it.
+	 *
+	 * @return number of foreground elements, or -1 if the interval is not
+	 *         backed by words the op can read.
+	 */
+	private static long countWords(final RandomAccessibleInterval<?> interval) {
+		final int n = interval.numDimensions();
+		if (n < 2 || n > 3 || Intervals.numElements(interval) == 0) {
+			return -1;
+		}
+		final List<MixedTransform> transforms = new ArrayList<>();
+		RandomAccessible<?> source = interval;
+		while (true) {
+			if (source instanceof IntervalView) {
+				source = ((IntervalView<?>) source).getSource();
+			}
+			else if (source instanceof MixedTransformView) {
+				final MixedTransformView<?> view = (MixedTransformView<?>) source;
+				transforms.add(view.getTransformToSource());
+				source = view.getSource();
+			}
+			else {
+				break;
+			}
+		}
+		if (!(source instanceof Img) || !(((Img<?>) source)
+			.firstElement() instanceof BitType))
+		{
+			return -1;
+		}
+		final Img<?> img = (Img<?>) source;
+		final long[] origin = toImage(transforms, Intervals.minAsLongArray(
+			interval), img.numDimensions());
+		if (origin == null || !isAxisAligned(transforms, interval, origin)) {
+			return -1;
+		}
+		final long width = interval.dimension(0);
+		final long height = interval.dimension(1);
+		final int depth = n == 3 ? (int) interval.dimension(2) : 1;
+		final long lineLength = img.dimension(0);
+		final long planeOffset = origin[0] + origin[1] * lineLength;
+		if (img instanceof ArrayImg && ((ArrayImg<?, ?>) img).update(
+			null) instanceof LongArray)
+		{
+			final long[] words = ((LongArray) ((ArrayImg<?, ?>) img).update(null))
+				.getCurrentStorageArray();
+			final long planeSize = lineLength * img.dimension(1);
+			long start = planeOffset;
+			long stride = planeSize;
+			for (int d = 2; d < img.numDimensions(); d++) {
+				start += origin[d] * stride;
+				stride *= img.dimension(d);
+			}
+			final long first = start;
+			return IntStream.range(0, depth).parallel().mapToLong(z -> countPlane(
+				words, first + z * planeSize, lineLength, width, height)).sum();
+		}
+		if (img instanceof PlanarImg && ((PlanarImg<?, ?>) img).getPlane(
+			0) instanceof LongArray)
+		{
+			final PlanarImg<?, ?> planar = (PlanarImg<?, ?>) img;
+			long plane = 0;
+			long stride = 1;
+			for (int d = 2; d < img.numDimensions(); d++) {
+				plane += origin[d] * stride;
+				stride *= img.dimension(d);
+			}
+			final int first = (int) plane;
+			return IntStream.range(0, depth).parallel().mapToLong(z -> {
+				final long[] words = ((LongArray) planar.getPlane(first + z))
+					.getCurrentStorageArray();
+				return countPlane(words, planeOffset, lineLength, width, height);
+			}).sum();
+		}
+		return -1;
+	}
+
+	/**
+	 * Checks that each dimension of the interval runs along the same dimension
+	 * of the image in the positive direction.
+	 */
+	private static boolean isAxisAligned(final List<MixedTransform> transforms,
+		final RandomAccessibleInterval<?> interval, final long[] origin)
+	{
+		for (int d = 0; d < interval.numDimensions(); d++) {
+			final long[] position = Intervals.minAsLongArray(interval);
+			position[d]++;
+			final long[] step = toImage(transforms, position, origin.length);
+			if (step == null) {
+				return false;
+			}
+			for (int e = 0; e < origin.length; e++) {
+				if (step[e] - origin[e] != (e == d ? 1 : 0)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Maps a position in the interval to the image behind it through the
+	 * transforms of the views in between.
+	 *
+	 * @return the position in the image, or null if the views don't lead to
+	 *         the image.
+	 */
+	private static long[] toImage(final List<MixedTransform> transforms,
+		final long[] position, final int imageDimensions)
+	{
+		long[] current = position;
+		for (final MixedTransform transform : transforms) {
+			final long[] target = new long[transform.numTargetDimensions()];
+			transform.apply(current, target);
+			current = target;
+		}
+		return current.length == imageDimensions ? current : null;
+	}
+	// endregion
+}
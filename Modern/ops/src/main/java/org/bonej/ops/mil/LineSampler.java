@@ -0,0 +1,180 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.ops.mil;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.BooleanType;
+import net.imglib2.view.Views;
+
+import org.bonej.utilities.BitVolume;
+import org.joml.Intersectiond;
+import org.joml.Vector2d;
+import org.joml.Vector3d;
+import org.joml.Vector3dc;
+
+/**
+ * Samples parallel lines through a packed bit volume, and finds their MIL
+ * vector.
+ * <p>
+ * The sampler only reads the volume, so one instance can be shared by threads
+ * that sample different planes. Each caller brings its own {@link Random} for
+ * the offsets of the lines.
+ * </p>
+ *
+ * @see MILPlane
+ */
+final class LineSampler {
+
+	private final BitVolume volume;
+	private final long[] min;
+	private final double[] max;
+
+	private LineSampler(final BitVolume volume, final Interval interval) {
+		this.volume = volume;
+		min = new long[] { interval.min(0), interval.min(1), interval.min(2) };
+		max = new double[] { interval.max(0) + 1, interval.max(1) + 1, interval
+			.max(2) + 1 };
+	}
+
+	/**
+	 * Packs the first three dimensions of the interval into a sampler.
+	 * <p>
+	 * Higher dimensions are sliced at their minimum, because the lines only
+	 * traverse the first three.
+	 * </p>
+	 *
+	 * @param interval an interval with at least three dimensions.
+	 * @param <B> type of the elements in the interval.
+	 * @return a sampler for the interval.
+	 */
+	static <B extends BooleanType<B>> LineSampler of(
+		final RandomAccessibleInterval<B> interval)
+	{
+		RandomAccessibleInterval<B> view = interval;
+		while (view.numDimensions() > 3) {
+			final int d = view.numDimensions() - 1;
+			view = Views.hyperSlice(view, d, view.min(d));
+		}
+		return new LineSampler(BitVolume.of(view), interval);
+	}
+
+	/**
+	 * Traces the lines of a plane through the volume.
+	 *
+	 * @param plane the plane where the lines originate.
+	 * @param bins number of lines per dimension of the plane.
+	 * @param increment step between the sample points on a line.
+	 * @param random generator for the random start offsets of the lines.
+	 * @return a vector parallel to the lines, whose magnitude is the total length
+	 *         of the lines divided by the number of phase changes.
+	 */
+	Vector3d sample(final LinePlane plane, final long bins,
+		final double increment, final Random random)
+	{
+		final Vector3dc direction = plane.getDirection();
+		final double dX = direction.x();
+		final double dY = direction.y();
+		final double dZ = direction.z();
+		final double gapX = dX * increment;
+		final double gapY = dY * increment;
+		final double gapZ = dZ * increment;
+		final Vector2d tValues = new Vector2d();
+		double totalLength = 0;
+		long totalIntercepts = 0;
+		final Iterator<Vector3dc> origins = plane.getOrigins(bins).iterator();
+		while (origins.hasNext()) {
+			final Vector3dc origin = origins.next();
+			final boolean intersect = Intersectiond.intersectRayAab(origin.x(), origin
+				.y(), origin.z(), dX, dY, dZ, min[0], min[1], min[2], max[0], max[1],
+				max[2], tValues);
+			if (!intersect) {
+				continue;
+			}
+			final double tMin = tValues.x;
+			final double tMax = tValues.y;
+			// Add a random offset so that sampling doesn't always start from the
+			// same plane
+			final double startT = tMin + random.nextDouble() * increment;
+			final long samples = (long) Math.ceil((tMax - startT) / increment);
+			if (samples < 1) {
+				continue;
+			}
+			final double x = dX * startT + origin.x();
+			final double y = dY * startT + origin.y();
+			final double z = dZ * startT + origin.z();
+			totalIntercepts += countPhaseChanges(x, y, z, gapX, gapY, gapZ, samples);
+			totalLength += Math.abs(tMax - tMin);
+		}
+		totalIntercepts = Math.max(totalIntercepts, 1);
+		final Vector3d milVector = new Vector3d(direction);
+		return milVector.mul(totalLength / totalIntercepts);
+	}
+
+	/**
+	 * Counts the phase changes from background to foreground along a line.
+	 * <p>
+	 * Steps from the start point by the gap vector, reading the voxel under
+	 * each sample point without allocating any objects. Positions are
+	 * accumulated step by step and truncated to voxel coordinates, so the
+	 * samples land on the same voxels as they would with a
+	 * {@link net.imglib2.RandomAccess}. Samples outside the volume count as
+	 * background.
+	 * </p>
+	 */
+	private long countPhaseChanges(double x, double y, double z,
+		final double gapX, final double gapY, final double gapZ,
+		final long samples)
+	{
+		final long[] words = volume.words();
+		final int width = volume.width();
+		final int height = volume.height();
+		final int depth = volume.depth();
+		final int wordsPerRow = volume.wordsPerRow();
+		long previous = 0;
+		long phaseChanges = 0;
+		for (long i = 0; i < samples; i++) {
+			final long vx = (long) x - min[0];
+			final long vy = (long) y - min[1];
+			final long vz = (long) z - min[2];
+			long current = 0;
+			if (vx >= 0 && vx < width && vy >= 0 && vy < height && vz >= 0 &&
+				vz < depth)
+			{
+				final int index = (int) ((vz * height + vy) * wordsPerRow + (vx >>> 6));
+				current = (words[index] >>> vx) & 1L;
+			}
+			// count without branching, because foreground is hard to predict
+			phaseChanges += current & ~previous;
+			previous = current;
+			x += gapX;
+			y += gapY;
+			z += gapZ;
+		}
+		return phaseChanges;
+	}
+}
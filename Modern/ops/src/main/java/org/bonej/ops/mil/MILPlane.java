@@ -23,10 +23,8 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package org.bonej.ops.mil;
 
-import java.util.Objects;
 import java.util.Random;
 import java.util.stream.IntStream;
-import java.util.stream.Stream;
 
 import net.imagej.ops.Contingent;
 import net.imagej.ops.Op;
@@ -35,20 +33,13 @@ import net.imagej.ops.special.function.AbstractBinaryFunctionOp;
 import net.imagej.ops.special.hybrid.BinaryHybridCFI1;
 import net.imagej.ops.special.hybrid.Hybrids;
 import net.imglib2.Interval;
-import net.imglib2.RandomAccess;
-import net.imglib2.RandomAccessible;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.type.BooleanType;
-import net.imglib2.type.numeric.integer.LongType;
-import net.imglib2.type.numeric.real.DoubleType;
-import net.imglib2.util.ValuePair;
 
-import org.joml.Intersectiond;
+import org.bonej.utilities.BitVolume;
 import org.joml.Quaterniond;
 import org.joml.Quaterniondc;
-import org.joml.Vector2d;
 import org.joml.Vector3d;
-import org.joml.Vector3dc;
 import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
 
@@ -68,6 +59,13 @@ import org.scijava.plugin.Plugin;
  * filled, and a part of a larger whole, e.g. a volume of trabecular bone.
  * </p>
  * <p>
+ * The first three dimensions of the interval are packed into a
+ * {@link BitVolume} the first time the op sees it, and the lines are sampled
+ * from that with primitive arithmetic. The packed volume is reused while the op
+ * is called with the same interval, e.g. for many rotations, so the interval
+ * must not change between such calls.
+ * </p>
+ * <p>
  * For more details, see:
  * </p>
  * <ul>
@@ -93,6 +91,8 @@ public class MILPlane<B extends BooleanType<B>> extends
 
 	private static BinaryHybridCFI1<Vector3d, Quaterniondc, Vector3d> rotateOp;
 	private final Random random = new Random();
+	private RandomAccessibleInterval<B> packedInterval;
+	private LineSampler sampler;
 	/**
 	 * Number of sampling lines generated per dimension.
 	 * <p>
@@ -163,9 +163,7 @@ public class MILPlane<B extends BooleanType<B>> extends
 		if (bins == null) {
 			bins = defaultBins(interval);
 		}
-		final Stream<Section> sections = findIntersectingSections(samplingPlane,
-			interval);
-		return sampleMILVector(interval, sections, samplingPlane.getDirection());
+		return packed(interval).sample(samplingPlane, bins, increment, random);
 	}
 
 	@Override
@@ -174,142 +172,30 @@ public class MILPlane<B extends BooleanType<B>> extends
 	}
 
 	// region -- Helper methods --
-	private static <B extends BooleanType<B>> long countPhaseChanges(
-		final RandomAccessible<B> interval, final Vector3d start,
-		final Vector3dc gap, final long samples)
-
-	{
-		final RandomAccess<B> access = interval.randomAccess();
-		boolean previous = false;
-		long phaseChanges = 0;
-		for (long i = 0; i < samples; i++) {
-			final boolean current = getVoxel(access, start);
-			if (current && !previous) {
-				phaseChanges++;
-			}
-			previous = current;
-			start.add(gap);
-		}
-		return phaseChanges;
-	}
-
-	private long defaultBins(final RandomAccessibleInterval<B> interval) {
+	static long defaultBins(final Interval interval) {
 		final long sqSum = IntStream.range(0, 3).mapToLong(interval::dimension).map(
 			d -> d * d).sum();
 		return (long) Math.sqrt(sqSum);
 	}
 
-	private Stream<Section> findIntersectingSections(final LinePlane plane,
-		final Interval interval)
-	{
-		final Vector3dc direction = plane.getDirection();
-		return plane.getOrigins(bins).map(origin -> intersectInterval(origin,
-			direction, interval)).filter(Objects::nonNull);
-	}
-
-	private static <B extends BooleanType<B>> boolean getVoxel(
-		final RandomAccess<B> access, final Vector3d v)
-	{
-		access.setPosition((long) v.x, 0);
-		access.setPosition((long) v.y, 1);
-		access.setPosition((long) v.z, 2);
-		return access.get().get();
-	}
-
-	private static Section intersectInterval(final Vector3dc origin,
-		final Vector3dc direction, final Interval interval)
-	{
-		final Vector2d tValues = new Vector2d();
-		final Vector3dc o = new Vector3d(origin.x(), origin.y(), origin.z());
-		final Vector3dc d = new Vector3d(direction.x(), direction.y(), direction.z());
-		final Vector3dc min = new Vector3d(interval.min(0), interval.min(1),
-			interval.min(2));
-		final Vector3dc max = new Vector3d(interval.max(0) + 1, interval.max(1) + 1,
-			interval.max(2) + 1);
-		final boolean intersect = Intersectiond.intersectRayAab(o, d, min, max,
-			tValues);
-		if (!intersect) {
-			return null;
-		}
-		return new Section(origin, direction, tValues.x, tValues.y);
-	}
-
-	private ValuePair<Double, Long> mILValues(final RandomAccessible<B> interval,
-		final Section section, final double increment)
-	{
-		final long intercepts = sampleSection(interval, section, section.direction,
-			increment);
-		if (intercepts < 0) {
-			return null;
-		}
-		final double length = Math.abs(section.tMax - section.tMin);
-		return new ValuePair<>(length, intercepts);
-	}
-
 	@SuppressWarnings("unchecked")
 	private void matchOps() {
 		rotateOp = Hybrids.binaryCFI1(ops(), Rotate3d.class, Vector3d.class,
 			new Vector3d(), new Quaterniond());
 	}
 
-	private Vector3d sampleMILVector(final RandomAccessible<B> interval,
-		final Stream<Section> sections, final Vector3dc direction)
-	{
-		final DoubleType totalLength = new DoubleType();
-		final LongType totalIntercepts = new LongType();
-		sections.map(s -> mILValues(interval, s, increment)).filter(
-			Objects::nonNull).forEach(p -> {
-				totalLength.set(p.a + totalLength.get());
-				totalIntercepts.set(p.b + totalIntercepts.get());
-			});
-		totalIntercepts.set(Math.max(totalIntercepts.get(), 1));
-		final Vector3d milVector = new Vector3d(direction);
-		return milVector.mul(totalLength.get() / totalIntercepts.get());
-	}
-
-	private long sampleSection(final RandomAccessible<B> interval,
-		final Section section, final Vector3dc direction, final double increment)
-	{
-		// Add a random offset so that sampling doesn't always start from the same
-		// plane
-		final double startT = section.tMin + random.nextDouble() * increment;
-		final Vector3d samplePoint = new Vector3d(direction);
-		samplePoint.mul(startT);
-		samplePoint.add(section.origin);
-		final Vector3d gap = new Vector3d(direction);
-		gap.mul(increment);
-		final long samples = (long) Math.ceil((section.tMax - startT) / increment);
-		if (samples < 1) {
-			return -1;
-		}
-		return countPhaseChanges(interval, samplePoint, gap, samples);
-	}
-	// endregion
-
-	// region -- Helper classes --
 	/**
-	 * Stores the origin <b>a</b> of a line, and the scalars for <b>a</b> +
-	 * <em>t<sub>1</sub></em><b>v</b> and <b>a</b> +
-	 * <em>t<sub>2</sub></em><b>v</b> where the origin + direction <b>v</b>
-	 * intersects the input interval.
-	 * <p>
-	 * The direction comes from the {@link LinePlane} used in the op.
-	 * </p>
+	 * Returns a sampler for the interval, or the sampler created on an earlier
+	 * call with the same interval.
 	 */
-	private static final class Section {
-
-		private final double tMin;
-		private final double tMax;
-		private final Vector3dc origin;
-		private final Vector3dc direction;
-
-		private Section(final Vector3dc origin, final Vector3dc direction, final double tMin,
-						final double tMax) {
-			this.tMin = tMin;
-			this.tMax = tMax;
-			this.origin = origin;
-			this.direction = direction;
+	private synchronized LineSampler packed(
+		final RandomAccessibleInterval<B> interval)
+	{
+		if (interval != packedInterval) {
+			sampler = LineSampler.of(interval);
+			packedInterval = interval;
 		}
+		return sampler;
 	}
 
 	// endregion
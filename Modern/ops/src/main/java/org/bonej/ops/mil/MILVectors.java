@@ -0,0 +1,144 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.ops.mil;
+
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import net.imagej.ops.Contingent;
+import net.imagej.ops.Op;
+import net.imagej.ops.linalg.rotate.Rotate3d;
+import net.imagej.ops.special.function.AbstractBinaryFunctionOp;
+import net.imagej.ops.special.hybrid.BinaryHybridCFI1;
+import net.imagej.ops.special.hybrid.Hybrids;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.BooleanType;
+
+import org.joml.Quaterniond;
+import org.joml.Quaterniondc;
+import org.joml.Vector3d;
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.Plugin;
+
+/**
+ * An op that finds the mean intercept length (MIL) vectors of an interval in
+ * many directions at once.
+ * <p>
+ * The result for each rotation is the same as {@link MILPlane} would give with
+ * the same bins and increment, but the interval is packed into bits only once,
+ * and the directions are sampled in parallel from the shared, read-only
+ * volume. The vectors are returned in the order of the rotations.
+ * </p>
+ * <p>
+ * Each direction gets its own random generator, seeded from a stream split off
+ * a {@link SplittableRandom}. The seeds are drawn before the directions are
+ * sampled, so with a fixed seed the results don't depend on how the work is
+ * scheduled between threads.
+ * </p>
+ *
+ * @see MILPlane
+ */
+@Plugin(type = Op.class)
+public class MILVectors<B extends BooleanType<B>> extends
+	AbstractBinaryFunctionOp<RandomAccessibleInterval<B>, List<Quaterniondc>, List<Vector3d>>
+	implements Contingent
+{
+
+	/**
+	 * Number of sampling lines generated per dimension.
+	 * <p>
+	 * If left null, bins is set to <em>d</em>, where <em>d</em> is the largest
+	 * diagonal of the input interval.
+	 * </p>
+	 *
+	 * @see MILPlane
+	 */
+	@Parameter(required = false, persist = false)
+	private Long bins;
+	/**
+	 * The scalar step between positions on a sampling line where voxels are read.
+	 * <p>
+	 * If left null, the increment is set to 1.0.
+	 * </p>
+	 *
+	 * @see MILPlane
+	 */
+	@Parameter(required = false, persist = false)
+	private Double increment;
+	/**
+	 * The seed of the generator that seeds the generators of each direction.
+	 * <p>
+	 * If left null, a new generator is created with the default constructor.
+	 * </p>
+	 */
+	@Parameter(required = false, persist = false)
+	private Long seed;
+
+	/**
+	 * Calculates the MIL vectors of the interval.
+	 *
+	 * @param interval a 3D interval.
+	 * @param rotations directions of the MIL lines in the interval.
+	 * @return a MIL vector for each rotation, in the same order.
+	 */
+	@Override
+	public List<Vector3d> calculate(final RandomAccessibleInterval<B> interval,
+		final List<Quaterniondc> rotations)
+	{
+		@SuppressWarnings("unchecked")
+		final BinaryHybridCFI1<Vector3d, Quaterniondc, Vector3d> rotateOp = Hybrids
+			.binaryCFI1(ops(), Rotate3d.class, Vector3d.class, new Vector3d(),
+				new Quaterniond());
+		final long lineBins = bins == null ? MILPlane.defaultBins(interval) : bins;
+		final double step = increment == null ? 1.0 : increment;
+		final long[] seeds = directionSeeds(rotations.size());
+		final LineSampler sampler = LineSampler.of(interval);
+		return IntStream.range(0, rotations.size()).parallel().mapToObj(i -> {
+			final LinePlane plane = new LinePlane(interval, rotations.get(i),
+				rotateOp);
+			plane.setSeed(seeds[i]);
+			return sampler.sample(plane, lineBins, step, new Random(seeds[i]));
+		}).collect(Collectors.toList());
+	}
+
+	@Override
+	public boolean conforms() {
+		return in().numDimensions() >= 3;
+	}
+
+	// region -- Helper methods --
+	private long[] directionSeeds(final int directions) {
+		final SplittableRandom generator = seed == null ? new SplittableRandom()
+			: new SplittableRandom(seed);
+		final long[] seeds = new long[directions];
+		for (int i = 0; i < directions; i++) {
+			seeds[i] = generator.split().nextLong();
+		}
+		return seeds;
+	}
+	// endregion
+}
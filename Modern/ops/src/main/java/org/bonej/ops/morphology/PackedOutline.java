@@ -0,0 +1,156 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.ops.morphology;
+
+import java.util.stream.IntStream;
+
+import net.imagej.ops.Op;
+import net.imagej.ops.special.function.AbstractUnaryFunctionOp;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.BooleanType;
+
+import org.bonej.utilities.BitVolume;
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.Plugin;
+
+/**
+ * An op that finds the outline of the foreground in a 2D or 3D binary
+ * interval, and packs it into a {@link BitVolume}.
+ * <p>
+ * A foreground element is in the outline if any of its neighbours (8 in 2D, 26
+ * in 3D) is background, like in the outline op of imagej-ops. The op doesn't
+ * copy the interval element by element, but computes the outline 64 elements
+ * at a time from the words of the packed input, one xy-plane per thread.
+ * </p>
+ * <p>
+ * Algorithms that only need to sweep the outline once can call
+ * {@link #outlineRow} instead, and never create the outline volume.
+ * </p>
+ */
+@Plugin(type = Op.class)
+public class PackedOutline<B extends BooleanType<B>> extends
+	AbstractUnaryFunctionOp<RandomAccessibleInterval<B>, BitVolume>
+{
+
+	/**
+	 * If true, the space outside the interval is considered foreground, and
+	 * elements at its edges are not in the outline just because they're at the
+	 * edge
+	 */
+	@Parameter(required = false, persist = false)
+	private Boolean excludeEdges = true;
+
+	/**
+	 * Finds the outline of the interval.
+	 *
+	 * @param input a 2D or 3D binary interval.
+	 * @return a volume that's true where the outline is.
+	 * @throws IllegalArgumentException if the interval isn't 2D or 3D.
+	 */
+	@Override
+	public BitVolume calculate(final RandomAccessibleInterval<B> input) {
+		return outline(BitVolume.of(input), excludeEdges);
+	}
+
+	/**
+	 * Finds the outline of a volume.
+	 *
+	 * @param volume a binary volume.
+	 * @param excludeEdges if true, the space outside the volume is foreground.
+	 * @return a new volume that's true where the outline is.
+	 */
+	public static BitVolume outline(final BitVolume volume,
+		final boolean excludeEdges)
+	{
+		final BitVolume outline = new BitVolume(volume.width(), volume.height(),
+			volume.depth());
+		final long[] words = outline.words();
+		final int wordsPerRow = volume.wordsPerRow();
+		IntStream.range(0, volume.depth()).parallel().forEach(z -> {
+			final long[] row = new long[wordsPerRow];
+			for (int y = 0; y < volume.height(); y++) {
+				outlineRow(volume, y, z, excludeEdges, row);
+				System.arraycopy(row, 0, words, (z * volume.height() + y) *
+					wordsPerRow, wordsPerRow);
+			}
+		});
+		return outline;
+	}
+
+	/**
+	 * Finds the outline in one row of a volume.
+	 *
+	 * @param volume a binary volume.
+	 * @param y y-coordinate of the row.
+	 * @param z z-coordinate of the row.
+	 * @param excludeEdges if true, the space outside the volume is foreground.
+	 * @param row receives the words of the outline, laid out like the words of
+	 *          a row in the volume. Must be at least
+	 *          {@link BitVolume#wordsPerRow()} long.
+	 */
+	public static void outlineRow(final BitVolume volume, final int y,
+		final int z, final boolean excludeEdges, final long[] row)
+	{
+		final int wordsPerRow = volume.wordsPerRow();
+		final long outside = excludeEdges ? -1L : 0L;
+		// Bits past the end of the row are outside the volume, too
+		final int tail = volume.width() & 63;
+		final long padding = excludeEdges && tail != 0 ? -1L << tail : 0L;
+		final long[] words = volume.words();
+		// A 2D volume has no neighbours in z, not background ones
+		final int zRadius = volume.depth() == 1 ? 0 : 1;
+		for (int k = 0; k < wordsPerRow; k++) {
+			final int centre = (z * volume.height() + y) * wordsPerRow + k;
+			final long foreground = words[centre];
+			if (foreground == 0) {
+				row[k] = 0;
+				continue;
+			}
+			// An element is interior if it and all its neighbours are set
+			long interior = -1L;
+			for (int dz = -zRadius; dz <= zRadius && interior != 0; dz++) {
+				for (int dy = -1; dy <= 1; dy++) {
+					final int ny = y + dy;
+					final int nz = z + dz;
+					if (ny < 0 || ny >= volume.height() || nz < 0 || nz >= volume
+						.depth())
+					{
+						interior &= outside;
+						continue;
+					}
+					final int start = (nz * volume.height() + ny) * wordsPerRow;
+					final long word = words[start + k] | (k == wordsPerRow - 1 ? padding
+						: 0);
+					final long previous = k == 0 ? outside : words[start + k - 1];
+					final long next = k == wordsPerRow - 1 ? outside : words[start + k +
+						1] | (k + 1 == wordsPerRow - 1 ? padding : 0);
+					final long left = word << 1 | previous >>> 63;
+					final long right = word >>> 1 | next << 63;
+					interior &= left & word & right;
+				}
+			}
+			row[k] = foreground & ~interior;
+		}
+	}
+}
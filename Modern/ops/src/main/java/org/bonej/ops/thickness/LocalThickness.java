@@ -0,0 +1,818 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.ops.thickness;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import net.imagej.ops.Contingent;
+import net.imagej.ops.Op;
+import net.imagej.ops.special.function.AbstractUnaryFunctionOp;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.img.planar.PlanarImgs;
+import net.imglib2.type.BooleanType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.bonej.utilities.BitVolume;
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.Plugin;
+
+/**
+ * An op that creates a local thickness map of the foreground of a 3D binary
+ * interval, as defined by Hildebrand &amp; Rüegsegger.
+ * <p>
+ * The thickness of an element is the diameter of the largest sphere that
+ * contains it, and fits inside the foreground. The op follows the steps of
+ * the LocalThickness_ plugin (Dougherty &amp; Kunzelmann), and gives the same
+ * map, but each step runs in parallel:
+ * </p>
+ * <ol>
+ * <li>A squared Euclidean distance transform, separable in x, y and z. Along y
+ * and z it finds the lower envelope of parabolas (Felzenszwalb &amp;
+ * Huttenlocher). Like in LocalThickness_, the space outside the interval is
+ * not background, and elements with no background in the interval get the
+ * distance 3 (n + 1)², where n is the largest dimension.</li>
+ * <li>A distance ridge. Spheres that are inside the sphere of a neighbour are
+ * dropped, and the rest are indexed by their xy-plane.</li>
+ * <li>The spheres of the ridge are drawn one output plane at a time, and each
+ * thread draws a range of planes, so that no two threads write to the same
+ * element.</li>
+ * <li>Like in LocalThickness_, the surface is cleaned up while the planes are
+ * drawn. The thickness of an element that a sphere covers, but not all of its
+ * neighbours, is replaced with the mean thickness of its neighbours that are
+ * covered and not on the surface.</li>
+ * </ol>
+ * <p>
+ * The thickness of elements that no sphere covers is NaN. A sphere includes
+ * the elements exactly at its radius, which are background. If
+ * {@link #mask} is true, the thickness of all background elements is set to
+ * NaN.
+ * </p>
+ *
+ * @see <a href="https://doi.org/10.1046/j.1365-2818.1997.1340694.x">
+ *      Hildebrand T, Rüegsegger P (1997) A new method for the model-independent
+ *      assessment of thickness in three-dimensional images. J Microsc
+ *      185:67-75</a>
+ */
+@Plugin(type = Op.class)
+public class LocalThickness<B extends BooleanType<B>> extends
+	AbstractUnaryFunctionOp<RandomAccessibleInterval<B>, Img<FloatType>>
+	implements Contingent
+{
+
+	/** If true, the thickness of background elements is NaN */
+	@Parameter(required = false, persist = false)
+	private Boolean mask = true;
+
+	/** Size of an element, by which the thickness values are scaled */
+	@Parameter(required = false, persist = false)
+	private Double elementSize = 1.0;
+
+	/**
+	 * Creates the thickness map.
+	 *
+	 * @param input a 3D binary interval.
+	 * @return a map of the same size as the input, with a float plane per slice.
+	 */
+	@Override
+	public Img<FloatType> calculate(final RandomAccessibleInterval<B> input) {
+		final BitVolume volume = BitVolume.of(input);
+		final Ridge ridge = ridges(volume, true, false)[0];
+		final PlanarImg<FloatType, FloatArray> map = PlanarImgs.floats(volume
+			.width(), volume.height(), volume.depth());
+		final int[] slabs = slabs(volume.depth());
+		IntStream.range(0, slabs.length - 1).parallel().forEach(i -> drawPlanes(
+			ridge, slabs[i], slabs[i + 1], mask, elementSize, map, null));
+		return map;
+	}
+
+	@Override
+	public boolean conforms() {
+		return in().numDimensions() == 3;
+	}
+
+	// region -- Helper methods --
+
+	/**
+	 * Finds the squared distance from each element to the nearest element of the
+	 * other phase, i.e. from foreground to background and vice versa.
+	 * <p>
+	 * The transforms of the two phases share the array, because their elements
+	 * don't overlap.
+	 * </p>
+	 *
+	 * @param volume a binary volume.
+	 * @param foreground if true, transform the foreground elements.
+	 * @param background if true, transform the background elements.
+	 * @return squared distances, one array per xy-plane. The elements of a phase
+	 *         that's not transformed are zero.
+	 */
+	static int[][] squaredDistances(final BitVolume volume,
+		final boolean foreground, final boolean background)
+	{
+		final int width = volume.width();
+		final int height = volume.height();
+		final int depth = volume.depth();
+		final int none = noBackground(width, height, depth);
+		final int[][] distances = new int[depth][width * height];
+		IntStream.range(0, depth).parallel().forEach(z -> {
+			final int[] plane = distances[z];
+			for (int y = 0; y < height; y++) {
+				rowDistances(volume, y, z, none, foreground, background,
+					plane);
+			}
+			final Envelope envelope = new Envelope(height);
+			final boolean[] column = new boolean[height];
+			for (int x = 0; x < width; x++) {
+				for (int y = 0; y < height; y++) {
+					column[y] = volume.get(x, y, z);
+				}
+				for (final boolean phase : new boolean[] { true, false }) {
+					if (!isTransformed(foreground, background, phase)) {
+						continue;
+					}
+					for (int y = 0; y < height; y++) {
+						envelope.f[y] = column[y] == phase ? plane[x + y * width] : 0;
+					}
+					envelope.transform(height);
+					for (int y = 0; y < height; y++) {
+						if (column[y] == phase) {
+							plane[x + y * width] = (int) envelope.d[y];
+						}
+					}
+				}
+			}
+		});
+		IntStream.range(0, height).parallel().forEach(y -> {
+			final Envelope envelope = new Envelope(depth);
+			final boolean[] column = new boolean[depth];
+			for (int x = 0; x < width; x++) {
+				final int i = x + y * width;
+				for (int z = 0; z < depth; z++) {
+					column[z] = volume.get(x, y, z);
+				}
+				for (final boolean phase : new boolean[] { true, false }) {
+					if (!isTransformed(foreground, background, phase)) {
+						continue;
+					}
+					for (int z = 0; z < depth; z++) {
+						envelope.f[z] = column[z] == phase ? distances[z][i] : 0;
+					}
+					envelope.transform(depth);
+					for (int z = 0; z < depth; z++) {
+						if (column[z] == phase) {
+							distances[z][i] = (int) envelope.d[z];
+						}
+					}
+				}
+			}
+		});
+		return distances;
+	}
+
+	/**
+	 * Finds the ridges of the phases from one shared distance transform. The
+	 * ridges of the two phases are found concurrently.
+	 *
+	 * @param volume a binary volume.
+	 * @param foreground if true, find the ridge of the foreground.
+	 * @param background if true, find the ridge of the background.
+	 * @return the ridges of the foreground and the background, in that order.
+	 *         The ridge of a phase that's not found is null.
+	 */
+	static Ridge[] ridges(final BitVolume volume, final boolean foreground,
+		final boolean background)
+	{
+		final int[][] distances = squaredDistances(volume, foreground, background);
+		final Covers covers = Covers.of(distances, volume);
+		return Stream.of(true, false).parallel().map(phase -> isTransformed(
+			foreground, background, phase) ? Ridge.of(distances, covers, volume,
+				phase) : null).toArray(Ridge[]::new);
+	}
+
+	/**
+	 * Draws the thickness of a range of planes from the spheres of a ridge, and
+	 * cleans up their surface like LocalThickness_.
+	 * <p>
+	 * An element is on the surface if a sphere covers it, but doesn't cover all
+	 * of its neighbours. Its thickness is replaced with the mean thickness of
+	 * its neighbours that are covered and not on the surface, if it has any.
+	 * Neighbours share a face, an edge or a corner, and those outside the
+	 * interval are ignored. Cleaning up a plane needs the planes next to it, so
+	 * the two planes on either side of the range are drawn too.
+	 * </p>
+	 *
+	 * @param ridge the spheres of a phase.
+	 * @param start index of the first plane.
+	 * @param end index after the last plane.
+	 * @param mask if true, the thickness of the other phase is NaN.
+	 * @param elementSize scale of the thickness values.
+	 * @param map the thickness map, or null if only the statistics are needed.
+	 * @param statistics statistics of each plane to which its values are added,
+	 *          or null if only the map is needed.
+	 */
+	static void drawPlanes(final Ridge ridge, final int start, final int end,
+		final boolean mask, final double elementSize,
+		final PlanarImg<FloatType, FloatArray> map,
+		final ThicknessStatistics[] statistics)
+	{
+		final Window window = new Window(ridge, elementSize);
+		for (int z = start; z < end; z++) {
+			window.clean(z, mask, map == null ? null : map.getPlane(z)
+				.getCurrentStorageArray(), statistics == null ? null : statistics[z]);
+		}
+	}
+
+	/**
+	 * Splits the planes into a contiguous range for each thread.
+	 *
+	 * @param depth number of planes.
+	 * @return the bounds of the ranges: range i is from bounds[i] to bounds[i +
+	 *         1].
+	 */
+	static int[] slabs(final int depth) {
+		final int n = Math.max(1, Math.min(depth, ForkJoinPool
+			.getCommonPoolParallelism()));
+		return IntStream.rangeClosed(0, n).map(i -> (int) ((long) depth * i / n))
+			.toArray();
+	}
+
+	private static boolean isTransformed(final boolean foreground,
+		final boolean background, final boolean phase)
+	{
+		return phase ? foreground : background;
+	}
+
+	/**
+	 * Finds the squared distance to the nearest element of the other phase in
+	 * the same row, or the given value if the row has no such elements.
+	 */
+	private static void rowDistances(final BitVolume volume, final int y,
+		final int z, final int none, final boolean foreground,
+		final boolean background, final int[] plane)
+	{
+		final int width = volume.width();
+		final int start = y * width;
+		// The last positions of background and foreground
+		final int[] last = { -1, -1 };
+		for (int x = 0; x < width; x++) {
+			final boolean phase = volume.get(x, y, z);
+			last[phase ? 1 : 0] = x;
+			final int other = last[phase ? 0 : 1];
+			if (!isTransformed(foreground, background, phase)) {
+				plane[start + x] = 0;
+				continue;
+			}
+			plane[start + x] = other < 0 ? none : square(x - other);
+		}
+		last[0] = -1;
+		last[1] = -1;
+		for (int x = width - 1; x >= 0; x--) {
+			final boolean phase = volume.get(x, y, z);
+			last[phase ? 1 : 0] = x;
+			final int other = last[phase ? 0 : 1];
+			if (isTransformed(foreground, background, phase) && other >= 0) {
+				plane[start + x] = Math.min(plane[start + x], square(other - x));
+			}
+		}
+	}
+
+	/**
+	 * Returns the squared distance of elements with no element of the other
+	 * phase in the interval, which is larger than any true distance.
+	 */
+	private static int noBackground(final int width, final int height,
+		final int depth)
+	{
+		final int n = Math.max(width, Math.max(height, depth));
+		return 3 * (n + 1) * (n + 1);
+	}
+
+	private static int square(final int x) {
+		return x * x;
+	}
+
+	/**
+	 * The lower envelope of the parabolas (q - p)² + f(p), which gives the
+	 * minimum of each f(q) after a 1D squared distance transform.
+	 */
+	private static final class Envelope {
+
+		private final long[] f;
+		private final long[] d;
+		private final int[] vertices;
+		private final double[] bounds;
+
+		private Envelope(final int size) {
+			f = new long[size];
+			d = new long[size];
+			vertices = new int[size];
+			bounds = new double[size + 1];
+		}
+
+		private void transform(final int size) {
+			int k = 0;
+			vertices[0] = 0;
+			bounds[0] = Double.NEGATIVE_INFINITY;
+			bounds[1] = Double.POSITIVE_INFINITY;
+			for (int q = 1; q < size; q++) {
+				double s = intersection(q, vertices[k]);
+				while (s <= bounds[k]) {
+					k--;
+					s = intersection(q, vertices[k]);
+				}
+				k++;
+				vertices[k] = q;
+				bounds[k] = s;
+				bounds[k + 1] = Double.POSITIVE_INFINITY;
+			}
+			k = 0;
+			for (int q = 0; q < size; q++) {
+				while (bounds[k + 1] < q) {
+					k++;
+				}
+				final long offset = q - vertices[k];
+				d[q] = offset * offset + f[vertices[k]];
+			}
+		}
+
+		/** Finds where the parabolas rooted at q and p intersect */
+		private double intersection(final int q, final int p) {
+			return ((f[q] + (long) q * q) - (f[p] + (long) p * p)) / (2.0 * q -
+				2.0 * p);
+		}
+	}
+
+	/**
+	 * The centres and squared radii of the spheres that cover a phase, indexed
+	 * by xy-plane.
+	 */
+	static final class Ridge {
+
+		private final BitVolume volume;
+		private final boolean phase;
+		private final int width;
+		private final int height;
+		/**
+		 * The spheres of each plane as (r² &lt;&lt; 32 | x + y * width), from the
+		 * largest to the smallest
+		 */
+		private final long[][] spheres;
+		private final int largest;
+		private final int maxRadius;
+
+		private Ridge(final long[][] spheres, final BitVolume volume,
+			final boolean phase)
+		{
+			this.spheres = spheres;
+			this.volume = volume;
+			this.phase = phase;
+			width = volume.width();
+			height = volume.height();
+			largest = (int) Arrays.stream(spheres).filter(s -> s.length > 0)
+				.mapToLong(s -> s[0] >>> 32).max().orElse(0);
+			maxRadius = (int) Math.ceil(Math.sqrt(largest));
+		}
+
+		/**
+		 * Finds the ridge of a phase.
+		 *
+		 * @param distances squared distances from
+		 *          {@link #squaredDistances(BitVolume, boolean, boolean)}.
+		 * @param covers the covers of the distances.
+		 * @param volume the volume that was transformed.
+		 * @param phase true for the foreground, false for the background.
+		 * @return the spheres of the ridge.
+		 */
+		static Ridge of(final int[][] distances, final Covers covers,
+			final BitVolume volume, final boolean phase)
+		{
+			final long[][] spheres = new long[distances.length][];
+			IntStream.range(0, distances.length).parallel().forEach(
+				z -> spheres[z] = findSpheres(distances, covers, volume, phase, z));
+			return new Ridge(spheres, volume, phase);
+		}
+
+		private static long[] findSpheres(final int[][] distances,
+			final Covers covers, final BitVolume volume, final boolean phase,
+			final int z)
+		{
+			final int width = volume.width();
+			final int height = volume.height();
+			final int[] plane = distances[z];
+			long[] spheres = new long[16];
+			int count = 0;
+			for (int y = 0; y < height; y++) {
+				for (int x = 0; x < width; x++) {
+					final int i = x + y * width;
+					if (plane[i] == 0 || volume.get(x, y, z) != phase || isCovered(
+						distances, covers, volume, x, y, z))
+					{
+						continue;
+					}
+					if (count == spheres.length) {
+						spheres = Arrays.copyOf(spheres, 2 * count);
+					}
+					spheres[count++] = ((long) plane[i] << 32) | i;
+				}
+			}
+			final long[] sorted = Arrays.copyOf(spheres, count);
+			Arrays.sort(sorted);
+			for (int i = 0; i < count / 2; i++) {
+				final long swap = sorted[i];
+				sorted[i] = sorted[count - 1 - i];
+				sorted[count - 1 - i] = swap;
+			}
+			return sorted;
+		}
+
+		/**
+		 * Checks if the sphere at the element is inside the sphere of one of its
+		 * neighbours, in which case it doesn't add anything to the map.
+		 */
+		private static boolean isCovered(final int[][] distances,
+			final Covers covers, final BitVolume volume, final int x, final int y,
+			final int z)
+		{
+			final int width = volume.width();
+			final int height = volume.height();
+			final boolean phase = volume.get(x, y, z);
+			final int squared = distances[z][x + y * width];
+			final int index = covers.indexOf(squared);
+			for (int dz = -1; dz <= 1; dz++) {
+				final int nz = z + dz;
+				if (nz < 0 || nz >= distances.length) {
+					continue;
+				}
+				for (int dy = -1; dy <= 1; dy++) {
+					final int ny = y + dy;
+					if (ny < 0 || ny >= height) {
+						continue;
+					}
+					for (int dx = -1; dx <= 1; dx++) {
+						final int nx = x + dx;
+						if (nx < 0 || nx >= width) {
+							continue;
+						}
+						final int neighbour = distances[nz][nx + ny * width];
+						if (neighbour <= squared || volume.get(nx, ny, nz) != phase) {
+							continue;
+						}
+						final int offset = dx * dx + dy * dy + dz * dz;
+						if (index >= 0 && neighbour >= covers.get(index, offset)) {
+							return true;
+						}
+						if (index < 0 && reaches(squared, offset, neighbour)) {
+							return true;
+						}
+					}
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Checks the sphere at a neighbour without a precomputed cover.
+		 * <p>
+		 * Every element p in the sphere at c is within r<sub>c</sub> + |n - c| of
+		 * the neighbour n. The squared distance |p - n|² is an integer, so p is in
+		 * the sphere of n if (r<sub>c</sub> + |n - c|)² &lt; r<sub>n</sub>² + 1.
+		 * </p>
+		 */
+		private static boolean reaches(final int squared, final int offset,
+			final int neighbour)
+		{
+			final double reach = Math.sqrt(squared) + Math.sqrt(offset);
+			// The margin errs on the side of keeping the sphere
+			return reach * reach < neighbour + 1 - 1e-6;
+		}
+
+		/** @return the squared radius of the largest sphere, or 0 if none. */
+		int largest() {
+			return largest;
+		}
+
+		/**
+		 * Finds the largest squared radius of the spheres that cover each element
+		 * of a plane.
+		 */
+		private int[] paint(final int z) {
+			final int[] thickest = new int[width * height];
+			final int first = Math.max(0, z - maxRadius);
+			final int last = Math.min(spheres.length - 1, z + maxRadius);
+			for (int sphereZ = first; sphereZ <= last; sphereZ++) {
+				final long dzSq = (long) (z - sphereZ) * (z - sphereZ);
+				for (final long sphere : spheres[sphereZ]) {
+					final int squared = (int) (sphere >>> 32);
+					if (squared < dzSq) {
+						// The rest of the spheres are smaller
+						break;
+					}
+					paintDisc(thickest, (int) sphere, squared, (int) (squared - dzSq));
+				}
+			}
+			return thickest;
+		}
+
+		private void paintDisc(final int[] thickest, final int centre,
+			final int squared, final int discSquared)
+		{
+			final int cx = centre % width;
+			final int cy = centre / width;
+			final int yRadius = (int) Math.sqrt(discSquared);
+			final int yStart = Math.max(0, cy - yRadius);
+			final int yEnd = Math.min(height - 1, cy + yRadius);
+			for (int y = yStart; y <= yEnd; y++) {
+				final int xRadius = (int) Math.sqrt(discSquared - square(y - cy));
+				final int xStart = Math.max(0, cx - xRadius);
+				final int xEnd = Math.min(width - 1, cx + xRadius);
+				final int row = y * width;
+				for (int x = xStart; x <= xEnd; x++) {
+					if (thickest[row + x] < squared) {
+						thickest[row + x] = squared;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * The drawn planes around the plane that's cleaned up. Planes are cleaned up
+	 * in increasing order, and each is drawn only once.
+	 */
+	private static final class Window {
+
+		private final Ridge ridge;
+		private final double elementSize;
+		private final int width;
+		private final int height;
+		private final int depth;
+		/** Thickness of planes z - 2 to z + 2 at z % 5, 0 if not covered */
+		private final float[][] thickness = new float[5][];
+		private final int[] thicknessZ = { -1, -1, -1, -1, -1 };
+		/**
+		 * Elements of the same planes that have an element that isn't covered in
+		 * their 3x3 neighbourhood of the plane
+		 */
+		private final boolean[][] uncovered = new boolean[5][];
+		/** Elements with an element that isn't covered next to them in x */
+		private final boolean[] row;
+		/** Surface elements of planes z - 1 to z + 1 at z % 3 */
+		private final boolean[][] surface = new boolean[3][];
+		private final int[] surfaceZ = { -1, -1, -1 };
+
+		private Window(final Ridge ridge, final double elementSize) {
+			this.ridge = ridge;
+			this.elementSize = elementSize;
+			width = ridge.width;
+			height = ridge.height;
+			depth = ridge.volume.depth();
+			row = new boolean[width * height];
+		}
+
+		/**
+		 * Writes the cleaned up thickness of a plane.
+		 *
+		 * @param z index of the plane.
+		 * @param mask if true, the thickness of the other phase is NaN.
+		 * @param target the thickness values of the plane, or null.
+		 * @param statistics statistics to which the values are added, or null.
+		 */
+		private void clean(final int z, final boolean mask, final float[] target,
+			final ThicknessStatistics statistics)
+		{
+			final boolean[][] surfaces = { surface(z - 1), surface(z), surface(z +
+				1) };
+			final float[][] planes = { thickness(z - 1), thickness(z), thickness(z +
+				1) };
+			for (int y = 0; y < height; y++) {
+				for (int x = 0; x < width; x++) {
+					final int i = x + y * width;
+					float t = planes[1][i];
+					if (t == 0.0f || mask && ridge.volume.get(x, y, z) != ridge.phase) {
+						t = Float.NaN;
+					}
+					else if (surfaces[1][i]) {
+						t = interiorMean(planes, surfaces, x, y, t);
+					}
+					if (target != null) {
+						target[i] = t;
+					}
+					if (statistics != null && t == t) {
+						statistics.add(t);
+					}
+				}
+			}
+		}
+
+		private float[] thickness(final int z) {
+			if (z < 0 || z >= depth) {
+				return null;
+			}
+			final int slot = z % 5;
+			if (thicknessZ[slot] != z) {
+				if (thickness[slot] == null) {
+					thickness[slot] = new float[width * height];
+				}
+				final float[] plane = thickness[slot];
+				final int[] thickest = ridge.paint(z);
+				for (int i = 0; i < plane.length; i++) {
+					plane[i] = thickest[i] == 0 ? 0.0f : (float) (2.0 * Math.sqrt(
+						thickest[i]) * elementSize);
+				}
+				findUncovered(thickest, slot);
+				thicknessZ[slot] = z;
+			}
+			return thickness[slot];
+		}
+
+		/** Finds the uncovered neighbourhoods of a plane, first in x then in y */
+		private void findUncovered(final int[] thickest, final int slot) {
+			if (uncovered[slot] == null) {
+				uncovered[slot] = new boolean[width * height];
+			}
+			final boolean[] plane = uncovered[slot];
+			for (int y = 0; y < height; y++) {
+				final int start = y * width;
+				for (int x = 0; x < width; x++) {
+					final int i = start + x;
+					row[i] = thickest[i] == 0 || x > 0 && thickest[i - 1] == 0 ||
+						x < width - 1 && thickest[i + 1] == 0;
+				}
+			}
+			for (int y = 0; y < height; y++) {
+				final int start = y * width;
+				for (int x = 0; x < width; x++) {
+					final int i = start + x;
+					plane[i] = row[i] || y > 0 && row[i - width] || y < height - 1 &&
+						row[i + width];
+				}
+			}
+		}
+
+		private boolean[] surface(final int z) {
+			if (z < 0 || z >= depth) {
+				return null;
+			}
+			final int slot = z % 3;
+			if (surfaceZ[slot] != z) {
+				if (surface[slot] == null) {
+					surface[slot] = new boolean[width * height];
+				}
+				final boolean[] plane = surface[slot];
+				thickness(z - 1);
+				thickness(z + 1);
+				final float[] middle = thickness(z);
+				final boolean[] below = z > 0 ? uncovered[(z - 1) % 5] : null;
+				final boolean[] here = uncovered[z % 5];
+				final boolean[] above = z < depth - 1 ? uncovered[(z + 1) % 5] : null;
+				for (int i = 0; i < plane.length; i++) {
+					plane[i] = middle[i] > 0.0f && (here[i] || below != null &&
+						below[i] || above != null && above[i]);
+				}
+				surfaceZ[slot] = z;
+			}
+			return surface[slot];
+		}
+
+		/**
+		 * Finds the mean thickness of the covered neighbours that aren't on the
+		 * surface, or returns the given thickness if there are none.
+		 */
+		private float interiorMean(final float[][] planes,
+			final boolean[][] surfaces, final int x, final int y,
+			final float thickness)
+		{
+			double sum = 0.0;
+			int count = 0;
+			for (int k = 0; k < planes.length; k++) {
+				final float[] plane = planes[k];
+				if (plane == null) {
+					continue;
+				}
+				for (int ny = Math.max(0, y - 1); ny <= Math.min(height - 1, y +
+					1); ny++)
+				{
+					for (int nx = Math.max(0, x - 1); nx <= Math.min(width - 1, x +
+						1); nx++)
+					{
+						final int j = nx + ny * width;
+						if (plane[j] > 0.0f && !surfaces[k][j]) {
+							sum += plane[j];
+							count++;
+						}
+					}
+				}
+			}
+			return count == 0 ? thickness : (float) (sum / count);
+		}
+	}
+
+	/**
+	 * For each squared radius in the distance map, the smallest squared radius
+	 * that the sphere of a neighbour needs to contain all the elements of the
+	 * sphere. The neighbour shares either a face, an edge or a corner. Like the
+	 * radius template of LocalThickness_, these find the ridge exactly.
+	 */
+	static final class Covers {
+
+		private final int[] radii;
+		private final int[] covers;
+
+		private Covers(final int[] radii, final int[] covers) {
+			this.radii = radii;
+			this.covers = covers;
+		}
+
+		/**
+		 * Finds the covers of the distances in the map. The distances of elements
+		 * with no element of the other phase are left out, because finding a
+		 * cover takes O(r²) time.
+		 *
+		 * @param distances squared distances of one or both phases.
+		 * @param volume the volume that was transformed.
+		 * @return the covers.
+		 */
+		static Covers of(final int[][] distances, final BitVolume volume) {
+			final int limit = noBackground(volume.width(), volume.height(), volume
+				.depth());
+			final BitSet occurs = IntStream.range(0, distances.length).parallel()
+				.collect(BitSet::new, (set, z) -> {
+					for (final int d : distances[z]) {
+						if (d > 0 && d < limit) {
+							set.set(d);
+						}
+					}
+				}, BitSet::or);
+			final int[] radii = occurs.stream().toArray();
+			final int[] covers = new int[3 * radii.length];
+			IntStream.range(0, radii.length).parallel().forEach(i -> findCovers(
+				radii[i], covers, 3 * i));
+			return new Covers(radii, covers);
+		}
+
+		/**
+		 * Finds the largest squared distance from the elements of the sphere to
+		 * the neighbours at (-1, 0, 0), (-1, -1, 0) and (-1, -1, -1). By symmetry,
+		 * the farthest elements have non-negative coordinates, and the largest z
+		 * for their x and y.
+		 */
+		private static void findCovers(final int squared, final int[] covers,
+			final int offset)
+		{
+			for (int x = 0; x * x <= squared; x++) {
+				for (int y = 0; x * x + y * y <= squared; y++) {
+					final int z = (int) Math.sqrt(squared - x * x - y * y);
+					final int face = square(x + 1) + y * y + z * z;
+					final int edge = face + 2 * y + 1;
+					final int corner = edge + 2 * z + 1;
+					covers[offset] = Math.max(covers[offset], face);
+					covers[offset + 1] = Math.max(covers[offset + 1], edge);
+					covers[offset + 2] = Math.max(covers[offset + 2], corner);
+				}
+			}
+		}
+
+		/** @return index of the squared radius, or negative if it has no covers */
+		private int indexOf(final int squared) {
+			return Arrays.binarySearch(radii, squared);
+		}
+
+		/**
+		 * @param index index of the squared radius.
+		 * @param offset squared distance to the neighbour: 1, 2 or 3.
+		 * @return the smallest squared radius that covers the sphere.
+		 */
+		private int get(final int index, final int offset) {
+			return covers[3 * index + offset - 1];
+		}
+	}
+	// endregion
+}
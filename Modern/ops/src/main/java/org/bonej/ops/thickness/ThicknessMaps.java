@@ -0,0 +1,189 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.ops.thickness;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import net.imagej.ops.Contingent;
+import net.imagej.ops.Op;
+import net.imagej.ops.special.function.AbstractUnaryFunctionOp;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.img.planar.PlanarImgs;
+import net.imglib2.type.BooleanType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.bonej.ops.thickness.LocalThickness.Ridge;
+import org.bonej.utilities.BitVolume;
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.Plugin;
+
+/**
+ * An op that creates the local thickness maps of the foreground and the
+ * background of a 3D binary interval, e.g. trabecular thickness and spacing.
+ * <p>
+ * The maps are the same as those of {@link LocalThickness}, but the phases
+ * share one distance transform, their ridges are found concurrently, and
+ * their spheres are drawn in the same parallel pass. The statistics and the
+ * histogram of each map are accumulated while it's drawn and cleaned up, which
+ * only needs a few planes at a time, so when only they are needed, the maps
+ * needn't be kept in memory.
+ * </p>
+ */
+@Plugin(type = Op.class)
+public class ThicknessMaps<B extends BooleanType<B>> extends
+	AbstractUnaryFunctionOp<RandomAccessibleInterval<B>, ThicknessMaps.Results>
+	implements Contingent
+{
+
+	/** If true, create the thickness map of the foreground */
+	@Parameter(required = false, persist = false)
+	private Boolean foreground = true;
+
+	/** If true, create the thickness map of the background */
+	@Parameter(required = false, persist = false)
+	private Boolean background = true;
+
+	/**
+	 * If true, the thickness of the other phase is NaN in each map. If false,
+	 * elements of the other phase that no sphere covers are still NaN, and so
+	 * left out of the statistics.
+	 */
+	@Parameter(required = false, persist = false)
+	private Boolean mask = true;
+
+	/** Size of an element, by which the thickness values are scaled */
+	@Parameter(required = false, persist = false)
+	private Double elementSize = 1.0;
+
+	/** If false, only the statistics are returned, and the maps are null */
+	@Parameter(required = false, persist = false)
+	private Boolean keepMaps = true;
+
+	/**
+	 * Number of histogram bins between zero and the thickness of the largest
+	 * sphere
+	 */
+	@Parameter(required = false, persist = false)
+	private Integer bins = 256;
+
+	/**
+	 * Creates the thickness maps.
+	 *
+	 * @param input a 3D binary interval.
+	 * @return the maps and their statistics.
+	 */
+	@Override
+	public Results calculate(final RandomAccessibleInterval<B> input) {
+		final BitVolume volume = BitVolume.of(input);
+		final Ridge[] ridges = LocalThickness.ridges(volume, foreground,
+			background);
+		final List<PlanarImg<FloatType, FloatArray>> maps = new ArrayList<>();
+		for (final Ridge ridge : ridges) {
+			maps.add(ridge == null || !keepMaps ? null : PlanarImgs.floats(volume
+				.width(), volume.height(), volume.depth()));
+		}
+		final ThicknessStatistics[][] planeStatistics =
+			new ThicknessStatistics[ridges.length][volume.depth()];
+		final int[] slabs = LocalThickness.slabs(volume.depth());
+		IntStream.range(0, slabs.length - 1).parallel().forEach(s -> {
+			for (int i = 0; i < ridges.length; i++) {
+				if (ridges[i] == null) {
+					continue;
+				}
+				for (int z = slabs[s]; z < slabs[s + 1]; z++) {
+					planeStatistics[i][z] = createStatistics(ridges[i]);
+				}
+				LocalThickness.drawPlanes(ridges[i], slabs[s], slabs[s + 1], mask,
+					elementSize, maps.get(i), planeStatistics[i]);
+			}
+		});
+		final Phase[] phases = new Phase[ridges.length];
+		for (int i = 0; i < ridges.length; i++) {
+			if (ridges[i] != null) {
+				phases[i] = new Phase(maps.get(i), merge(createStatistics(ridges[i]),
+					planeStatistics[i]));
+			}
+		}
+		return new Results(phases[0], phases[1]);
+	}
+
+	@Override
+	public boolean conforms() {
+		return in().numDimensions() == 3 && (foreground || background) &&
+			bins >= 0;
+	}
+
+	/**
+	 * The thickness maps of the phases, null for a phase that wasn't mapped.
+	 */
+	public static final class Results {
+
+		/** The map of the foreground */
+		public final Phase foreground;
+		/** The map of the background */
+		public final Phase background;
+
+		private Results(final Phase foreground, final Phase background) {
+			this.foreground = foreground;
+			this.background = background;
+		}
+	}
+
+	/** The thickness map of a phase, and its statistics */
+	public static final class Phase {
+
+		/** The thickness map with a plane per slice, or null if not kept */
+		public final PlanarImg<FloatType, FloatArray> map;
+		/** Statistics and histogram of the values of the map that are not NaN */
+		public final ThicknessStatistics statistics;
+
+		private Phase(final PlanarImg<FloatType, FloatArray> map,
+			final ThicknessStatistics statistics)
+		{
+			this.map = map;
+			this.statistics = statistics;
+		}
+	}
+
+	// region -- Helper methods --
+	private ThicknessStatistics createStatistics(final Ridge ridge) {
+		final double largest = 2.0 * Math.sqrt(ridge.largest()) * elementSize;
+		return new ThicknessStatistics(largest, bins);
+	}
+
+	private static ThicknessStatistics merge(
+		final ThicknessStatistics statistics,
+		final ThicknessStatistics[] planeStatistics)
+	{
+		for (final ThicknessStatistics plane : planeStatistics) {
+			statistics.merge(plane);
+		}
+		return statistics;
+	}
+	// endregion
+}
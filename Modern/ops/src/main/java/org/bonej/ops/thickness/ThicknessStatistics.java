@@ -0,0 +1,163 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.ops.thickness;
+
+/**
+ * Statistics of thickness values that can be accumulated in parts, e.g. one
+ * per plane, and then merged.
+ * <p>
+ * The mean and variance are updated with Welford's method, and merged with the
+ * formula of Chan et al. Optionally the values are also counted in a histogram
+ * of equal bins. Instances are not thread safe.
+ * </p>
+ */
+public class ThicknessStatistics {
+
+	private final long[] histogram;
+	private final double binWidth;
+	private long count;
+	private double mean;
+	/** Sum of the squared differences from the mean */
+	private double squares;
+	private double max = Double.NaN;
+
+	/** Creates statistics without a histogram. */
+	public ThicknessStatistics() {
+		this(0.0, 0);
+	}
+
+	/**
+	 * Creates statistics with a histogram.
+	 *
+	 * @param histogramMax upper bound of the last bin. Larger values are counted
+	 *          in it too.
+	 * @param bins number of bins between 0 and the upper bound, or 0 for no
+	 *          histogram.
+	 * @throws IllegalArgumentException if bins is negative.
+	 */
+	public ThicknessStatistics(final double histogramMax, final int bins) {
+		if (bins < 0) {
+			throw new IllegalArgumentException("Number of bins cannot be negative");
+		}
+		histogram = new long[bins];
+		binWidth = histogramMax > 0.0 && bins > 0 ? histogramMax / bins : 1.0;
+	}
+
+	/**
+	 * Adds a value to the statistics.
+	 *
+	 * @param value a thickness value, not NaN.
+	 */
+	public void add(final double value) {
+		count++;
+		final double delta = value - mean;
+		mean += delta / count;
+		squares += delta * (value - mean);
+		if (!(value <= max)) {
+			max = value;
+		}
+		if (histogram.length > 0) {
+			final int bin = (int) (value / binWidth);
+			histogram[Math.min(Math.max(bin, 0), histogram.length - 1)]++;
+		}
+	}
+
+	/**
+	 * Adds the values of other statistics to these.
+	 *
+	 * @param other statistics of other values.
+	 * @throws IllegalArgumentException if the histograms have different bins.
+	 */
+	public void merge(final ThicknessStatistics other) {
+		if (histogram.length != other.histogram.length ||
+			binWidth != other.binWidth)
+		{
+			throw new IllegalArgumentException("Histograms have different bins");
+		}
+		for (int i = 0; i < histogram.length; i++) {
+			histogram[i] += other.histogram[i];
+		}
+		if (other.count == 0) {
+			return;
+		}
+		if (count == 0) {
+			count = other.count;
+			mean = other.mean;
+			squares = other.squares;
+			max = other.max;
+			return;
+		}
+		final long total = count + other.count;
+		final double delta = other.mean - mean;
+		mean += delta * other.count / total;
+		squares += other.squares + delta * delta * count * other.count / total;
+		count = total;
+		max = Math.max(max, other.max);
+	}
+
+	/** @return number of values. */
+	public long count() {
+		return count;
+	}
+
+	/** @return mean of the values, or NaN if there are none. */
+	public double mean() {
+		return count == 0 ? Double.NaN : mean;
+	}
+
+	/**
+	 * Returns the sample standard deviation of the values, like
+	 * StackStatistics of ImageJ 1.x does.
+	 *
+	 * @return standard deviation, or NaN if there are no values.
+	 */
+	public double standardDeviation() {
+		if (count == 0) {
+			return Double.NaN;
+		}
+		return count == 1 ? 0.0 : Math.sqrt(squares / (count - 1));
+	}
+
+	/** @return the largest value, or NaN if there are none. */
+	public double max() {
+		return max;
+	}
+
+	/**
+	 * Returns the histogram of the values.
+	 * <p>
+	 * Bin i counts the values in [i * binWidth, (i + 1) * binWidth).
+	 * </p>
+	 *
+	 * @return a copy of the bin counts, empty if there's no histogram.
+	 */
+	public long[] histogram() {
+		return histogram.clone();
+	}
+
+	/** @return width of the histogram bins. */
+	public double binWidth() {
+		return binWidth;
+	}
+}
@@ -0,0 +1,169 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package org.bonej.ops.connectivity;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import net.imagej.ImageJ;
+import net.imagej.ops.Ops.Topology.EulerCharacteristic26NFloating;
+import net.imagej.ops.Ops.Topology.EulerCorrection;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.view.Views;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+/**
+ * Tests for {@link EulerSumTable}.
+ */
+public class EulerSumTableTest {
+
+	private static final ImageJ IMAGE_J = new ImageJ();
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOfThrowsIf2DInterval() {
+		EulerSumTable.of(ArrayImgs.bits(5, 5));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testQueryThrowsIfBoxOutsideInterval() {
+		final EulerSumTable table = EulerSumTable.of(ArrayImgs.bits(5, 5, 5));
+
+		table.eulerCharacteristic(new FinalInterval(new long[] { 1, 1, 1 },
+			new long[] { 5, 4, 4 }));
+	}
+
+	@Test
+	public void testSingleVoxel() {
+		// SETUP
+		final Img<BitType> img = ArrayImgs.bits(5, 5, 5);
+		final RandomAccess<BitType> access = img.randomAccess();
+		access.setPosition(new long[] { 2, 2, 2 });
+		access.get().setOne();
+		final EulerSumTable table = EulerSumTable.of(img);
+		final Interval voxel = new FinalInterval(new long[] { 2, 2, 2 },
+			new long[] { 2, 2, 2 });
+		final Interval corner = new FinalInterval(new long[] { 2, 2, 2 },
+			new long[] { 3, 3, 3 });
+		final Interval empty = new FinalInterval(new long[] { 3, 0, 0 },
+			new long[] { 4, 4, 4 });
+
+		// EXECUTE & VERIFY
+		assertEquals(1.0, table.eulerCharacteristic(img), 0.0);
+		assertEquals(0.0, table.edgeCorrection(img), 0.0);
+		assertEquals(1.0, table.eulerCharacteristic(voxel), 0.0);
+		assertEquals(1.0, table.edgeCorrection(voxel), 0.0);
+		assertEquals(1.0, table.eulerCharacteristic(corner), 0.0);
+		assertEquals(0.875, table.edgeCorrection(corner), 0.0);
+		assertEquals(0.0, table.eulerCharacteristic(empty), 0.0);
+		assertEquals(0.0, table.edgeCorrection(empty), 0.0);
+	}
+
+	/**
+	 * Tests that a box of a table gives the same results as the table of an
+	 * image cropped to the box.
+	 */
+	@Test
+	public void testBoxMatchesCroppedImage() {
+		// SETUP
+		final Random random = new Random(0xc0ffee);
+		final Img<BitType> img = ArrayImgs.bits(70, 13, 11);
+		img.forEach(e -> e.set(random.nextDouble() < 0.4));
+		final EulerSumTable table = EulerSumTable.of(img);
+
+		for (int i = 0; i < 100; i++) {
+			final long[] min = new long[3];
+			final long[] max = new long[3];
+			for (int d = 0; d < 3; d++) {
+				min[d] = random.nextInt((int) img.dimension(d));
+				max[d] = min[d] + random.nextInt((int) (img.dimension(d) - min[d]));
+			}
+			final Interval box = new FinalInterval(min, max);
+			final EulerSumTable cropped = EulerSumTable.of(Views.zeroMin(Views
+				.interval(img, box)));
+			final Interval croppedBox = new FinalInterval(box.dimension(0), box
+				.dimension(1), box.dimension(2));
+
+			// EXECUTE & VERIFY
+			assertEquals(cropped.eulerCharacteristic(croppedBox), table
+				.eulerCharacteristic(box), 0.0);
+			assertEquals(cropped.edgeCorrection(croppedBox), table.edgeCorrection(
+				box), 0.0);
+		}
+	}
+
+	/**
+	 * Tests that boxes of a table give the same results as the ops of
+	 * imagej-ops that the connectivity wrapper uses for whole images.
+	 * <p>
+	 * The boxes are at least two voxels thick, because for thinner boxes the
+	 * edge correction of the table deliberately differs from
+	 * {@link EulerCorrection}.
+	 * </p>
+	 */
+	@Test
+	public void testBoxMatchesReferenceOps() {
+		// SETUP
+		final Random random = new Random(0xbeef);
+		final Img<BitType> img = ArrayImgs.bits(23, 17, 19);
+		img.forEach(e -> e.set(random.nextDouble() < 0.5));
+		final EulerSumTable table = EulerSumTable.of(img);
+
+		for (int i = 0; i < 30; i++) {
+			final long[] min = new long[3];
+			final long[] max = new long[3];
+			for (int d = 0; d < 3; d++) {
+				min[d] = random.nextInt((int) img.dimension(d) - 1);
+				max[d] = min[d] + 1 + random.nextInt((int) (img.dimension(d) - min[d] -
+					1));
+			}
+			final Interval box = new FinalInterval(min, max);
+			final RandomAccessibleInterval<BitType> cropped = Views.zeroMin(Views
+				.interval(img, box));
+
+			// EXECUTE
+			final DoubleType euler = (DoubleType) IMAGE_J.op().run(
+				EulerCharacteristic26NFloating.class, cropped);
+			final DoubleType correction = (DoubleType) IMAGE_J.op().run(
+				EulerCorrection.class, cropped);
+
+			// VERIFY
+			assertEquals(euler.get(), table.eulerCharacteristic(box), 1e-12);
+			assertEquals(correction.get(), table.edgeCorrection(box), 1e-12);
+		}
+	}
+
+	@AfterClass
+	public static void oneTimeTearDown() {
+		IMAGE_J.context().dispose();
+	}
+}
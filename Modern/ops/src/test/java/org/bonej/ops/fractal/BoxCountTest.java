@@ -0,0 +1,273 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.ops.fractal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import net.imagej.ImageJ;
+import net.imagej.ops.Ops;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.util.ValuePair;
+import net.imglib2.view.Views;
+
+import org.bonej.ops.morphology.PackedOutline;
+import org.bonej.utilities.BitVolume;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+/**
+ * Tests for {@link BoxCount}.
+ */
+public class BoxCountTest {
+
+	private static final ImageJ IMAGE_J = new ImageJ();
+	private static final long SEED = 0xc0ffeeL;
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBadScalingThrowsIAE() {
+		IMAGE_J.op().run(BoxCount.class, ArrayImgs.bits(5, 5, 5), 4L, 2L, 1.0,
+			0L);
+	}
+
+	@Test
+	public void testCountBoxesMatchesBruteForce() {
+		final Random random = new Random(SEED);
+		final BitVolume volume = new BitVolume(70, 23, 17);
+		for (int i = 0; i < 200; i++) {
+			volume.set(random.nextInt(70), random.nextInt(23), random.nextInt(17),
+				true);
+		}
+
+		for (int boxSize = 1; boxSize <= 12; boxSize++) {
+			for (long moves = 0; moves <= 3; moves++) {
+				final long expected = bruteForceCount(volume, boxSize, moves);
+
+				final long count = BoxCount.countBoxes(volume, boxSize, moves, false,
+					false);
+
+				assertEquals("Wrong count for box size " + boxSize + " and " + moves +
+					" moves", expected, count);
+			}
+		}
+	}
+
+	@Test
+	public void testCountBoxesFlat() {
+		final BitVolume volume = new BitVolume(10, 10, 1);
+		volume.set(4, 1, 0, true);
+		volume.set(7, 1, 0, true);
+
+		// Moving the grid by 2 brings both elements into the box at 4...9
+		assertEquals(1, BoxCount.countBoxes(volume, 6, 2, true, false));
+		assertEquals(2, BoxCount.countBoxes(volume, 6, 0, true, false));
+	}
+
+	@Test
+	public void testCube() {
+		final Img<BitType> img = ArrayImgs.bits(4, 4, 4);
+		Views.interval(img, new long[] { 1, 1, 1 }, new long[] { 2, 2, 2 })
+			.forEach(BitType::setOne);
+
+		@SuppressWarnings("unchecked")
+		final List<ValuePair<DoubleType, DoubleType>> points =
+			(List<ValuePair<DoubleType, DoubleType>>) IMAGE_J.op().run(
+				BoxCount.class, img, 4L, 1L, 2.0, 0L);
+
+		assertEquals(3, points.size());
+		final double[] sizes = { 4.0, 2.0, 1.0 };
+		final double[] counts = { 1.0, 8.0, 8.0 };
+		for (int i = 0; i < 3; i++) {
+			assertEquals(-Math.log(sizes[i]), points.get(i).a.get(), 1e-12);
+			assertEquals(Math.log(counts[i]), points.get(i).b.get(), 1e-12);
+		}
+	}
+
+	@Test
+	public void testCountBoxesOfOutline() {
+		final Random random = new Random(SEED);
+		final BitVolume volume = new BitVolume(70, 23, 17);
+		for (int z = 0; z < 17; z++) {
+			for (int y = 0; y < 23; y++) {
+				for (int x = 0; x < 70; x++) {
+					volume.set(x, y, z, random.nextDouble() < 0.95);
+				}
+			}
+		}
+		final BitVolume outline = PackedOutline.outline(volume, true);
+
+		for (int boxSize = 1; boxSize <= 12; boxSize++) {
+			final long expected = BoxCount.countBoxes(outline, boxSize, 2, false,
+				false);
+
+			final long count = BoxCount.countBoxes(volume, boxSize, 2, false, true);
+
+			assertEquals("Wrong count for box size " + boxSize, expected, count);
+		}
+	}
+
+	/**
+	 * Tests that the op gives the same points as the box count op of imagej-ops
+	 * with the automatic parameters of the fractal dimension wrapper, and other
+	 * settings without grid moves.
+	 */
+	@Test
+	public void testMatchesImageJOpsWithoutGridMoves() {
+		final Random random = new Random(SEED);
+		final Img<BitType> img3D = ArrayImgs.bits(45, 31, 26);
+		img3D.forEach(e -> e.set(random.nextDouble() < 0.05));
+		final Img<BitType> img2D = ArrayImgs.bits(83, 57);
+		img2D.forEach(e -> e.set(random.nextDouble() < 0.05));
+		// @formatter:off
+		final Object[][] settings = {
+				// Automatic parameters: a quarter of the largest dimension, 6, 1.2, 0
+				{ 45L / 4, 6L, 1.2 },
+				{ 16L, 2L, 1.5 },
+				{ 20L, 1L, 2.0 }
+		};
+		// @formatter:on
+
+		for (final Img<BitType> img : Arrays.asList(img3D, img2D)) {
+			for (final Object[] setting : settings) {
+				assertSamePoints(img, (Long) setting[0], (Long) setting[1],
+					(Double) setting[2], 0L);
+			}
+		}
+	}
+
+	/**
+	 * Tests that the op gives the same points as the box count op of imagej-ops
+	 * when the grid is moved, and the foreground is at least the largest box
+	 * size away from the edges.
+	 * <p>
+	 * Closer to the edges the results may differ, because imagej-ops doesn't
+	 * extend a translated grid to the end of the interval.
+	 * </p>
+	 */
+	@Test
+	public void testMatchesImageJOpsWithGridMovesAwayFromEdges() {
+		final Random random = new Random(SEED);
+		final long maxSize = 12;
+		final Img<BitType> img3D = ArrayImgs.bits(61, 47, 40);
+		Views.interval(img3D, new long[] { maxSize, maxSize, maxSize }, new long[] {
+			61 - maxSize - 1, 47 - maxSize - 1, 40 - maxSize - 1 }).forEach(e -> e
+				.set(random.nextDouble() < 0.05));
+		final Img<BitType> img2D = ArrayImgs.bits(97, 70);
+		Views.interval(img2D, new long[] { maxSize, maxSize }, new long[] { 97 -
+			maxSize - 1, 70 - maxSize - 1 }).forEach(e -> e.set(random
+				.nextDouble() < 0.05));
+
+		for (final Img<BitType> img : Arrays.asList(img3D, img2D)) {
+			for (final double scaling : new double[] { 1.2, 1.5, 2.0 }) {
+				for (long gridMoves = 1; gridMoves <= 3; gridMoves++) {
+					assertSamePoints(img, maxSize, 4L, scaling, gridMoves);
+				}
+			}
+		}
+	}
+
+	@AfterClass
+	public static void oneTimeTearDown() {
+		IMAGE_J.context().dispose();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void assertSamePoints(final Img<BitType> img,
+		final long maxSize, final long minSize, final double scaling,
+		final long gridMoves)
+	{
+		final List<ValuePair<DoubleType, DoubleType>> expected =
+			(List<ValuePair<DoubleType, DoubleType>>) IMAGE_J.op().run(
+				Ops.Topology.BoxCount.class, img, maxSize, minSize, scaling,
+				gridMoves);
+
+		final List<ValuePair<DoubleType, DoubleType>> points =
+			(List<ValuePair<DoubleType, DoubleType>>) IMAGE_J.op().run(
+				BoxCount.class, img, maxSize, minSize, scaling, gridMoves);
+
+		final String setting = img.numDimensions() + "D, sizes " + maxSize +
+			"..." + minSize + ", scaling " + scaling + ", " + gridMoves + " moves";
+		assertEquals(setting, expected.size(), points.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(setting, expected.get(i).a.get(), points.get(i).a.get(),
+				1e-12);
+			assertEquals(setting, expected.get(i).b.get(), points.get(i).b.get(),
+				1e-12);
+		}
+	}
+
+	private static long bruteForceCount(final BitVolume volume,
+		final int boxSize, final long gridMoves)
+	{
+		final int moves = (int) Math.max(1, Math.min(boxSize, 1 + gridMoves));
+		final int step = boxSize / moves;
+		long least = Long.MAX_VALUE;
+		for (int i = 0; i < moves; i++) {
+			for (int j = 0; j < moves; j++) {
+				for (int k = 0; k < moves; k++) {
+					least = Math.min(least, bruteForceGrid(volume, boxSize, i * step, j *
+						step, k * step));
+				}
+			}
+		}
+		return least;
+	}
+
+	private static long bruteForceGrid(final BitVolume volume,
+		final int boxSize, final int xMove, final int yMove, final int zMove)
+	{
+		long count = 0;
+		for (int z0 = -zMove; z0 < volume.depth(); z0 += boxSize) {
+			for (int y0 = -yMove; y0 < volume.height(); y0 += boxSize) {
+				for (int x0 = -xMove; x0 < volume.width(); x0 += boxSize) {
+					if (hasForeground(volume, boxSize, x0, y0, z0)) {
+						count++;
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	private static boolean hasForeground(final BitVolume volume,
+		final int boxSize, final int x0, final int y0, final int z0)
+	{
+		for (int z = z0; z < z0 + boxSize; z++) {
+			for (int y = y0; y < y0 + boxSize; y++) {
+				for (int x = x0; x < x0 + boxSize; x++) {
+					if (volume.get(x, y, z)) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+}
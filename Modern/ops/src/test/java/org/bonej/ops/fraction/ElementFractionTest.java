@@ -0,0 +1,178 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.ops.fraction;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import net.imagej.ImageJ;
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.planar.PlanarImgs;
+import net.imglib2.type.BooleanType;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.logic.NativeBoolType;
+import net.imglib2.view.Views;
+
+import org.bonej.ops.fraction.ElementFraction.Results;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ElementFraction}.
+ */
+public class ElementFractionTest {
+
+	private static final ImageJ IMAGE_J = new ImageJ();
+	private static final long SEED = 0xc0ffeeL;
+
+	@Test
+	public void testCountBits() {
+		final Random random = new Random(SEED);
+		final long[] words = random.longs(4).toArray();
+		for (int from = 0; from < 256; from += 7) {
+			for (int length = 0; from + length <= 256; length += 5) {
+				long expected = 0;
+				for (int i = from; i < from + length; i++) {
+					expected += (words[i >>> 6] >>> i) & 1;
+				}
+
+				final long count = ElementFraction.countBits(words, from, length);
+
+				assertEquals(expected, count);
+			}
+		}
+	}
+
+	@Test
+	public void testArrayImgSubspaces() {
+		// x-size not a multiple of 64 so that rows don't align with words
+		final Img<BitType> img = ArrayImgs.bits(70, 9, 5, 2, 3);
+		fillRandomly(img);
+
+		for (int c = 0; c < 2; c++) {
+			for (int t = 0; t < 3; t++) {
+				final RandomAccessibleInterval<BitType> subspace = Views.hyperSlice(
+					Views.hyperSlice(img, 4, t), 3, c);
+				assertCounts(subspace);
+			}
+		}
+	}
+
+	@Test
+	public void testNativeBoolTypeImg() {
+		final Img<NativeBoolType> img = ArrayImgs.booleans(70, 9, 5);
+		fillRandomly(img);
+
+		assertCounts(img);
+	}
+
+	@Test
+	public void testCroppedArrayImg() {
+		final Img<BitType> img = ArrayImgs.bits(130, 9, 5);
+		fillRandomly(img);
+		final FinalInterval crop = new FinalInterval(new long[] { 3, 2, 1 },
+			new long[] { 100, 7, 3 });
+
+		assertCounts(Views.interval(img, crop));
+	}
+
+	@Test
+	public void testEmptyInterval() {
+		final Results results = (Results) IMAGE_J.op().run(ElementFraction.class,
+			ArrayImgs.bits(0, 5, 5));
+
+		assertEquals(0, results.foreground);
+		assertEquals(0, results.total);
+		assertEquals(Double.NaN, results.ratio(), 0.0);
+	}
+
+	@Test
+	public void testPermutedView() {
+		final Img<BitType> img = ArrayImgs.bits(70, 9, 5);
+		fillRandomly(img);
+
+		assertCounts(Views.permute(img, 0, 1));
+	}
+
+	@Test
+	public void testPlanarImgSubspaces() {
+		final Img<BitType> img = PlanarImgs.bits(70, 9, 5, 2, 3);
+		fillRandomly(img);
+
+		for (int c = 0; c < 2; c++) {
+			for (int t = 0; t < 3; t++) {
+				final RandomAccessibleInterval<BitType> subspace = Views.hyperSlice(
+					Views.hyperSlice(img, 4, t), 3, c);
+				assertCounts(subspace);
+			}
+		}
+	}
+
+	@Test
+	public void testRatio() {
+		final Img<BitType> img = ArrayImgs.bits(4, 4, 4);
+		Views.interval(img, new long[] { 0, 0, 0 }, new long[] { 3, 3, 0 })
+			.forEach(BitType::setOne);
+
+		final Results results = (Results) IMAGE_J.op().run(ElementFraction.class,
+			img);
+
+		assertEquals(16, results.foreground);
+		assertEquals(64, results.total);
+		assertEquals(0.25, results.ratio(), 1e-12);
+	}
+
+	@AfterClass
+	public static void oneTimeTearDown() {
+		IMAGE_J.context().dispose();
+	}
+
+	private static <B extends BooleanType<B>> void assertCounts(
+		final RandomAccessibleInterval<B> interval)
+	{
+		long expected = 0;
+		for (final B element : Views.iterable(interval)) {
+			if (element.get()) {
+				expected++;
+			}
+		}
+
+		final Results results = (Results) IMAGE_J.op().run(ElementFraction.class,
+			interval);
+
+		assertEquals(expected, results.foreground);
+		assertEquals(Views.iterable(interval).size(), results.total);
+	}
+
+	private static <B extends BooleanType<B>> void fillRandomly(
+		final Img<B> img)
+	{
+		final Random random = new Random(SEED);
+		img.forEach(e -> e.set(random.nextBoolean()));
+	}
+}
@@ -28,6 +28,8 @@ import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
 import net.imagej.ImageJ;
+import net.imagej.ops.special.function.BinaryFunctionOp;
+import net.imagej.ops.special.function.Functions;
 import net.imglib2.img.Img;
 import net.imglib2.img.array.ArrayImgs;
 import net.imglib2.type.logic.BitType;
@@ -104,6 +106,30 @@ public class MILPlaneTest {
 		assertTrue(milVector.length() < milVector2.length());
 	}
 
+	/**
+	 * Tests that an op instance called with different intervals doesn't reuse
+	 * the voxels it packed from an earlier interval.
+	 */
+	@Test
+	public void testIntervalChangeBetweenCalls() {
+		// SETUP
+		final Img<BitType> empty = ArrayImgs.bits(SIZE, SIZE, SIZE);
+		final BinaryFunctionOp<Img<BitType>, Quaterniondc, Vector3d> milOp =
+			Functions.binary(IMAGE_J.op(), MILPlane.class, Vector3d.class, SHEETS,
+				IDENTITY_ROTATION, 2L, 1.0, SEED);
+
+		// EXECUTE
+		final Vector3dc milVector = milOp.calculate(SHEETS, IDENTITY_ROTATION);
+		final Vector3dc milVector2 = milOp.calculate(empty, IDENTITY_ROTATION);
+		final Vector3dc milVector3 = milOp.calculate(SHEETS, IDENTITY_ROTATION);
+
+		// VERIFY
+		assertEquals(2.0, milVector.length(), 1e-12);
+		assertTrue("Empty interval should have no intercepts", milVector2
+			.length() > milVector.length());
+		assertEquals(milVector.length(), milVector3.length(), 1e-12);
+	}
+
 	@Test(expected = IllegalArgumentException.class)
 	public void testMatchingFailsIf2DInterval() {
 		final Img<BitType> img = ArrayImgs.bits(5, 5);
@@ -0,0 +1,145 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.ops.mil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import net.imagej.ImageJ;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.view.IntervalView;
+import net.imglib2.view.Views;
+
+import org.joml.AxisAngle4d;
+import org.joml.Quaterniond;
+import org.joml.Quaterniondc;
+import org.joml.Vector3d;
+import org.joml.Vector3dc;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests for {@link MILVectors}.
+ */
+public class MILVectorsTest {
+
+	private static final ImageJ IMAGE_J = new ImageJ();
+	private static final long SIZE = 100;
+	private static final Img<BitType> SHEETS = ArrayImgs.bits(SIZE, SIZE, SIZE);
+	private static final Long SEED = 0xc0ffeeL;
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMatchingFailsIf2DInterval() {
+		final Img<BitType> img = ArrayImgs.bits(5, 5);
+		IMAGE_J.op().run(MILVectors.class, img);
+	}
+
+	/**
+	 * Tests that the vectors are returned in the order of the rotations, and
+	 * have the same lengths as single MIL vectors.
+	 */
+	@Test
+	public void testOrderOfVectors() {
+		// SETUP
+		final Quaterniondc zRotation = new Quaterniond();
+		final Quaterniondc xRotation = new Quaterniond(new AxisAngle4d(Math.PI /
+			2.0, 0, 1, 0));
+		final List<Quaterniondc> rotations = Arrays.asList(zRotation, xRotation,
+			zRotation);
+
+		// EXECUTE
+		@SuppressWarnings("unchecked")
+		final List<Vector3d> milVectors = (List<Vector3d>) IMAGE_J.op().run(
+			MILVectors.class, SHEETS, rotations, 2L, 1.0, SEED);
+
+		// VERIFY
+		assertEquals(rotations.size(), milVectors.size());
+		assertTrue(isParallel(new Vector3d(0, 0, 1), milVectors.get(0)));
+		assertEquals(2.0, milVectors.get(0).length(), 1e-12);
+		assertTrue(isParallel(new Vector3d(1, 0, 0), milVectors.get(1)));
+		assertTrue("Lines parallel to the sheets should have no intercepts",
+			milVectors.get(1).length() > milVectors.get(0).length());
+		assertTrue(isParallel(new Vector3d(0, 0, 1), milVectors.get(2)));
+		assertEquals(2.0, milVectors.get(2).length(), 1e-12);
+	}
+
+	@Test
+	public void testSeedParameter() {
+		// SETUP
+		final Img<BitType> noiseImg = ArrayImgs.bits(SIZE, SIZE, SIZE);
+		noiseImg.forEach(voxel -> {
+			if (Math.random() >= 0.5) {
+				voxel.setOne();
+			}
+		});
+		final List<Quaterniondc> rotations = Arrays.asList(new Quaterniond(
+			new AxisAngle4d(Math.PI / 3.0, 1, 1, 0)), new Quaterniond(
+				new AxisAngle4d(Math.PI / 5.0, 0, 1, 1)), new Quaterniond(
+					new AxisAngle4d(Math.PI / 7.0, 1, 0, 1)));
+
+		// EXECUTE
+		final Object milVectors = IMAGE_J.op().run(MILVectors.class, noiseImg,
+			rotations, 4L, 1.0, SEED);
+		final Object milVectors2 = IMAGE_J.op().run(MILVectors.class, noiseImg,
+			rotations, 4L, 1.0, SEED);
+
+		// VERIFY
+		assertEquals("Same seed should give the same vectors", milVectors,
+			milVectors2);
+	}
+
+	@BeforeClass
+	public static void oneTimeSetup() {
+		drawXYSheets();
+	}
+
+	@AfterClass
+	public static void oneTimeTearDown() {
+		IMAGE_J.context().dispose();
+	}
+
+	// region -- Helper methods --
+	private static void drawXYSheets() {
+		for (int i = 0; i < SIZE; i += 2) {
+			final IntervalView<BitType> view = Views.interval(SHEETS, new long[] { 0,
+				0, i }, new long[] { SIZE - 1, SIZE - 1, i });
+			view.forEach(BitType::setOne);
+		}
+	}
+
+	private static boolean isParallel(final Vector3dc u, final Vector3dc v) {
+		final Vector3d product = new Vector3d(u);
+		product.cross(v);
+
+		return Math.abs(product.x) < 1e-12 && Math.abs(product.y) < 1e-12 && Math
+			.abs(product.z) < 1e-12;
+	}
+	// endregion
+}
@@ -0,0 +1,170 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.ops.morphology;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import net.imagej.ImageJ;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.view.Views;
+
+import org.bonej.utilities.BitVolume;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+/**
+ * Tests for {@link PackedOutline}.
+ */
+public class PackedOutlineTest {
+
+	private static final ImageJ IMAGE_J = new ImageJ();
+	private static final long SEED = 0xc0ffeeL;
+
+	@Test
+	public void testCube() {
+		final Img<BitType> img = ArrayImgs.bits(5, 5, 5);
+		Views.interval(img, new long[] { 1, 1, 1 }, new long[] { 3, 3, 3 })
+			.forEach(BitType::setOne);
+
+		final BitVolume outline = (BitVolume) IMAGE_J.op().run(PackedOutline.class,
+			img);
+
+		// Only the centre of the 3x3x3 cube is interior
+		assertEquals(26, outline.cardinality());
+		assertEquals(false, outline.get(2, 2, 2));
+	}
+
+	@Test
+	public void testFullImageEdges() {
+		final Img<BitType> img = ArrayImgs.bits(4, 4, 4);
+		img.forEach(BitType::setOne);
+
+		final BitVolume excluded = (BitVolume) IMAGE_J.op().run(
+			PackedOutline.class, img, true);
+		final BitVolume included = (BitVolume) IMAGE_J.op().run(
+			PackedOutline.class, img, false);
+
+		assertEquals(0, excluded.cardinality());
+		assertEquals(4 * 4 * 4 - 2 * 2 * 2, included.cardinality());
+	}
+
+	@Test
+	public void testSquareWithEdges2D() {
+		final Img<BitType> img = ArrayImgs.bits(6, 6);
+		Views.interval(img, new long[] { 1, 1 }, new long[] { 4, 4 }).forEach(
+			BitType::setOne);
+
+		final BitVolume outline = (BitVolume) IMAGE_J.op().run(PackedOutline.class,
+			img, false);
+
+		// The 2x2 interior of the 4x4 square is removed
+		assertEquals(12, outline.cardinality());
+		for (int y = 2; y <= 3; y++) {
+			for (int x = 2; x <= 3; x++) {
+				assertEquals(false, outline.get(x, y, 0));
+			}
+		}
+	}
+
+	@Test
+	public void testOutlineMatchesBruteForce() {
+		final Random random = new Random(SEED);
+		// Widths with and without padding bits at the end of the rows
+		for (final int width : new int[] { 64, 70, 130 }) {
+			for (final int depth : new int[] { 1, 6 }) {
+				final BitVolume volume = new BitVolume(width, 7, depth);
+				for (int z = 0; z < depth; z++) {
+					for (int y = 0; y < 7; y++) {
+						for (int x = 0; x < width; x++) {
+							volume.set(x, y, z, random.nextDouble() < 0.9);
+						}
+					}
+				}
+				for (final boolean excludeEdges : new boolean[] { true, false }) {
+
+					final BitVolume outline = PackedOutline.outline(volume,
+						excludeEdges);
+
+					assertOutline(volume, excludeEdges, outline);
+				}
+			}
+		}
+	}
+
+	@AfterClass
+	public static void oneTimeTearDown() {
+		IMAGE_J.context().dispose();
+	}
+
+	private static void assertOutline(final BitVolume volume,
+		final boolean excludeEdges, final BitVolume outline)
+	{
+		for (int z = 0; z < volume.depth(); z++) {
+			for (int y = 0; y < volume.height(); y++) {
+				for (int x = 0; x < volume.width(); x++) {
+					final boolean expected = volume.get(x, y, z) && hasBackground(
+						volume, excludeEdges, x, y, z);
+					assertEquals("Wrong element at " + x + ", " + y + ", " + z, expected,
+						outline.get(x, y, z));
+				}
+			}
+		}
+		final int tail = volume.width() & 63;
+		if (tail == 0) {
+			return;
+		}
+		final long[] words = outline.words();
+		for (int i = outline.wordsPerRow() - 1; i < words.length; i += outline
+			.wordsPerRow())
+		{
+			assertEquals("Padding bits must stay zero", 0, words[i] & (-1L << tail));
+		}
+	}
+
+	private static boolean hasBackground(final BitVolume volume,
+		final boolean excludeEdges, final int x, final int y, final int z)
+	{
+		// A 2D volume only has the 8 neighbours in its plane
+		final int zRadius = volume.depth() == 1 ? 0 : 1;
+		for (int dz = -zRadius; dz <= zRadius; dz++) {
+			for (int dy = -1; dy <= 1; dy++) {
+				for (int dx = -1; dx <= 1; dx++) {
+					final int nx = x + dx;
+					final int ny = y + dy;
+					final int nz = z + dz;
+					final boolean inside = nx >= 0 && nx < volume.width() && ny >= 0 &&
+						ny < volume.height() && nz >= 0 && nz < volume.depth();
+					if (inside ? !volume.get(nx, ny, nz) : !excludeEdges) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+}
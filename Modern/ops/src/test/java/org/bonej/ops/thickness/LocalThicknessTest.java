@@ -0,0 +1,369 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.ops.thickness;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.imagej.ImageJ;
+import net.imagej.ops.special.function.Functions;
+import net.imagej.ops.special.function.UnaryFunctionOp;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.img.planar.PlanarImgs;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.bonej.ops.thickness.LocalThickness.Ridge;
+import org.bonej.utilities.BitVolume;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+/**
+ * Tests for {@link LocalThickness}.
+ */
+public class LocalThicknessTest {
+
+	private static final ImageJ IMAGE_J = new ImageJ();
+	private static final long SEED = 0xc0ffeeL;
+
+	@Test
+	public void testSquaredDistances() {
+		final Img<BitType> img = randomImg(11, 9, 7, 0.8);
+		final BitVolume volume = BitVolume.of(img);
+
+		final int[][] distances = LocalThickness.squaredDistances(volume, true,
+			false);
+
+		assertArrayEquals(bruteForceDistances(volume), distances);
+	}
+
+	@Test
+	public void testSquaredDistancesBothPhases() {
+		final Img<BitType> img = randomImg(11, 9, 7, 0.5);
+		final BitVolume volume = BitVolume.of(img);
+		final BitVolume inverse = BitVolume.of(img);
+		for (int z = 0; z < volume.depth(); z++) {
+			for (int y = 0; y < volume.height(); y++) {
+				for (int x = 0; x < volume.width(); x++) {
+					inverse.set(x, y, z, !volume.get(x, y, z));
+				}
+			}
+		}
+		final int[][] foreground = bruteForceDistances(volume);
+		final int[][] background = bruteForceDistances(inverse);
+
+		final int[][] distances = LocalThickness.squaredDistances(volume, true,
+			true);
+
+		// The phases don't overlap, so their distances share the array
+		for (int z = 0; z < volume.depth(); z++) {
+			for (int i = 0; i < distances[z].length; i++) {
+				assertEquals(foreground[z][i] + background[z][i], distances[z][i]);
+			}
+		}
+	}
+
+	@Test
+	public void testSquaredDistancesNoBackground() {
+		final Img<BitType> img = ArrayImgs.bits(2, 2, 2);
+		img.forEach(BitType::setOne);
+
+		final int[][] distances = LocalThickness.squaredDistances(BitVolume.of(
+			img), true, false);
+
+		// Like in LocalThickness_, 3 * (n + 1)² when there's no background
+		for (final int[] plane : distances) {
+			for (final int d : plane) {
+				assertEquals(27, d);
+			}
+		}
+	}
+
+	@Test
+	public void testCalculateMatchesAllSpheresCleanedUp() {
+		final Img<BitType> img = randomImg(13, 10, 8, 0.85);
+		final BitVolume volume = BitVolume.of(img);
+		final int width = volume.width();
+		final int[][] distances = bruteForceDistances(volume);
+		// Draw the spheres of all foreground elements, not just the ridge
+		final float[][] spheres = new float[volume.depth()][width * volume
+			.height()];
+		for (int z = 0; z < volume.depth(); z++) {
+			for (int y = 0; y < volume.height(); y++) {
+				for (int x = 0; x < width; x++) {
+					final int largest = largestSphere(distances, volume, x, y, z);
+					spheres[z][x + y * width] = (float) (2.0 * Math.sqrt(largest));
+				}
+			}
+		}
+		final float[][] expected = cleanUp(spheres, width, volume.height());
+
+		final Img<FloatType> map = new LocalThickness<BitType>().calculate(img);
+
+		final RandomAccess<FloatType> access = map.randomAccess();
+		for (int z = 0; z < volume.depth(); z++) {
+			for (int y = 0; y < volume.height(); y++) {
+				for (int x = 0; x < width; x++) {
+					access.setPosition(new int[] { x, y, z });
+					final float thickness = access.get().get();
+					if (!volume.get(x, y, z)) {
+						assertTrue(Float.isNaN(thickness));
+						continue;
+					}
+					assertEquals(expected[z][x + y * width], thickness, 1e-5);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testDrawPlanesInRanges() {
+		final Img<BitType> img = randomImg(13, 10, 8, 0.85);
+		final BitVolume volume = BitVolume.of(img);
+		final Ridge ridge = LocalThickness.ridges(volume, true, false)[0];
+		final PlanarImg<FloatType, FloatArray> expected = PlanarImgs.floats(13,
+			10, 8);
+		LocalThickness.drawPlanes(ridge, 0, 8, false, 1.0, expected, null);
+		final PlanarImg<FloatType, FloatArray> map = PlanarImgs.floats(13, 10, 8);
+
+		// Each range has to draw the planes around it to clean up its surface
+		for (final int[] range : new int[][] { { 0, 1 }, { 1, 4 }, { 4, 6 }, { 6,
+			8 } })
+		{
+			LocalThickness.drawPlanes(ridge, range[0], range[1], false, 1.0, map,
+				null);
+		}
+
+		for (int z = 0; z < 8; z++) {
+			assertArrayEquals(expected.getPlane(z).getCurrentStorageArray(), map
+				.getPlane(z).getCurrentStorageArray(), 0.0f);
+		}
+	}
+
+	@Test
+	public void testCube() {
+		final Img<BitType> img = ArrayImgs.bits(12, 12, 12);
+		final RandomAccess<BitType> access = img.randomAccess();
+		for (int z = 3; z < 9; z++) {
+			for (int y = 3; y < 9; y++) {
+				for (int x = 3; x < 9; x++) {
+					access.setPosition(new int[] { x, y, z });
+					access.get().setOne();
+				}
+			}
+		}
+
+		final Img<FloatType> map = new LocalThickness<BitType>().calculate(img);
+
+		// The spheres in the middle reach the background 3 elements away. Those
+		// that cover the corners are smaller, but a corner is on the surface, so
+		// it gets the thickness of its neighbours inside, which the middle
+		// spheres cover
+		final RandomAccess<FloatType> mapAccess = map.randomAccess();
+		mapAccess.setPosition(new int[] { 5, 5, 5 });
+		assertEquals(6.0f, mapAccess.get().get(), 0.0f);
+		mapAccess.setPosition(new int[] { 3, 3, 3 });
+		assertEquals(6.0f, mapAccess.get().get(), 0.0f);
+		mapAccess.setPosition(new int[] { 2, 5, 5 });
+		assertTrue(Float.isNaN(mapAccess.get().get()));
+	}
+
+	@Test
+	public void testNoMaskAndElementSize() {
+		final Img<BitType> img = ArrayImgs.bits(5, 5, 5);
+		final RandomAccess<BitType> access = img.randomAccess();
+		access.setPosition(new int[] { 2, 2, 2 });
+		access.get().setOne();
+		@SuppressWarnings("unchecked")
+		final UnaryFunctionOp<RandomAccessibleInterval<BitType>, Img<FloatType>> op =
+			(UnaryFunctionOp) Functions.unary(IMAGE_J.op(), LocalThickness.class,
+				Img.class, img, false, 0.5);
+
+		final Img<FloatType> map = op.calculate(img);
+
+		// The sphere of radius 1 covers its six background neighbours
+		final RandomAccess<FloatType> mapAccess = map.randomAccess();
+		mapAccess.setPosition(new int[] { 2, 2, 2 });
+		assertEquals(1.0f, mapAccess.get().get(), 0.0f);
+		mapAccess.setPosition(new int[] { 1, 2, 2 });
+		assertEquals(1.0f, mapAccess.get().get(), 0.0f);
+		mapAccess.setPosition(new int[] { 1, 1, 2 });
+		assertTrue(Float.isNaN(mapAccess.get().get()));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMatchingFailsIf2DInput() {
+		IMAGE_J.op().run(LocalThickness.class, ArrayImgs.bits(5, 5));
+	}
+
+	@AfterClass
+	public static void oneTimeTearDown() {
+		IMAGE_J.context().dispose();
+	}
+
+	// region -- Helper methods --
+
+	private static int[][] bruteForceDistances(final BitVolume volume) {
+		final int w = volume.width();
+		final int h = volume.height();
+		final int d = volume.depth();
+		final int n = Math.max(w, Math.max(h, d));
+		final int[][] distances = new int[d][w * h];
+		for (int z = 0; z < d; z++) {
+			for (int y = 0; y < h; y++) {
+				for (int x = 0; x < w; x++) {
+					int min = Integer.MAX_VALUE;
+					// Rows without background count as being 3 (n + 1)² away
+					for (int bz = 0; bz < d; bz++) {
+						for (int by = 0; by < h; by++) {
+							final int dyz = (by - y) * (by - y) + (bz - z) * (bz - z);
+							min = Math.min(min, dyz + 3 * (n + 1) * (n + 1));
+							for (int bx = 0; bx < w; bx++) {
+								if (!volume.get(bx, by, bz)) {
+									min = Math.min(min, dyz + (bx - x) * (bx - x));
+								}
+							}
+						}
+					}
+					distances[z][x + y * w] = min;
+				}
+			}
+		}
+		return distances;
+	}
+
+	/**
+	 * Cleans up the surface of a thickness map like Clean_Up_Local_Thickness of
+	 * LocalThickness_. Surface elements are first flagged with -1, and then
+	 * given the negated mean of their positive neighbours, so that they're left
+	 * out of the means of the elements after them.
+	 */
+	private static float[][] cleanUp(final float[][] map, final int w,
+		final int h)
+	{
+		final int d = map.length;
+		final float[][] cleaned = new float[d][w * h];
+		for (int z = 0; z < d; z++) {
+			for (int y = 0; y < h; y++) {
+				for (int x = 0; x < w; x++) {
+					cleaned[z][x + y * w] = flag(map, x, y, z, w, h);
+				}
+			}
+		}
+		for (int z = 0; z < d; z++) {
+			for (int y = 0; y < h; y++) {
+				for (int x = 0; x < w; x++) {
+					if (cleaned[z][x + y * w] != -1) {
+						continue;
+					}
+					float sum = 0;
+					int n = 0;
+					for (int k = z - 1; k <= z + 1; k++) {
+						for (int j = y - 1; j <= y + 1; j++) {
+							for (int i = x - 1; i <= x + 1; i++) {
+								final float value = look(cleaned, i, j, k, w, h);
+								if (value > 0) {
+									sum += value;
+									n++;
+								}
+							}
+						}
+					}
+					cleaned[z][x + y * w] = n > 0 ? -sum / n : -map[z][x + y * w];
+				}
+			}
+		}
+		for (final float[] plane : cleaned) {
+			for (int i = 0; i < plane.length; i++) {
+				plane[i] = Math.abs(plane[i]);
+			}
+		}
+		return cleaned;
+	}
+
+	private static float flag(final float[][] map, final int x, final int y,
+		final int z, final int w, final int h)
+	{
+		if (map[z][x + y * w] == 0) {
+			return 0;
+		}
+		for (int k = z - 1; k <= z + 1; k++) {
+			for (int j = y - 1; j <= y + 1; j++) {
+				for (int i = x - 1; i <= x + 1; i++) {
+					if (look(map, i, j, k, w, h) == 0) {
+						return -1;
+					}
+				}
+			}
+		}
+		return map[z][x + y * w];
+	}
+
+	/** Returns -1 outside the map, so that it's neither background nor inside */
+	private static float look(final float[][] map, final int x, final int y,
+		final int z, final int w, final int h)
+	{
+		if (x < 0 || x >= w || y < 0 || y >= h || z < 0 || z >= map.length) {
+			return -1;
+		}
+		return map[z][x + y * w];
+	}
+
+	private static int largestSphere(final int[][] distances,
+		final BitVolume volume, final int x, final int y, final int z)
+	{
+		int largest = 0;
+		for (int cz = 0; cz < volume.depth(); cz++) {
+			for (int cy = 0; cy < volume.height(); cy++) {
+				for (int cx = 0; cx < volume.width(); cx++) {
+					final int r = distances[cz][cx + cy * volume.width()];
+					final int d = (cx - x) * (cx - x) + (cy - y) * (cy - y) + (cz - z) *
+						(cz - z);
+					if (d <= r) {
+						largest = Math.max(largest, r);
+					}
+				}
+			}
+		}
+		return largest;
+	}
+
+	private static Img<BitType> randomImg(final int width, final int height,
+		final int depth, final double p)
+	{
+		final Img<BitType> img = ArrayImgs.bits(width, height, depth);
+		final Random random = new Random(SEED);
+		img.forEach(e -> e.set(random.nextDouble() < p));
+		return img;
+	}
+	// endregion
+}
@@ -0,0 +1,215 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.ops.thickness;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import net.imagej.ImageJ;
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.bonej.ops.thickness.ThicknessMaps.Results;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ThicknessMaps}.
+ */
+public class ThicknessMapsTest {
+
+	private static final ImageJ IMAGE_J = new ImageJ();
+
+	@Test
+	public void testMapsMatchLocalThickness() {
+		final Img<BitType> img = ArrayImgs.bits(13, 10, 8);
+		final Random random = new Random(0xc0ffeeL);
+		img.forEach(e -> e.set(random.nextDouble() < 0.6));
+		final Img<BitType> inverse = img.copy();
+		inverse.forEach(BitType::not);
+
+		final Results results = new ThicknessMaps<BitType>().calculate(img);
+
+		assertMapsEqual(new LocalThickness<BitType>().calculate(img),
+			results.foreground.map);
+		assertMapsEqual(new LocalThickness<BitType>().calculate(inverse),
+			results.background.map);
+	}
+
+	@Test
+	public void testStatistics() {
+		final Img<BitType> img = ArrayImgs.bits(13, 10, 8);
+		final Random random = new Random(0xc0ffeeL);
+		img.forEach(e -> e.set(random.nextDouble() < 0.6));
+		final Results results = new ThicknessMaps<BitType>().calculate(img);
+		final ThicknessStatistics statistics = results.foreground.statistics;
+		long count = 0;
+		double sum = 0.0;
+		double max = 0.0;
+		for (final FloatType t : results.foreground.map) {
+			if (!Float.isNaN(t.get())) {
+				count++;
+				sum += t.get();
+				max = Math.max(max, t.get());
+			}
+		}
+		final double mean = sum / count;
+		double squares = 0.0;
+		for (final FloatType t : results.foreground.map) {
+			if (!Float.isNaN(t.get())) {
+				squares += (t.get() - mean) * (t.get() - mean);
+			}
+		}
+
+		assertEquals(count, statistics.count());
+		assertEquals(mean, statistics.mean(), 1e-12);
+		assertEquals(Math.sqrt(squares / (count - 1)), statistics
+			.standardDeviation(), 1e-12);
+		assertEquals(max, statistics.max(), 0.0);
+		assertEquals(count, Arrays.stream(statistics.histogram()).sum());
+	}
+
+	@Test
+	public void testHistogram() {
+		final Img<BitType> img = ArrayImgs.bits(13, 10, 8);
+		final Random random = new Random(0xc0ffeeL);
+		img.forEach(e -> e.set(random.nextDouble() < 0.6));
+		final Results results = new ThicknessMaps<BitType>().calculate(img);
+		final ThicknessStatistics statistics = results.foreground.statistics;
+		final double binWidth = statistics.binWidth();
+		final long[] expected = new long[256];
+		for (final FloatType t : results.foreground.map) {
+			if (!Float.isNaN(t.get())) {
+				expected[Math.min((int) (t.get() / binWidth), 255)]++;
+			}
+		}
+
+		final long[] histogram = statistics.histogram();
+
+		assertArrayEquals(expected, histogram);
+		// The largest sphere is at the end of the last bin
+		assertEquals(statistics.max(), 256 * binWidth, 1e-6);
+	}
+
+	@Test
+	public void testEmptyPhase() {
+		final Img<BitType> img = ArrayImgs.bits(2, 2, 2);
+
+		final Results results = new ThicknessMaps<BitType>().calculate(img);
+
+		assertEquals(0, results.foreground.statistics.count());
+		assertTrue(Double.isNaN(results.foreground.statistics.mean()));
+		// Like in LocalThickness_, the background is 3 (n + 1)² from foreground
+		final float expected = (float) (2.0 * Math.sqrt(27));
+		assertEquals(expected, results.background.statistics.mean(), 0.0);
+		assertEquals(0.0, results.background.statistics.standardDeviation(), 0.0);
+		assertEquals(expected, results.background.statistics.max(), 0.0);
+	}
+
+	@Test
+	public void testOnlyBackground() {
+		final Img<BitType> img = ArrayImgs.bits(5, 5, 5);
+
+		final Results results = (Results) IMAGE_J.op().run(ThicknessMaps.class,
+			img, false, true);
+
+		assertNull(results.foreground);
+		assertEquals(125, results.background.statistics.count());
+	}
+
+	@Test
+	public void testUnmaskedStatistics() {
+		final Img<BitType> img = ArrayImgs.bits(5, 5, 5);
+		final RandomAccess<BitType> access = img.randomAccess();
+		access.setPosition(new long[] { 2, 2, 2 });
+		access.get().setOne();
+
+		final Results results = (Results) IMAGE_J.op().run(ThicknessMaps.class,
+			img, true, false, false);
+
+		// The sphere of the element also covers its six background neighbours,
+		// but elements it doesn't cover stay NaN like in LocalThickness_
+		final ThicknessStatistics statistics = results.foreground.statistics;
+		assertEquals(7, statistics.count());
+		assertEquals(2.0, statistics.mean(), 0.0);
+		assertEquals(0.0, statistics.standardDeviation(), 0.0);
+		long nans = 0;
+		for (final FloatType t : results.foreground.map) {
+			if (Float.isNaN(t.get())) {
+				nans++;
+			}
+		}
+		assertEquals(125 - 7, nans);
+	}
+
+	@Test
+	public void testStatisticsWithoutMaps() {
+		final Img<BitType> img = ArrayImgs.bits(13, 10, 8);
+		final Random random = new Random(0xc0ffeeL);
+		img.forEach(e -> e.set(random.nextDouble() < 0.6));
+		final Results expected = new ThicknessMaps<BitType>().calculate(img);
+
+		final Results results = (Results) IMAGE_J.op().run(ThicknessMaps.class,
+			img, true, true, true, 1.0, false);
+
+		assertNull(results.foreground.map);
+		assertNull(results.background.map);
+		final ThicknessStatistics statistics = results.foreground.statistics;
+		assertEquals(expected.foreground.statistics.mean(), statistics.mean(),
+			0.0);
+		assertArrayEquals(expected.foreground.statistics.histogram(), statistics
+			.histogram());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMatchingFailsIfNoPhases() {
+		IMAGE_J.op().run(ThicknessMaps.class, ArrayImgs.bits(5, 5, 5), false,
+			false);
+	}
+
+	@AfterClass
+	public static void oneTimeTearDown() {
+		IMAGE_J.context().dispose();
+	}
+
+	private static void assertMapsEqual(final Img<FloatType> expected,
+		final Img<FloatType> actual)
+	{
+		final Cursor<FloatType> expectedCursor = expected.cursor();
+		final Cursor<FloatType> actualCursor = actual.cursor();
+		while (expectedCursor.hasNext()) {
+			assertEquals(expectedCursor.next().get(), actualCursor.next().get(),
+				0.0f);
+		}
+	}
+}
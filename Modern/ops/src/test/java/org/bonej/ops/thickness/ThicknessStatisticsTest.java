@@ -0,0 +1,127 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.ops.thickness;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link ThicknessStatistics}.
+ */
+public class ThicknessStatisticsTest {
+
+	@Test
+	public void testEmpty() {
+		final ThicknessStatistics statistics = new ThicknessStatistics();
+
+		assertEquals(0, statistics.count());
+		assertTrue(Double.isNaN(statistics.mean()));
+		assertTrue(Double.isNaN(statistics.standardDeviation()));
+		assertTrue(Double.isNaN(statistics.max()));
+	}
+
+	@Test
+	public void testAdd() {
+		final ThicknessStatistics statistics = new ThicknessStatistics();
+
+		for (final double value : new double[] { 2.0, 4.0, 4.0, 5.0, 10.0 }) {
+			statistics.add(value);
+		}
+
+		assertEquals(5, statistics.count());
+		assertEquals(5.0, statistics.mean(), 1e-12);
+		// Sample standard deviation
+		assertEquals(3.0, statistics.standardDeviation(), 1e-12);
+		assertEquals(10.0, statistics.max(), 0.0);
+	}
+
+	@Test
+	public void testSingleValueHasNoDeviation() {
+		final ThicknessStatistics statistics = new ThicknessStatistics();
+
+		statistics.add(7.0);
+
+		assertEquals(0.0, statistics.standardDeviation(), 0.0);
+	}
+
+	@Test
+	public void testHistogram() {
+		final ThicknessStatistics statistics = new ThicknessStatistics(10.0, 5);
+
+		for (final double value : new double[] { 0.0, 1.9, 2.0, 9.9, 10.0, 12.0 }) {
+			statistics.add(value);
+		}
+
+		// Values past the end are counted in the last bin
+		assertArrayEquals(new long[] { 2, 1, 0, 0, 3 }, statistics.histogram());
+		assertEquals(2.0, statistics.binWidth(), 0.0);
+	}
+
+	@Test
+	public void testNoHistogram() {
+		final ThicknessStatistics statistics = new ThicknessStatistics();
+
+		statistics.add(1.0);
+
+		assertEquals(0, statistics.histogram().length);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeBinsThrowsIAE() {
+		new ThicknessStatistics(10.0, -1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMergeDifferentBinsThrowsIAE() {
+		new ThicknessStatistics(10.0, 5).merge(new ThicknessStatistics(10.0, 4));
+	}
+
+	@Test
+	public void testMerge() {
+		final Random random = new Random(0xc0ffeeL);
+		final ThicknessStatistics all = new ThicknessStatistics(20.0, 8);
+		final ThicknessStatistics merged = new ThicknessStatistics(20.0, 8);
+		for (int part = 0; part < 5; part++) {
+			// One part is empty
+			final ThicknessStatistics statistics = new ThicknessStatistics(20.0, 8);
+			for (int i = 0; i < part * 17; i++) {
+				final double value = random.nextDouble() * 20.0;
+				all.add(value);
+				statistics.add(value);
+			}
+			merged.merge(statistics);
+		}
+
+		assertEquals(all.count(), merged.count());
+		assertEquals(all.mean(), merged.mean(), 1e-12);
+		assertEquals(all.standardDeviation(), merged.standardDeviation(), 1e-12);
+		assertEquals(all.max(), merged.max(), 0.0);
+		assertArrayEquals(all.histogram(), merged.histogram());
+	}
+}
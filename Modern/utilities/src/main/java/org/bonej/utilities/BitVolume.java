@@ -0,0 +1,321 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.utilities;
+
+import java.util.stream.IntStream;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.BooleanType;
+import net.imglib2.view.Views;
+
+/**
+ * A dense binary volume packed into 64-bit words.
+ * <p>
+ * Each row of the volume starts at a new word, and bit <em>b</em> of word
+ * <em>k</em> in a row is the element at x = 64<em>k</em> + <em>b</em>. The
+ * padding bits at the end of each row are always zero. A volume takes an
+ * eighth of the memory of a byte stack, and lets algorithms test, count or
+ * extract 64 elements at a time instead of accessing them one by one through
+ * a {@link net.imglib2.RandomAccess}.
+ * </p>
+ * <p>
+ * The class isn't thread safe for writing, but concurrent reads are fine.
+ * </p>
+ *
+ * @see #of(RandomAccessibleInterval)
+ */
+public final class BitVolume {
+
+	private final int width;
+	private final int height;
+	private final int depth;
+	private final int wordsPerRow;
+	private final long[] words;
+
+	/**
+	 * Creates an empty volume.
+	 *
+	 * @param width size in x.
+	 * @param height size in y.
+	 * @param depth size in z.
+	 * @throws IllegalArgumentException if any size is negative, or the volume is
+	 *           too big to pack into one array.
+	 */
+	public BitVolume(final int width, final int height, final int depth) {
+		if (width < 0 || height < 0 || depth < 0) {
+			throw new IllegalArgumentException("Size cannot be negative");
+		}
+		this.width = width;
+		this.height = height;
+		this.depth = depth;
+		wordsPerRow = (width + 63) >>> 6;
+		final long nWords = (long) wordsPerRow * height * depth;
+		if (nWords > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("Volume is too big");
+		}
+		words = new long[(int) nWords];
+	}
+
+	/**
+	 * Packs a binary 2D or 3D interval into a new volume.
+	 * <p>
+	 * The first three dimensions of the interval are taken to be x, y and z. A
+	 * 2D interval results in a volume one element deep. The interval is read
+	 * once, each xy-plane in flat iteration order, and the planes in parallel.
+	 * </p>
+	 *
+	 * @param interval a binary interval.
+	 * @param <B> type of the elements.
+	 * @return a volume that's true where the interval is true.
+	 * @throws IllegalArgumentException if the interval has fewer than 2 or more
+	 *           than 3 dimensions.
+	 */
+	public static <B extends BooleanType<B>> BitVolume of(
+		final RandomAccessibleInterval<B> interval)
+	{
+		final int n = interval.numDimensions();
+		if (n < 2 || n > 3) {
+			throw new IllegalArgumentException(
+				"Interval must have two or three dimensions");
+		}
+		final int width = (int) interval.dimension(0);
+		final int height = (int) interval.dimension(1);
+		final int depth = n == 3 ? (int) interval.dimension(2) : 1;
+		final BitVolume volume = new BitVolume(width, height, depth);
+		if (n == 2) {
+			volume.packPlane(interval, 0);
+			return volume;
+		}
+		// Each plane writes to its own rows, so they can be packed concurrently
+		IntStream.range(0, depth).parallel().forEach(z -> volume.packPlane(Views
+			.hyperSlice(interval, 2, interval.min(2) + z), z));
+		return volume;
+	}
+
+	/** @return size of the volume in x. */
+	public int width() {
+		return width;
+	}
+
+	/** @return size of the volume in y. */
+	public int height() {
+		return height;
+	}
+
+	/** @return size of the volume in z. */
+	public int depth() {
+		return depth;
+	}
+
+	/** @return number of words in each row, i.e. ⌈width / 64⌉. */
+	public int wordsPerRow() {
+		return wordsPerRow;
+	}
+
+	/**
+	 * Gets the element at the given position.
+	 *
+	 * @param x x-coordinate of the element.
+	 * @param y y-coordinate of the element.
+	 * @param z z-coordinate of the element.
+	 * @return true if the element is set, false if not or if the position is
+	 *         outside the volume.
+	 */
+	public boolean get(final int x, final int y, final int z) {
+		if (!contains(x, y, z)) return false;
+		return (words[rowStart(y, z) + (x >>> 6)] & (1L << x)) != 0;
+	}
+
+	/**
+	 * Sets the element at the given position.
+	 *
+	 * @param x x-coordinate of the element.
+	 * @param y y-coordinate of the element.
+	 * @param z z-coordinate of the element.
+	 * @param value new value of the element.
+	 * @throws IndexOutOfBoundsException if the position is outside the volume.
+	 */
+	public void set(final int x, final int y, final int z, final boolean value) {
+		if (!contains(x, y, z)) {
+			throw new IndexOutOfBoundsException("Position outside volume");
+		}
+		final int i = rowStart(y, z) + (x >>> 6);
+		if (value) words[i] |= 1L << x;
+		else words[i] &= ~(1L << x);
+	}
+
+	/**
+	 * Gets a word of a row.
+	 *
+	 * @param k index of the word in the row, covering x = 64k...64k + 63.
+	 * @param y y-coordinate of the row.
+	 * @param z z-coordinate of the row.
+	 * @return the word, with bit b set if element 64k + b is set.
+	 */
+	public long getWord(final int k, final int y, final int z) {
+		return words[rowStart(y, z) + k];
+	}
+
+	/**
+	 * Gets up to 64 consecutive elements of a row, which don't need to be aligned
+	 * to a word.
+	 *
+	 * @param x x-coordinate of the first element. May be negative.
+	 * @param y y-coordinate of the row.
+	 * @param z z-coordinate of the row.
+	 * @return a word with bit b set if element x + b is set. Elements outside
+	 *         the volume are zero.
+	 */
+	public long getBits(final int x, final int y, final int z) {
+		if (y < 0 || y >= height || z < 0 || z >= depth) return 0;
+		if (x <= -64 || x >= width) return 0;
+		final int rowStart = rowStart(y, z);
+		if (x < 0) return words[rowStart] << -x;
+		final int k = x >>> 6;
+		final int shift = x & 63;
+		final long low = words[rowStart + k] >>> shift;
+		if (shift == 0 || k + 1 >= wordsPerRow) return low;
+		return low | (words[rowStart + k + 1] << (64 - shift));
+	}
+
+	/**
+	 * Gets the 2 × 2 × 2 neighbourhood whose lowest corner is at the given
+	 * position, e.g. for Euler characteristic look-up tables.
+	 *
+	 * @param x x-coordinate of the lowest corner. May be -1.
+	 * @param y y-coordinate of the lowest corner. May be -1.
+	 * @param z z-coordinate of the lowest corner. May be -1.
+	 * @return a byte with bit i set if element (x + (i &amp; 1), y + (i &gt;&gt;
+	 *         1 &amp; 1), z + (i &gt;&gt; 2 &amp; 1)) is set. Elements outside the
+	 *         volume are zero.
+	 */
+	public int getOctant(final int x, final int y, final int z) {
+		int octant = 0;
+		for (int dz = 0; dz < 2; dz++) {
+			for (int dy = 0; dy < 2; dy++) {
+				final int bits = (int) (getBits(x, y + dy, z + dz) & 0b11);
+				octant |= bits << (2 * dy + 4 * dz);
+			}
+		}
+		return octant;
+	}
+
+	/**
+	 * Counts the set elements in the volume.
+	 *
+	 * @return number of elements that are true.
+	 */
+	public long cardinality() {
+		long count = 0;
+		for (final long word : words) {
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	/**
+	 * Counts the set elements in one xy-plane of the volume.
+	 *
+	 * @param z z-coordinate of the plane.
+	 * @return number of elements in the plane that are true.
+	 */
+	public long cardinality(final int z) {
+		long count = 0;
+		final int end = rowStart(0, z + 1);
+		for (int i = rowStart(0, z); i < end; i++) {
+			count += Long.bitCount(words[i]);
+		}
+		return count;
+	}
+
+	/**
+	 * Visits each word of the volume in z, y, x order.
+	 *
+	 * @param consumer called with each word and the position of its first
+	 *          element.
+	 */
+	public void forEachWord(final WordConsumer consumer) {
+		int i = 0;
+		for (int z = 0; z < depth; z++) {
+			for (int y = 0; y < height; y++) {
+				for (int k = 0; k < wordsPerRow; k++) {
+					consumer.accept(words[i++], k << 6, y, z);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the words backing the volume, for algorithms that need to sweep it
+	 * as fast as possible.
+	 * <p>
+	 * Row (y, z) starts at index (z × height + y) × {@link #wordsPerRow()}. The
+	 * array is not copied, and changes to it show in the volume. Padding bits
+	 * must be kept zero.
+	 * </p>
+	 *
+	 * @return the backing array.
+	 */
+	public long[] words() {
+		return words;
+	}
+
+	private <B extends BooleanType<B>> void packPlane(
+		final RandomAccessibleInterval<B> plane, final int z)
+	{
+		final Cursor<B> cursor = Views.flatIterable(plane).cursor();
+		for (int y = 0; y < height; y++) {
+			final int rowStart = rowStart(y, z);
+			for (int x = 0; x < width; x++) {
+				if (cursor.next().get()) {
+					words[rowStart + (x >>> 6)] |= 1L << x;
+				}
+			}
+		}
+	}
+
+	private boolean contains(final int x, final int y, final int z) {
+		return x >= 0 && x < width && y >= 0 && y < height && z >= 0 && z < depth;
+	}
+
+	private int rowStart(final int y, final int z) {
+		return (z * height + y) * wordsPerRow;
+	}
+
+	/** Receives the words of a {@link BitVolume}. */
+	@FunctionalInterface
+	public interface WordConsumer {
+
+		/**
+		 * Receives a word.
+		 *
+		 * @param word the bits of the elements x...x + 63.
+		 * @param x x-coordinate of the word's first element.
+		 * @param y y-coordinate of the row.
+		 * @param z z-coordinate of the row.
+		 */
+		void accept(long word, int x, int y, int z);
+	}
+}
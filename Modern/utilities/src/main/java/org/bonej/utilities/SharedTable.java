@@ -23,9 +23,12 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package org.bonej.utilities;
 
-import java.util.Collection;
-import java.util.Objects;
-import java.util.stream.IntStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.scijava.table.DefaultColumn;
 import org.scijava.table.DefaultGenericTable;
@@ -49,6 +52,11 @@ import org.scijava.table.Table;
  * <li>Labels and columns are kept in the order in which they were
  * produced.</li>
  * </ol>
+ * <p>
+ * The values are stored in primitive columns, and labels and headers are
+ * indexed, so that adding a value takes constant amortised time however large
+ * the table grows. The {@link Table} is only created by {@link #getTable()}.
+ * </p>
  *
  * @author Richard Domander
  * @author Michael Doube
@@ -57,10 +65,7 @@ public final class SharedTable {
 
 	public static final Double EMPTY_CELL = null;
 
-	/**
-	 * The table uses Double values. Empty cells are indicated by null
-	 */
-	private static Table<DefaultColumn<Double>, Double> table = createTable();
+	private static Columns table = new Columns();
 
 	private static Table<DefaultColumn<Double>, Double> publicCopy;
 
@@ -77,11 +82,11 @@ public final class SharedTable {
 	public static void add(final String label, final String header,
 		final long value)
 	{
-		add(label, header, new Double(value));
+		add(label, header, (double) value);
 	}
 
 	/**
-	 * Adds new value as a {@link Double} to the shared table
+	 * Adds new value to the shared table.
 	 *
 	 * @see #add(String, String, Double)
 	 * @param label the row label of the new data.
@@ -91,7 +96,13 @@ public final class SharedTable {
 	public static void add(final String label, final String header,
 		final double value)
 	{
-		add(label, header, new Double(value));
+		if (label.isEmpty()) {
+			throw new IllegalArgumentException("Label cannot be empty");
+		}
+		if (header.isEmpty()) {
+			throw new IllegalArgumentException("Header cannot be empty");
+		}
+		table.add(label, header, value);
 	}
 
 	/**
@@ -108,20 +119,7 @@ public final class SharedTable {
 		if (value == null) {
 			throw new NullPointerException();
 		}
-		if (label.isEmpty()) {
-			throw new IllegalArgumentException("Label cannot be empty");
-		}
-		if (header.isEmpty()) {
-			throw new IllegalArgumentException("Header cannot be empty");
-		}
-
-		final int columns = table.getColumnCount();
-		final int columnIndex = headerIndex(header);
-
-		if (columnIndex == columns) {
-			appendEmptyColumn(header);
-		}
-		insertIntoNextFreeRow(label, columnIndex, value);
+		add(label, header, value.doubleValue());
 	}
 
 	/**
@@ -146,84 +144,182 @@ public final class SharedTable {
 			publicCopy.setRowCount(0);
 			publicCopy.setColumnCount(0);
 		}
-		table.forEach(publicCopy::add);
+		final int rows = table.rowCount();
+		for (int i = 0; i < table.columnCount(); i++) {
+			publicCopy.add(table.column(i).toColumn(rows));
+		}
 		// Just calling publicCopy::add is not enough to update size info
 		// (ThicknessWrapperTests fail)
-		publicCopy.setRowCount(table.getRowCount());
-		publicCopy.setColumnCount(table.getColumnCount());
-		for (int i = 0; i < table.getRowCount(); i++) {
-			publicCopy.setRowHeader(i, table.getRowHeader(i));
+		publicCopy.setRowCount(rows);
+		publicCopy.setColumnCount(table.columnCount());
+		for (int i = 0; i < rows; i++) {
+			publicCopy.setRowHeader(i, table.label(i));
 		}
 		return publicCopy;
 	}
 
 	public static boolean hasData() {
-		return table.stream().flatMap(Collection::stream).anyMatch(
-			Objects::nonNull);
+		return table.hasData();
 	}
 
 	/** Initializes the table into a new empty table */
 	public static void reset() {
-		table = createTable();
+		table = new Columns();
 	}
 
 	// region -- Helper methods --
 
-	private static void appendEmptyColumn(final String header) {
-		table.appendColumn(header);
-		final int lastColumn = table.getColumnCount() - 1;
-		fillEmptyColumn(lastColumn);
-	}
-
-	private static void appendEmptyRow(final String label) {
-		table.appendRow(label);
-		final int lastRow = table.getRowCount() - 1;
-		fillEmptyRow(label, lastRow);
-	}
-
 	@SuppressWarnings("unchecked")
 	private static Table<DefaultColumn<Double>, Double> createTable() {
 		return (Table) new DefaultGenericTable();
 	}
+	// endregion
+
+	// region -- Helper classes --
+
+	/** The data of the shared table, with indices for its labels and headers */
+	private static final class Columns {
+
+		private final List<String> labels = new ArrayList<>();
+		private final List<Column> columns = new ArrayList<>();
+		private final Map<String, Integer> headerIndices = new HashMap<>();
+		private final Map<String, LabelRows> labelRows = new HashMap<>();
+		private boolean hasData;
+
+		private void add(final String label, final String header,
+			final double value)
+		{
+			final int columnIndex = headerIndices.computeIfAbsent(header, h -> {
+				columns.add(new Column(h));
+				return columns.size() - 1;
+			});
+			final LabelRows rows = labelRows.computeIfAbsent(label,
+				l -> new LabelRows());
+			int row = rows.popEmpty(columnIndex);
+			if (row < 0) {
+				row = labels.size();
+				labels.add(label);
+				rows.append(row, columnIndex);
+			}
+			columns.get(columnIndex).set(row, value);
+			hasData = true;
+		}
+
+		private Column column(final int index) {
+			return columns.get(index);
+		}
+
+		private int columnCount() {
+			return columns.size();
+		}
 
-	private static void fillEmptyColumn(final int columnIndex) {
-		final DefaultColumn<Double> column = table.get(columnIndex);
-		IntStream.range(0, column.size()).forEach(i -> column.set(i, EMPTY_CELL));
+		private boolean hasData() {
+			return hasData;
+		}
+
+		private String label(final int row) {
+			return labels.get(row);
+		}
+
+		private int rowCount() {
+			return labels.size();
+		}
 	}
 
-	private static void fillEmptyRow(final String label, final int row) {
-		table.setRowHeader(row, label);
-		final int columns = table.getColumnCount();
-		IntStream.range(0, columns).forEach(column -> table.set(column, row,
-			EMPTY_CELL));
+	/** A column of values, where the cells that have not been set are empty */
+	private static final class Column {
+
+		private final String header;
+		private final BitSet filled = new BitSet();
+		private double[] values = new double[16];
+
+		private Column(final String header) {
+			this.header = header;
+		}
+
+		private void set(final int row, final double value) {
+			if (row >= values.length) {
+				values = Arrays.copyOf(values, Math.max(row + 1, 2 * values.length));
+			}
+			values[row] = value;
+			filled.set(row);
+		}
+
+		private DefaultColumn<Double> toColumn(final int rows) {
+			final DefaultColumn<Double> column = new DefaultColumn<>(Double.class,
+				header);
+			column.setSize(rows);
+			for (int i = filled.nextSetBit(0); i >= 0; i = filled.nextSetBit(i + 1)) {
+				column.set(i, values[i]);
+			}
+			return column;
+		}
 	}
 
-	private static int headerIndex(final String header) {
-		final int cols = table.getColumnCount();
-		return IntStream.range(0, cols).filter(i -> table.get(i).getHeader().equals(
-			header)).findFirst().orElse(cols);
+	/**
+	 * The rows of one label, and for each column, the rows of the label whose
+	 * cells in that column are empty.
+	 * <p>
+	 * A row is empty in every column when it's appended, and a cell is never
+	 * emptied, so the empty rows of a column are a stack, with the last empty
+	 * row on top. The stacks are filled lazily, when the column is first used
+	 * after new rows have been appended.
+	 * </p>
+	 */
+	private static final class LabelRows {
+
+		private int[] rows = new int[4];
+		private int size;
+		private EmptyRows[] emptyRows = new EmptyRows[0];
+
+		private void append(final int row, final int filledColumn) {
+			if (size == rows.length) {
+				rows = Arrays.copyOf(rows, 2 * size);
+			}
+			rows[size++] = row;
+			// The new row isn't empty in the column it was appended for
+			emptyRows[filledColumn].synced = size;
+		}
+
+		/**
+		 * Removes the last row that is empty in the column.
+		 *
+		 * @return index of the row, or -1 if the label has no empty cells in the
+		 *         column.
+		 */
+		private int popEmpty(final int column) {
+			if (column >= emptyRows.length) {
+				emptyRows = Arrays.copyOf(emptyRows, column + 1);
+			}
+			if (emptyRows[column] == null) {
+				emptyRows[column] = new EmptyRows();
+			}
+			final EmptyRows empty = emptyRows[column];
+			while (empty.synced < size) {
+				empty.push(rows[empty.synced++]);
+			}
+			return empty.pop();
+		}
 	}
 
-	private static void insertIntoNextFreeRow(final String label,
-		final int columnIndex, final Double value)
-	{
-		final int rows = table.getRowCount();
-		// iterate up the table from the bottom
-		for (int i = rows - 1; i >= 0; i--) {
-			// if we find a row with the same label
-			if (table.getRowHeader(i).equals(label)) {
-				//check whether there is not already a value in columnIndex
-				final Double cell = table.get(columnIndex, i); 
-				if (Objects.equals(cell, EMPTY_CELL)) {
-					//add the value to the row and column
-					table.set(columnIndex, i, value);
-					return;
-				}
+	/** A stack of row indices */
+	private static final class EmptyRows {
+
+		private int[] stack = new int[4];
+		private int top;
+		/** Number of rows of the label that have been pushed or filled */
+		private int synced;
+
+		private int pop() {
+			return top == 0 ? -1 : stack[--top];
+		}
+
+		private void push(final int row) {
+			if (top == stack.length) {
+				stack = Arrays.copyOf(stack, 2 * top);
 			}
+			stack[top++] = row;
 		}
-		// we didn't find the label in the table so make a new row
-		appendEmptyRow(label);
-		table.set(columnIndex, rows, value);
 	}
 	// endregion
 }
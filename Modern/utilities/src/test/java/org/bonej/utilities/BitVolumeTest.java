@@ -0,0 +1,166 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.utilities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Random;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.logic.BitType;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link BitVolume} class
+ */
+public class BitVolumeTest {
+
+	private static final int W = 130;
+	private static final int H = 5;
+	private static final int D = 4;
+	private static final Img<BitType> img = ArrayImgs.bits(W, H, D);
+	private static long foreground;
+
+	@BeforeClass
+	public static void oneTimeSetup() {
+		final Random random = new Random(0xB17);
+		img.forEach(e -> e.set(random.nextBoolean()));
+		img.forEach(e -> foreground += e.get() ? 1 : 0);
+	}
+
+	@Test
+	public void testOfMatchesInterval() {
+		final BitVolume volume = BitVolume.of(img);
+		final RandomAccess<BitType> access = img.randomAccess();
+
+		assertEquals(3, volume.wordsPerRow());
+		for (int z = 0; z < D; z++) {
+			for (int y = 0; y < H; y++) {
+				for (int x = 0; x < W; x++) {
+					access.setPosition(new int[] { x, y, z });
+					assertEquals(access.get().get(), volume.get(x, y, z));
+				}
+			}
+		}
+		assertFalse(volume.get(-1, 0, 0));
+		assertFalse(volume.get(W, 0, 0));
+	}
+
+	@Test
+	public void testCardinality() {
+		final BitVolume volume = BitVolume.of(img);
+
+		long sum = 0;
+		for (int z = 0; z < D; z++) {
+			sum += volume.cardinality(z);
+		}
+
+		assertEquals(foreground, volume.cardinality());
+		assertEquals(foreground, sum);
+	}
+
+	@Test
+	public void testGetBits() {
+		final BitVolume volume = BitVolume.of(img);
+
+		for (int x = -70; x < W + 2; x++) {
+			final long bits = volume.getBits(x, 2, 3);
+			for (int b = 0; b < 64; b++) {
+				assertEquals(volume.get(x + b, 2, 3), ((bits >>> b) & 1) == 1);
+			}
+		}
+		assertEquals(0, volume.getBits(0, -1, 0));
+		assertEquals(0, volume.getBits(0, 0, D));
+	}
+
+	@Test
+	public void testGetOctant() {
+		final BitVolume volume = BitVolume.of(img);
+
+		for (int z = -1; z < D; z++) {
+			for (int y = -1; y < H; y++) {
+				for (int x = -1; x < W; x++) {
+					int expected = 0;
+					for (int i = 0; i < 8; i++) {
+						if (volume.get(x + (i & 1), y + (i >> 1 & 1), z + (i >> 2 & 1))) {
+							expected |= 1 << i;
+						}
+					}
+					assertEquals(expected, volume.getOctant(x, y, z));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testForEachWord() {
+		final BitVolume volume = BitVolume.of(img);
+		final long[] count = new long[1];
+		final int[] words = new int[1];
+
+		volume.forEachWord((word, x, y, z) -> {
+			assertEquals(volume.getBits(x, y, z), word);
+			count[0] += Long.bitCount(word);
+			words[0]++;
+		});
+
+		assertEquals(foreground, count[0]);
+		assertEquals(3 * H * D, words[0]);
+	}
+
+	@Test
+	public void testSet() {
+		final BitVolume volume = new BitVolume(70, 2, 2);
+
+		volume.set(69, 1, 1, true);
+		volume.set(3, 0, 1, true);
+		volume.set(3, 0, 1, false);
+
+		assertEquals(1, volume.cardinality());
+		assertEquals(1L << 5, volume.getWord(1, 1, 1));
+	}
+
+	@Test
+	public void test2DInterval() {
+		final BitVolume volume = BitVolume.of(ArrayImgs.bits(3, 2));
+
+		assertEquals(1, volume.depth());
+		assertEquals(0, volume.cardinality());
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testSetThrowsOutsideVolume() {
+		new BitVolume(1, 1, 1).set(1, 0, 0, true);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOfThrowsIf1D() {
+		BitVolume.of(ArrayImgs.bits(3));
+	}
+}
@@ -107,6 +107,24 @@ public class SharedTableTest {
 		assertEquals(3, table.getRowCount());
 	}
 
+	@Test
+	public void testAddNaNFillsCell() {
+		// SETUP
+		final String label = "Image";
+		final String header = "Pixels";
+
+		// EXECUTE
+		SharedTable.add(label, header, Double.NaN);
+		SharedTable.add(label, header, 1.0);
+
+		// VERIFY
+		final Table<DefaultColumn<Double>, Double> table = SharedTable.getTable();
+		assertEquals("NaN should not be treated as an empty cell", 2, table
+			.getRowCount());
+		assertTrue(Double.isNaN(table.get(header).get(0)));
+		assertTrue(SharedTable.hasData());
+	}
+
 	@Test
 	public void testAddMultipleColumns() {
 		// SETUP
@@ -34,18 +34,14 @@ import static org.scijava.ui.DialogPrompt.OptionType.OK_CANCEL_OPTION;
 import static org.scijava.ui.DialogPrompt.Result.OK_OPTION;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.Random;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
+import java.util.SplittableRandom;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
+import java.util.stream.IntStream;
 
 import net.imagej.ImgPlus;
 import net.imagej.ops.OpService;
@@ -58,18 +54,21 @@ import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.logic.BitType;
 import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.Intervals;
 
-import org.apache.commons.math3.random.RandomVectorGenerator;
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
 import org.apache.commons.math3.random.UnitSphereRandomVectorGenerator;
 import org.bonej.ops.ellipsoid.Ellipsoid;
 import org.bonej.ops.ellipsoid.QuadricToEllipsoid;
-import org.bonej.ops.mil.MILPlane;
+import org.bonej.ops.mil.MILVectors;
 import org.bonej.utilities.AxisUtils;
 import org.bonej.utilities.ElementUtil;
 import org.bonej.utilities.SharedTable;
 import org.bonej.wrapperPlugins.wrapperUtils.Common;
 import org.bonej.wrapperPlugins.wrapperUtils.HyperstackUtils;
 import org.bonej.wrapperPlugins.wrapperUtils.HyperstackUtils.Subspace;
+import org.bonej.wrapperPlugins.wrapperUtils.SubspaceScheduler;
 import org.bonej.wrapperPlugins.wrapperUtils.UsageReporter;
 import org.joml.Matrix4d;
 import org.joml.Matrix4dc;
@@ -103,14 +102,6 @@ public class AnisotropyWrapper<T extends RealType<T> & NativeType<T>> extends
 	ContextCommand
 {
 
-	/**
-	 * Generates four normally distributed values between [0, 1] that describe a
-	 * unit quaternion. These can be used to create isotropically distributed
-	 * rotations.
-	 */
-	private static final RandomVectorGenerator qGenerator =
-		new UnitSphereRandomVectorGenerator(4);
-
 	/**
 	 * Default directions is 2_000 since that's roughly the number of points in
 	 * Poisson distributed sampling that'd give points about 5 degrees apart).
@@ -120,7 +111,6 @@ public class AnisotropyWrapper<T extends RealType<T> & NativeType<T>> extends
 	// with data at hand. Other data may need a different number.
 	private static final int DEFAULT_LINES = 100;
 	private static final double DEFAULT_INCREMENT = 1.0;
-	private static BinaryFunctionOp<RandomAccessibleInterval<BitType>, Quaterniondc, Vector3d> milOp;
 	private static UnaryFunctionOp<Matrix4dc, Optional<Ellipsoid>> quadricToEllipsoidOp;
 	private static UnaryFunctionOp<List<Vector3d>, Matrix4dc> solveQuadricOp;
 	private final Function<Ellipsoid, Double> degreeOfAnisotropy =
@@ -190,16 +180,43 @@ public class AnisotropyWrapper<T extends RealType<T> & NativeType<T>> extends
 			inputImage);
 		final List<Subspace<BitType>> subspaces = HyperstackUtils.split3DSubspaces(
 			bitImgPlus).collect(toList());
-		matchOps(subspaces.get(0));
-		final List<Ellipsoid> ellipsoids = new ArrayList<>();
-		for (int i = 0; i < subspaces.size(); i++) {
-			statusService.showStatus("Anisotropy: sampling subspace #" + (i + 1));
-			final Subspace<BitType> subspace = subspaces.get(i);
-			final Ellipsoid ellipsoid = milEllipsoid(subspace);
-			if (ellipsoid == null) {
-				return;
-			}
-			ellipsoids.add(ellipsoid);
+		final RandomGenerator random = seed == null ? new MersenneTwister()
+			: new MersenneTwister(seed);
+		matchOps();
+		// Draw the rotations and MIL seeds in subspace order, so that a seed gives
+		// the same results however many subspaces are sampled at once. Each
+		// subspace gets its own MIL seed, split off the base seed, so that their
+		// sampling lines aren't correlated.
+		final SplittableRandom milSeeds = new SplittableRandom(random.nextLong());
+		final List<List<Quaterniondc>> rotations = new ArrayList<>();
+		final List<BinaryFunctionOp<RandomAccessibleInterval<BitType>, List<Quaterniondc>, List<Vector3d>>> milOps =
+			new ArrayList<>();
+		subspaces.forEach(subspace -> {
+			rotations.add(randomRotations(random));
+			milOps.add(matchMILOp(subspace, milSeeds.split().nextLong()));
+		});
+		statusService.showStatus("Anisotropy: sampling " + directions +
+			" directions per subspace");
+		final AtomicInteger done = new AtomicInteger();
+		// Failures are reported from this thread after the subspaces are done
+		final String[] failures = new String[subspaces.size()];
+		// MIL sampling packs the subspace into a bit per element
+		final long bytes = Intervals.numElements(subspaces.get(0).interval) /
+			Byte.SIZE;
+		final List<Integer> indices = IntStream.range(0, subspaces.size()).boxed()
+			.collect(toList());
+		final List<Ellipsoid> ellipsoids = SubspaceScheduler.fromSystemProperties()
+			.map(indices, bytes, i -> {
+				final Ellipsoid ellipsoid = milEllipsoid(milOps.get(i), subspaces.get(
+					i), rotations.get(i), failures, i);
+				statusService.showProgress(done.incrementAndGet(), subspaces.size());
+				return ellipsoid;
+			});
+		final Optional<String> failure = Arrays.stream(failures).filter(
+			Objects::nonNull).findFirst();
+		if (failure.isPresent()) {
+			cancel(failure.get());
+			return;
 		}
 		addResults(subspaces, ellipsoids);
 		if (SharedTable.hasData()) {
@@ -256,16 +273,22 @@ public class AnisotropyWrapper<T extends RealType<T> & NativeType<T>> extends
 	}
 
 	private Optional<Ellipsoid> fitEllipsoid(final List<Vector3d> pointCloud) {
-		statusService.showStatus("Anisotropy: solving quadric equation");
-		final Matrix4dc quadric = solveQuadricOp.calculate(pointCloud);
-		statusService.showStatus("Anisotropy: fitting ellipsoid");
-		return quadricToEllipsoidOp.calculate(quadric);
+		final Matrix4dc quadric = solveQuadricOp.getIndependentInstance()
+			.calculate(pointCloud);
+		return quadricToEllipsoidOp.getIndependentInstance().calculate(quadric);
 	}
 
 	@SuppressWarnings("unchecked")
-	private void matchOps(final Subspace<BitType> subspace) {
-		milOp = Functions.binary(opService, MILPlane.class, Vector3d.class,
-			subspace.interval, new Quaterniond(), lines, samplingIncrement);
+	private BinaryFunctionOp<RandomAccessibleInterval<BitType>, List<Quaterniondc>, List<Vector3d>>
+		matchMILOp(final Subspace<BitType> subspace, final long milSeed)
+	{
+		return (BinaryFunctionOp) Functions.binary(opService, MILVectors.class,
+			List.class, subspace.interval, new ArrayList<Quaterniondc>(), lines,
+			samplingIncrement, milSeed);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void matchOps() {
 		final List<Vector3d> tmpPoints = generate(Vector3d::new).limit(
 			Quadric.MIN_DATA).collect(toList());
 		solveQuadricOp = Functions.unary(opService, Quadric.class, Matrix4dc.class,
@@ -275,87 +298,57 @@ public class AnisotropyWrapper<T extends RealType<T> & NativeType<T>> extends
 			QuadricToEllipsoid.class, Optional.class, matchingMock);
 	}
 
-	private Ellipsoid milEllipsoid(final Subspace<BitType> subspace) {
-		final List<Vector3d> pointCloud;
-		try {
-			pointCloud = runDirectionsInParallel(subspace.interval);
-			if (pointCloud.size() < Quadric.MIN_DATA) {
-				cancel("Anisotropy could not be calculated - too few points");
-				return null;
-			}
-			final Optional<Ellipsoid> ellipsoid = fitEllipsoid(pointCloud);
-			if (!ellipsoid.isPresent()) {
-				cancel("Anisotropy could not be calculated - ellipsoid fitting failed");
-				return null;
-			}
-			return ellipsoid.get();
+	/**
+	 * Fits an ellipsoid to the MIL vectors of a subspace.
+	 * <p>
+	 * Runs in the worker threads of the scheduler, so instead of cancelling, the
+	 * reason of a failure is stored for the calling thread.
+	 * </p>
+	 *
+	 * @return the ellipsoid, or null if it could not be fitted.
+	 */
+	private Ellipsoid milEllipsoid(
+		final BinaryFunctionOp<RandomAccessibleInterval<BitType>, List<Quaterniondc>, List<Vector3d>> milOp,
+		final Subspace<BitType> subspace, final List<Quaterniondc> rotations,
+		final String[] failures, final int index)
+	{
+		final List<Vector3d> pointCloud = milOp.calculate(subspace.interval,
+			rotations);
+		if (pointCloud.size() < Quadric.MIN_DATA) {
+			failures[index] = "Anisotropy could not be calculated - too few points";
+			return null;
 		}
-		catch (final ExecutionException | InterruptedException e) {
-			logService.trace(e.getMessage());
-			cancel("The plug-in was interrupted");
+		final Optional<Ellipsoid> ellipsoid = fitEllipsoid(pointCloud);
+		if (!ellipsoid.isPresent()) {
+			failures[index] =
+				"Anisotropy could not be calculated - ellipsoid fitting failed";
+			return null;
 		}
-		return null;
+		return ellipsoid.get();
 	}
 
 	/**
-	 * Creates a random isotropically distributed quaternion.
+	 * Creates random isotropically distributed quaternions, one for each
+	 * direction.
+	 * <p>
+	 * The quaternions are drawn in one thread before the MIL vectors are
+	 * sampled, so that a seeded generator always gives the same rotations.
+	 * </p>
 	 *
-	 * @return a (rotation) quaternion which can be used as a parameter for the
+	 * @param random the generator of the four normally distributed values that
+	 *          describe each unit quaternion.
+	 * @return (rotation) quaternions which can be used as a parameter for the
 	 *         op.
 	 */
-	private static synchronized Quaterniondc randomQuaternion() {
-		final double[] v = qGenerator.nextVector();
-		return new Quaterniond(v[0], v[1], v[2], v[3]);
-	}
-
-	private List<Vector3d> runDirectionsInParallel(
-		final RandomAccessibleInterval<BitType> interval) throws ExecutionException,
-		InterruptedException
-	{
-		final int cores = Runtime.getRuntime().availableProcessors();
-		// The parallellization of the the MILPlane algorithm is a memory bound
-		// problem, which is why speed gains start to drop after 5 cores. With much
-		// larger 'nThreads' it slows down due to overhead. Of course '5' here is a
-		// bit of a magic number, which might not hold true for all environments,
-		// but we need some kind of upper bound
-		final int nThreads = Math.max(5, cores);
-		final ExecutorService executor = Executors.newFixedThreadPool(nThreads);
-		final Callable<Vector3d> milTask = () -> milOp.calculate(interval,
-			randomQuaternion());
-		final List<Future<Vector3d>> futures = generate(() -> milTask).limit(
-			directions).map(executor::submit).collect(toList());
-		final List<Vector3d> pointCloud = Collections.synchronizedList(
-			new ArrayList<>(directions));
-		final int futuresSize = futures.size();
-		final AtomicInteger progress = new AtomicInteger();
-		for (final Future<Vector3d> future : futures) {
-			statusService.showProgress(progress.getAndIncrement(), futuresSize);
-			pointCloud.add(future.get());
-		}
-		shutdownAndAwaitTermination(executor);
-		return pointCloud;
-	}
-
-	// Shuts down an ExecutorService as per recommended by Oracle
-	private void shutdownAndAwaitTermination(final ExecutorService executor) {
-		executor.shutdown(); // Disable new tasks from being submitted
-		try {
-			// Wait a while for existing tasks to terminate
-			if (!executor.awaitTermination(60, TimeUnit.SECONDS)) {
-				executor.shutdownNow(); // Cancel currently executing tasks
-				// Wait a while for tasks to respond to being cancelled
-				if (!executor.awaitTermination(60, TimeUnit.SECONDS)) {
-					logService.trace("Pool did not terminate");
-				}
-			}
-		}
-		catch (final InterruptedException ie) {
-			// (Re-)Cancel if current thread also interrupted
-			executor.shutdownNow();
-			// Preserve interrupt status
-			Thread.currentThread().interrupt();
-			logService.trace(ie);
+	private List<Quaterniondc> randomRotations(final RandomGenerator random) {
+		final UnitSphereRandomVectorGenerator qGenerator =
+			new UnitSphereRandomVectorGenerator(4, random);
+		final List<Quaterniondc> rotations = new ArrayList<>(directions);
+		for (int i = 0; i < directions; i++) {
+			final double[] v = qGenerator.nextVector();
+			rotations.add(new Quaterniond(v[0], v[1], v[2], v[3]));
 		}
+		return rotations;
 	}
 
 	@SuppressWarnings("unused")
@@ -390,13 +383,14 @@ public class AnisotropyWrapper<T extends RealType<T> & NativeType<T>> extends
 
 	// region -- Utility methods --
 	/**
-	 * Sets the seed used in the random generation of MIL sampling lines.
+	 * Sets the seed used in the random generation of directions and MIL sampling
+	 * lines.
 	 * <p>
 	 * The method's here only to enable reproducible unit test.
 	 * </p>
 	 * 
 	 * @param seed a seed number.
-	 * @see Random#setSeed
+	 * @see MersenneTwister#setSeed(long)
 	 */
 	static void setSeed(final long seed) {
 		AnisotropyWrapper.seed = seed;
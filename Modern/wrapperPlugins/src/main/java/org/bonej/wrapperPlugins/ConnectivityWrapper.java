@@ -28,23 +28,33 @@ import static org.bonej.wrapperPlugins.CommonMessages.NOT_BINARY;
 import static org.bonej.wrapperPlugins.CommonMessages.NO_IMAGE_OPEN;
 import static org.scijava.ui.DialogPrompt.MessageType.INFORMATION_MESSAGE;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import net.imagej.ImgPlus;
 import net.imagej.ops.OpService;
 import net.imagej.ops.Ops.Topology.EulerCharacteristic26NFloating;
 import net.imagej.ops.Ops.Topology.EulerCorrection;
+import net.imagej.ops.special.function.Functions;
+import net.imagej.ops.special.function.UnaryFunctionOp;
 import net.imagej.ops.special.hybrid.Hybrids;
 import net.imagej.ops.special.hybrid.UnaryHybridCF;
 import net.imagej.units.UnitService;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
 import net.imglib2.IterableRealInterval;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.logic.BitType;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.util.Intervals;
 
+import org.bonej.ops.connectivity.CreateEulerSumTable;
+import org.bonej.ops.connectivity.EulerSumTable;
 import org.bonej.utilities.AxisUtils;
 import org.bonej.utilities.ElementUtil;
 import org.bonej.utilities.SharedTable;
@@ -52,6 +62,7 @@ import org.bonej.wrapperPlugins.wrapperUtils.Common;
 import org.bonej.wrapperPlugins.wrapperUtils.HyperstackUtils;
 import org.bonej.wrapperPlugins.wrapperUtils.HyperstackUtils.Subspace;
 import org.bonej.wrapperPlugins.wrapperUtils.ResultUtils;
+import org.bonej.wrapperPlugins.wrapperUtils.SubspaceScheduler;
 import org.bonej.wrapperPlugins.wrapperUtils.UsageReporter;
 import org.scijava.ItemIO;
 import org.scijava.app.StatusService;
@@ -77,10 +88,24 @@ public class ConnectivityWrapper<T extends RealType<T> & NativeType<T>> extends
 	static final String NEGATIVE_CONNECTIVITY =
 		"Connectivity is negative.\nThis usually happens if there are multiple particles or enclosed cavities.\n" +
 			"Try running Purify prior to Connectivity.\n";
+	static final String BAD_VOI_BOXES =
+		"VOI boxes must be given as \"x, y, z, width, height, depth\" separated by semicolons,\n" +
+			"and they must be at least 2 voxels on each side and fit inside the image";
 
 	@Parameter(validater = "validateImage")
 	private ImgPlus<T> inputImage;
 
+	/**
+	 * Sub-volumes to analyse instead of the whole image, as "x, y, z, width,
+	 * height, depth" separated by semicolons. Each side must be at least 2
+	 * voxels, because the edge correction of thinner boxes differs from that of
+	 * the whole image.
+	 */
+	@Parameter(label = "VOI boxes",
+		description = "Analyse these boxes instead of the whole image, e.g. \"0, 0, 0, 50, 50, 50; 25, 25, 25, 50, 50, 50\"",
+		required = false, persist = false)
+	private String voiBoxes = "";
+
 	/**
 	 * The connectivity results in a {@link Table}
 	 * <p>
@@ -107,14 +132,13 @@ public class ConnectivityWrapper<T extends RealType<T> & NativeType<T>> extends
 
 	private UnaryHybridCF<RandomAccessibleInterval<BitType>, DoubleType> eulerCharacteristicOp;
 	private UnaryHybridCF<RandomAccessibleInterval<BitType>, DoubleType> eulerCorrectionOp;
+	private UnaryFunctionOp<RandomAccessibleInterval<BitType>, EulerSumTable> sumTableOp;
 
 	/** A flag to avoid showing the same warning repeatedly */
 	private boolean negativityWarned;
 	/** The unit displayed in the results */
 	private String unitHeader;
 	private static UsageReporter reporter;
-	private int progress;
-	private static final int PROGRESS_STEPS = 3;
 
 	@Override
 	public void run() {
@@ -125,16 +149,36 @@ public class ConnectivityWrapper<T extends RealType<T> & NativeType<T>> extends
 		final List<Subspace<BitType>> subspaces = HyperstackUtils.split3DSubspaces(
 			bitImgPlus).collect(Collectors.toList());
 
+		final List<long[]> boxes = parseBoxes(subspaces.get(0).interval);
+		if (boxes == null) {
+			cancel(BAD_VOI_BOXES);
+			return;
+		}
 		determineResultUnit();
 		matchOps(subspaces.get(0).interval);
-		subspaces.forEach(subspace -> {
-			progress = 0;
-			statusService.showProgress(progress, PROGRESS_STEPS);
-			progress++;
-			final String suffix = subspace.toString();
+		statusService.showStatus("Connectivity: calculating connectivity");
+		final AtomicInteger done = new AtomicInteger();
+		// The sum table of the boxes needs an int per element
+		final long bytes = boxes.isEmpty() ? 0 : Intervals.numElements(subspaces
+			.get(0).interval) * Integer.BYTES;
+		final List<List<double[]>> results = SubspaceScheduler
+			.fromSystemProperties().map(subspaces, bytes, subspace -> {
+				final List<double[]> subspaceResults = boxes.isEmpty() ? Collections
+					.singletonList(subspaceConnectivity(subspace.interval))
+					: boxConnectivity(subspace.interval, boxes);
+				statusService.showProgress(done.incrementAndGet(), subspaces.size());
+				return subspaceResults;
+			});
+		for (int i = 0; i < subspaces.size(); i++) {
+			final String suffix = subspaces.get(i).toString();
 			final String label = suffix.isEmpty() ? name : name + " " + suffix;
-			subspaceConnectivity(label, subspace.interval);
-		});
+			final List<double[]> subspaceResults = results.get(i);
+			for (int j = 0; j < subspaceResults.size(); j++) {
+				final String rowLabel = boxes.isEmpty() ? label : label + " VOI #" +
+					(j + 1);
+				addResults(rowLabel, subspaceResults.get(j));
+			}
+		}
 		if (SharedTable.hasData()) {
 			resultsTable = SharedTable.getTable();
 		}
@@ -151,25 +195,28 @@ public class ConnectivityWrapper<T extends RealType<T> & NativeType<T>> extends
 		ConnectivityWrapper.reporter = reporter;
 	}
 
-	private void addResults(final String label, final double eulerCharacteristic,
-		final double deltaEuler, final double connectivity,
-		final double connectivityDensity)
-	{
-		if (connectivity < 0 && !negativityWarned) {
+	/**
+	 * Adds the results of a subspace or a box to the table.
+	 *
+	 * @param label label of the row.
+	 * @param results Euler characteristic, corrected Euler characteristic,
+	 *          connectivity and connectivity density.
+	 */
+	private void addResults(final String label, final double[] results) {
+		if (results[2] < 0 && !negativityWarned) {
 			uiService.showDialog(NEGATIVE_CONNECTIVITY, INFORMATION_MESSAGE);
 			negativityWarned = true;
 		}
 
-		SharedTable.add(label, "Euler char. (χ)", eulerCharacteristic);
-		SharedTable.add(label, "Corrected Euler (χ + Δχ)", deltaEuler);
-		SharedTable.add(label, "Connectivity", connectivity);
-		SharedTable.add(label, "Conn. density " + unitHeader, connectivityDensity);
+		SharedTable.add(label, "Euler char. (χ)", results[0]);
+		SharedTable.add(label, "Corrected Euler (χ + Δχ)", results[1]);
+		SharedTable.add(label, "Connectivity", results[2]);
+		SharedTable.add(label, "Conn. density " + unitHeader, results[3]);
 	}
 
-	private double calculateConnectivityDensity(
-		final RandomAccessibleInterval subspace, final double connectivity)
+	private double calculateConnectivityDensity(final double elements,
+		final double connectivity)
 	{
-		final double elements = ((IterableRealInterval) subspace).size();
 		final double elementSize = ElementUtil.calibratedSpatialElementSize(
 			inputImage, unitService);
 		return connectivity / (elements * elementSize);
@@ -185,29 +232,95 @@ public class ConnectivityWrapper<T extends RealType<T> & NativeType<T>> extends
 			EulerCharacteristic26NFloating.class, DoubleType.class, interval);
 		eulerCorrectionOp = Hybrids.unaryCF(opService, EulerCorrection.class,
 			DoubleType.class, interval);
+		sumTableOp = Functions.unary(opService, CreateEulerSumTable.class,
+			EulerSumTable.class, interval);
+	}
+
+	/**
+	 * Parses the VOI boxes.
+	 *
+	 * @param interval a subspace of the image.
+	 * @return boxes as {x, y, z, width, height, depth}, an empty list if none
+	 *         were given, or null if they couldn't be parsed, are thinner than 2
+	 *         voxels, or don't fit in the subspace.
+	 */
+	private List<long[]> parseBoxes(final Interval interval) {
+		final List<long[]> boxes = new ArrayList<>();
+		if (voiBoxes == null || voiBoxes.trim().isEmpty()) {
+			return boxes;
+		}
+		for (final String token : voiBoxes.split(";")) {
+			if (token.trim().isEmpty()) {
+				continue;
+			}
+			final String[] values = token.split(",");
+			if (values.length != 6) {
+				return null;
+			}
+			final long[] box = new long[6];
+			try {
+				for (int i = 0; i < 6; i++) {
+					box[i] = Long.parseLong(values[i].trim());
+				}
+			}
+			catch (final NumberFormatException e) {
+				return null;
+			}
+			for (int d = 0; d < 3; d++) {
+				if (box[d] < 0 || box[d + 3] < 2 || box[d] + box[d + 3] > interval
+					.dimension(d))
+				{
+					return null;
+				}
+			}
+			boxes.add(box);
+		}
+		return boxes;
+	}
+
+	/** Process connectivity for boxes of one 3D subspace */
+	private List<double[]> boxConnectivity(
+		final RandomAccessibleInterval<BitType> subspace, final List<long[]> boxes)
+	{
+		final EulerSumTable table = sumTableOp.getIndependentInstance().calculate(
+			subspace);
+		final List<double[]> results = new ArrayList<>(boxes.size());
+		for (final long[] box : boxes) {
+			final long[] min = new long[3];
+			final long[] max = new long[3];
+			for (int d = 0; d < 3; d++) {
+				min[d] = subspace.min(d) + box[d];
+				max[d] = min[d] + box[d + 3] - 1;
+			}
+			final Interval interval = new FinalInterval(min, max);
+			final double eulerCharacteristic = table.eulerCharacteristic(interval);
+			final double correctedEuler = eulerCharacteristic - table
+				.edgeCorrection(interval);
+			final double connectivity = 1 - correctedEuler;
+			final double connectivityDensity = calculateConnectivityDensity(box[3] *
+				box[4] * box[5], connectivity);
+			results.add(new double[] { eulerCharacteristic, correctedEuler,
+				connectivity, connectivityDensity });
+		}
+		return results;
 	}
 
 	/** Process connectivity for one 3D subspace */
-	private void subspaceConnectivity(final String label,
+	private double[] subspaceConnectivity(
 		final RandomAccessibleInterval<BitType> subspace)
 	{
-		statusService.showStatus("Connectivity: calculating connectivity");
-		statusService.showProgress(progress, PROGRESS_STEPS);
-		progress++;
-		final double eulerCharacteristic = eulerCharacteristicOp.calculate(subspace)
-			.get();
-		statusService.showStatus("Connectivity: calculating euler correction");
-		statusService.showProgress(progress, PROGRESS_STEPS);
-		progress++;
-		final double edgeCorrection = eulerCorrectionOp.calculate(subspace).get();
+		final double eulerCharacteristic = eulerCharacteristicOp
+			.getIndependentInstance().calculate(subspace).get();
+		final double edgeCorrection = eulerCorrectionOp.getIndependentInstance()
+			.calculate(subspace).get();
 		final double correctedEuler = eulerCharacteristic - edgeCorrection;
 		final double connectivity = 1 - correctedEuler;
-		final double connectivityDensity = calculateConnectivityDensity(subspace,
+		final double elements = ((IterableRealInterval) subspace).size();
+		final double connectivityDensity = calculateConnectivityDensity(elements,
 			connectivity);
 
-		addResults(label, eulerCharacteristic, correctedEuler, connectivity,
-			connectivityDensity);
-		statusService.showProgress(progress, PROGRESS_STEPS);
+		return new double[] { eulerCharacteristic, correctedEuler, connectivity,
+			connectivityDensity };
 	}
 
 	@SuppressWarnings("unused")
@@ -28,17 +28,21 @@ import static org.bonej.wrapperPlugins.CommonMessages.NO_IMAGE_OPEN;
 import static org.bonej.wrapperPlugins.CommonMessages.WEIRD_SPATIAL;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import net.imagej.ImgPlus;
 import net.imagej.ops.OpService;
+import net.imagej.ops.special.function.Functions;
+import net.imagej.ops.special.function.UnaryFunctionOp;
 import net.imagej.units.UnitService;
-import net.imglib2.IterableInterval;
+import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.logic.BitType;
 import net.imglib2.type.numeric.RealType;
-import net.imglib2.view.Views;
 
+import org.bonej.ops.fraction.ElementFraction;
+import org.bonej.ops.fraction.ElementFraction.Results;
 import org.bonej.utilities.AxisUtils;
 import org.bonej.utilities.ElementUtil;
 import org.bonej.utilities.SharedTable;
@@ -46,6 +50,7 @@ import org.bonej.wrapperPlugins.wrapperUtils.Common;
 import org.bonej.wrapperPlugins.wrapperUtils.HyperstackUtils;
 import org.bonej.wrapperPlugins.wrapperUtils.HyperstackUtils.Subspace;
 import org.bonej.wrapperPlugins.wrapperUtils.ResultUtils;
+import org.bonej.wrapperPlugins.wrapperUtils.SubspaceScheduler;
 import org.bonej.wrapperPlugins.wrapperUtils.UsageReporter;
 import org.scijava.ItemIO;
 import org.scijava.app.StatusService;
@@ -107,6 +112,7 @@ public class ElementFractionWrapper<T extends RealType<T> & NativeType<T>>
 	private String ratioHeader;
 	/** The calibrated size of an element in the image */
 	private double elementSize;
+	private UnaryFunctionOp<RandomAccessibleInterval<BitType>, Results> fractionOp;
 	private static UsageReporter reporter;
 
 	@Override
@@ -116,24 +122,27 @@ public class ElementFractionWrapper<T extends RealType<T> & NativeType<T>>
 			inputImage);
 		final List<Subspace<BitType>> subspaces = HyperstackUtils.split3DSubspaces(
 			bitImgPlus).collect(Collectors.toList());
+		fractionOp = Functions.unary(opService, ElementFraction.class,
+			Results.class, subspaces.get(0).interval);
 		prepareResultDisplay();
 		final String name = inputImage.getName();
+		statusService.showStatus("Element fraction: calculating subspaces");
+		final AtomicInteger done = new AtomicInteger();
+		final List<double[]> results = SubspaceScheduler.fromSystemProperties()
+			.map(subspaces, 0, subspace -> {
+				final Results counts = fractionOp.getIndependentInstance().calculate(
+					subspace.interval);
+				final double foregroundSize = counts.foreground * elementSize;
+				final double totalSize = counts.total * elementSize;
+				statusService.showProgress(done.incrementAndGet(), subspaces.size());
+				return new double[] { foregroundSize, totalSize, foregroundSize /
+					totalSize };
+			});
 		for (int i = 0; i < subspaces.size(); i++) {
-			final Subspace<BitType> subspace = subspaces.get(i);
-			statusService.showStatus("Element fraction: calculating subspace #" + (i +
-				1));
-			statusService.showProgress(i, subspaces.size());
-			// The value of each foreground element in a bit type image is 1, so we
-			// can count their number just by summing
-			final IterableInterval<BitType> interval = Views.flatIterable(
-				subspace.interval);
-			final double foregroundSize = opService.stats().sum(interval)
-				.getRealDouble() * elementSize;
-			final double totalSize = interval.size() * elementSize;
-			final double ratio = foregroundSize / totalSize;
-			final String suffix = subspace.toString();
+			final String suffix = subspaces.get(i).toString();
 			final String label = suffix.isEmpty() ? name : name + " " + suffix;
-			addResults(label, foregroundSize, totalSize, ratio);
+			final double[] result = results.get(i);
+			addResults(label, result[0], result[1], result[2]);
 		}
 		if (SharedTable.hasData()) {
 			resultsTable = SharedTable.getTable();
@@ -30,35 +30,34 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import net.imagej.ImgPlus;
 import net.imagej.ops.OpService;
-import net.imagej.ops.Ops.Morphology.Outline;
-import net.imagej.ops.Ops.Topology.BoxCount;
 import net.imagej.ops.special.function.Functions;
 import net.imagej.ops.special.function.UnaryFunctionOp;
-import net.imagej.ops.special.hybrid.BinaryHybridCF;
-import net.imagej.ops.special.hybrid.Hybrids;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.logic.BitType;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.util.Intervals;
 import net.imglib2.util.ValuePair;
 
 import org.apache.commons.math3.fitting.PolynomialCurveFitter;
 import org.apache.commons.math3.fitting.WeightedObservedPoints;
 import org.apache.commons.math3.stat.regression.SimpleRegression;
+import org.bonej.ops.fractal.BoxCount;
 import org.bonej.utilities.ElementUtil;
 import org.bonej.utilities.SharedTable;
 import org.bonej.wrapperPlugins.wrapperUtils.Common;
 import org.bonej.wrapperPlugins.wrapperUtils.HyperstackUtils;
 import org.bonej.wrapperPlugins.wrapperUtils.HyperstackUtils.Subspace;
+import org.bonej.wrapperPlugins.wrapperUtils.SubspaceScheduler;
 import org.bonej.wrapperPlugins.wrapperUtils.UsageReporter;
 import org.scijava.ItemIO;
-import org.scijava.ItemVisibility;
 import org.scijava.app.StatusService;
 import org.scijava.command.Command;
 import org.scijava.command.CommandService;
@@ -121,10 +120,6 @@ public class FractalDimensionWrapper<T extends RealType<T> & NativeType<T>>
 		callback = "enforceAutoParam", required = false)
 	private long translations;
 
-	@Parameter(visibility = ItemVisibility.MESSAGE)
-	private String translationInfo =
-		"NB: translations affect runtime significantly";
-
 	@Parameter(label = "Automatic parameters",
 		description = "Let the computer decide values for the parameters",
 		required = false, callback = "enforceAutoParam", persist = false,
@@ -161,7 +156,6 @@ public class FractalDimensionWrapper<T extends RealType<T> & NativeType<T>>
 	@Parameter
 	private CommandService commandService;
 
-	private BinaryHybridCF<RandomAccessibleInterval<BitType>, Boolean, RandomAccessibleInterval<BitType>> hollowOp;
 	private UnaryFunctionOp<RandomAccessibleInterval<BitType>, List<ValuePair<DoubleType, DoubleType>>> boxCountOp;
 	private long autoMax;
 	private static UsageReporter reporter;
@@ -177,25 +171,31 @@ public class FractalDimensionWrapper<T extends RealType<T> & NativeType<T>>
 		final List<Double> dimensions = new ArrayList<>();
 		final List<Double> rSquared = new ArrayList<>();
 		subspaceTables = new ArrayList<>();
-		subspaces.forEach(subspace -> {
-			final RandomAccessibleInterval<BitType> interval = subspace.interval;
-			statusService.showProgress(0, 3);
-			statusService.showStatus("Fractal dimension: hollowing bone");
-			final RandomAccessibleInterval<BitType> outlines = hollowOp.calculate(
-				interval);
-			statusService.showProgress(1, 3);
-			statusService.showStatus("Fractal dimension: counting boxes");
-			final List<ValuePair<DoubleType, DoubleType>> pairs = boxCountOp
-				.calculate(outlines);
-			statusService.showProgress(2, 3);
-			statusService.showStatus("Fractal dimension: fitting curve");
+		statusService.showStatus("Fractal dimension: hollowing bone and counting boxes");
+		final AtomicInteger done = new AtomicInteger();
+		// The box counter packs the subspace into a bit per element, and finds
+		// its outline on the fly
+		final long bytes = Intervals.numElements(subspaces.get(0).interval) /
+			Byte.SIZE;
+		final List<List<ValuePair<DoubleType, DoubleType>>> subspacePairs =
+			SubspaceScheduler.fromSystemProperties().map(subspaces, bytes,
+				subspace -> {
+					final List<ValuePair<DoubleType, DoubleType>> pairs = boxCountOp
+						.getIndependentInstance().calculate(subspace.interval);
+					statusService.showProgress(done.incrementAndGet(), subspaces
+						.size());
+					return pairs;
+				});
+		statusService.showStatus("Fractal dimension: fitting curves");
+		for (int i = 0; i < subspaces.size(); i++) {
+			final List<ValuePair<DoubleType, DoubleType>> pairs = subspacePairs.get(
+				i);
 			dimensions.add(fitCurve(pairs)[1]);
 			rSquared.add(getRSquared(pairs));
 			if (showPoints) {
-				addSubspaceTable(subspace, pairs);
+				addSubspaceTable(subspaces.get(i), pairs);
 			}
-			statusService.showProgress(3, 3);
-		});
+		}
 		fillResultsTable(subspaces, dimensions, rSquared);
 		if (SharedTable.hasData()) {
 			resultsTable = SharedTable.getTable();
@@ -304,11 +304,9 @@ public class FractalDimensionWrapper<T extends RealType<T> & NativeType<T>>
 
 	@SuppressWarnings("unchecked")
 	private void matchOps(final RandomAccessibleInterval<BitType> input) {
-		hollowOp = (BinaryHybridCF) Hybrids.binaryCF(opService, Outline.class,
-			RandomAccessibleInterval.class, input, true);
 		boxCountOp = (UnaryFunctionOp) Functions.unary(opService, BoxCount.class,
 			List.class, input, startBoxSize, smallestBoxSize, scaleFactor,
-			translations);
+			translations, true);
 	}
 
 	private WeightedObservedPoints toWeightedObservedPoints(
@@ -31,20 +31,23 @@ import static org.scijava.ui.DialogPrompt.MessageType.ERROR_MESSAGE;
 import static org.scijava.ui.DialogPrompt.MessageType.WARNING_MESSAGE;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import net.imagej.ImgPlus;
 import net.imagej.axis.CalibratedAxis;
 import net.imagej.mesh.Mesh;
-import net.imagej.mesh.Triangle;
 import net.imagej.mesh.naive.NaiveFloatMesh;
 import net.imagej.ops.OpService;
 import net.imagej.ops.Ops.Geometric.BoundarySize;
@@ -58,6 +61,7 @@ import net.imglib2.type.NativeType;
 import net.imglib2.type.logic.BitType;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.util.Intervals;
 
 import org.bonej.utilities.AxisUtils;
 import org.bonej.utilities.ElementUtil;
@@ -65,7 +69,9 @@ import org.bonej.utilities.SharedTable;
 import org.bonej.wrapperPlugins.wrapperUtils.Common;
 import org.bonej.wrapperPlugins.wrapperUtils.HyperstackUtils;
 import org.bonej.wrapperPlugins.wrapperUtils.HyperstackUtils.Subspace;
+import org.bonej.wrapperPlugins.wrapperUtils.MeshFiles;
 import org.bonej.wrapperPlugins.wrapperUtils.ResultUtils;
+import org.bonej.wrapperPlugins.wrapperUtils.SubspaceScheduler;
 import org.bonej.wrapperPlugins.wrapperUtils.UsageReporter;
 import org.scijava.ItemIO;
 import org.scijava.app.StatusService;
@@ -99,6 +105,11 @@ public class SurfaceAreaWrapper<T extends RealType<T> & NativeType<T>> extends
 		"Binary STL created by BoneJ", 80, '.');
 	static final String BAD_SCALING =
 		"Cannot scale result because axis calibrations don't match";
+	static final String BINARY_STL = "Binary STL";
+	static final String ASCII_STL = "ASCII STL";
+	static final String BINARY_PLY = "Binary PLY";
+	/** A rough estimate of the memory the mesh of a subspace needs per element */
+	private static final long MESH_BYTES_PER_ELEMENT = 16;
 
 	@Parameter(validater = "validateImage")
 	private ImgPlus<T> inputImage;
@@ -112,11 +123,16 @@ public class SurfaceAreaWrapper<T extends RealType<T> & NativeType<T>> extends
 	@Parameter(type = ItemIO.OUTPUT, label = "BoneJ results")
 	private Table<DefaultColumn<Double>, Double> resultsTable;
 
-	@Parameter(label = "Export STL file(s)",
-		description = "Create a binary STL file from the surface mesh",
+	@Parameter(label = "Export mesh file(s)",
+		description = "Create a file from the surface mesh",
 		required = false)
 	private boolean exportSTL;
 
+	@Parameter(label = "File format",
+		description = "Format of the exported mesh files", required = false,
+		choices = { BINARY_STL, ASCII_STL, BINARY_PLY })
+	private String exportFormat = BINARY_STL;
+
 	@Parameter
 	private OpService ops;
 	@Parameter
@@ -138,6 +154,9 @@ public class SurfaceAreaWrapper<T extends RealType<T> & NativeType<T>> extends
 	private String extension = "";
 	private UnaryFunctionOp<RandomAccessibleInterval, Mesh> marchingCubesOp;
 	private UnaryFunctionOp<Mesh, DoubleType> areaOp;
+	/** Files being written, by their path */
+	private final Map<String, Future<?>> savedFiles = Collections.synchronizedMap(
+		new LinkedHashMap<>());
 	private double areaScale;
 	private String unitHeader = "";
 	private static UsageReporter reporter;
@@ -151,12 +170,12 @@ public class SurfaceAreaWrapper<T extends RealType<T> & NativeType<T>> extends
 			bitImgPlus).collect(Collectors.toList());
 		matchOps(subspaces.get(0).interval);
 		prepareResults();
+		if (exportSTL && !getFileName()) {
+			return;
+		}
 		final Map<String, Mesh> meshes = createMeshes(subspaces);
 		if (exportSTL) {
-			if (!getFileName()) {
-				return;
-			}
-			saveMeshes(meshes);
+			checkSavedFiles();
 		}
 		calculateAreas(meshes);
 		if (SharedTable.hasData()) {
@@ -227,23 +246,7 @@ public class SurfaceAreaWrapper<T extends RealType<T> & NativeType<T>> extends
 			throw new IllegalArgumentException("Filename cannot be null or empty");
 		}
 
-		final Iterator<Triangle> triangles = mesh.triangles().iterator();
-		final int numTriangles = (int) mesh.triangles().size();
-		try (final FileOutputStream writer = new FileOutputStream(path)) {
-			final byte[] header = STL_HEADER.getBytes();
-			writer.write(header);
-			final byte[] facetBytes = ByteBuffer.allocate(4).order(
-				ByteOrder.LITTLE_ENDIAN).putInt(numTriangles).array();
-			writer.write(facetBytes);
-			final ByteBuffer buffer = ByteBuffer.allocate(50);
-			buffer.order(ByteOrder.LITTLE_ENDIAN);
-			while (triangles.hasNext()) {
-				final Triangle triangle = triangles.next();
-				writeSTLFacet(buffer, triangle);
-				writer.write(buffer.array());
-				buffer.clear();
-			}
-		}
+		MeshFiles.writeBinarySTL(Paths.get(path), mesh, STL_HEADER);
 	}
 
 	private void addResult(final String label, final double area) {
@@ -277,15 +280,36 @@ public class SurfaceAreaWrapper<T extends RealType<T> & NativeType<T>> extends
 	private Map<String, Mesh> createMeshes(
 		final List<Subspace<BitType>> subspaces)
 	{
-		final Map<String, Mesh> meshes = new HashMap<>();
+		statusService.showStatus("Surface area: creating meshes");
+		final AtomicInteger done = new AtomicInteger();
+		final long bytes = Intervals.numElements(subspaces.get(0).interval) *
+			MESH_BYTES_PER_ELEMENT;
+		// Save the meshes in the background while the next ones are created
+		final ExecutorService saver = Executors.newSingleThreadExecutor();
+		final List<Mesh> subspaceMeshes;
+		try {
+			subspaceMeshes = SubspaceScheduler.fromSystemProperties().map(subspaces,
+				bytes, subspace -> {
+					final Mesh mesh = marchingCubesOp.getIndependentInstance().calculate(
+						subspace.interval);
+					if (exportSTL) {
+						final String filePath = filePath(subspace.toString());
+						savedFiles.put(filePath, saver.submit(() -> {
+							writeMeshFile(filePath, mesh);
+							return null;
+						}));
+					}
+					statusService.showProgress(done.incrementAndGet(), subspaces.size());
+					return mesh;
+				});
+		}
+		finally {
+			saver.shutdown();
+		}
+		final Map<String, Mesh> meshes = new LinkedHashMap<>();
 		for (int i = 0; i < subspaces.size(); i++) {
-			statusService.showStatus("Surface area: creating mesh for subspace " + (i + 1));
-			final Subspace<BitType> subspace = subspaces.get(i);
-			final Mesh mesh = marchingCubesOp.calculate(subspace.interval);
-			meshes.put(subspace.toString(), mesh);
-			statusService.showProgress(i, subspaces.size());
+			meshes.put(subspaces.get(i).toString(), subspaceMeshes.get(i));
 		}
-		statusService.showProgress(subspaces.size(), subspaces.size());
 		return meshes;
 	}
 
@@ -305,7 +329,7 @@ public class SurfaceAreaWrapper<T extends RealType<T> & NativeType<T>> extends
 			path = stripFileExtension(path);
 		}
 		else {
-			extension = ".stl";
+			extension = BINARY_PLY.equals(exportFormat) ? ".ply" : ".stl";
 		}
 		return true;
 	}
@@ -330,18 +354,21 @@ public class SurfaceAreaWrapper<T extends RealType<T> & NativeType<T>> extends
 		}
 	}
 
-	private void saveMeshes(final Map<String, Mesh> meshes) {
+	/** Waits for the mesh files to be written, and reports any failures */
+	private void checkSavedFiles() {
 		statusService.showStatus("Surface area: saving files");
-		final Map<String, String> savingErrors = new HashMap<>();
-		meshes.forEach((key, subspaceMesh) -> {
-			final String subspaceId = key.replace(' ', '_').replaceAll("[,:]", "");
-			final String filePath = path + "_" + subspaceId + extension;
+		final Map<String, String> savingErrors = new LinkedHashMap<>();
+		savedFiles.forEach((filePath, saving) -> {
 			try {
-				writeBinarySTLFile(filePath, subspaceMesh);
+				saving.get();
+			}
+			catch (final ExecutionException e) {
+				savingErrors.put(filePath, e.getCause().getMessage());
+				logService.trace(e.getCause());
 			}
-			catch (final IOException e) {
-				savingErrors.put(filePath, e.getMessage());
-				logService.trace(e);
+			catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				savingErrors.put(filePath, "Interrupted");
 			}
 		});
 		if (!savingErrors.isEmpty()) {
@@ -349,6 +376,26 @@ public class SurfaceAreaWrapper<T extends RealType<T> & NativeType<T>> extends
 		}
 	}
 
+	private String filePath(final String subspace) {
+		final String subspaceId = subspace.replace(' ', '_').replaceAll("[,:]", "");
+		return path + "_" + subspaceId + extension;
+	}
+
+	private void writeMeshFile(final String filePath, final Mesh mesh)
+		throws IOException
+	{
+		final Path file = Paths.get(filePath);
+		if (ASCII_STL.equals(exportFormat)) {
+			MeshFiles.writeASCIISTL(file, mesh, inputImage.getName());
+		}
+		else if (BINARY_PLY.equals(exportFormat)) {
+			MeshFiles.writeBinaryPLY(file, mesh, "Created by BoneJ");
+		}
+		else {
+			writeBinarySTLFile(filePath, mesh);
+		}
+	}
+
 	private void showSavingErrorsDialog(final Map<String, String> savingErrors) {
 		final StringBuilder msgBuilder = new StringBuilder(STL_WRITE_ERROR);
 		savingErrors.forEach((k, v) -> msgBuilder.append(k).append(": ").append(v));
@@ -377,28 +424,4 @@ public class SurfaceAreaWrapper<T extends RealType<T> & NativeType<T>> extends
 			cancel(NOT_BINARY);
 		}
 	}
-
-	// -- Helper methods --
-	private static void writeSTLFacet(final ByteBuffer buffer,
-		final Triangle triangle)
-	{
-		// Write normal
-		buffer.putFloat(triangle.nxf());
-		buffer.putFloat(triangle.nyf());
-		buffer.putFloat(triangle.nzf());
-		// Write vertex 0
-		buffer.putFloat(triangle.v0xf());
-		buffer.putFloat(triangle.v0yf());
-		buffer.putFloat(triangle.v0zf());
-		// Write vertex 1
-		buffer.putFloat(triangle.v1xf());
-		buffer.putFloat(triangle.v1yf());
-		buffer.putFloat(triangle.v1zf());
-		// Write vertex 2
-		buffer.putFloat(triangle.v2xf());
-		buffer.putFloat(triangle.v2yf());
-		buffer.putFloat(triangle.v2zf());
-		// Attribute byte count
-		buffer.putShort((short) 0);
-	}
 }
@@ -26,27 +26,31 @@ package org.bonej.wrapperPlugins;
 import static org.bonej.wrapperPlugins.CommonMessages.NOT_3D_IMAGE;
 import static org.bonej.wrapperPlugins.CommonMessages.NOT_BINARY;
 import static org.bonej.wrapperPlugins.CommonMessages.NO_IMAGE_OPEN;
+import static org.bonej.wrapperPlugins.SurfaceAreaWrapper.BAD_SCALING;
+import static org.bonej.wrapperPlugins.SurfaceAreaWrapper.isAxesMatchingSpatialCalibration;
+import static org.scijava.ui.DialogPrompt.MessageType.WARNING_MESSAGE;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import net.imagej.ImgPlus;
 import net.imagej.mesh.Mesh;
 import net.imagej.mesh.naive.NaiveFloatMesh;
 import net.imagej.ops.OpService;
-import net.imagej.ops.Ops.Copy.RAI;
+import net.imagej.ops.Ops.Geometric.BoundarySize;
 import net.imagej.ops.Ops.Geometric.MarchingCubes;
 import net.imagej.ops.Ops.Geometric.Size;
 import net.imagej.ops.special.function.Functions;
 import net.imagej.ops.special.function.UnaryFunctionOp;
 import net.imagej.units.UnitService;
-import net.imglib2.IterableInterval;
+import net.imglib2.Interval;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.logic.BitType;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.real.DoubleType;
-import net.imglib2.view.Views;
+import net.imglib2.util.Intervals;
 
 import org.bonej.utilities.AxisUtils;
 import org.bonej.utilities.ElementUtil;
@@ -55,6 +59,7 @@ import org.bonej.wrapperPlugins.wrapperUtils.Common;
 import org.bonej.wrapperPlugins.wrapperUtils.HyperstackUtils;
 import org.bonej.wrapperPlugins.wrapperUtils.HyperstackUtils.Subspace;
 import org.bonej.wrapperPlugins.wrapperUtils.ResultUtils;
+import org.bonej.wrapperPlugins.wrapperUtils.SubspaceScheduler;
 import org.bonej.wrapperPlugins.wrapperUtils.UsageReporter;
 import org.scijava.ItemIO;
 import org.scijava.app.StatusService;
@@ -67,11 +72,14 @@ import org.scijava.plugin.PluginService;
 import org.scijava.prefs.PrefService;
 import org.scijava.table.DefaultColumn;
 import org.scijava.table.Table;
+import org.scijava.ui.UIService;
 
 /**
- * First this command creates a surface mesh from both all foreground voxels
- * (bone) and the whole image stack. Then it calculates the surfaces' volumes,
- * their ratio, and shows the results. Results are shown in calibrated units, if
+ * First this command creates a surface mesh from all foreground voxels (bone).
+ * Then it calculates the volume of the mesh, the volume of the whole image
+ * stack, their ratio, and shows the results. Optionally it also shows the area
+ * of the mesh, so that the bone surface doesn't need to be meshed again in
+ * {@link SurfaceAreaWrapper}. Results are shown in calibrated units, if
  * possible.
  *
  * @author Richard Domander
@@ -84,13 +92,20 @@ public class SurfaceFractionWrapper<T extends RealType<T> & NativeType<T>>
 
 	/** Header of ratio column in the results table */
 	private static final String ratioHeader = "Volume ratio";
+	/** A rough estimate of the memory the mesh of a subspace needs per element */
+	private static final long MESH_BYTES_PER_ELEMENT = 8;
 	private static UnaryFunctionOp<RandomAccessibleInterval, Mesh> marchingCubes;
 	private static UnaryFunctionOp<Mesh, DoubleType> meshVolume;
-	private static UnaryFunctionOp<RandomAccessibleInterval, RandomAccessibleInterval> raiCopy;
+	private static UnaryFunctionOp<Mesh, DoubleType> meshArea;
 
 	@Parameter(validater = "validateImage")
 	private ImgPlus<T> inputImage;
 
+	@Parameter(label = "Bone surface",
+		description = "Also measure the surface area of the foreground mesh",
+		required = false)
+	private boolean showSurfaceArea;
+
 	/**
 	 * The surface faction results in a {@link Table}
 	 * <p>
@@ -112,13 +127,19 @@ public class SurfaceFractionWrapper<T extends RealType<T> & NativeType<T>>
 	private PluginService pluginService;
 	@Parameter
 	private CommandService commandService;
+	@Parameter
+	private UIService uiService;
 
 	/** Header of the thresholded volume column in the results table */
 	private String bVHeader;
 	/** Header of the total volume column in the results table */
 	private String tVHeader;
+	/** Header of the surface area column in the results table */
+	private String bSHeader;
 	/** The calibrated size of an element in the image */
 	private double elementSize;
+	/** The calibrated area of a unit square in the image */
+	private double areaScale;
 	private static UsageReporter reporter;
 
 	@Override
@@ -130,9 +151,21 @@ public class SurfaceFractionWrapper<T extends RealType<T> & NativeType<T>>
 			bitImgPlus).collect(Collectors.toList());
 		matchOps(subspaces.get(0).interval);
 		prepareResultDisplay();
+		statusService.showStatus("Surface fraction: creating surfaces");
+		final AtomicInteger done = new AtomicInteger();
+		final long bytes = Intervals.numElements(subspaces.get(0).interval) *
+			MESH_BYTES_PER_ELEMENT;
+		final List<double[]> results = SubspaceScheduler.fromSystemProperties()
+			.map(subspaces, bytes, subspace -> {
+				final double[] volumes = calculateSubspaceVolumes(subspace);
+				statusService.showProgress(done.incrementAndGet(), subspaces.size());
+				return volumes;
+			});
+		final String name = inputImage.getName();
 		for (int i = 0; i < subspaces.size(); i++) {
-			calculateSubspaceVolumes(subspaces.get(i), i + 1);
-			statusService.showProgress(i, subspaces.size());
+			final String suffix = subspaces.get(i).toString();
+			final String label = suffix.isEmpty() ? name : name + " " + suffix;
+			addResults(label, results.get(i));
 		}
 		if (SharedTable.hasData()) {
 			resultsTable = SharedTable.getTable();
@@ -156,56 +189,55 @@ public class SurfaceFractionWrapper<T extends RealType<T> & NativeType<T>>
 		SharedTable.add(label, bVHeader, results[0]);
 		SharedTable.add(label, tVHeader, results[1]);
 		SharedTable.add(label, ratioHeader, results[2]);
+		if (showSurfaceArea) {
+			SharedTable.add(label, bSHeader, results[3]);
+		}
 	}
 
-	private double[] calculateMeshVolumes(final Mesh foregroundMesh,
-		final Mesh totalMesh)
-	{
-		final double foregroundVolume = meshVolume.calculate(foregroundMesh).get() *
-			elementSize;
-		final double totalVolume = meshVolume.calculate(totalMesh).get() *
-			elementSize;
-		final double ratio = foregroundVolume / totalVolume;
-		return new double[] { foregroundVolume, totalVolume, ratio };
-	}
-
-	private void calculateSubspaceVolumes(final Subspace<BitType> subspace,
-		final int subspaceNumber)
-	{
-		statusService.showStatus(
-			"Surface fraction: creating surfaces for subspace #" + subspaceNumber);
-		final Mesh foregroundMesh = marchingCubes.calculate(subspace.interval);
-		final Mesh totalMesh = createTotalMesh(subspace.interval);
-		statusService.showStatus(
-			"Surface fraction: calculating volumes for subspace #" + subspaceNumber);
-		final double[] results = calculateMeshVolumes(foregroundMesh, totalMesh);
-		final String suffix = subspace.toString();
-		final String name = inputImage.getName();
-		final String label = suffix.isEmpty() ? name : name + " " + suffix;
-		addResults(label, results);
+	/**
+	 * Calculates the volume of the mesh marching cubes would create from the
+	 * interval if all its elements were foreground.
+	 * <p>
+	 * The vertices of such a mesh are at the centres of the outermost elements,
+	 * so it's a box one element smaller than the interval in each dimension.
+	 * </p>
+	 *
+	 * @param interval a 3D interval.
+	 * @return volume of the box in elements.
+	 */
+	static double boxMeshVolume(final Interval interval) {
+		double volume = 1.0;
+		for (int d = 0; d < 3; d++) {
+			volume *= Math.max(interval.dimension(d) - 1, 0);
+		}
+		return volume;
 	}
 
-	private Mesh createTotalMesh(
-		final RandomAccessibleInterval<BitType> subspace)
+	private double[] calculateSubspaceVolumes(
+		final Subspace<BitType> subspace)
 	{
-		@SuppressWarnings("unchecked")
-		final RandomAccessibleInterval<BitType> totalMask = raiCopy.calculate(
-			subspace);
-		// Because we want to create a surface from the whole image, set everything
-		// in the mask to foreground
-		final IterableInterval<BitType> iterable = Views.flatIterable(totalMask);
-		iterable.forEach(BitType::setOne);
-		return marchingCubes.calculate(totalMask);
+		final Mesh foregroundMesh = marchingCubes.getIndependentInstance()
+			.calculate(subspace.interval);
+		final double foregroundVolume = meshVolume.getIndependentInstance()
+			.calculate(foregroundMesh).get() * elementSize;
+		final double totalVolume = boxMeshVolume(subspace.interval) * elementSize;
+		final double ratio = foregroundVolume / totalVolume;
+		if (!showSurfaceArea) {
+			return new double[] { foregroundVolume, totalVolume, ratio };
+		}
+		final double area = meshArea.getIndependentInstance().calculate(
+			foregroundMesh).get() * areaScale;
+		return new double[] { foregroundVolume, totalVolume, ratio, area };
 	}
 
 	private void matchOps(final RandomAccessibleInterval<BitType> subspace) {
-		raiCopy = Functions.unary(opService, RAI.class,
-			RandomAccessibleInterval.class, subspace);
 		marchingCubes = Functions.unary(opService, MarchingCubes.class, Mesh.class,
 			subspace);
 		// Create a dummy object to make op matching happy
 		meshVolume = Functions.unary(opService, Size.class, DoubleType.class,
 			new NaiveFloatMesh());
+		meshArea = Functions.unary(opService, BoundarySize.class, DoubleType.class,
+			new NaiveFloatMesh());
 	}
 
 	private void prepareResultDisplay() {
@@ -216,6 +248,19 @@ public class SurfaceFractionWrapper<T extends RealType<T> & NativeType<T>>
 		tVHeader = "Total volume " + unitHeader;
 		elementSize = ElementUtil.calibratedSpatialElementSize(inputImage,
 			unitService);
+		if (!showSurfaceArea) {
+			return;
+		}
+		bSHeader = "Bone surface " + ResultUtils.getUnitHeader(inputImage,
+			unitService, '²');
+		if (isAxesMatchingSpatialCalibration(inputImage)) {
+			final double scale = inputImage.axis(0).averageScale(0.0, 1.0);
+			areaScale = scale * scale;
+		}
+		else {
+			uiService.showDialog(BAD_SCALING, WARNING_MESSAGE);
+			areaScale = 1.0;
+		}
 	}
 
 	@SuppressWarnings("unused")
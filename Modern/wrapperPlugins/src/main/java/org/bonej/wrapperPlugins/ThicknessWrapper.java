@@ -23,7 +23,6 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package org.bonej.wrapperPlugins;
 
-import static org.bonej.utilities.ImagePlusUtil.cleanDuplicate;
 import static org.bonej.wrapperPlugins.CommonMessages.HAS_CHANNEL_DIMENSIONS;
 import static org.bonej.wrapperPlugins.CommonMessages.HAS_TIME_DIMENSIONS;
 import static org.bonej.wrapperPlugins.CommonMessages.NOT_3D_IMAGE;
@@ -33,8 +32,8 @@ import static org.bonej.wrapperPlugins.CommonMessages.NO_IMAGE_OPEN;
 import ij.ImagePlus;
 import ij.ImageStack;
 import ij.plugin.frame.RoiManager;
+import ij.process.FloatProcessor;
 import ij.process.LUT;
-import ij.process.StackStatistics;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -42,8 +41,22 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
+import net.imagej.ops.OpService;
+import net.imagej.ops.special.function.Functions;
+import net.imagej.ops.special.function.UnaryFunctionOp;
 import net.imagej.patcher.LegacyInjector;
-
+import net.imglib2.Cursor;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.bonej.ops.thickness.ThicknessMaps;
+import org.bonej.ops.thickness.ThicknessMaps.Phase;
+import org.bonej.ops.thickness.ThicknessMaps.Results;
+import org.bonej.ops.thickness.ThicknessStatistics;
 import org.bonej.utilities.ImagePlusUtil;
 import org.bonej.utilities.RoiManagerUtil;
 import org.bonej.utilities.SharedTable;
@@ -60,14 +73,17 @@ import org.scijava.plugin.Plugin;
 import org.scijava.plugin.PluginService;
 import org.scijava.prefs.PrefService;
 import org.scijava.table.DefaultColumn;
+import org.scijava.table.DefaultGenericTable;
+import org.scijava.table.DoubleColumn;
+import org.scijava.table.GenericTable;
+import org.scijava.table.LongColumn;
 import org.scijava.table.Table;
 import org.scijava.ui.UIService;
 import org.scijava.widget.ChoiceWidget;
 
-import sc.fiji.localThickness.LocalThicknessWrapper;
-
 /**
- * An ImageJ2 command that wraps the sc.fiji.localThickness plugin
+ * An ImageJ2 command that creates local thickness maps with the
+ * {@link ThicknessMaps} op
  *
  * @author Richard Domander
  */
@@ -88,7 +104,7 @@ public class ThicknessWrapper extends ContextCommand {
 	private String mapChoice = "Trabecular thickness";
 
 	@Parameter(label = "Show thickness maps",
-		description = "Show resulting map images after calculations",
+		description = "Show map images, or else only results and histograms",
 		required = false)
 	private boolean showMaps = true;
 
@@ -117,6 +133,17 @@ public class ThicknessWrapper extends ContextCommand {
 	@Parameter(type = ItemIO.OUTPUT, label = "BoneJ results")
 	private Table<DefaultColumn<Double>, Double> resultsTable;
 
+	/**
+	 * Histograms of the thickness values in a {@link GenericTable}
+	 * <p>
+	 * Null if the maps are shown
+	 * </p>
+	 */
+	@Parameter(type = ItemIO.OUTPUT, label = "Thickness histograms")
+	private GenericTable histogramTable;
+
+	@Parameter
+	private OpService opService;
 	@Parameter
 	private UIService uiService;
 	@Parameter
@@ -128,23 +155,32 @@ public class ThicknessWrapper extends ContextCommand {
 	@Parameter
 	private CommandService commandService;
 
-	private boolean foreground;
-	private LocalThicknessWrapper localThickness;
 	private boolean anisotropyWarned;
 	private static UsageReporter reporter;
 
 	@Override
 	public void run() {
 		final List<Boolean> mapOptions = getMapOptions();
-		createLocalThickness();
+		final ImageStack stack = getStack();
+		if (stack == null) {
+			return;
+		}
+		statusService.showStatus("Thickness: creating thickness maps");
+		final Img<BitType> bits = toBits(stack);
+		final Results results = matchOp(bits, mapOptions).calculate(bits);
 		final Map<Boolean, ImagePlus> thicknessMaps = new HashMap<>();
+		if (!showMaps) {
+			histogramTable = new DefaultGenericTable();
+		}
 		mapOptions.forEach(foreground -> {
-			prepareRun(foreground);
-			statusService.showStatus("Thickness: creating thickness map");
-			final ImagePlus map = createMap();
-			statusService.showStatus("Thickness: calculating results");
-			addMapResults(map);
-			thicknessMaps.put(foreground, map);
+			final Phase phase = foreground ? results.foreground : results.background;
+			addMapResults(foreground, phase.statistics);
+			if (showMaps) {
+				thicknessMaps.put(foreground, createMap(foreground, phase.map, stack));
+			}
+			else {
+				addHistogram(foreground, phase.statistics);
+			}
 		});
 		if (SharedTable.hasData()) {
 			resultsTable = SharedTable.getTable();
@@ -153,15 +189,11 @@ public class ThicknessWrapper extends ContextCommand {
 			final LUT fire = Common.makeFire();
 			trabecularMap = thicknessMaps.get(true);
 			if (trabecularMap != null) {
-				final StackStatistics trabecularStats = new StackStatistics(trabecularMap);
-				trabecularMap.setDisplayRange(0.0, trabecularStats.max);
-				trabecularMap.setLut(fire);	
+				showMap(trabecularMap, results.foreground.statistics, fire);
 			}
 			spacingMap = thicknessMaps.get(false);
 			if (spacingMap != null) {
-				final StackStatistics spacingStats = new StackStatistics(spacingMap);
-				spacingMap.setDisplayRange(0.0, spacingStats.max);
-				spacingMap.setLut(fire);
+				showMap(spacingMap, results.background.statistics, fire);
 			}
 		}
 		if (reporter == null) {
@@ -177,60 +209,63 @@ public class ThicknessWrapper extends ContextCommand {
 		ThicknessWrapper.reporter = reporter;
 	}
 
-	private void addMapResults(final ImagePlus map) {
-		if (map == null) {
-			return;
-		}
+	private void addMapResults(final boolean foreground,
+		final ThicknessStatistics statistics)
+	{
 		final String label = inputImage.getTitle();
-		final String unitHeader = ResultUtils.getUnitHeader(map);
+		final String unitHeader = ResultUtils.getUnitHeader(inputImage);
 		final String prefix = foreground ? "Tb.Th" : "Tb.Sp";
-		final StackStatistics resultStats = new StackStatistics(map);
-		double mean = resultStats.mean;
-		double stdDev = resultStats.stdDev;
-		double max = resultStats.max;
-
-		if (resultStats.pixelCount == 0) {
-			// All pixels are background (NaN), stats not applicable
-			mean = Double.NaN;
-			stdDev = Double.NaN;
-			max = Double.NaN;
-		}
-
-		SharedTable.add(label, prefix + " Mean " + unitHeader, mean);
-		SharedTable.add(label, prefix + " Std Dev " + unitHeader, stdDev);
-		SharedTable.add(label, prefix + " Max " + unitHeader, max);
+		// All NaN if all pixels are background, i.e. stats are not applicable
+		SharedTable.add(label, prefix + " Mean " + unitHeader, statistics.mean());
+		SharedTable.add(label, prefix + " Std Dev " + unitHeader, statistics
+			.standardDeviation());
+		SharedTable.add(label, prefix + " Max " + unitHeader, statistics.max());
 	}
 
-	private void createLocalThickness() {
-		localThickness = new LocalThicknessWrapper();
-		localThickness.setSilence(true);
-		localThickness.setShowOptions(false);
-		localThickness.maskThicknessMap = maskArtefacts;
-		localThickness.calibratePixels = true;
+	private void addHistogram(final boolean foreground,
+		final ThicknessStatistics statistics)
+	{
+		final String unitHeader = ResultUtils.getUnitHeader(inputImage);
+		final String prefix = foreground ? "Tb.Th" : "Tb.Sp";
+		final DoubleColumn binColumn = new DoubleColumn(prefix + " bin start " +
+			unitHeader);
+		final LongColumn countColumn = new LongColumn(prefix + " count");
+		final long[] histogram = statistics.histogram();
+		for (int i = 0; i < histogram.length; i++) {
+			binColumn.add(i * statistics.binWidth());
+			countColumn.add(histogram[i]);
+		}
+		histogramTable.add(binColumn);
+		histogramTable.add(countColumn);
 	}
 
-	private ImagePlus createMap() {
-		final ImagePlus image;
+	private ImagePlus createMap(final boolean foreground,
+		final PlanarImg<FloatType, FloatArray> thickness,
+		final ImageStack stack)
+	{
+		final String suffix = foreground ? "_Tb.Th" : "_Tb.Sp";
+		final ImagePlus map = new ImagePlus(inputImage.getTitle() + suffix,
+			toStack(thickness, stack.getWidth(), stack.getHeight()));
+		map.setCalibration(inputImage.getCalibration().copy());
+		return map;
+	}
 
-		if (cropToRois) {
-			final RoiManager roiManager = RoiManager.getInstance2();
-			if (roiManager == null) {
-				cancel("Can't crop without valid ROIs in the ROIManager");
-				return null;
-			}
-			final Optional<ImageStack> stackOptional = RoiManagerUtil.cropToRois(
-				roiManager, inputImage.getStack(), true, 0x00);
-			if (!stackOptional.isPresent()) {
-				cancel("Can't crop without valid ROIs in the ROIManager");
-				return null;
-			}
-			image = new ImagePlus(inputImage.getTitle(), stackOptional.get());
+	private ImageStack getStack() {
+		if (!cropToRois) {
+			return inputImage.getStack();
 		}
-		else {
-			image = cleanDuplicate(inputImage);
+		final RoiManager roiManager = RoiManager.getInstance2();
+		if (roiManager == null) {
+			cancel("Can't crop without valid ROIs in the ROIManager");
+			return null;
 		}
-
-		return localThickness.processImage(image);
+		final Optional<ImageStack> stackOptional = RoiManagerUtil.cropToRois(
+			roiManager, inputImage.getStack(), true, 0x00);
+		if (!stackOptional.isPresent()) {
+			cancel("Can't crop without valid ROIs in the ROIManager");
+			return null;
+		}
+		return stackOptional.get();
 	}
 
 	// region -- Helper methods --
@@ -252,11 +287,53 @@ public class ThicknessWrapper extends ContextCommand {
 		return mapOptions;
 	}
 
-	private void prepareRun(final boolean foreground) {
-		this.foreground = foreground;
-		final String suffix = foreground ? "_Tb.Th" : "_Tb.Sp";
-		localThickness.setTitleSuffix(suffix);
-		localThickness.inverse = !foreground;
+	private UnaryFunctionOp<Img<BitType>, Results> matchOp(
+		final Img<BitType> bits, final List<Boolean> mapOptions)
+	{
+		final double pixelWidth = inputImage.getCalibration().pixelWidth;
+		return Functions.unary(opService, ThicknessMaps.class, Results.class, bits,
+			mapOptions.contains(true), mapOptions.contains(false), maskArtefacts,
+			pixelWidth, showMaps);
+	}
+
+	private static void showMap(final ImagePlus map,
+		final ThicknessStatistics statistics, final LUT lut)
+	{
+		final double max = statistics.count() == 0 ? 0.0 : statistics.max();
+		map.setDisplayRange(0.0, max);
+		map.setLut(lut);
+	}
+
+	/**
+	 * Creates a bit image of the stack, where the non-zero pixels are
+	 * foreground.
+	 *
+	 * @param stack a binary 8-bit stack.
+	 * @return a bit image of the same size as the stack.
+	 */
+	private static Img<BitType> toBits(final ImageStack stack) {
+		final Img<BitType> bits = ArrayImgs.bits(stack.getWidth(), stack
+			.getHeight(), stack.getSize());
+		final Cursor<BitType> cursor = bits.cursor();
+		for (int z = 1; z <= stack.getSize(); z++) {
+			final byte[] pixels = (byte[]) stack.getPixels(z);
+			for (final byte pixel : pixels) {
+				cursor.next().set(pixel != 0);
+			}
+		}
+		return bits;
+	}
+
+	private static ImageStack toStack(
+		final PlanarImg<FloatType, FloatArray> map, final int width,
+		final int height)
+	{
+		final ImageStack stack = new ImageStack(width, height);
+		for (int z = 0; z < map.numSlices(); z++) {
+			final float[] pixels = map.getPlane(z).getCurrentStorageArray();
+			stack.addSlice(new FloatProcessor(width, height, pixels));
+		}
+		return stack;
 	}
 
 	@SuppressWarnings("unused")
@@ -0,0 +1,288 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package org.bonej.wrapperPlugins.wrapperUtils;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import net.imagej.mesh.Mesh;
+import net.imagej.mesh.Triangle;
+
+/**
+ * Static utility methods for saving meshes into files.
+ * <p>
+ * The files are written through a {@link FileChannel} in blocks of a megabyte,
+ * instead of a system call per triangle. Text is formatted in parallel, a
+ * block of triangles at a time, and written in the order of the triangles.
+ * </p>
+ */
+public final class MeshFiles {
+
+	/** Size of the buffer written to a file at once */
+	private static final int BUFFER_BYTES = 1 << 20;
+	private static final int STL_HEADER_BYTES = 80;
+	private static final int STL_FACET_BYTES = 50;
+	/** Number of triangles formatted as text by one thread */
+	private static final int TEXT_SLICE = 4096;
+	/** Number of triangles read into memory for formatting at once */
+	private static final int TEXT_BLOCK = 16 * TEXT_SLICE;
+	/** Normal and three vertices */
+	private static final int FLOATS_PER_TRIANGLE = 12;
+
+	private MeshFiles() {}
+
+	/**
+	 * Writes a mesh into a binary STL file.
+	 *
+	 * @param path path of the file, which is replaced if it exists.
+	 * @param mesh a triangle mesh.
+	 * @param header header of the file, at most 80 ASCII characters.
+	 * @throws IllegalArgumentException if the header is too long, or the mesh
+	 *           has more triangles than fit into an STL file.
+	 * @throws IOException if writing the file fails.
+	 */
+	public static void writeBinarySTL(final Path path, final Mesh mesh,
+		final String header) throws IOException
+	{
+		final byte[] headerBytes = header.getBytes(US_ASCII);
+		if (headerBytes.length > STL_HEADER_BYTES) {
+			throw new IllegalArgumentException("STL header is too long");
+		}
+		final long triangles = mesh.triangles().size();
+		if (triangles > 0xFFFFFFFFL) {
+			throw new IllegalArgumentException("Too many triangles for an STL file");
+		}
+		try (final FileChannel channel = open(path)) {
+			final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(
+				ByteOrder.LITTLE_ENDIAN);
+			buffer.put(Arrays.copyOf(headerBytes, STL_HEADER_BYTES));
+			buffer.putInt((int) triangles);
+			for (final Triangle triangle : mesh.triangles()) {
+				if (buffer.remaining() < STL_FACET_BYTES) {
+					drain(channel, buffer);
+				}
+				putFloats(buffer, triangle.nxf(), triangle.nyf(), triangle.nzf());
+				putVertices(buffer, triangle);
+				// Attribute byte count
+				buffer.putShort((short) 0);
+			}
+			drain(channel, buffer);
+		}
+	}
+
+	/**
+	 * Writes a mesh into an ASCII STL file.
+	 *
+	 * @param path path of the file, which is replaced if it exists.
+	 * @param mesh a triangle mesh.
+	 * @param name name of the solid, on one line.
+	 * @throws IOException if writing the file fails.
+	 */
+	public static void writeASCIISTL(final Path path, final Mesh mesh,
+		final String name) throws IOException
+	{
+		final String solid = oneLine(name);
+		try (final FileChannel channel = open(path)) {
+			write(channel, ("solid " + solid + "\n").getBytes(US_ASCII));
+			final float[] block = new float[TEXT_BLOCK * FLOATS_PER_TRIANGLE];
+			final Iterator<Triangle> iterator = mesh.triangles().iterator();
+			while (iterator.hasNext()) {
+				final int triangles = readBlock(iterator, block);
+				final int slices = (triangles + TEXT_SLICE - 1) / TEXT_SLICE;
+				final List<byte[]> text = IntStream.range(0, slices).parallel()
+					.mapToObj(s -> formatFacets(block, s * TEXT_SLICE, Math.min((s + 1) *
+						TEXT_SLICE, triangles))).collect(Collectors.toList());
+				for (final byte[] slice : text) {
+					write(channel, slice);
+				}
+			}
+			write(channel, ("endsolid " + solid + "\n").getBytes(US_ASCII));
+		}
+	}
+
+	/**
+	 * Writes a mesh into a binary little endian PLY file.
+	 * <p>
+	 * Each triangle gets its own three vertices, i.e. vertices shared by
+	 * triangles are not merged.
+	 * </p>
+	 *
+	 * @param path path of the file, which is replaced if it exists.
+	 * @param mesh a triangle mesh.
+	 * @param comment a comment written into the header, on one line.
+	 * @throws IllegalArgumentException if the mesh has more vertices than can be
+	 *           indexed with an int.
+	 * @throws IOException if writing the file fails.
+	 */
+	public static void writeBinaryPLY(final Path path, final Mesh mesh,
+		final String comment) throws IOException
+	{
+		final long triangles = mesh.triangles().size();
+		if (triangles > Integer.MAX_VALUE / 3) {
+			throw new IllegalArgumentException("Too many triangles for a PLY file");
+		}
+		final String header = "ply\n" + "format binary_little_endian 1.0\n" +
+			"comment " + oneLine(comment) + "\n" + "element vertex " + 3 *
+				triangles + "\n" + "property float x\n" + "property float y\n" +
+			"property float z\n" + "element face " + triangles + "\n" +
+			"property list uchar int vertex_indices\n" + "end_header\n";
+		try (final FileChannel channel = open(path)) {
+			final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(
+				ByteOrder.LITTLE_ENDIAN);
+			buffer.put(header.getBytes(US_ASCII));
+			final int vertexBytes = 9 * Float.BYTES;
+			for (final Triangle triangle : mesh.triangles()) {
+				if (buffer.remaining() < vertexBytes) {
+					drain(channel, buffer);
+				}
+				putVertices(buffer, triangle);
+			}
+			final int faceBytes = 1 + 3 * Integer.BYTES;
+			for (int i = 0; i < triangles; i++) {
+				if (buffer.remaining() < faceBytes) {
+					drain(channel, buffer);
+				}
+				buffer.put((byte) 3);
+				buffer.putInt(3 * i);
+				buffer.putInt(3 * i + 1);
+				buffer.putInt(3 * i + 2);
+			}
+			drain(channel, buffer);
+		}
+	}
+
+	// region -- Helper methods --
+
+	/** Writes the contents of the buffer, and clears it */
+	private static void drain(final FileChannel channel, final ByteBuffer buffer)
+		throws IOException
+	{
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	private static byte[] formatFacets(final float[] block, final int from,
+		final int to)
+	{
+		final StringBuilder builder = new StringBuilder((to - from) * 256);
+		for (int t = from; t < to; t++) {
+			final int i = t * FLOATS_PER_TRIANGLE;
+			builder.append(" facet normal ");
+			appendVector(builder, block, i);
+			builder.append("  outer loop\n");
+			for (int v = 1; v <= 3; v++) {
+				builder.append("   vertex ");
+				appendVector(builder, block, i + 3 * v);
+			}
+			builder.append("  endloop\n");
+			builder.append(" endfacet\n");
+		}
+		return builder.toString().getBytes(US_ASCII);
+	}
+
+	private static void appendVector(final StringBuilder builder,
+		final float[] block, final int i)
+	{
+		builder.append(block[i]).append(' ').append(block[i + 1]).append(' ')
+			.append(block[i + 2]).append('\n');
+	}
+
+	private static String oneLine(final String text) {
+		return text == null ? "" : text.replaceAll("[\r\n]+", " ");
+	}
+
+	private static FileChannel open(final Path path) throws IOException {
+		return FileChannel.open(path, CREATE, WRITE, TRUNCATE_EXISTING);
+	}
+
+	private static void putFloats(final ByteBuffer buffer, final float x,
+		final float y, final float z)
+	{
+		buffer.putFloat(x);
+		buffer.putFloat(y);
+		buffer.putFloat(z);
+	}
+
+	private static void putVertices(final ByteBuffer buffer,
+		final Triangle triangle)
+	{
+		putFloats(buffer, triangle.v0xf(), triangle.v0yf(), triangle.v0zf());
+		putFloats(buffer, triangle.v1xf(), triangle.v1yf(), triangle.v1zf());
+		putFloats(buffer, triangle.v2xf(), triangle.v2yf(), triangle.v2zf());
+	}
+
+	/**
+	 * Reads the normals and vertices of the next triangles into the block.
+	 *
+	 * @return number of triangles read.
+	 */
+	private static int readBlock(final Iterator<Triangle> iterator,
+		final float[] block)
+	{
+		int triangles = 0;
+		while (iterator.hasNext() && triangles < TEXT_BLOCK) {
+			final Triangle triangle = iterator.next();
+			final int i = triangles * FLOATS_PER_TRIANGLE;
+			block[i] = triangle.nxf();
+			block[i + 1] = triangle.nyf();
+			block[i + 2] = triangle.nzf();
+			block[i + 3] = triangle.v0xf();
+			block[i + 4] = triangle.v0yf();
+			block[i + 5] = triangle.v0zf();
+			block[i + 6] = triangle.v1xf();
+			block[i + 7] = triangle.v1yf();
+			block[i + 8] = triangle.v1zf();
+			block[i + 9] = triangle.v2xf();
+			block[i + 10] = triangle.v2yf();
+			block[i + 11] = triangle.v2zf();
+			triangles++;
+		}
+		return triangles;
+	}
+
+	private static void write(final FileChannel channel, final byte[] bytes)
+		throws IOException
+	{
+		final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+	// endregion
+}
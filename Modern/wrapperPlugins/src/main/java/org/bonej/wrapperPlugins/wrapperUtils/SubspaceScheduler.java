@@ -0,0 +1,170 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package org.bonej.wrapperPlugins.wrapperUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Runs a task on each of the subspaces of a hyperstack, several subspaces at a
+ * time.
+ * <p>
+ * The number of subspaces processed at once is limited both by the parallelism
+ * of the scheduler, and by how many times the memory a task needs fits into
+ * its memory budget. The results are returned in the order of the subspaces,
+ * so that the wrappers can add them to the {@link org.bonej.utilities.SharedTable}
+ * from one thread, as if the subspaces had been processed one after another.
+ * </p>
+ * <p>
+ * The defaults can be changed with the system properties
+ * {@value #PARALLELISM_PROPERTY} and {@value #MEMORY_PROPERTY}, e.g. by
+ * passing -Dbonej.subspace.parallelism=1 to the JVM.
+ * </p>
+ */
+public final class SubspaceScheduler {
+
+	/** System property for the number of subspaces processed at once */
+	public static final String PARALLELISM_PROPERTY =
+		"bonej.subspace.parallelism";
+	/** System property for the memory budget of the tasks in megabytes */
+	public static final String MEMORY_PROPERTY = "bonej.subspace.memory";
+	private final int parallelism;
+	private final long memoryBudget;
+
+	/**
+	 * Creates a scheduler.
+	 *
+	 * @param parallelism maximum number of subspaces processed at once.
+	 * @param memoryBudget the memory in bytes the tasks running at once may use
+	 *          in total.
+	 * @throws IllegalArgumentException if parallelism or memory budget is not
+	 *           positive.
+	 */
+	public SubspaceScheduler(final int parallelism, final long memoryBudget) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Parallelism must be positive");
+		}
+		if (memoryBudget < 1) {
+			throw new IllegalArgumentException("Memory budget must be positive");
+		}
+		this.parallelism = parallelism;
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * Creates a scheduler configured by the system properties.
+	 * <p>
+	 * By default, parallelism is the number of available processors, and the
+	 * memory budget is half of the heap that's still free.
+	 * </p>
+	 *
+	 * @return a scheduler.
+	 */
+	public static SubspaceScheduler fromSystemProperties() {
+		final Runtime runtime = Runtime.getRuntime();
+		final int parallelism = Integer.getInteger(PARALLELISM_PROPERTY, runtime
+			.availableProcessors());
+		final long used = runtime.totalMemory() - runtime.freeMemory();
+		final long free = runtime.maxMemory() - used;
+		final long megabytes = Long.getLong(MEMORY_PROPERTY, (free / 2) >> 20);
+		return new SubspaceScheduler(Math.max(parallelism, 1), Math.max(megabytes,
+			1) << 20);
+	}
+
+	/**
+	 * Applies a task to each subspace.
+	 * <p>
+	 * If only one subspace can be processed at a time, the tasks run in the
+	 * calling thread. Otherwise they run in a pool of threads that's shut down
+	 * before returning. The task must not touch state shared with the other
+	 * subspaces, e.g. the shared results table, and the ops it calls should be
+	 * instances independent of those in the other threads.
+	 * </p>
+	 *
+	 * @param subspaces the subspaces to process.
+	 * @param bytesPerSubspace an estimate of the memory one task needs.
+	 * @param task the function applied to each subspace.
+	 * @param <S> type of the subspaces.
+	 * @param <R> type of the results.
+	 * @return results of the tasks in the order of the subspaces.
+	 * @throws CancellationException if the thread is interrupted while waiting
+	 *           for the tasks.
+	 */
+	public <S, R> List<R> map(final List<S> subspaces,
+		final long bytesPerSubspace, final Function<? super S, ? extends R> task)
+	{
+		final int workers = workers(subspaces.size(), bytesPerSubspace);
+		final List<R> results = new ArrayList<>(subspaces.size());
+		if (workers <= 1) {
+			subspaces.forEach(subspace -> results.add(task.apply(subspace)));
+			return results;
+		}
+		final ExecutorService executor = Executors.newFixedThreadPool(workers);
+		try {
+			final List<Future<? extends R>> futures = new ArrayList<>(subspaces
+				.size());
+			subspaces.forEach(subspace -> futures.add(executor.submit(() -> task
+				.apply(subspace))));
+			for (final Future<? extends R> future : futures) {
+				results.add(future.get());
+			}
+			return results;
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Interrupted while processing subspaces");
+		}
+		catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Finds how many subspaces can be processed at once.
+	 *
+	 * @param subspaces number of subspaces.
+	 * @param bytesPerSubspace an estimate of the memory one task needs.
+	 * @return number of worker threads, at least one.
+	 */
+	int workers(final int subspaces, final long bytesPerSubspace) {
+		final long fit = bytesPerSubspace <= 0 ? Long.MAX_VALUE : memoryBudget /
+			bytesPerSubspace;
+		return (int) Math.max(1, Math.min(Math.min(parallelism, subspaces), fit));
+	}
+}
@@ -23,9 +23,11 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package org.bonej.wrapperPlugins;
 
+import static org.bonej.wrapperPlugins.ConnectivityWrapper.BAD_VOI_BOXES;
 import static org.bonej.wrapperPlugins.ConnectivityWrapper.NEGATIVE_CONNECTIVITY;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
@@ -90,6 +92,66 @@ public class ConnectivityWrapperTest {
 			ConnectivityWrapper.class);
 	}
 
+	@Test
+	public void testBadVOIBoxesCancelsConnectivity() throws Exception {
+		// SETUP
+		final UserInterface mockUI = mock(UserInterface.class);
+		final SwingDialogPrompt mockPrompt = mock(SwingDialogPrompt.class);
+		when(mockUI.dialogPrompt(any(), anyString(), any(), any())).thenReturn(
+			mockPrompt);
+		IMAGE_J.ui().setDefaultUI(mockUI);
+		final ImgPlus<BitType> imgPlus = new ImgPlus<>(ArrayImgs.bits(5, 5, 5),
+			"Test image", new DefaultLinearAxis(Axes.X), new DefaultLinearAxis(
+				Axes.Y), new DefaultLinearAxis(Axes.Z));
+
+		for (final String boxes : Arrays.asList("0, 0, 0, 5, 5", "0, 0, 0, 5, 5, 6",
+			"a, 0, 0, 1, 1, 1"))
+		{
+			// EXECUTE
+			final CommandModule module = IMAGE_J.command().run(
+				ConnectivityWrapper.class, true, "inputImage", imgPlus, "voiBoxes",
+				boxes).get();
+
+			// VERIFY
+			assertTrue("Bad VOI boxes should have cancelled the plugin", module
+				.isCanceled());
+			assertEquals("Cancel reason is incorrect", BAD_VOI_BOXES, module
+				.getCancelReason());
+		}
+	}
+
+	/**
+	 * The edge correction of a box that is one voxel thick would differ from
+	 * that of an image of the same voxels.
+	 */
+	@Test
+	public void testOneVoxelThickVOIBoxCancelsConnectivity() throws Exception {
+		// SETUP
+		final UserInterface mockUI = mock(UserInterface.class);
+		final SwingDialogPrompt mockPrompt = mock(SwingDialogPrompt.class);
+		when(mockUI.dialogPrompt(any(), anyString(), any(), any())).thenReturn(
+			mockPrompt);
+		IMAGE_J.ui().setDefaultUI(mockUI);
+		final ImgPlus<BitType> imgPlus = new ImgPlus<>(ArrayImgs.bits(5, 5, 5),
+			"Test image", new DefaultLinearAxis(Axes.X), new DefaultLinearAxis(
+				Axes.Y), new DefaultLinearAxis(Axes.Z));
+
+		for (final String boxes : Arrays.asList("0, 0, 2, 5, 5, 1",
+			"0, 2, 0, 5, 1, 5", "2, 0, 0, 1, 5, 5"))
+		{
+			// EXECUTE
+			final CommandModule module = IMAGE_J.command().run(
+				ConnectivityWrapper.class, true, "inputImage", imgPlus, "voiBoxes",
+				boxes).get();
+
+			// VERIFY
+			assertTrue("A one voxel thick box should have cancelled the plugin",
+				module.isCanceled());
+			assertEquals("Cancel reason is incorrect", BAD_VOI_BOXES, module
+				.getCancelReason());
+		}
+	}
+
 	@Test
 	public void testNegativeConnectivityShowsInfoDialog() throws Exception {
 		// Mock UI
@@ -202,6 +264,39 @@ public class ConnectivityWrapperTest {
 		}
 	}
 
+	@Test
+	public void testVOIBoxResults() throws Exception {
+		// SETUP
+		final Img<BitType> img = ArrayImgs.bits(5, 5, 5);
+		final ImgPlus<BitType> imgPlus = new ImgPlus<>(img, "Test image",
+			new DefaultLinearAxis(Axes.X, "mm"), new DefaultLinearAxis(Axes.Y, "mm"),
+			new DefaultLinearAxis(Axes.Z, "mm"));
+		final RandomAccess<BitType> access = imgPlus.randomAccess();
+		access.setPosition(new long[] { 1, 1, 1 });
+		access.get().setOne();
+		// The voxel is inside the first box, and in the corner of the second
+		final double[][] expectedValues = { { 1.0, 1.0 }, { 1.0, 0.125 }, { 0.0,
+			0.875 }, { 0.0, 0.875 / 8.0 } };
+
+		// EXECUTE
+		final CommandModule module = IMAGE_J.command().run(
+			ConnectivityWrapper.class, true, "inputImage", imgPlus, "voiBoxes",
+			"0, 0, 0, 5, 5, 5; 1, 1, 1, 2, 2, 2").get();
+
+		// VERIFY
+		@SuppressWarnings("unchecked")
+		final List<DefaultColumn<Double>> table =
+			(List<DefaultColumn<Double>>) module.getOutput("resultsTable");
+		assertNotNull(table);
+		for (int i = 0; i < 4; i++) {
+			final DefaultColumn<Double> column = table.get(i);
+			assertEquals("A column has wrong number of rows", 2, column.size());
+			for (int j = 0; j < column.size(); j++) {
+				assertEquals(expectedValues[i][j], column.get(j).doubleValue(), 1e-12);
+			}
+		}
+	}
+
 	@AfterClass
 	public static void oneTimeTearDown() {
 		IMAGE_J.context().dispose();
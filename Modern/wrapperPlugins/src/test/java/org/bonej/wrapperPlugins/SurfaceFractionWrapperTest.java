@@ -35,6 +35,7 @@ import net.imagej.ImageJ;
 import net.imagej.ImgPlus;
 import net.imagej.axis.Axes;
 import net.imagej.axis.DefaultLinearAxis;
+import net.imglib2.FinalInterval;
 import net.imglib2.RandomAccess;
 import net.imglib2.img.Img;
 import net.imglib2.img.array.ArrayImgs;
@@ -80,6 +81,25 @@ public class SurfaceFractionWrapperTest {
 			SurfaceFractionWrapper.class);
 	}
 
+	@Test
+	public void testBoxMeshVolume() {
+		final FinalInterval interval = new FinalInterval(new long[] { 3, 4, 5 },
+			new long[] { 7, 6, 6 });
+
+		final double volume = SurfaceFractionWrapper.boxMeshVolume(interval);
+
+		assertEquals(4 * 2 * 1, volume, 1e-12);
+	}
+
+	@Test
+	public void testBoxMeshVolumeFlatIntervalIsZero() {
+		final FinalInterval interval = new FinalInterval(5, 5, 1);
+
+		final double volume = SurfaceFractionWrapper.boxMeshVolume(interval);
+
+		assertEquals(0.0, volume, 1e-12);
+	}
+
 	@Test
 	public void testNonBinaryImageCancelsSurfaceFraction() throws Exception {
 		CommonWrapperTests.testNonBinaryImageCancelsPlugin(IMAGE_J,
@@ -171,6 +191,47 @@ public class SurfaceFractionWrapperTest {
 		}
 	}
 
+	@Test
+	public void testSurfaceAreaResults() throws Exception {
+		// SETUP
+		final String unit = "mm";
+		final double scale = 0.25;
+		final DefaultLinearAxis xAxis = new DefaultLinearAxis(Axes.X, unit, scale);
+		final DefaultLinearAxis yAxis = new DefaultLinearAxis(Axes.Y, unit, scale);
+		final DefaultLinearAxis zAxis = new DefaultLinearAxis(Axes.Z, unit, scale);
+		final Img<BitType> img = ArrayImgs.bits(5, 5, 5);
+		final ImgPlus<BitType> imgPlus = new ImgPlus<>(img, "Test image", xAxis,
+			yAxis, zAxis);
+		// A 3x3x3 cube, whose mesh is a 2x2x2 box
+		final RandomAccess<BitType> access = imgPlus.randomAccess();
+		for (int z = 1; z <= 3; z++) {
+			for (int y = 1; y <= 3; y++) {
+				for (int x = 1; x <= 3; x++) {
+					access.setPosition(new long[] { x, y, z });
+					access.get().setOne();
+				}
+			}
+		}
+		final double expectedArea = 6 * 2 * 2 * scale * scale;
+
+		// EXECUTE
+		final CommandModule module = IMAGE_J.command().run(
+			SurfaceFractionWrapper.class, true, "inputImage", imgPlus,
+			"showSurfaceArea", true).get();
+
+		// VERIFY
+		@SuppressWarnings("unchecked")
+		final List<DefaultColumn<Double>> table =
+			(List<DefaultColumn<Double>>) module.getOutput("resultsTable");
+		assertNotNull(table);
+		assertEquals("Wrong number of columns", 4, table.size());
+		final DefaultColumn<Double> column = table.get(3);
+		assertEquals("Column has incorrect header", "Bone surface (" + unit + "²)",
+			column.getHeader());
+		assertEquals("Incorrect value in table", expectedArea, column.get(0),
+			1e-12);
+	}
+
 	@AfterClass
 	public static void oneTimeTearDown() {
 		IMAGE_J.context().dispose();
@@ -39,13 +39,26 @@ import ij.IJ;
 import ij.ImagePlus;
 import ij.gui.NewImage;
 import ij.measure.Calibration;
+import ij.process.ImageProcessor;
 import ij.process.LUT;
+import ij.process.StackStatistics;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 import java.util.concurrent.ExecutionException;
 
 import net.imagej.ImageJ;
+import net.imagej.ops.OpService;
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.display.imagej.ImageJFunctions;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.bonej.ops.thickness.LocalThickness;
 
 import org.bonej.utilities.SharedTable;
 import org.bonej.wrapperPlugins.wrapperUtils.Common;
@@ -58,8 +71,12 @@ import org.junit.experimental.categories.Category;
 import org.scijava.Gateway;
 import org.scijava.command.CommandModule;
 import org.scijava.table.DefaultColumn;
+import org.scijava.table.GenericTable;
+import org.scijava.table.LongColumn;
 import org.scijava.ui.UserInterface;
 
+import sc.fiji.localThickness.LocalThicknessWrapper;
+
 /**
  * Tests for {@link ThicknessWrapper}
  *
@@ -221,6 +238,33 @@ public class ThicknessWrapperTest {
 			ThicknessWrapper.class);
 	}
 
+	@Test
+	public void testHistogramsWhenMapsNotShown() throws Exception {
+		// SETUP
+		final ImagePlus imagePlus = NewImage.createByteImage("TinyTestImage", 2, 2,
+			2, 1);
+		final Calibration calibration = new Calibration();
+		calibration.setUnit("mm");
+		imagePlus.setCalibration(calibration);
+
+		// EXECUTE
+		final CommandModule module = IMAGE_J.command().run(ThicknessWrapper.class,
+			true, "inputImage", imagePlus, "mapChoice", "Both", "maskArtefacts",
+			false, "cropToRois", false, "showMaps", false).get();
+
+		// VERIFY
+		final GenericTable histograms = (GenericTable) module.getOutput(
+			"histogramTable");
+		assertNotNull(histograms);
+		assertNull(module.getOutput("trabecularMap"));
+		assertEquals(4, histograms.getColumnCount());
+		assertEquals("Tb.Sp bin start (mm)", histograms.get(2).getHeader());
+		final LongColumn counts = (LongColumn) histograms.get(3);
+		final long spacingCount = counts.stream().mapToLong(Long::longValue).sum();
+		assertEquals("All pixels should be in the spacing histogram", 8,
+			spacingCount);
+	}
+
 	@Test
 	public void testNullImageCancelsPlugin() throws Exception {
 		CommonWrapperTests.testNullImageCancelsPlugin(IMAGE_J,
@@ -282,6 +326,51 @@ public class ThicknessWrapperTest {
 		}
 	}
 
+	/**
+	 * Compares the maps and the results with those of LocalThickness_, which
+	 * the plugin used before the {@link LocalThickness} op
+	 */
+	@Test
+	public void testMatchesLocalThicknessPlugin() throws Exception {
+		// SETUP
+		final Img<BitType> phantom = ballsPhantom(48, 0xc0ffeeL);
+		final ImagePlus imagePlus = toImagePlus(phantom);
+		final Calibration calibration = new Calibration();
+		calibration.setUnit("mm");
+		calibration.pixelWidth = 0.5;
+		calibration.pixelHeight = 0.5;
+		calibration.pixelDepth = 0.5;
+		imagePlus.setCalibration(calibration);
+		final ImagePlus[] expectedMaps = { localThicknessMap(imagePlus, false),
+			localThicknessMap(imagePlus, true) };
+
+		// EXECUTE
+		@SuppressWarnings("unchecked")
+		final Img<FloatType> opMap = (Img<FloatType>) IMAGE_J.context().getService(
+			OpService.class).run(LocalThickness.class, phantom, true, 0.5);
+		final CommandModule module = IMAGE_J.command().run(ThicknessWrapper.class,
+			true, "inputImage", imagePlus, "mapChoice", "Both", "maskArtefacts",
+			true, "cropToRois", false, "showMaps", true).get();
+
+		// VERIFY
+		assertMapEquals(expectedMaps[0], opMap);
+		final ImagePlus[] maps = { (ImagePlus) module.getOutput("trabecularMap"),
+			(ImagePlus) module.getOutput("spacingMap") };
+		@SuppressWarnings("unchecked")
+		final List<DefaultColumn<Double>> table =
+			(List<DefaultColumn<Double>>) module.getOutput("resultsTable");
+		for (int i = 0; i < 2; i++) {
+			assertMapEquals(expectedMaps[i], ImageJFunctions.wrapFloat(maps[i]));
+			final StackStatistics expected = new StackStatistics(expectedMaps[i]);
+			assertEquals(expected.mean, table.get(3 * i).getValue(0), 1e-6 *
+				expected.mean);
+			assertEquals(expected.stdDev, table.get(3 * i + 1).getValue(0), 1e-6 *
+				expected.stdDev);
+			assertEquals(expected.max, table.get(3 * i + 2).getValue(0), 1e-6 *
+				expected.max);
+		}
+	}
+
 	@Test
 	public void testTimeDimensionCancelsPlugin() throws Exception {
 		// SETUP
@@ -307,4 +396,88 @@ public class ThicknessWrapperTest {
 	public static void oneTimeTearDown() {
 		IMAGE_J.context().dispose();
 	}
+
+	// region -- Helper methods --
+
+	private static void assertMapEquals(final ImagePlus expected,
+		final Img<FloatType> actual)
+	{
+		final Cursor<FloatType> expectedCursor = ImageJFunctions.wrapFloat(expected)
+			.cursor();
+		final Cursor<FloatType> actualCursor = actual.cursor();
+		while (expectedCursor.hasNext()) {
+			final float e = expectedCursor.next().get();
+			final float a = actualCursor.next().get();
+			if (Float.isNaN(e)) {
+				assertTrue(Float.isNaN(a));
+			}
+			else {
+				assertEquals(e, a, 1e-5f * e);
+			}
+		}
+	}
+
+	/** Creates a cube of overlapping balls of random sizes */
+	private static Img<BitType> ballsPhantom(final int size, final long seed) {
+		final Img<BitType> phantom = ArrayImgs.bits(size, size, size);
+		final Random random = new Random(seed);
+		final RandomAccess<BitType> access = phantom.randomAccess();
+		for (int ball = 0; ball < 40; ball++) {
+			final int[] centre = { random.nextInt(size), random.nextInt(size), random
+				.nextInt(size) };
+			final int r = 2 + random.nextInt(7);
+			for (int z = Math.max(0, centre[2] - r); z <= Math.min(size - 1,
+				centre[2] + r); z++)
+			{
+				for (int y = Math.max(0, centre[1] - r); y <= Math.min(size - 1,
+					centre[1] + r); y++)
+				{
+					for (int x = Math.max(0, centre[0] - r); x <= Math.min(size - 1,
+						centre[0] + r); x++)
+					{
+						final int dx = x - centre[0];
+						final int dy = y - centre[1];
+						final int dz = z - centre[2];
+						if (dx * dx + dy * dy + dz * dz <= r * r) {
+							access.setPosition(new int[] { x, y, z });
+							access.get().setOne();
+						}
+					}
+				}
+			}
+		}
+		return phantom;
+	}
+
+	private static ImagePlus localThicknessMap(final ImagePlus image,
+		final boolean inverse)
+	{
+		final LocalThicknessWrapper localThickness = new LocalThicknessWrapper();
+		localThickness.setSilence(true);
+		localThickness.setShowOptions(false);
+		localThickness.maskThicknessMap = true;
+		localThickness.calibratePixels = true;
+		localThickness.inverse = inverse;
+		return localThickness.processImage(image.duplicate());
+	}
+
+	private static ImagePlus toImagePlus(final Img<BitType> phantom) {
+		final int size = (int) phantom.dimension(0);
+		final ImagePlus imagePlus = NewImage.createByteImage("phantom", size, size,
+			size, 1);
+		final RandomAccess<BitType> access = phantom.randomAccess();
+		for (int z = 0; z < size; z++) {
+			final ImageProcessor processor = imagePlus.getStack().getProcessor(z +
+				1);
+			for (int y = 0; y < size; y++) {
+				for (int x = 0; x < size; x++) {
+					access.setPosition(new int[] { x, y, z });
+					processor.set(x, y, access.get().get() ? 0xFF : 0x00);
+				}
+			}
+		}
+		return imagePlus;
+	}
+
+	// endregion
 }
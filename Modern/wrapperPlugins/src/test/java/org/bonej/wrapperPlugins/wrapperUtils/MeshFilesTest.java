@@ -0,0 +1,174 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.wrapperPlugins.wrapperUtils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import net.imagej.mesh.Mesh;
+import net.imagej.mesh.Triangles;
+import net.imagej.mesh.naive.NaiveFloatMesh;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link MeshFiles} class.
+ */
+public class MeshFilesTest {
+
+	private Path file;
+	private Mesh mesh;
+
+	@Before
+	public void setUp() throws IOException {
+		file = Files.createTempFile("MeshFilesTest", null);
+		mesh = new NaiveFloatMesh();
+		final Triangles triangles = mesh.triangles();
+		// @formatter:off
+		triangles.addf(
+				1.0f, 0.0f, 0.0f,
+				0.0f, 1.0f, 0.0f,
+				0.0f, 0.0f, 0.0f,
+				0.0f, 0.0f, 1.0f
+		);
+		triangles.addf(
+				0.0f, 0.0f, 1.0f,
+				0.0f, 1.0f, 0.0f,
+				0.0f, 0.0f, 0.0f,
+				1.0f, 0.0f, 0.0f
+		);
+		// @formatter:on
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void testWriteASCIISTL() throws Exception {
+		MeshFiles.writeASCIISTL(file, mesh, "test\nmesh");
+
+		final List<String> lines = Files.readAllLines(file);
+		assertEquals(16, lines.size());
+		assertEquals("solid test mesh", lines.get(0));
+		assertEquals("facet normal 0.0 0.0 1.0", lines.get(1).trim());
+		assertEquals("outer loop", lines.get(2).trim());
+		assertEquals("vertex 1.0 0.0 0.0", lines.get(3).trim());
+		assertEquals("vertex 0.0 1.0 0.0", lines.get(4).trim());
+		assertEquals("vertex 0.0 0.0 0.0", lines.get(5).trim());
+		assertEquals("endloop", lines.get(6).trim());
+		assertEquals("endfacet", lines.get(7).trim());
+		assertEquals("facet normal 1.0 0.0 0.0", lines.get(8).trim());
+		assertEquals("vertex 0.0 0.0 1.0", lines.get(10).trim());
+		assertEquals("endsolid test mesh", lines.get(15));
+	}
+
+	@Test
+	public void testWriteBinaryPLY() throws Exception {
+		MeshFiles.writeBinaryPLY(file, mesh, "test");
+
+		final byte[] bytes = Files.readAllBytes(file);
+		final String endHeader = "end_header\n";
+		final String text = new String(bytes, StandardCharsets.US_ASCII);
+		final int headerSize = text.indexOf(endHeader) + endHeader.length();
+		final String[] header = text.substring(0, headerSize).split("\n");
+		assertEquals("ply", header[0]);
+		assertEquals("format binary_little_endian 1.0", header[1]);
+		assertEquals("comment test", header[2]);
+		assertEquals("element vertex 6", header[3]);
+		assertEquals("element face 2", header[7]);
+		final int vertexBytes = 6 * 3 * Float.BYTES;
+		final int faceBytes = 2 * (1 + 3 * Integer.BYTES);
+		assertEquals(headerSize + vertexBytes + faceBytes, bytes.length);
+		final ByteBuffer buffer = ByteBuffer.wrap(bytes, headerSize, vertexBytes +
+			faceBytes).order(ByteOrder.LITTLE_ENDIAN);
+		final float[] vertices = new float[18];
+		buffer.asFloatBuffer().get(vertices);
+		// @formatter:off
+		final float[] expectedVertices = {
+				1.0f, 0.0f, 0.0f, 0.0f, 1.0f, 0.0f, 0.0f, 0.0f, 0.0f,
+				0.0f, 0.0f, 1.0f, 0.0f, 1.0f, 0.0f, 0.0f, 0.0f, 0.0f
+		};
+		// @formatter:on
+		assertEquals(Arrays.toString(expectedVertices), Arrays.toString(vertices));
+		buffer.position(buffer.position() + vertexBytes);
+		for (int i = 0; i < 2; i++) {
+			assertEquals(3, buffer.get());
+			assertEquals(3 * i, buffer.getInt());
+			assertEquals(3 * i + 1, buffer.getInt());
+			assertEquals(3 * i + 2, buffer.getInt());
+		}
+	}
+
+	@Test
+	public void testWriteBinarySTL() throws Exception {
+		MeshFiles.writeBinarySTL(file, mesh, "test");
+
+		final byte[] bytes = Files.readAllBytes(file);
+		assertEquals(80 + Integer.BYTES + 2 * 50, bytes.length);
+		final byte[] header = Arrays.copyOf("test".getBytes(
+			StandardCharsets.US_ASCII), 80);
+		assertArrayEquals(header, Arrays.copyOf(bytes, 80));
+		final ByteBuffer buffer = ByteBuffer.wrap(bytes, 80, bytes.length - 80)
+			.order(ByteOrder.LITTLE_ENDIAN);
+		assertEquals(2, buffer.getInt());
+		// @formatter:off
+		final float[][] expectedFacets = {
+				{ 0.0f, 0.0f, 1.0f, 1.0f, 0.0f, 0.0f, 0.0f, 1.0f, 0.0f, 0.0f, 0.0f, 0.0f },
+				{ 1.0f, 0.0f, 0.0f, 0.0f, 0.0f, 1.0f, 0.0f, 1.0f, 0.0f, 0.0f, 0.0f, 0.0f }
+		};
+		// @formatter:on
+		for (final float[] expectedFacet : expectedFacets) {
+			// Normal and vertices
+			final float[] facet = new float[12];
+			for (int i = 0; i < facet.length; i++) {
+				facet[i] = buffer.getFloat();
+			}
+			assertArrayEquals(expectedFacet, facet, 0.0f);
+			// Attribute byte count
+			assertEquals(0, buffer.getShort());
+		}
+		assertEquals(0, buffer.remaining());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testWriteBinarySTLLongHeaderThrowsIAE() throws Exception {
+		final char[] header = new char[81];
+		Arrays.fill(header, '.');
+
+		MeshFiles.writeBinarySTL(file, mesh, new String(header));
+	}
+}
@@ -0,0 +1,119 @@
+/*
+BSD 2-Clause License
+Copyright (c) 2018, Michael Doube, Richard Domander, Alessandro Felder
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.bonej.wrapperPlugins.wrapperUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link SubspaceScheduler} class.
+ */
+public class SubspaceSchedulerTest {
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testConstructorThrowsIfParallelismNotPositive() {
+		new SubspaceScheduler(0, 1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testConstructorThrowsIfMemoryBudgetNotPositive() {
+		new SubspaceScheduler(1, 0);
+	}
+
+	@Test
+	public void testWorkers() {
+		final SubspaceScheduler scheduler = new SubspaceScheduler(8, 100);
+
+		assertEquals("Memory should limit workers", 3, scheduler.workers(10, 30));
+		assertEquals("There should be one worker even if memory is short", 1,
+			scheduler.workers(10, 1_000));
+		assertEquals("Subspaces should limit workers", 2, scheduler.workers(2, 1));
+		assertEquals("Parallelism should limit workers", 8, scheduler.workers(10,
+			0));
+	}
+
+	@Test
+	public void testMapKeepsSubspaceOrder() {
+		// SETUP
+		final SubspaceScheduler scheduler = new SubspaceScheduler(4, 1);
+		final List<Integer> subspaces = IntStream.range(0, 50).boxed().collect(
+			Collectors.toList());
+		final Set<String> threads = ConcurrentHashMap.newKeySet();
+
+		// EXECUTE
+		final List<String> results = scheduler.map(subspaces, 0, i -> {
+			threads.add(Thread.currentThread().getName());
+			try {
+				// Make the early subspaces finish last
+				Thread.sleep((50 - i) / 10);
+			}
+			catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return "#" + i;
+		});
+
+		// VERIFY
+		assertEquals(subspaces.size(), results.size());
+		for (int i = 0; i < results.size(); i++) {
+			assertEquals("Results are not in subspace order", "#" + i, results.get(
+				i));
+		}
+		assertTrue("Subspaces should have run in more than one thread", threads
+			.size() > 1);
+	}
+
+	@Test
+	public void testMapRunsInCallingThreadIfOneWorker() {
+		final SubspaceScheduler scheduler = new SubspaceScheduler(1, 1);
+		final Thread caller = Thread.currentThread();
+
+		final List<Boolean> results = scheduler.map(IntStream.range(0, 3).boxed()
+			.collect(Collectors.toList()), 0, i -> Thread.currentThread() == caller);
+
+		results.forEach(Assert::assertTrue);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testMapRethrowsTaskException() {
+		final SubspaceScheduler scheduler = new SubspaceScheduler(2, 1);
+
+		scheduler.map(IntStream.range(0, 4).boxed().collect(Collectors.toList()), 0,
+			i -> {
+				if (i == 2) {
+					throw new IllegalStateException();
+				}
+				return i;
+			});
+	}
+}